@@ -0,0 +1,133 @@
+package com.itmo.java.basics;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Очереди (lanes) исполнения команд сервера: у каждой очереди один поток, поэтому команды одной очереди
+ * исполняются строго в порядке поступления, а разные очереди работают параллельно. Команда попадает в очередь
+ * по хэшу ключа маршрутизации, так что команды с одним ключом не обгоняют друг друга.
+ * <p>
+ * Отдельная управляющая очередь исполняет команды, которые меняют набор баз и таблиц. Команда с ключом
+ * маршрутизации исполняется только после управляющих команд, принятых раньше нее: отправленные подряд
+ * создание таблицы и запись в нее исполнятся в этом порядке. Управляющая команда, наоборот, может обогнать
+ * принятые раньше команды с ключом
+ */
+public class CommandLanes {
+    private final ThreadPoolExecutor[] lanes;
+    private final ThreadPoolExecutor controlLane;
+
+    /**
+     * Последняя принятая управляющая команда
+     */
+    private volatile CompletableFuture<?> lastControlCommand = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param laneCount количество очередей для команд с ключом маршрутизации
+     */
+    public CommandLanes(int laneCount) {
+        if (laneCount <= 0) {
+            throw new IllegalArgumentException("Lane count must be positive: " + laneCount);
+        }
+
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = newLane("kvs-lane-" + i);
+        }
+        this.controlLane = newLane("kvs-control");
+    }
+
+    /**
+     * Исполняет команду в очереди, выбранной по ключу маршрутизации
+     *
+     * @param routingHash хэш ключа маршрутизации, например, базы, таблицы и ключа записи
+     */
+    public <T> CompletableFuture<T> submit(int routingHash, Supplier<T> command) {
+        ThreadPoolExecutor lane = lanes[laneOf(routingHash)];
+        CompletableFuture<?> precedingControlCommand = lastControlCommand;
+        if (precedingControlCommand.isDone()) {
+            return CompletableFuture.supplyAsync(command, lane);
+        }
+
+        // The lane waits instead of queueing the command later, so commands of the lane keep their order
+        return CompletableFuture.supplyAsync(() -> {
+            precedingControlCommand.handle((result, exception) -> null).join();
+            return command.get();
+        }, lane);
+    }
+
+    /**
+     * Исполняет команду в управляющей очереди. Команды с ключом маршрутизации, принятые после нее, ждут ее исполнения
+     */
+    public synchronized <T> CompletableFuture<T> submitControl(Supplier<T> command) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(command, controlLane);
+        lastControlCommand = future;
+        return future;
+    }
+
+    /**
+     * Номер очереди для ключа маршрутизации
+     */
+    public int laneOf(int routingHash) {
+        // Spread the high bits, the hash may come from String.hashCode
+        int hash = routingHash ^ (routingHash >>> 16);
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Сколько команд ждут исполнения в очереди (без исполняемой сейчас)
+     */
+    public int getQueueDepth(int lane) {
+        return lanes[lane].getQueue().size();
+    }
+
+    /**
+     * Сколько команд ждут исполнения в управляющей очереди
+     */
+    public int getControlQueueDepth() {
+        return controlLane.getQueue().size();
+    }
+
+    /**
+     * Останавливает очереди, дав уже принятым командам исполниться
+     *
+     * @param timeout сколько всего ждать исполнения
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        controlLane.shutdown();
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        controlLane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        int[] depths = new int[lanes.length];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = getQueueDepth(i);
+        }
+        return "CommandLanes{" +
+                "queueDepths=" + Arrays.toString(depths) +
+                ", control=" + getControlQueueDepth() +
+                '}';
+    }
+
+    private static ThreadPoolExecutor newLane(String name) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, name));
+    }
+}
@@ -8,17 +8,32 @@ import com.itmo.java.basics.console.ExecutionEnvironment;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.initialization.impl.DatabaseServerInitializer;
 import com.itmo.java.basics.initialization.impl.InitializationContextImpl;
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespObject;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Сервер БД: исполняет команды в очередях {@link CommandLanes}. Команда попадает в очередь по хэшу базы, таблицы
+ * и ключа (см. {@link DatabaseCommands.Routing}), поэтому команды с одним ключом исполняются в порядке поступления,
+ * а команды с разными ключами - параллельно. Создание баз и таблиц идет через управляющую очередь, и команды
+ * с ключом, принятые после управляющей команды, исполняются после нее (см. {@link CommandLanes}), поэтому
+ * клиент может отправить создание таблицы и запись в нее подряд, не дожидаясь ответа
+ */
 public class DatabaseServer {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Команды ждут диск, а записи нескольких очередей сбрасываются одной пачкой, поэтому очередей больше, чем ядер
+     */
+    private static final int LANES = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
     private final ExecutionEnvironment env;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final CommandLanes lanes = new CommandLanes(LANES);
 
     /**
      * Конструктор
@@ -39,14 +54,61 @@ public class DatabaseServer {
     public CompletableFuture<DatabaseCommandResult> executeNextCommand(RespArray message) {
         List<RespObject> objects = message.getObjects();
         RespObject commandName = objects.get(DatabaseCommandArgPositions.COMMAND_NAME.getPositionIndex());
-        return executeNextCommand(DatabaseCommands.valueOf(commandName.asString()).getCommand(env, objects));
+        DatabaseCommands commandType = DatabaseCommands.valueOf(commandName.asString());
+        DatabaseCommand command = commandType.getCommand(env, objects);
+
+        if (commandType.getRouting() == DatabaseCommands.Routing.CONTROL) {
+            return executeNextCommand(command);
+        }
+        return executeNextCommand(command, routingHash(commandType.getRouting(), objects));
     }
 
+    /**
+     * Исполняет команду в управляющей очереди, по порядку с остальными командами без ключа маршрутизации
+     */
     public CompletableFuture<DatabaseCommandResult> executeNextCommand(DatabaseCommand command) {
-        return CompletableFuture.supplyAsync(command::execute, executorService);
+        return lanes.submitControl(command::execute);
+    }
+
+    /**
+     * Исполняет команду в очереди, выбранной по хэшу ключа маршрутизации
+     */
+    public CompletableFuture<DatabaseCommandResult> executeNextCommand(DatabaseCommand command, int routingHash) {
+        return lanes.submit(routingHash, command::execute);
+    }
+
+    /**
+     * Очереди исполнения команд, например, чтобы узнать, сколько команд ждут в каждой
+     */
+    public CommandLanes getLanes() {
+        return lanes;
     }
 
     public ExecutionEnvironment getEnv() {
         return env;
     }
-}
\ No newline at end of file
+
+    /**
+     * Дожидается исполнения уже принятых команд и освобождает ресурсы окружения (открытые файлы сегментов)
+     *
+     * @throws DatabaseException если не удалось освободить ресурсы
+     */
+    public void close() throws DatabaseException {
+        try {
+            lanes.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        env.close();
+    }
+
+    private static int routingHash(DatabaseCommands.Routing routing, List<RespObject> args) {
+        int hash = Arrays.hashCode(args.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asBytes());
+        hash = 31 * hash + Arrays.hashCode(args.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asBytes());
+        if (routing == DatabaseCommands.Routing.KEY) {
+            hash = 31 * hash + DatabaseKey.wrap(args.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asBytes()).hashCode();
+        }
+        return hash;
+    }
+}
@@ -3,6 +3,8 @@ package com.itmo.java.basics.config;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -12,7 +14,25 @@ public class ConfigLoader {
     private final static String DEFAULT_PROPERTY_FILENAME = "server.properties";
     private final static String HOST_PROPERTY =  "kvs.host";
     private final static String PORT_PROPERTY = "kvs.port";
+    private final static String CONNECTOR_MODE_PROPERTY = "kvs.connector.mode";
+    private final static String EVENT_LOOPS_PROPERTY = "kvs.connector.eventLoops";
     private final static String WORKING_PATH_PROPERTY = "kvs.workingPath";
+    private final static String SEGMENT_READ_MODE_PROPERTY = "kvs.segment.readMode";
+    private final static String SEGMENT_MAPPING_BUDGET_PROPERTY = "kvs.segment.mappingBudget";
+    private final static String DURABILITY_PROPERTY = "kvs.durability";
+    private final static String SYNC_INTERVAL_PROPERTY = "kvs.durability.intervalMs";
+    private final static String COMPACTION_INTERVAL_PROPERTY = "kvs.compaction.intervalMs";
+    private final static String COMPACTION_GARBAGE_RATIO_PROPERTY = "kvs.compaction.garbageRatio";
+    private final static String VERIFY_CHECKSUMS_PROPERTY = "kvs.segment.verifyChecksums";
+    private final static String SEGMENT_COMPRESSION_PROPERTY = "kvs.segment.compression";
+    private final static String COMPRESS_AFTER_PROPERTY = "kvs.segment.compressAfterMs";
+    private final static String BLOB_THRESHOLD_PROPERTY = "kvs.blob.threshold";
+    private final static String INDEX_MODE_PROPERTY = "kvs.index.mode";
+    private final static String SPARSE_INDEX_INTERVAL_PROPERTY = "kvs.index.sparseInterval";
+    private final static String BLOOM_BITS_PER_KEY_PROPERTY = "kvs.index.bloomBitsPerKey";
+    private final static String KEY_STORAGE_PROPERTY = "kvs.index.keyStorage";
+    private final static String TABLE_ENGINE_PROPERTY = "kvs.table.engine";
+    private final static String MEMTABLE_SIZE_PROPERTY = "kvs.lsm.memtableSize";
 
     private final Properties properties;
 
@@ -47,15 +67,88 @@ public class ConfigLoader {
      * то используют дефолтные значения из {@link DatabaseConfig} и {@link ServerConfig}
      * <br/>
      * Читаются: "kvs.workingPath", "kvs.host", "kvs.port" (но в конфигурационном файле допустимы и другие проперти)
+     * <br/>
+     * Настройки соединений: "kvs.connector.mode" (blocking, virtual или nio), "kvs.connector.eventLoops"
+     * <br/>
+     * Настройки хранилища: "kvs.segment.readMode" (pread или mmap), "kvs.segment.mappingBudget" (в байтах),
+     * "kvs.durability" (none, batch или interval), "kvs.durability.intervalMs",
+     * "kvs.compaction.intervalMs" (0 - без уплотнения), "kvs.compaction.garbageRatio",
+     * "kvs.segment.verifyChecksums" (true или false), "kvs.segment.compression" (none или deflate),
+     * "kvs.segment.compressAfterMs", "kvs.blob.threshold" (в байтах, 0 - без blob-файлов),
+     * "kvs.index.mode" (full или sparse), "kvs.index.sparseInterval", "kvs.index.bloomBitsPerKey",
+     * "kvs.index.keyStorage" (heap или off_heap) и "kvs.index.keyStorage.&lt;имя таблицы&gt;" для отдельной таблицы,
+     * "kvs.table.engine" (log или lsm), "kvs.lsm.memtableSize" (в байтах)
      */
     public DatabaseServerConfig readConfig() {
         String host = properties.getProperty(HOST_PROPERTY, ServerConfig.DEFAULT_HOST);
         int port = Integer.parseInt(properties.getProperty(PORT_PROPERTY, String.valueOf(ServerConfig.DEFAULT_PORT)));
+        ConnectorMode connectorMode = ConnectorMode.valueOf(
+                properties.getProperty(CONNECTOR_MODE_PROPERTY, ServerConfig.DEFAULT_CONNECTOR_MODE.name()).toUpperCase());
+        int eventLoops = Integer.parseInt(
+                properties.getProperty(EVENT_LOOPS_PROPERTY, String.valueOf(ServerConfig.DEFAULT_EVENT_LOOPS)));
         String workingPath = properties.getProperty(WORKING_PATH_PROPERTY, DatabaseConfig.DEFAULT_WORKING_PATH);
+        SegmentReadMode segmentReadMode = SegmentReadMode.valueOf(
+                properties.getProperty(SEGMENT_READ_MODE_PROPERTY, DatabaseConfig.DEFAULT_SEGMENT_READ_MODE.name()).toUpperCase());
+        long segmentMappingBudget = Long.parseLong(
+                properties.getProperty(SEGMENT_MAPPING_BUDGET_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_SEGMENT_MAPPING_BUDGET)));
+        DurabilityMode durabilityMode = DurabilityMode.valueOf(
+                properties.getProperty(DURABILITY_PROPERTY, DatabaseConfig.DEFAULT_DURABILITY_MODE.name()).toUpperCase());
+        long syncIntervalMillis = Long.parseLong(
+                properties.getProperty(SYNC_INTERVAL_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_SYNC_INTERVAL_MILLIS)));
+        long compactionIntervalMillis = Long.parseLong(
+                properties.getProperty(COMPACTION_INTERVAL_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_INTERVAL_MILLIS)));
+        double compactionGarbageRatio = Double.parseDouble(
+                properties.getProperty(COMPACTION_GARBAGE_RATIO_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_GARBAGE_RATIO)));
+        boolean verifyChecksums = Boolean.parseBoolean(
+                properties.getProperty(VERIFY_CHECKSUMS_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_VERIFY_CHECKSUMS)));
+        String segmentCompression = properties.getProperty(SEGMENT_COMPRESSION_PROPERTY, DatabaseConfig.DEFAULT_SEGMENT_COMPRESSION);
+        long compressAfterMillis = Long.parseLong(
+                properties.getProperty(COMPRESS_AFTER_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_COMPRESS_AFTER_MILLIS)));
+        int blobThreshold = Integer.parseInt(
+                properties.getProperty(BLOB_THRESHOLD_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_BLOB_THRESHOLD)));
+        IndexMode indexMode = IndexMode.valueOf(
+                properties.getProperty(INDEX_MODE_PROPERTY, DatabaseConfig.DEFAULT_INDEX_MODE.name()).toUpperCase());
+        int sparseIndexInterval = Integer.parseInt(
+                properties.getProperty(SPARSE_INDEX_INTERVAL_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_SPARSE_INDEX_INTERVAL)));
+        int bloomBitsPerKey = Integer.parseInt(
+                properties.getProperty(BLOOM_BITS_PER_KEY_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_BLOOM_BITS_PER_KEY)));
+        KeyStorage keyStorage = KeyStorage.valueOf(
+                properties.getProperty(KEY_STORAGE_PROPERTY, DatabaseConfig.DEFAULT_KEY_STORAGE.name()).toUpperCase());
+        Map<String, KeyStorage> tableKeyStorage = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(KEY_STORAGE_PROPERTY + ".")) {
+                tableKeyStorage.put(name.substring(KEY_STORAGE_PROPERTY.length() + 1),
+                        KeyStorage.valueOf(properties.getProperty(name).toUpperCase()));
+            }
+        }
+
+        TableEngine tableEngine = TableEngine.valueOf(
+                properties.getProperty(TABLE_ENGINE_PROPERTY, DatabaseConfig.DEFAULT_TABLE_ENGINE.name()).toUpperCase());
+        long memtableSize = Long.parseLong(
+                properties.getProperty(MEMTABLE_SIZE_PROPERTY, String.valueOf(DatabaseConfig.DEFAULT_MEMTABLE_SIZE)));
 
         return DatabaseServerConfig.builder()
-                .serverConfig(new ServerConfig(host, port))
-                .dbConfig(new DatabaseConfig(workingPath))
+                .serverConfig(new ServerConfig(host, port, connectorMode, eventLoops))
+                .dbConfig(DatabaseConfig.builder()
+                        .workingPath(workingPath)
+                        .segmentReadMode(segmentReadMode)
+                        .segmentMappingBudget(segmentMappingBudget)
+                        .durabilityMode(durabilityMode)
+                        .syncIntervalMillis(syncIntervalMillis)
+                        .compactionIntervalMillis(compactionIntervalMillis)
+                        .compactionGarbageRatio(compactionGarbageRatio)
+                        .verifyChecksums(verifyChecksums)
+                        .segmentCompression(segmentCompression)
+                        .compressAfterMillis(compressAfterMillis)
+                        .blobThreshold(blobThreshold)
+                        .indexMode(indexMode)
+                        .sparseIndexInterval(sparseIndexInterval)
+                        .bloomBitsPerKey(bloomBitsPerKey)
+                        .keyStorage(keyStorage)
+                        .tableKeyStorage(tableKeyStorage)
+                        .tableEngine(tableEngine)
+                        .memtableSize(memtableSize)
+                        .build())
                 .build();
     }
 }
@@ -0,0 +1,23 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Как сервер обслуживает клиентские сокеты
+ */
+public enum ConnectorMode {
+    /**
+     * Блокирующие сокеты: у каждого соединения свой поток из пула обычных (platform) потоков
+     */
+    BLOCKING,
+
+    /**
+     * Блокирующие сокеты, но у каждого соединения свой виртуальный поток (Java 21+). Ожидание сокета не держит
+     * поток ОС, поэтому соединений может быть много. На более старой JVM работает как {@link #BLOCKING}
+     */
+    VIRTUAL,
+
+    /**
+     * Неблокирующие сокеты: несколько потоков-циклов событий (event loop) обслуживают все соединения
+     * через {@link java.nio.channels.Selector}
+     */
+    NIO
+}
@@ -1,14 +1,169 @@
 package com.itmo.java.basics.config;
 
+import lombok.Builder;
+
+import java.util.Map;
+
 public class DatabaseConfig {
     public static final String DEFAULT_WORKING_PATH = "db_files";
+    public static final SegmentReadMode DEFAULT_SEGMENT_READ_MODE = SegmentReadMode.PREAD;
+    public static final long DEFAULT_SEGMENT_MAPPING_BUDGET = 16 * 1024 * 1024;
+    public static final DurabilityMode DEFAULT_DURABILITY_MODE = DurabilityMode.NONE;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+    public static final long DEFAULT_COMPACTION_INTERVAL_MILLIS = 30_000;
+    public static final double DEFAULT_COMPACTION_GARBAGE_RATIO = 0.5;
+    public static final boolean DEFAULT_VERIFY_CHECKSUMS = false;
+    public static final String DEFAULT_SEGMENT_COMPRESSION = "none";
+    public static final long DEFAULT_COMPRESS_AFTER_MILLIS = 10 * 60 * 1000;
+    public static final int DEFAULT_BLOB_THRESHOLD = 0;
+    public static final IndexMode DEFAULT_INDEX_MODE = IndexMode.FULL;
+    public static final int DEFAULT_SPARSE_INDEX_INTERVAL = 16;
+    public static final int DEFAULT_BLOOM_BITS_PER_KEY = 10;
+    public static final KeyStorage DEFAULT_KEY_STORAGE = KeyStorage.HEAP;
+    public static final TableEngine DEFAULT_TABLE_ENGINE = TableEngine.LOG;
+    public static final long DEFAULT_MEMTABLE_SIZE = 4 * 1024 * 1024;
+
     private final String workingPath;
+    private final SegmentReadMode segmentReadMode;
+    private final long segmentMappingBudget;
+    private final DurabilityMode durabilityMode;
+    private final long syncIntervalMillis;
+    private final long compactionIntervalMillis;
+    private final double compactionGarbageRatio;
+    private final boolean verifyChecksums;
+    private final String segmentCompression;
+    private final long compressAfterMillis;
+    private final int blobThreshold;
+    private final IndexMode indexMode;
+    private final int sparseIndexInterval;
+    private final int bloomBitsPerKey;
+    private final KeyStorage keyStorage;
+    private final Map<String, KeyStorage> tableKeyStorage;
+    private final TableEngine tableEngine;
+    private final long memtableSize;
 
     public DatabaseConfig(String workingPath) {
+        this(workingPath, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * @param workingPath          директория, в которой хранятся базы данных
+     * @param segmentReadMode      способ чтения сегментов, открытых только на чтение
+     * @param segmentMappingBudget максимальный размер сегмента в байтах, который можно отображать в память
+     * @param durabilityMode       гарантия сохранности записей
+     * @param syncIntervalMillis   интервал фонового fsync для {@link DurabilityMode#INTERVAL}
+     * @param compactionIntervalMillis интервал фонового уплотнения сегментов, 0 - уплотнение отключено
+     * @param compactionGarbageRatio   доля устаревших записей, начиная с которой сегмент уплотняется
+     * @param verifyChecksums          проверять ли контрольную сумму записи при каждом чтении
+     * @param segmentCompression       алгоритм сжатия read-only сегментов, "none" - сегменты не сжимаются
+     * @param compressAfterMillis      сколько времени read-only сегмент не должен меняться, чтобы его сжали
+     * @param blobThreshold            размер значения в байтах, начиная с которого значение выносится в blob-файл,
+     *                                 0 - значения всегда хранятся в сегментах
+     * @param indexMode                способ хранения индекса таблицы в памяти
+     * @param sparseIndexInterval      каждый какой ключ hint-файла хранится в памяти в режиме {@link IndexMode#SPARSE}
+     * @param bloomBitsPerKey          сколько бит фильтра Блума приходится на ключ сегмента в режиме {@link IndexMode#SPARSE}
+     * @param keyStorage               где индекс таблицы хранит ключи в режиме {@link IndexMode#FULL}
+     * @param tableKeyStorage          способ хранения ключей для отдельных таблиц, по имени таблицы
+     * @param tableEngine              устройство таблиц, для которых оно не указано при создании
+     * @param memtableSize             размер таблицы в памяти {@link TableEngine#LSM} в байтах, после которого
+     *                                 она сбрасывается в отсортированный сегмент
+     */
+    @Builder
+    public DatabaseConfig(String workingPath, SegmentReadMode segmentReadMode, Long segmentMappingBudget,
+                          DurabilityMode durabilityMode, Long syncIntervalMillis,
+                          Long compactionIntervalMillis, Double compactionGarbageRatio, Boolean verifyChecksums,
+                          String segmentCompression, Long compressAfterMillis, Integer blobThreshold,
+                          IndexMode indexMode, Integer sparseIndexInterval, Integer bloomBitsPerKey,
+                          KeyStorage keyStorage, Map<String, KeyStorage> tableKeyStorage,
+                          TableEngine tableEngine, Long memtableSize) {
         this.workingPath = workingPath;
+        this.segmentReadMode = segmentReadMode == null ? DEFAULT_SEGMENT_READ_MODE : segmentReadMode;
+        this.segmentMappingBudget = segmentMappingBudget == null ? DEFAULT_SEGMENT_MAPPING_BUDGET : segmentMappingBudget;
+        this.durabilityMode = durabilityMode == null ? DEFAULT_DURABILITY_MODE : durabilityMode;
+        this.syncIntervalMillis = syncIntervalMillis == null ? DEFAULT_SYNC_INTERVAL_MILLIS : syncIntervalMillis;
+        this.compactionIntervalMillis = compactionIntervalMillis == null ? DEFAULT_COMPACTION_INTERVAL_MILLIS : compactionIntervalMillis;
+        this.compactionGarbageRatio = compactionGarbageRatio == null ? DEFAULT_COMPACTION_GARBAGE_RATIO : compactionGarbageRatio;
+        this.verifyChecksums = verifyChecksums == null ? DEFAULT_VERIFY_CHECKSUMS : verifyChecksums;
+        this.segmentCompression = segmentCompression == null ? DEFAULT_SEGMENT_COMPRESSION : segmentCompression;
+        this.compressAfterMillis = compressAfterMillis == null ? DEFAULT_COMPRESS_AFTER_MILLIS : compressAfterMillis;
+        this.blobThreshold = blobThreshold == null ? DEFAULT_BLOB_THRESHOLD : blobThreshold;
+        this.indexMode = indexMode == null ? DEFAULT_INDEX_MODE : indexMode;
+        this.sparseIndexInterval = sparseIndexInterval == null ? DEFAULT_SPARSE_INDEX_INTERVAL : sparseIndexInterval;
+        this.bloomBitsPerKey = bloomBitsPerKey == null ? DEFAULT_BLOOM_BITS_PER_KEY : bloomBitsPerKey;
+        this.keyStorage = keyStorage == null ? DEFAULT_KEY_STORAGE : keyStorage;
+        this.tableKeyStorage = tableKeyStorage == null ? Map.of() : Map.copyOf(tableKeyStorage);
+        this.tableEngine = tableEngine == null ? DEFAULT_TABLE_ENGINE : tableEngine;
+        this.memtableSize = memtableSize == null ? DEFAULT_MEMTABLE_SIZE : memtableSize;
     }
 
     public String getWorkingPath() {
         return workingPath == null ? DEFAULT_WORKING_PATH : workingPath;
     }
+
+    public SegmentReadMode getSegmentReadMode() {
+        return segmentReadMode;
+    }
+
+    public long getSegmentMappingBudget() {
+        return segmentMappingBudget;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    public long getCompactionIntervalMillis() {
+        return compactionIntervalMillis;
+    }
+
+    public double getCompactionGarbageRatio() {
+        return compactionGarbageRatio;
+    }
+
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public String getSegmentCompression() {
+        return segmentCompression;
+    }
+
+    public long getCompressAfterMillis() {
+        return compressAfterMillis;
+    }
+
+    public int getBlobThreshold() {
+        return blobThreshold;
+    }
+
+    public IndexMode getIndexMode() {
+        return indexMode;
+    }
+
+    public int getSparseIndexInterval() {
+        return sparseIndexInterval;
+    }
+
+    public int getBloomBitsPerKey() {
+        return bloomBitsPerKey;
+    }
+
+    /**
+     * Способ хранения ключей в индексе таблицы: заданный для этой таблицы или общий
+     */
+    public KeyStorage getKeyStorage(String tableName) {
+        return tableKeyStorage.getOrDefault(tableName, keyStorage);
+    }
+
+    public TableEngine getTableEngine() {
+        return tableEngine;
+    }
+
+    public long getMemtableSize() {
+        return memtableSize;
+    }
 }
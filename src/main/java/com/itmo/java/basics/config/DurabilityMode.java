@@ -0,0 +1,21 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Гарантия сохранности записи на момент, когда команда записи считается выполненной
+ */
+public enum DurabilityMode {
+    /**
+     * Запись передана ОС (находится в page cache), fsync не выполняется
+     */
+    NONE,
+
+    /**
+     * Один fsync на группу записей, команда завершается после fsync
+     */
+    BATCH,
+
+    /**
+     * fsync выполняется в фоне раз в заданный интервал, команда завершается сразу после записи в файл
+     */
+    INTERVAL
+}
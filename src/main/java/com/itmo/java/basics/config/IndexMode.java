@@ -0,0 +1,17 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Способ хранения индекса таблицы в памяти
+ */
+public enum IndexMode {
+    /**
+     * Все ключи таблицы и сегментов хранятся в памяти
+     */
+    FULL,
+
+    /**
+     * Для сегментов с hint-файлом в памяти хранятся только фильтр Блума и каждый N-й ключ hint-файла,
+     * остальное читается с диска. Поиск по таблице перебирает сегменты от новых к старым
+     */
+    SPARSE
+}
@@ -0,0 +1,16 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Где индекс таблицы в режиме {@link IndexMode#FULL} хранит ключи
+ */
+public enum KeyStorage {
+    /**
+     * Ключи - строки в куче
+     */
+    HEAP,
+
+    /**
+     * Байты ключей лежат вне кучи, в прямых буферах, и не обходятся сборщиком мусора
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,16 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Способ чтения записей из сегментов, открытых только на чтение
+ */
+public enum SegmentReadMode {
+    /**
+     * Позиционное чтение из файла по смещению
+     */
+    PREAD,
+
+    /**
+     * Чтение из отображенного в память файла. Сегменты больше бюджета отображения читаются как {@link #PREAD}
+     */
+    MMAP
+}
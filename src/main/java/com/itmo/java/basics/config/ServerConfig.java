@@ -4,7 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 /**
- * Какой хост и какой порт будет слушать наш сервер
+ * Какой хост и какой порт будет слушать наш сервер и как он обслуживает соединения
  */
 @Getter
 @AllArgsConstructor
@@ -12,7 +12,20 @@ public class ServerConfig {
 
     public static final String DEFAULT_HOST = "localhost";
     public static final int DEFAULT_PORT = 8080;
+    public static final ConnectorMode DEFAULT_CONNECTOR_MODE = ConnectorMode.NIO;
+    public static final int DEFAULT_EVENT_LOOPS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
     private final String host;
     private final int port;
+
+    private final ConnectorMode connectorMode;
+
+    /**
+     * Количество потоков-циклов событий для {@link ConnectorMode#NIO}
+     */
+    private final int eventLoops;
+
+    public ServerConfig(String host, int port) {
+        this(host, port, DEFAULT_CONNECTOR_MODE, DEFAULT_EVENT_LOOPS);
+    }
 }
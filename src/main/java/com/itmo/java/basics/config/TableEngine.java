@@ -0,0 +1,18 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Устройство таблицы, выбирается при создании таблицы
+ */
+public enum TableEngine {
+    /**
+     * Сегменты-журналы: записи дописываются в конец активного сегмента, а индекс в памяти хранит позицию
+     * последней записи каждого ключа (см. {@link IndexMode})
+     */
+    LOG,
+
+    /**
+     * LSM-дерево: записи копятся в отсортированной таблице в памяти и сбрасываются в неизменяемые
+     * отсортированные сегменты, которые сливаются по уровням. Память не зависит от количества ключей
+     */
+    LSM
+}
@@ -0,0 +1,43 @@
+package com.itmo.java.basics.connector;
+
+import com.itmo.java.basics.DatabaseServer;
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.protocol.TaggedReplies;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Исполнение команды клиента для коннекторов: ответ, который нужно отправить клиенту. Если команду не удалось
+ * разобрать или исполнить, ответ - ошибка, а соединение продолжает работать
+ */
+final class CommandReplies {
+    private CommandReplies() {
+    }
+
+    /**
+     * @param tagged пометить ответ id команды (см. {@link TaggedReplies})
+     */
+    static CompletableFuture<RespObject> execute(DatabaseServer server, RespArray command, boolean tagged) {
+        CompletableFuture<RespObject> reply;
+        try {
+            reply = server.executeNextCommand(command)
+                    .handle((result, exception) -> exception == null ? result.serialize() : error(exception));
+        } catch (RuntimeException e) {
+            reply = CompletableFuture.completedFuture(error(e));
+        }
+        return tagged ? reply.thenApply(object -> TaggedReplies.tag(command, object)) : reply;
+    }
+
+    /**
+     * Ответ-ошибка на команду, исполнение которой закончилось исключением
+     */
+    static RespObject error(Throwable exception) {
+        Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                ? exception.getCause()
+                : exception;
+        return DatabaseCommandResult.error("Cannot execute command: " + cause).serialize();
+    }
+}
@@ -2,33 +2,48 @@ package com.itmo.java.basics.connector;
 
 import com.itmo.java.basics.DatabaseServer;
 import com.itmo.java.basics.config.ConfigLoader;
+import com.itmo.java.basics.config.ConnectorMode;
 import com.itmo.java.basics.config.DatabaseServerConfig;
 import com.itmo.java.basics.config.ServerConfig;
 import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.initialization.impl.DatabaseInitializer;
 import com.itmo.java.basics.initialization.impl.DatabaseServerInitializer;
 import com.itmo.java.basics.initialization.impl.SegmentInitializer;
 import com.itmo.java.basics.initialization.impl.TableInitializer;
-import com.itmo.java.basics.resp.CommandReader;
 import com.itmo.java.protocol.RespReader;
 import com.itmo.java.protocol.RespWriter;
+import com.itmo.java.protocol.TaggedReplies;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespObject;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 
 /**
- * Класс, который предоставляет доступ к серверу через сокеты
+ * Класс, который предоставляет доступ к серверу через сокеты: у каждого соединения свой поток
+ * ({@link ConnectorMode#BLOCKING} или {@link ConnectorMode#VIRTUAL}). Неблокирующий режим - {@link NioServerConnector}
  */
 public class JavaSocketServerConnector implements Closeable {
+    private static final int BACKLOG = 1024;
 
     /**
-     * Экзекьютор для выполнения ClientTask
+     * Экзекьютор для выполнения ClientTask. Задача занимает поток, пока клиент не отсоединится,
+     * поэтому потоков столько же, сколько соединений (и еще по одному на запись ответов в режиме {@link TaggedReplies})
      */
-    private final ExecutorService clientIOWorkers = Executors.newSingleThreadExecutor();
+    private final ExecutorService clientIOWorkers;
 
     private final ServerSocket serverSocket;
     private final ExecutorService connectionAcceptorExecutor = Executors.newSingleThreadExecutor();
@@ -38,8 +53,11 @@ public class JavaSocketServerConnector implements Closeable {
      * Стартует сервер. По аналогии с сокетом открывает коннекшн в конструкторе.
      */
     public JavaSocketServerConnector(DatabaseServer databaseServer, ServerConfig config) throws IOException {
-        serverSocket = new ServerSocket(config.getPort());
+        serverSocket = new ServerSocket(config.getPort(), BACKLOG);
         this.databaseServer = databaseServer;
+        this.clientIOWorkers = config.getConnectorMode() == ConnectorMode.VIRTUAL
+                ? newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool();
     }
  
      /**
@@ -50,7 +68,8 @@ public class JavaSocketServerConnector implements Closeable {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
                     Socket client = serverSocket.accept();
-                    clientIOWorkers.submit(new ClientTask(client, databaseServer));
+                    client.setTcpNoDelay(true);
+                    clientIOWorkers.submit(new ClientTask(client, databaseServer, clientIOWorkers));
                 } catch (IOException e) {
                     throw new RuntimeException("Cannot accept client", e);
                 }
@@ -75,6 +94,19 @@ public class JavaSocketServerConnector implements Closeable {
     }
 
 
+    /**
+     * Сервер собирается под Java 11, а виртуальные потоки есть только с Java 21, поэтому экзекьютор создается
+     * через reflection. На более старой JVM - обычный пул
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // No virtual threads before Java 21
+            return Executors.newCachedThreadPool();
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         // Читаем настройки
         DatabaseServerConfig databaseServerConfig = new ConfigLoader().readConfig();
@@ -83,29 +115,79 @@ public class JavaSocketServerConnector implements Closeable {
         var database = DatabaseServer.initialize(new ExecutionEnvironmentImpl(databaseServerConfig.getDbConfig()),
                 new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer()))));
 
-        // Создаем JavaSocketServerConnector
-        JavaSocketServerConnector javaSocketServerConnector = new JavaSocketServerConnector(database, databaseServerConfig.getServerConfig());
+        // Создаем коннектор в выбранном режиме и запускаем сервер
+        ServerConfig serverConfig = databaseServerConfig.getServerConfig();
+        Closeable connector;
+        if (serverConfig.getConnectorMode() == ConnectorMode.NIO) {
+            NioServerConnector nioServerConnector = new NioServerConnector(database, serverConfig);
+            nioServerConnector.start();
+            connector = nioServerConnector;
+        } else {
+            JavaSocketServerConnector javaSocketServerConnector = new JavaSocketServerConnector(database, serverConfig);
+            javaSocketServerConnector.start();
+            connector = javaSocketServerConnector;
+        }
 
-        // Запускаем сервер
-        javaSocketServerConnector.start();
+        // Освобождаем ресурсы при остановке процесса
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                connector.close();
+            } catch (IOException ignore) {
+                // Ignore errors on closing
+            }
+            try {
+                database.close();
+            } catch (DatabaseException e) {
+                e.printStackTrace();
+            }
+        }));
     }
 
     /**
      * Runnable, описывающий исполнение клиентской команды.
      */
     static class ClientTask implements Runnable, Closeable {
+        /**
+         * Сколько пришедших подряд команд клиента исполняется одновременно. В режиме {@link TaggedReplies} -
+         * сколько команд может ждать исполнения или отправки ответа
+         */
+        private static final int MAX_PIPELINED_COMMANDS = 128;
+
         private final Socket client;
         private final DatabaseServer server;
+        private final ExecutorService replyWriters;
         private final RespReader reader;
         private final RespWriter writer;
 
         /**
-         * @param client клиентский сокет
-         * @param server сервер, на котором исполняется задача
+         * Готовые помеченные ответы в порядке готовности
+         */
+        private final BlockingQueue<RespObject> completedReplies = new LinkedBlockingQueue<>();
+
+        /**
+         * Места для команд, ответы на которые еще не отправлены, в режиме {@link TaggedReplies}
+         */
+        private final Semaphore taggedCommandSlots = new Semaphore(MAX_PIPELINED_COMMANDS);
+
+        /**
+         * Клиент включил режим {@link TaggedReplies}
+         */
+        private boolean tagged;
+
+        /**
+         * Задача, отправляющая помеченные ответы
+         */
+        private volatile Future<?> replyWriter;
+
+        /**
+         * @param client       клиентский сокет
+         * @param server       сервер, на котором исполняется задача
+         * @param replyWriters экзекьютор для задачи, которая отправляет ответы в режиме {@link TaggedReplies}
          */
-        public ClientTask(Socket client, DatabaseServer server) {
+        public ClientTask(Socket client, DatabaseServer server, ExecutorService replyWriters) {
             this.client = client;
             this.server = server;
+            this.replyWriters = replyWriters;
 
             try {
                 this.reader = new RespReader(client.getInputStream());
@@ -118,35 +200,115 @@ public class JavaSocketServerConnector implements Closeable {
 
         /**
          * Исполняет задачи из одного клиентского сокета, пока клиент не отсоединился или текущий поток не был прерван (interrupted).
-         * Для кажной из задач:
-         * 1. Читает из сокета команду с помощью {@link CommandReader}
-         * 2. Исполняет ее на сервере
-         * 3. Записывает результат в сокет с помощью {@link RespWriter}
+         * Команды читаются пачками: первая команда ждется, а следующие берутся, пока они уже пришли (клиент отправил
+         * их подряд, не дожидаясь ответов). Для пачки:
+         * 1. Читает из сокета команды с помощью {@link RespReader} и сразу отдает их серверу, где они исполняются
+         * параллельно в очередях своих ключей
+         * 2. Записывает результаты с помощью {@link RespWriter} в порядке команд
+         * 3. Отправляет записанные ответы вместе: перед ожиданием неготового результата и в конце пачки
+         * <p>
+         * После команды {@link TaggedReplies} пачек нет: команды читаются и отдаются серверу друг за другом, а ответы
+         * в порядке готовности отправляет отдельная задача ({@link #writeCompletedReplies()}), поэтому медленная команда
+         * не задерживает ни чтение следующих команд, ни ответы на них
          */
         @Override
         public void run() {
-            try (CommandReader commandReader = new CommandReader(reader, server.getEnv())) {
-                while (client.isConnected() && !Thread.currentThread().isInterrupted()) {
-                    try {
-                        if (commandReader.hasNextCommand()) {
-                            writer.write(server.executeNextCommand(commandReader.readCommand()).get().serialize());
+            List<CompletableFuture<RespObject>> pipeline = new ArrayList<>();
+            try {
+                while (!Thread.currentThread().isInterrupted() && reader.hasArray()) {
+                    if (tagged) {
+                        taggedCommandSlots.acquire();
+                        submit(reader.readArray());
+                        continue;
+                    }
+
+                    do {
+                        RespArray command = reader.readArray();
+                        if (TaggedReplies.isHandshake(command)) {
+                            // Replies to the following commands are tagged and written as they complete
+                            pipeline.add(CompletableFuture.completedFuture(TaggedReplies.handshakeReply()));
+                            tagged = true;
+                            break;
                         }
-                    } catch (InterruptedException e) {
-                        break;
+                        pipeline.add(submit(command));
+                    } while (pipeline.size() < MAX_PIPELINED_COMMANDS && reader.isReady() && reader.hasArray());
+
+                    writeInOrder(pipeline);
+                    writer.flush();
+                    pipeline.clear();
+
+                    if (tagged) {
+                        replyWriter = replyWriters.submit(this::writeCompletedReplies);
                     }
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            } catch (IOException e) {
+                // The client has disconnected
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } finally {
                 close();
             }
         }
 
+        private CompletableFuture<RespObject> submit(RespArray command) {
+            if (!tagged) {
+                return CommandReplies.execute(server, command, false);
+            }
+
+            CompletableFuture<RespObject> reply = TaggedReplies.isHandshake(command)
+                    ? CompletableFuture.completedFuture(TaggedReplies.tag(command, TaggedReplies.handshakeReply()))
+                    : CommandReplies.execute(server, command, true);
+            reply.whenComplete((object, exception) ->
+                    completedReplies.add(exception == null ? object : TaggedReplies.tag(command, CommandReplies.error(exception))));
+            return reply;
+        }
+
+        private void writeInOrder(List<CompletableFuture<RespObject>> pipeline) throws IOException, InterruptedException {
+            for (CompletableFuture<RespObject> reply : pipeline) {
+                if (!reply.isDone()) {
+                    writer.flush();
+                }
+                try {
+                    writer.write(reply.get());
+                } catch (ExecutionException e) {
+                    writer.write(CommandReplies.error(e.getCause()));
+                }
+            }
+        }
+
+        /**
+         * Отправляет помеченные ответы в порядке готовности, пока соединение не закрыто. Ответы, готовые подряд,
+         * отправляются вместе
+         */
+        private void writeCompletedReplies() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    RespObject reply = completedReplies.poll();
+                    if (reply == null) {
+                        writer.flush();
+                        reply = completedReplies.take();
+                    }
+                    writer.write(reply);
+                    taggedCommandSlots.release();
+                }
+            } catch (IOException e) {
+                // The client has disconnected, the reading side stops on the closed socket
+                close();
+            } catch (InterruptedException e) {
+                // The connection is closed
+            }
+        }
+
         /**
          * Закрывает клиентский сокет
          */
         @Override
         public void close() {
+            Future<?> currentReplyWriter = replyWriter;
+            if (currentReplyWriter != null) {
+                currentReplyWriter.cancel(true);
+            }
+
             try {
                 client.close();
             } catch (IOException ignore) {
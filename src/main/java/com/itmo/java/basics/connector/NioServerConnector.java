@@ -0,0 +1,449 @@
+package com.itmo.java.basics.connector;
+
+import com.itmo.java.basics.DatabaseServer;
+import com.itmo.java.basics.config.ConnectorMode;
+import com.itmo.java.basics.config.ServerConfig;
+import com.itmo.java.protocol.RespDecoder;
+import com.itmo.java.protocol.TaggedReplies;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Неблокирующий доступ к серверу через сокеты ({@link ConnectorMode#NIO}). Соединения распределяются по нескольким
+ * потокам-циклам событий (event loop): каждый через свой {@link Selector} обслуживает любое количество соединений
+ * и только читает и пишет байты, а команды исполняет {@link DatabaseServer} в своих очередях.
+ * <p>
+ * У каждого соединения небольшие буферы чтения и записи, которые переиспользуются между командами. Команды
+ * соединения исполняются параллельно, а ответы отправляются в порядке команд или, если клиент включил
+ * {@link TaggedReplies}, по мере готовности
+ */
+public class NioServerConnector implements Closeable {
+    private static final int BACKLOG = 1024;
+
+    /**
+     * Начальный размер буферов соединения
+     */
+    private static final int BUFFER_SIZE = 4 * 1024;
+
+    /**
+     * Буфер, выросший под большую команду или ответ, после использования заменяется на буфер начального размера,
+     * чтобы тысячи соединений не держали память. Ответы сверх этого размера, которые клиент не забирает,
+     * приостанавливают чтение соединения
+     */
+    private static final int RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Наибольший размер буфера чтения: в нем должна поместиться одна команда целиком. Соединение, команда
+     * которого не помещается, закрывается
+     */
+    private static final int MAX_READ_BUFFER_SIZE = 2 * RespDecoder.MAX_BULK_STRING_LENGTH + RETAINED_BUFFER_SIZE;
+
+    /**
+     * Сколько команд одного соединения может исполняться одновременно, прежде чем соединение перестанет читаться
+     */
+    private static final int MAX_IN_FLIGHT = 128;
+
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connectionAcceptorExecutor = Executors.newSingleThreadExecutor();
+    private final EventLoop[] eventLoops;
+    private final DatabaseServer databaseServer;
+    private volatile boolean closed;
+
+    /**
+     * Открывает серверный сокет и селекторы циклов событий. Потоки запускаются в {@link #start()}
+     */
+    public NioServerConnector(DatabaseServer databaseServer, ServerConfig config) throws IOException {
+        if (config.getEventLoops() < 1) {
+            throw new IllegalArgumentException("Event loop count must be positive, got " + config.getEventLoops());
+        }
+
+        this.databaseServer = databaseServer;
+        this.serverChannel = ServerSocketChannel.open();
+        this.eventLoops = new EventLoop[config.getEventLoops()];
+        try {
+            serverChannel.bind(new InetSocketAddress(config.getPort()), BACKLOG);
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new EventLoop(i);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Запускает циклы событий и начинает аксептить клиентские сокеты. Соединения раздаются циклам по кругу
+     */
+    public void start() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.thread.start();
+        }
+
+        connectionAcceptorExecutor.submit(() -> {
+            int next = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                SocketChannel client;
+                try {
+                    client = serverChannel.accept();
+                } catch (ClosedChannelException e) {
+                    // The connector is closed
+                    return;
+                } catch (IOException e) {
+                    throw new RuntimeException("Cannot accept client", e);
+                }
+
+                eventLoops[next].register(client);
+                next = (next + 1) % eventLoops.length;
+            }
+        });
+    }
+
+    /**
+     * Перестает принимать соединения, останавливает циклы событий и закрывает все клиентские сокеты
+     */
+    @Override
+    public void close() {
+        closed = true;
+        connectionAcceptorExecutor.shutdownNow();
+
+        try {
+            serverChannel.close();
+        } catch (IOException ignore) {
+            // Ignore errors on closing
+        }
+
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.selector.wakeup();
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignore) {
+            // Ignore errors on closing
+        }
+    }
+
+    /**
+     * Поток с селектором. Соединения цикла трогаются только из его потока, остальные потоки передают
+     * ему задачи через {@link #execute(Runnable)}
+     */
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private EventLoop(int number) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "kvs-event-loop-" + number);
+        }
+
+        /**
+         * Выполняет задачу в потоке цикла
+         */
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        private void register(SocketChannel client) {
+            execute(() -> {
+                try {
+                    client.configureBlocking(false);
+                    client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(client, key, this));
+                } catch (IOException e) {
+                    closeQuietly(client);
+                }
+            });
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    runTasks();
+
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        ((Connection) key.attachment()).handle();
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (!closed) {
+                    throw new RuntimeException("Event loop " + thread.getName() + " failed", e);
+                }
+            } finally {
+                runTasks();
+                List<SelectionKey> keys = new ArrayList<>(selector.keys());
+                for (SelectionKey key : keys) {
+                    Object connection = key.attachment();
+                    if (connection != null) {
+                        ((Connection) connection).close();
+                    }
+                }
+                closeQuietly(selector);
+            }
+        }
+    }
+
+    /**
+     * Клиентское соединение: разбирает команды из буфера чтения, отдает их серверу и складывает готовые ответы
+     * в буфер записи по порядку команд или, в режиме {@link TaggedReplies}, по готовности
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final EventLoop eventLoop;
+        private final Queue<CompletableFuture<RespObject>> orderedReplies = new ArrayDeque<>();
+        private final Queue<RespObject> readyTaggedReplies = new ArrayDeque<>();
+        private final OutputStream replyStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureWritable(1);
+                writeBuffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                ensureWritable(len);
+                writeBuffer.put(b, off, len);
+            }
+        };
+
+        /**
+         * Прочитанные, но еще не разобранные байты. Всегда в режиме записи
+         */
+        private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Ответы, еще не отправленные в сокет. Всегда в режиме записи
+         */
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Клиент включил режим {@link TaggedReplies}
+         */
+        private boolean tagged;
+        private int taggedInFlight;
+        private boolean inputClosed;
+        private boolean disconnected;
+
+        private Connection(SocketChannel channel, SelectionKey key, EventLoop eventLoop) {
+            this.channel = channel;
+            this.key = key;
+            this.eventLoop = eventLoop;
+        }
+
+        private void handle() {
+            try {
+                if (key.isReadable()) {
+                    read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush();
+                    updateInterest();
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+
+        private void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                // The client may still wait for replies to the commands it has sent
+                inputClosed = true;
+            }
+            decodeCommands();
+            updateInterest();
+        }
+
+        /**
+         * Отправляет серверу все команды, пришедшие целиком
+         */
+        private void decodeCommands() throws IOException {
+            readBuffer.flip();
+            try {
+                RespObject object;
+                while (inFlight() < MAX_IN_FLIGHT && (object = RespDecoder.decode(readBuffer)) != null) {
+                    submit(object);
+                }
+            } finally {
+                readBuffer.compact();
+            }
+
+            if (readBuffer.position() == 0 && readBuffer.capacity() > RETAINED_BUFFER_SIZE) {
+                readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            } else if (!readBuffer.hasRemaining() && inFlight() < MAX_IN_FLIGHT) {
+                // The buffer is full with a single incomplete command
+                if (readBuffer.capacity() >= MAX_READ_BUFFER_SIZE) {
+                    throw new IOException("Command is larger than " + MAX_READ_BUFFER_SIZE + " bytes");
+                }
+                readBuffer = grow(readBuffer, (int) Math.min((long) readBuffer.capacity() * 2, MAX_READ_BUFFER_SIZE));
+            }
+        }
+
+        private void submit(RespObject object) throws IOException {
+            if (!(object instanceof RespArray)) {
+                throw new IOException("Command must be an array, got " + object.asString());
+            }
+
+            RespArray command = (RespArray) object;
+            if (TaggedReplies.isHandshake(command)) {
+                if (tagged) {
+                    // A repeated handshake is answered like any other command of a tagged connection
+                    readyTaggedReplies.add(TaggedReplies.tag(command, TaggedReplies.handshakeReply()));
+                } else {
+                    orderedReplies.add(CompletableFuture.completedFuture(TaggedReplies.handshakeReply()));
+                    tagged = true;
+                }
+                eventLoop.execute(this::writeReplies);
+                return;
+            }
+
+            CompletableFuture<RespObject> reply = CommandReplies.execute(databaseServer, command, tagged);
+            if (tagged) {
+                taggedInFlight++;
+                reply.thenAccept(taggedReply -> eventLoop.execute(() -> onTaggedCompleted(taggedReply)));
+            } else {
+                orderedReplies.add(reply);
+                reply.thenRun(() -> eventLoop.execute(this::writeReplies));
+            }
+        }
+
+        private void onTaggedCompleted(RespObject taggedReply) {
+            taggedInFlight--;
+            readyTaggedReplies.add(taggedReply);
+            writeReplies();
+        }
+
+        /**
+         * Складывает в буфер записи готовые ответы: ответы без пометки - по порядку команд, помеченные - после них
+         * в порядке готовности. Затем отправляет их
+         */
+        private void writeReplies() {
+            if (disconnected) {
+                return;
+            }
+
+            try {
+                while (!orderedReplies.isEmpty() && orderedReplies.peek().isDone()) {
+                    orderedReplies.poll().join().write(replyStream);
+                }
+                if (orderedReplies.isEmpty()) {
+                    RespObject taggedReply;
+                    while ((taggedReply = readyTaggedReplies.poll()) != null) {
+                        taggedReply.write(replyStream);
+                    }
+                }
+                // Commands held back by the in-flight limit
+                decodeCommands();
+                flush();
+                updateInterest();
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+
+        private int inFlight() {
+            return orderedReplies.size() + taggedInFlight;
+        }
+
+        private void flush() throws IOException {
+            if (writeBuffer.position() == 0) {
+                return;
+            }
+
+            writeBuffer.flip();
+            try {
+                channel.write(writeBuffer);
+            } finally {
+                writeBuffer.compact();
+            }
+
+            if (writeBuffer.position() == 0 && writeBuffer.capacity() > RETAINED_BUFFER_SIZE) {
+                writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+        }
+
+        /**
+         * Читать, пока есть место под команды и клиент забирает ответы. Писать, пока есть неотправленные ответы
+         */
+        private void updateInterest() {
+            boolean hasReplies = writeBuffer.position() > 0;
+            if (inputClosed && inFlight() == 0 && readyTaggedReplies.isEmpty() && !hasReplies) {
+                close();
+                return;
+            }
+
+            int ops = 0;
+            if (!inputClosed && inFlight() < MAX_IN_FLIGHT && writeBuffer.position() <= RETAINED_BUFFER_SIZE) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (hasReplies) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+
+        private void ensureWritable(int bytes) {
+            if (writeBuffer.remaining() < bytes) {
+                writeBuffer = grow(writeBuffer, Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + bytes));
+            }
+        }
+
+        private ByteBuffer grow(ByteBuffer buffer, int capacity) {
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            grown.put(buffer);
+            return grown;
+        }
+
+        private void close() {
+            if (disconnected) {
+                return;
+            }
+            disconnected = true;
+            key.cancel();
+            closeQuietly(channel);
+        }
+    }
+}
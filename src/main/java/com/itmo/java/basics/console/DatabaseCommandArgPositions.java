@@ -10,7 +10,14 @@ public enum DatabaseCommandArgPositions {
     DATABASE_NAME(2),
     TABLE_NAME(3),
     KEY(4),
-    VALUE(5);
+    VALUE(5),
+    TABLE_ENGINE(4),
+    TABLE_PARTITIONS(5),
+    RANGE_FROM(4),
+    RANGE_TO(5),
+    RANGE_LIMIT(6),
+    SCAN_CURSOR(4),
+    SCAN_COUNT(5);
 
     private final int positionIndex;
 
@@ -4,6 +4,8 @@ import com.itmo.java.basics.console.impl.CreateDatabaseCommand;
 import com.itmo.java.basics.console.impl.CreateTableCommand;
 import com.itmo.java.basics.console.impl.DeleteKeyCommand;
 import com.itmo.java.basics.console.impl.GetKeyCommand;
+import com.itmo.java.basics.console.impl.ScanCommand;
+import com.itmo.java.basics.console.impl.ScanRangeCommand;
 import com.itmo.java.basics.console.impl.SetKeyCommand;
 import com.itmo.java.basics.logic.impl.DatabaseImpl;
 import com.itmo.java.protocol.model.RespObject;
@@ -16,37 +18,77 @@ import java.util.List;
  */
 public enum DatabaseCommands {
 
-    CREATE_DATABASE {
+    CREATE_DATABASE(Routing.CONTROL) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
-            return new CreateDatabaseCommand(env, DatabaseImpl::create, commandArgs);
+            return new CreateDatabaseCommand(env, (dbName, dbRoot) -> DatabaseImpl.create(dbName, dbRoot, env.getConfig()), commandArgs);
         }
     },
-    CREATE_TABLE {
+    CREATE_TABLE(Routing.CONTROL) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new CreateTableCommand(env, commandArgs);
         }
     },
-    SET_KEY {
+    SET_KEY(Routing.KEY) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new SetKeyCommand(env, commandArgs);
         }
     },
-    GET_KEY {
+    GET_KEY(Routing.KEY) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new GetKeyCommand(env, commandArgs);
         }
     },
-    DELETE_KEY {
+    DELETE_KEY(Routing.KEY) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new DeleteKeyCommand(env, commandArgs);
         }
+    },
+    SCAN_RANGE(Routing.TABLE) {
+        @Override
+        public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+            return new ScanRangeCommand(env, commandArgs);
+        }
+    },
+    SCAN(Routing.TABLE) {
+        @Override
+        public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+            return new ScanCommand(env, commandArgs);
+        }
     };
 
+    /**
+     * По каким аргументам команда выбирает очередь исполнения сервера
+     */
+    public enum Routing {
+        /**
+         * Управляющая очередь: команды меняют набор баз и таблиц
+         */
+        CONTROL,
+        /**
+         * По базе и таблице
+         */
+        TABLE,
+        /**
+         * По базе, таблице и ключу ({@link DatabaseCommandArgPositions#KEY})
+         */
+        KEY
+    }
+
+    private final Routing routing;
+
+    DatabaseCommands(Routing routing) {
+        this.routing = routing;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
     /**
      * Возвращает созданную команду. Каждый элемент перечисления создается со своей реализацией этого метода
      */
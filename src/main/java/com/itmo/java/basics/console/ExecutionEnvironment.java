@@ -1,5 +1,7 @@
 package com.itmo.java.basics.console;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
 
 import java.nio.file.Path;
@@ -11,6 +13,11 @@ public interface ExecutionEnvironment {
      */
     Path getWorkingPath();
 
+    /**
+     * @return настройки хранилища, с которыми создаются и инициализируются базы данных
+     */
+    DatabaseConfig getConfig();
+
     /**
      * Возвращает {@code Optional<Database>} или {@code Optional#EMPTY}.
      *
@@ -25,4 +32,11 @@ public interface ExecutionEnvironment {
      * @param db база данных, которую нужно добавить
      */
     void addDatabase(Database db);
+
+    /**
+     * Освобождает ресурсы всех баз данных окружения.
+     *
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    void close() throws DatabaseException;
 }
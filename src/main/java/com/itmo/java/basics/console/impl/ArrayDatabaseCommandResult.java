@@ -0,0 +1,45 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Результат успешной команды, который состоит из нескольких значений (например, пар ключ-значение)
+ */
+public class ArrayDatabaseCommandResult implements DatabaseCommandResult {
+    private final List<byte[]> payload;
+
+    public ArrayDatabaseCommandResult(List<byte[]> payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Значения, разделенные пробелом
+     */
+    @Override
+    public String getPayLoad() {
+        return payload.stream().map(String::new).collect(Collectors.joining(" "));
+    }
+
+    @Override
+    public boolean isSuccess() {
+        return true;
+    }
+
+    /**
+     * Сериализуется в {@link RespArray} из {@link RespBulkString}
+     */
+    @Override
+    public RespObject serialize() {
+        RespObject[] objects = new RespObject[payload.size()];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = new RespBulkString(payload.get(i));
+        }
+        return new RespArray(objects);
+    }
+}
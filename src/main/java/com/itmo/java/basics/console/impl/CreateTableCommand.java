@@ -1,5 +1,6 @@
 package com.itmo.java.basics.console.impl;
 
+import com.itmo.java.basics.config.TableEngine;
 import com.itmo.java.basics.console.DatabaseCommand;
 import com.itmo.java.basics.console.DatabaseCommandArgPositions;
 import com.itmo.java.basics.console.DatabaseCommandResult;
@@ -21,6 +22,8 @@ public class CreateTableCommand implements DatabaseCommand {
     private final List<RespObject> commandArgs;
 
     private final static int NUMBER_OF_ARGS = 4;
+    private final static int NUMBER_OF_ARGS_WITH_ENGINE = 5;
+    private final static int NUMBER_OF_ARGS_WITH_PARTITIONS = 6;
 
     /**
      * Создает команду
@@ -29,11 +32,13 @@ public class CreateTableCommand implements DatabaseCommand {
      *
      * @param env         env
      * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
-     *                    Id команды, имя команды, имя бд, имя таблицы
+     *                    Id команды, имя команды, имя бд, имя таблицы и, необязательно, движок таблицы
+     *                    ({@link TableEngine}, без учета регистра) и после него количество частей таблицы
      * @throws IllegalArgumentException если передано неправильное количество аргументов
      */
     public CreateTableCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
-        if (commandArgs.size() != NUMBER_OF_ARGS) {
+        if (commandArgs.size() != NUMBER_OF_ARGS && commandArgs.size() != NUMBER_OF_ARGS_WITH_ENGINE
+                && commandArgs.size() != NUMBER_OF_ARGS_WITH_PARTITIONS) {
             throw new IllegalArgumentException(
                     String.format(
                             "Wrong number of arguments. Total length: %s Arguments provided: %s",
@@ -62,8 +67,34 @@ public class CreateTableCommand implements DatabaseCommand {
             return DatabaseCommandResult.error(String.format("Database %s does not exist", dbName));
         }
 
+        TableEngine engine = null;
+        if (commandArgs.size() >= NUMBER_OF_ARGS_WITH_ENGINE) {
+            String engineName = commandArgs.get(DatabaseCommandArgPositions.TABLE_ENGINE.getPositionIndex()).asString();
+            try {
+                engine = TableEngine.valueOf(engineName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return DatabaseCommandResult.error(String.format("Unknown table engine %s", engineName));
+            }
+        }
+
+        int partitions = 1;
+        if (commandArgs.size() == NUMBER_OF_ARGS_WITH_PARTITIONS) {
+            String partitionsArg = commandArgs.get(DatabaseCommandArgPositions.TABLE_PARTITIONS.getPositionIndex()).asString();
+            try {
+                partitions = Integer.parseInt(partitionsArg);
+            } catch (NumberFormatException e) {
+                return DatabaseCommandResult.error(String.format("Partition count %s is not a number", partitionsArg));
+            }
+        }
+
         try {
-            optionalDatabase.get().createTableIfNotExists(tableName);
+            if (engine == null) {
+                optionalDatabase.get().createTableIfNotExists(tableName);
+            } else if (partitions != 1) {
+                optionalDatabase.get().createTableIfNotExists(tableName, engine, partitions);
+            } else {
+                optionalDatabase.get().createTableIfNotExists(tableName, engine);
+            }
             return DatabaseCommandResult.success(String.format("Table %s in database %s created", tableName, dbName).getBytes(StandardCharsets.UTF_8));
         } catch (DatabaseException e) {
             return DatabaseCommandResult.error(e);
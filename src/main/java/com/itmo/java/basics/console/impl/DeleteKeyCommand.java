@@ -6,6 +6,7 @@ import com.itmo.java.basics.console.DatabaseCommandResult;
 import com.itmo.java.basics.console.ExecutionEnvironment;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.protocol.model.RespObject;
 
 import java.util.List;
@@ -55,7 +56,7 @@ public class DeleteKeyCommand implements DatabaseCommand {
     public DatabaseCommandResult execute() {
         String dbName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
         String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
-        String key = commandArgs.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asString();
+        DatabaseKey key = DatabaseKey.wrap(commandArgs.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asBytes());
 
         Optional<Database> optionalDatabase = env.getDatabase(dbName);
         if (optionalDatabase.isEmpty()) {
@@ -63,13 +64,13 @@ public class DeleteKeyCommand implements DatabaseCommand {
         }
 
         try {
-            byte[] previousValue = optionalDatabase.get().read(tableName, key).orElse(null);
+            // An absent key is not deleted, so the command only reports an error
+            byte[] previousValue = optionalDatabase.get().getAndWrite(tableName, key, null).orElse(null);
 
             if (previousValue == null) {
                 return DatabaseCommandResult.error(String.format("Value for the key '%s' does not exist", key));
             }
 
-            optionalDatabase.get().delete(tableName, key);
             return DatabaseCommandResult.success(previousValue);
         } catch (DatabaseException e) {
             return DatabaseCommandResult.error(e);
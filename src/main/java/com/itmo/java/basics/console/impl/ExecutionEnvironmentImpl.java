@@ -2,13 +2,14 @@ package com.itmo.java.basics.console.impl;
 
 import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
     private final DatabaseConfig config;
@@ -16,7 +17,7 @@ public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
 
     public ExecutionEnvironmentImpl(DatabaseConfig config) {
         this.config = config;
-        this.databases = new HashMap<>();
+        this.databases = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -29,8 +30,20 @@ public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
         databases.put(db.getName(), db);
     }
 
+    @Override
+    public void close() throws DatabaseException {
+        for (Database database : databases.values()) {
+            database.close();
+        }
+    }
+
     @Override
     public Path getWorkingPath() {
         return Paths.get(config.getWorkingPath());
     }
+
+    @Override
+    public DatabaseConfig getConfig() {
+        return config;
+    }
 }
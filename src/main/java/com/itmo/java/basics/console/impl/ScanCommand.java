@@ -0,0 +1,98 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommand;
+import com.itmo.java.basics.console.DatabaseCommandArgPositions;
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.ScanBatch;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Команда для чтения очередной порции записей при обходе всей таблицы по курсору
+ */
+public class ScanCommand implements DatabaseCommand {
+    /**
+     * Наибольший размер порции: больший count уменьшается до него, чтобы один ответ не занимал много памяти
+     */
+    public static final int MAX_COUNT = 1000;
+
+    private final ExecutionEnvironment env;
+    private final List<RespObject> commandArgs;
+
+    private final static int NUMBER_OF_ARGS = 6;
+
+    /**
+     * Создает команду.
+     * <br/>
+     * Обратите внимание, что в конструкторе нет логики проверки валидности данных. Не проверяется, можно ли исполнить команду. Только формальные признаки (например, количество переданных значений или ненуловость объектов
+     *
+     * @param env         env
+     * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
+     *                    Id команды, имя команды, имя бд, таблицы, курсор ({@link ScanBatch#START_CURSOR} - с начала),
+     *                    примерное количество записей
+     * @throws IllegalArgumentException если передано неправильное количество аргументов
+     */
+    public ScanCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+        if (commandArgs.size() != NUMBER_OF_ARGS) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Wrong number of arguments. Total length: %s Arguments provided: %s",
+                            commandArgs.size(),
+                            commandArgs.stream().map(RespObject::asString).collect(Collectors.joining(" "))
+                    )
+            );
+        }
+
+        this.env = env;
+        this.commandArgs = commandArgs;
+    }
+
+    /**
+     * Читает порцию записей, начиная с курсора
+     *
+     * @return {@link DatabaseCommandResult#success(List)}: курсор следующей порции ({@link ScanBatch#START_CURSOR},
+     * если обход закончен), затем ключи и значения вперемешку: ключ, значение, ключ, ...
+     */
+    @Override
+    public DatabaseCommandResult execute() {
+        String dbName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
+        String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
+        String cursor = commandArgs.get(DatabaseCommandArgPositions.SCAN_CURSOR.getPositionIndex()).asString();
+        String countArg = commandArgs.get(DatabaseCommandArgPositions.SCAN_COUNT.getPositionIndex()).asString();
+
+        int count;
+        try {
+            count = Math.min(Integer.parseInt(countArg), MAX_COUNT);
+        } catch (NumberFormatException e) {
+            return DatabaseCommandResult.error(String.format("Count %s is not a number", countArg));
+        }
+
+        Optional<Database> optionalDatabase = env.getDatabase(dbName);
+        if (optionalDatabase.isEmpty()) {
+            return DatabaseCommandResult.error(String.format("Database %s does not exist", dbName));
+        }
+
+        try {
+            ScanBatch batch = optionalDatabase.get().scan(tableName, cursor, count);
+            List<byte[]> result = new ArrayList<>(batch.getEntries().size() * 2 + 1);
+            result.add(batch.getCursor().getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<DatabaseKey, byte[]> entry : batch.getEntries()) {
+                result.add(entry.getKey().getBytes());
+                result.add(entry.getValue());
+            }
+            return DatabaseCommandResult.success(result);
+        } catch (DatabaseException e) {
+            return DatabaseCommandResult.error(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommand;
+import com.itmo.java.basics.console.DatabaseCommandArgPositions;
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Команда для чтения страницы записей с ключами из диапазона, по возрастанию ключа
+ */
+public class ScanRangeCommand implements DatabaseCommand {
+    /**
+     * Наибольший размер страницы: больший limit уменьшается до него, чтобы один ответ не занимал много памяти
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private final ExecutionEnvironment env;
+    private final List<RespObject> commandArgs;
+
+    private final static int NUMBER_OF_ARGS = 7;
+
+    /**
+     * Создает команду.
+     * <br/>
+     * Обратите внимание, что в конструкторе нет логики проверки валидности данных. Не проверяется, можно ли исполнить команду. Только формальные признаки (например, количество переданных значений или ненуловость объектов
+     *
+     * @param env         env
+     * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
+     *                    Id команды, имя команды, имя бд, таблицы, первый ключ диапазона, ключ, которым
+     *                    диапазон ограничен (пустой - до конца таблицы), наибольшее количество записей
+     * @throws IllegalArgumentException если передано неправильное количество аргументов
+     */
+    public ScanRangeCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+        if (commandArgs.size() != NUMBER_OF_ARGS) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Wrong number of arguments. Total length: %s Arguments provided: %s",
+                            commandArgs.size(),
+                            commandArgs.stream().map(RespObject::asString).collect(Collectors.joining(" "))
+                    )
+            );
+        }
+
+        this.env = env;
+        this.commandArgs = commandArgs;
+    }
+
+    /**
+     * Читает записи диапазона [from, to)
+     *
+     * @return {@link DatabaseCommandResult#success(List)} с ключами и значениями вперемешку: ключ, значение, ключ, ...
+     * Если записей столько же, сколько limit, следующая страница начинается с последнего ключа, дополненного нулевым байтом
+     */
+    @Override
+    public DatabaseCommandResult execute() {
+        String dbName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
+        String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
+        DatabaseKey from = DatabaseKey.wrap(commandArgs.get(DatabaseCommandArgPositions.RANGE_FROM.getPositionIndex()).asBytes());
+        byte[] toBytes = commandArgs.get(DatabaseCommandArgPositions.RANGE_TO.getPositionIndex()).asBytes();
+        DatabaseKey to = toBytes == null || toBytes.length == 0 ? null : DatabaseKey.wrap(toBytes);
+        String limitArg = commandArgs.get(DatabaseCommandArgPositions.RANGE_LIMIT.getPositionIndex()).asString();
+
+        int limit;
+        try {
+            limit = Math.min(Integer.parseInt(limitArg), MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            return DatabaseCommandResult.error(String.format("Limit %s is not a number", limitArg));
+        }
+
+        Optional<Database> optionalDatabase = env.getDatabase(dbName);
+        if (optionalDatabase.isEmpty()) {
+            return DatabaseCommandResult.error(String.format("Database %s does not exist", dbName));
+        }
+
+        try {
+            List<Map.Entry<DatabaseKey, byte[]>> entries = optionalDatabase.get().scanRange(tableName, from, to, limit);
+            List<byte[]> result = new ArrayList<>(entries.size() * 2);
+            for (Map.Entry<DatabaseKey, byte[]> entry : entries) {
+                result.add(entry.getKey().getBytes());
+                result.add(entry.getValue());
+            }
+            return DatabaseCommandResult.success(result);
+        } catch (DatabaseException e) {
+            return DatabaseCommandResult.error(e);
+        }
+    }
+}
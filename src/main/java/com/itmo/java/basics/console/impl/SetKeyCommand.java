@@ -6,9 +6,9 @@ import com.itmo.java.basics.console.DatabaseCommandResult;
 import com.itmo.java.basics.console.ExecutionEnvironment;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.protocol.model.RespObject;
 
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -56,8 +56,8 @@ public class SetKeyCommand implements DatabaseCommand {
     public DatabaseCommandResult execute() {
         String dbName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
         String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
-        String key = commandArgs.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asString();
-        String value = commandArgs.get(DatabaseCommandArgPositions.VALUE.getPositionIndex()).asString();
+        DatabaseKey key = DatabaseKey.wrap(commandArgs.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asBytes());
+        byte[] value = commandArgs.get(DatabaseCommandArgPositions.VALUE.getPositionIndex()).asBytes();
 
         Optional<Database> optionalDatabase = env.getDatabase(dbName);
         if (optionalDatabase.isEmpty()) {
@@ -65,8 +65,8 @@ public class SetKeyCommand implements DatabaseCommand {
         }
 
         try {
-            byte[] previousValue = optionalDatabase.get().read(tableName, key).orElse(null);
-            optionalDatabase.get().write(tableName, key, value.getBytes(StandardCharsets.UTF_8));
+            // Another command cannot change the key between reading the previous value and writing
+            byte[] previousValue = optionalDatabase.get().getAndWrite(tableName, key, value).orElse(null);
             return DatabaseCommandResult.success(previousValue);
         } catch (DatabaseException e) {
             return DatabaseCommandResult.error(e);
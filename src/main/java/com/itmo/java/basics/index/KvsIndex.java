@@ -18,4 +18,11 @@ public interface KvsIndex<K, V> {
      * @return {@code Optional<V>}
      */
     Optional<V> searchForKey(K key);
+
+    /**
+     * Удаляет ключ из индекса.
+     *
+     * @param key ключ, который нужно удалить
+     */
+    void onIndexedEntityRemoved(K key);
 }
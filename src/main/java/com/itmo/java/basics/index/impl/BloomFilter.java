@@ -0,0 +1,116 @@
+package com.itmo.java.basics.index.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Фильтр Блума по ключам сегмента: отвечает "точно нет" или "возможно есть".
+ * Позиции битов считаются двойным хешированием от одного 64-битного хеша ключа
+ */
+public class BloomFilter {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedKeys количество ключей, которое будет добавлено
+     * @param bitsPerKey   сколько бит приходится на ключ, 10 бит дают около 1% ложных срабатываний
+     */
+    public BloomFilter(int expectedKeys, int bitsPerKey) {
+        long size = Math.max(64, (long) Math.max(expectedKeys, 1) * Math.max(bitsPerKey, 1));
+        this.bits = new long[(int) ((size + 63) / 64)];
+        this.bitCount = (long) bits.length * 64;
+        this.hashCount = (int) Math.max(1, Math.min(30, Math.round(Math.max(bitsPerKey, 1) * Math.log(2))));
+    }
+
+    private BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * 64;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Читает фильтр, записанный {@link #writeTo(DataOutput)}
+     *
+     * @throws IOException если фильтр не удалось прочитать или он записан неправильно
+     */
+    public static BloomFilter readFrom(DataInput input) throws IOException {
+        int hashCount = input.readInt();
+        int length = input.readInt();
+        if (hashCount <= 0 || length <= 0) {
+            throw new IOException("Malformed bloom filter");
+        }
+
+        long[] bits = new long[length];
+        for (int i = 0; i < length; i++) {
+            bits[i] = input.readLong();
+        }
+        return new BloomFilter(bits, hashCount);
+    }
+
+    /**
+     * Записывает количество хешей и биты фильтра
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(hashCount);
+        output.writeInt(bits.length);
+        for (long word : bits) {
+            output.writeLong(word);
+        }
+    }
+
+    public void add(byte[] key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return {@code false} - если ключ точно не добавлялся в фильтр
+     */
+    public boolean mightContain(byte[] key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Размер фильтра в байтах
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * FNV-1a с перемешиванием результата, чтобы старшие и младшие половины хеша были независимы
+     */
+    private static long hash(byte[] key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
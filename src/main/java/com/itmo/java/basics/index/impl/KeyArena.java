@@ -0,0 +1,144 @@
+package com.itmo.java.basics.index.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Арена ключей вне кучи: байты ключей дописываются подряд в прямые буферы (slab) фиксированного размера,
+ * ключ больше slab получает отдельный буфер. Ключ адресуется ссылкой - номером slab и смещением в нем.
+ * <p>
+ * Записанные байты никогда не меняются, поэтому читать арену можно параллельно с дозаписью. Удаленные ключи
+ * только учитываются как мусор: место освобождается переносом живых ключей в новую арену
+ * (см. {@link OffHeapTableIndex}), а старые буферы освобождает сборщик мусора, когда на арену больше никто не ссылается.
+ * <p>
+ * Формат ключа в slab: длина ({@code int}) и байты ключа
+ */
+public class KeyArena {
+    static final int SLAB_SIZE = 1024 * 1024;
+
+    /**
+     * Ссылка, которая не указывает ни на какой ключ
+     */
+    static final long NO_REFERENCE = 0;
+
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    /**
+     * Буфер, в который дописываются ключи. Его позиция - конец записанных данных последнего slab
+     */
+    private ByteBuffer appendBuffer;
+    private long allocatedBytes;
+    private long usedBytes;
+    private long liveBytes;
+
+    /**
+     * Дописывает ключ в арену. Вызывается одним потоком
+     *
+     * @return ссылку на ключ
+     */
+    long add(byte[] key) {
+        int recordSize = Integer.BYTES + key.length;
+        if (appendBuffer == null || appendBuffer.remaining() < recordSize) {
+            newSlab(Math.max(SLAB_SIZE, recordSize));
+        }
+
+        long reference = reference(slabs.length - 1, appendBuffer.position());
+        appendBuffer.putInt(key.length).put(key);
+        usedBytes += recordSize;
+        liveBytes += recordSize;
+        return reference;
+    }
+
+    /**
+     * Учитывает, что ключ по ссылке больше не нужен
+     */
+    void release(long reference) {
+        liveBytes -= Integer.BYTES + slab(reference).getInt(offset(reference));
+    }
+
+    /**
+     * Сравнивает ключ по ссылке с байтами ключа, не копируя его из арены
+     */
+    boolean equals(long reference, byte[] key) {
+        ByteBuffer slab = slab(reference);
+        int offset = offset(reference);
+        if (slab.getInt(offset) != key.length) {
+            return false;
+        }
+
+        offset += Integer.BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Копирует ключ из арены, например, чтобы перенести его в новую арену
+     */
+    byte[] get(long reference) {
+        ByteBuffer slab = slab(reference);
+        int offset = offset(reference);
+        byte[] key = new byte[slab.getInt(offset)];
+        offset += Integer.BYTES;
+        for (int i = 0; i < key.length; i++) {
+            key[i] = slab.get(offset + i);
+        }
+        return key;
+    }
+
+    /**
+     * Сколько байт вне кучи занимают буферы арены
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Сколько байт буферов занято ключами, в том числе удаленными
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Сколько байт буферов занято ключами, которые еще есть в индексе
+     */
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Доля занятых байт, которые приходятся на удаленные ключи
+     */
+    public double garbageRatio() {
+        return usedBytes == 0 ? 0 : (double) (usedBytes - liveBytes) / usedBytes;
+    }
+
+    private void newSlab(int capacity) {
+        ByteBuffer slab = ByteBuffer.allocateDirect(capacity);
+        ByteBuffer[] updated = Arrays.copyOf(slabs, slabs.length + 1);
+        updated[updated.length - 1] = slab;
+        // Readers see the slab before any reference to it is published
+        slabs = updated;
+        appendBuffer = slab.duplicate();
+        allocatedBytes += capacity;
+    }
+
+    private ByteBuffer slab(long reference) {
+        return slabs[(int) (reference >>> 32) - 1];
+    }
+
+    private static int offset(long reference) {
+        return (int) reference;
+    }
+
+    /**
+     * Номер slab хранится со сдвигом на единицу, чтобы ссылка никогда не совпадала с {@link #NO_REFERENCE}
+     */
+    private static long reference(int slab, int offset) {
+        return ((long) (slab + 1) << 32) | offset;
+    }
+}
@@ -0,0 +1,217 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.config.KeyStorage;
+import com.itmo.java.basics.logic.DatabaseKey;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Индекс таблицы для {@link KeyStorage#OFF_HEAP}: байты ключей хранятся вне кучи, в {@link KeyArena арене}.
+ * В куче остаются только массивы примитивов - ссылки на ключи в арене, хэши ключей и позиции записей,
+ * - содержимое которых сборщик мусора не обходит, поэтому паузы не растут вместе с количеством ключей.
+ * Хэш берется готовым из {@link DatabaseKey}, а ключи сравниваются прямо с байтами в арене.
+ * <p>
+ * Удаленный ключ остается в арене мусором. Когда мусора становится больше {@link #MAX_ARENA_GARBAGE_RATIO}
+ * (и не меньше одного slab), живые ключи переносятся в новую арену вместе с перестроением массивов.
+ * Массивы и арена подменяются вместе, поэтому читатели, которые уже начали поиск, дочитывают старые
+ */
+public class OffHeapTableIndex extends TableIndex {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final double MAX_ARENA_GARBAGE_RATIO = 0.5;
+    private static final VarHandle REFERENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle POSITIONS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Метка ячейки удаленного ключа
+     */
+    private static final long REMOVED = -1;
+
+    private volatile Slots slots = new Slots(INITIAL_CAPACITY, new KeyArena());
+    private int size;
+    private int occupied;
+
+    @Override
+    public long searchForPosition(DatabaseKey key) {
+        Slots current = slots;
+        int slot = find(current, key);
+        if (slot < 0) {
+            return ABSENT;
+        }
+
+        // The slot is checked again after the position, it may have been reused by another key
+        long position = (long) POSITIONS.getAcquire(current.positions, slot);
+        return matches(current, slot, key.hashCode(), key.getBytes()) ? position : ABSENT;
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(DatabaseKey key) {
+        Slots current = slots;
+        int slot = find(current, key);
+        if (slot < 0) {
+            return;
+        }
+
+        long reference = current.references[slot];
+        REFERENCES.setRelease(current.references, slot, REMOVED);
+        current.arena.release(reference);
+        size--;
+
+        KeyArena arena = current.arena;
+        if (arena.getUsedBytes() - arena.getLiveBytes() >= KeyArena.SLAB_SIZE && arena.garbageRatio() > MAX_ARENA_GARBAGE_RATIO) {
+            rebuild(current, current.references.length, true);
+        }
+    }
+
+    @Override
+    protected void put(DatabaseKey key, long position) {
+        int hash = key.hashCode();
+        Slots current = slots;
+        int slot = find(current, key);
+        if (slot >= 0) {
+            current.positions[slot] = position;
+            return;
+        }
+
+        if ((occupied + 1) * 4L > current.references.length * 3L) {
+            int capacity = current.references.length;
+            current = rebuild(current, size * 4L > capacity * 3L / 2 ? capacity * 2 : capacity, false);
+        }
+
+        // The key is absent, so the first removed slot in the chain can be reused
+        int mask = current.references.length - 1;
+        int free = hash & mask;
+        while (current.references[free] != KeyArena.NO_REFERENCE && current.references[free] != REMOVED) {
+            free = (free + 1) & mask;
+        }
+        if (current.references[free] == KeyArena.NO_REFERENCE) {
+            occupied++;
+        }
+
+        // The key bytes, hash and position must be visible before the reference is
+        long reference = current.arena.add(key.getBytes());
+        current.hashes[free] = hash;
+        current.positions[free] = position;
+        REFERENCES.setRelease(current.references, free, reference);
+        size++;
+    }
+
+    /**
+     * Ключи копируются из арены в кучу только для выдачи
+     */
+    @Override
+    public long scan(long cursor, int count, ObjLongConsumer<DatabaseKey> consumer) {
+        Slots current = slots;
+        int mask = current.references.length - 1;
+        int bucket = (int) cursor & mask;
+        int found = 0;
+        do {
+            for (int i = bucket; ; i = (i + 1) & mask) {
+                long reference = (long) REFERENCES.getAcquire(current.references, i);
+                if (reference == KeyArena.NO_REFERENCE) {
+                    break;
+                }
+                if (reference != REMOVED && (current.hashes[i] & mask) == bucket) {
+                    // A removed key stays in the arena, but its slot may be reused by another key after the position is read
+                    long position = (long) POSITIONS.getAcquire(current.positions, i);
+                    if ((long) REFERENCES.getAcquire(current.references, i) == reference) {
+                        consumer.accept(DatabaseKey.wrap(current.arena.get(reference)), position);
+                        found++;
+                    }
+                }
+            }
+            bucket = nextBucket(bucket, mask);
+        } while (bucket != 0 && found < count);
+        return bucket;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Размер массивов индекса в куче и буферов арены вне кучи
+     */
+    @Override
+    public long sizeInBytes() {
+        Slots current = slots;
+        return (long) current.references.length * (Long.BYTES + Integer.BYTES + Long.BYTES) + current.arena.getAllocatedBytes();
+    }
+
+    /**
+     * Арена с ключами индекса: по ней можно узнать, сколько памяти вне кучи занято и сколько из нее - мусор
+     */
+    public KeyArena getKeyArena() {
+        return slots.arena;
+    }
+
+    /**
+     * Переносит ключи в массивы новой емкости, освобождая ячейки удаленных ключей
+     *
+     * @param compactArena перенести живые ключи в новую арену, чтобы освободить место удаленных
+     */
+    private Slots rebuild(Slots current, int capacity, boolean compactArena) {
+        Slots rebuilt = new Slots(capacity, compactArena ? new KeyArena() : current.arena);
+        int mask = capacity - 1;
+        for (int i = 0; i < current.references.length; i++) {
+            long reference = current.references[i];
+            if (reference == KeyArena.NO_REFERENCE || reference == REMOVED) {
+                continue;
+            }
+
+            int slot = current.hashes[i] & mask;
+            while (rebuilt.references[slot] != KeyArena.NO_REFERENCE) {
+                slot = (slot + 1) & mask;
+            }
+            rebuilt.references[slot] = compactArena ? rebuilt.arena.add(current.arena.get(reference)) : reference;
+            rebuilt.hashes[slot] = current.hashes[i];
+            rebuilt.positions[slot] = current.positions[i];
+        }
+
+        occupied = size;
+        slots = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * @return номер ячейки ключа или -1
+     */
+    private static int find(Slots slots, DatabaseKey key) {
+        int hash = key.hashCode();
+        byte[] bytes = key.getBytes();
+        int mask = slots.references.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            if ((long) REFERENCES.getAcquire(slots.references, i) == KeyArena.NO_REFERENCE) {
+                return -1;
+            }
+            if (matches(slots, i, hash, bytes)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * @return лежит ли в ячейке ключ с этими хэшем и байтами
+     */
+    private static boolean matches(Slots slots, int slot, int hash, byte[] bytes) {
+        long reference = (long) REFERENCES.getAcquire(slots.references, slot);
+        return reference != KeyArena.NO_REFERENCE && reference != REMOVED
+                && slots.hashes[slot] == hash && slots.arena.equals(reference, bytes);
+    }
+
+    private static class Slots {
+        private final KeyArena arena;
+        private final long[] references;
+        private final int[] hashes;
+        private final long[] positions;
+
+        private Slots(int capacity, KeyArena arena) {
+            this.arena = arena;
+            this.references = new long[capacity];
+            this.hashes = new int[capacity];
+            this.positions = new long[capacity];
+        }
+    }
+}
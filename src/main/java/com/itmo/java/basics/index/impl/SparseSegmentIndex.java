@@ -0,0 +1,137 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.logic.io.HintFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Разреженный индекс сегмента, построенный по его {@link HintFile hint-файлу}.
+ * <p>
+ * В памяти хранятся только фильтр Блума по всем ключам и каждый N-й ключ hint-файла со смещением его записи
+ * в hint-файле. Записи hint-файла отсортированы по ключу, поэтому при поиске читается только участок
+ * hint-файла между двумя соседними ключами из памяти. Ключ, которого нет в фильтре, не читает диск вовсе
+ */
+public class SparseSegmentIndex {
+    private final Path segmentPath;
+    private final long segmentLength;
+    private final BloomFilter bloomFilter;
+    private final byte[][] sampledKeys;
+    private final long[] sampledPositions;
+    private final long entriesEnd;
+
+    private SparseSegmentIndex(Path segmentPath, long segmentLength, BloomFilter bloomFilter,
+                               byte[][] sampledKeys, long[] sampledPositions, long entriesEnd) {
+        this.segmentPath = segmentPath;
+        this.segmentLength = segmentLength;
+        this.bloomFilter = bloomFilter;
+        this.sampledKeys = sampledKeys;
+        this.sampledPositions = sampledPositions;
+        this.entriesEnd = entriesEnd;
+    }
+
+    /**
+     * Строит индекс, один раз прочитав hint-файл сегмента
+     *
+     * @param segmentPath    путь до файла сегмента
+     * @param sampleInterval каждый какой ключ hint-файла хранить в памяти
+     * @param bitsPerKey     сколько бит фильтра Блума приходится на ключ
+     * @return индекс. {@link Optional#empty()} - если hint-файла нет или он поврежден
+     */
+    public static Optional<SparseSegmentIndex> load(Path segmentPath, int sampleInterval, int bitsPerKey) {
+        int interval = Math.max(sampleInterval, 1);
+        List<byte[]> keys = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        List<byte[]> allKeys = new ArrayList<>();
+        long[] end = new long[1];
+
+        OptionalLong segmentLength = HintFile.scan(segmentPath, (entry, position) -> {
+            if (allKeys.size() % interval == 0) {
+                keys.add(entry.getKey());
+                positions.add(position);
+            }
+            allKeys.add(entry.getKey());
+            end[0] = position + entry.getEncodedSize();
+        });
+        if (segmentLength.isEmpty()) {
+            return Optional.empty();
+        }
+
+        BloomFilter bloomFilter = new BloomFilter(allKeys.size(), bitsPerKey);
+        for (byte[] key : allKeys) {
+            bloomFilter.add(key);
+        }
+
+        long[] sampledPositions = new long[positions.size()];
+        for (int i = 0; i < sampledPositions.length; i++) {
+            sampledPositions[i] = positions.get(i);
+        }
+        return Optional.of(new SparseSegmentIndex(segmentPath, segmentLength.getAsLong(), bloomFilter,
+                keys.toArray(new byte[0][]), sampledPositions, end[0]));
+    }
+
+    /**
+     * Ищет запись hint-файла по ключу
+     *
+     * @param key ключ в байтах
+     * @return запись hint-файла. {@link Optional#empty()} - если ключа нет в сегменте
+     * @throws IOException если hint-файл не удалось прочитать
+     */
+    public Optional<HintFile.Entry> find(byte[] key) throws IOException {
+        if (sampledKeys.length == 0 || !bloomFilter.mightContain(key)) {
+            return Optional.empty();
+        }
+
+        // Last sampled key that is not greater than the searched one
+        int low = 0;
+        int high = sampledKeys.length - 1;
+        int sample = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compare(sampledKeys[middle], key) <= 0) {
+                sample = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (sample == -1) {
+            return Optional.empty();
+        }
+
+        long to = sample + 1 < sampledPositions.length ? sampledPositions[sample + 1] : entriesEnd;
+        for (HintFile.Entry entry : HintFile.readRange(segmentPath, sampledPositions[sample], to)) {
+            int comparison = Arrays.compare(entry.getKey(), key);
+            if (comparison == 0) {
+                return Optional.of(entry);
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Длина сегмента, по которой составлен hint-файл: записи после нее в индекс не попали
+     */
+    public long getSegmentLength() {
+        return segmentLength;
+    }
+
+    /**
+     * Сколько байт индекс занимает в памяти (приблизительно)
+     */
+    public long sizeInBytes() {
+        long size = bloomFilter.sizeInBytes() + (long) sampledPositions.length * Long.BYTES;
+        for (byte[] key : sampledKeys) {
+            size += key.length + 16;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,68 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.Segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Индекс таблицы для режима {@link com.itmo.java.basics.config.IndexMode#SPARSE}: ключи в памяти не хранятся,
+ * при поиске сегменты таблицы перебираются от новых к старым и у каждого спрашивается его индекс
+ * (см. {@link Segment#containsKey(DatabaseKey)}). Обновления индекса игнорируются: новые записи и так
+ * попадают в индекс своего сегмента
+ */
+public class SparseTableIndex extends TableIndex {
+    private final List<Segment> segments;
+
+    /**
+     * @param segments сегменты таблицы в порядке создания. Список должен оставаться актуальным,
+     *                 сегменты из него не удаляются во время поиска
+     */
+    public SparseTableIndex(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    @Override
+    public void onIndexedEntityUpdated(DatabaseKey key, Segment value) {
+        // Segments are probed on every search
+    }
+
+    @Override
+    public void onIndexedEntityUpdated(DatabaseKey key, Segment segment, long offset) {
+        // Segments are probed on every search
+    }
+
+    /**
+     * @throws UncheckedIOException если индекс сегмента не удалось прочитать с диска
+     */
+    @Override
+    public Optional<Segment> searchForKey(DatabaseKey key) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            try {
+                if (segment.containsKey(key)) {
+                    return Optional.of(segment);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot search for key in segment " + segment.getName(), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(DatabaseKey key) {
+        // Segments are probed on every search
+    }
+
+    /**
+     * Позиции записей в разреженном индексе не хранятся, сегмент ищется через {@link #searchForKey(DatabaseKey)}
+     */
+    @Override
+    public long searchForPosition(DatabaseKey key) {
+        throw new UnsupportedOperationException("Sparse index does not keep record positions");
+    }
+}
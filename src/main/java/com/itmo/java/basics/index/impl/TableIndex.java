@@ -1,6 +1,366 @@
 package com.itmo.java.basics.index.impl;
 
+import com.itmo.java.basics.config.KeyStorage;
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.basics.logic.Segment;
 
-public class TableIndex extends MapBasedKvsIndex<String, Segment> {
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Индекс таблицы: для каждого ключа - сегмент и смещение его последней записи, упакованные в один {@code long}
+ * (порядковый номер сегмента в таблице - в старших 32 битах, смещение - в младших).
+ * <p>
+ * Ключи и позиции хранятся в двух массивах с открытой адресацией и линейным пробированием: на ключ не заводится
+ * ни узла, ни объекта смещения, а индексы сегментов ({@link #segmentIndex(Segment)}) - лишь представления этих же
+ * массивов, поэтому каждый ключ хранится один раз. Ключи, последняя запись которых - запись об удалении,
+ * из индекса удаляются.
+ * <p>
+ * Изменяется одним потоком (под блокировкой дозаписи таблицы) и читается параллельно с изменением:
+ * удаленная ячейка только помечается и не сдвигает соседние, а при расширении массивы подменяются вместе,
+ * поэтому читатель не пропускает существующий ключ. Ячейку удаленного ключа может занять другой ключ,
+ * поэтому после позиции читатель перечитывает ключ ячейки и не отдает позицию, если ключ сменился
+ */
+public class TableIndex implements KvsIndex<DatabaseKey, Segment> {
+    /**
+     * Позиция ключа, которого нет в индексе
+     */
+    public static final long ABSENT = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long MAX_OFFSET = 0xFFFFFFFFL;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(DatabaseKey[].class);
+    private static final VarHandle POSITIONS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Метка ячейки удаленного ключа, сравнивается по ссылке
+     */
+    private static final DatabaseKey REMOVED = DatabaseKey.wrap(new byte[0]);
+
+    private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+    private int size;
+    private int occupied;
+
+    /**
+     * Сегменты по порядковым номерам. Номер удаленного сегмента занимает следующий новый сегмент
+     */
+    private volatile Segment[] segments = new Segment[16];
+
+    /**
+     * Создает индекс таблицы с выбранным способом хранения ключей
+     */
+    public static TableIndex create(KeyStorage keyStorage) {
+        return keyStorage == KeyStorage.OFF_HEAP ? new OffHeapTableIndex() : new TableIndex();
+    }
+
+    /**
+     * Позицию записи кладет в индекс сам сегмент через свое представление ({@link #segmentIndex(Segment)}),
+     * как только запись попадает в файл, поэтому здесь индекс уже актуален
+     */
+    @Override
+    public void onIndexedEntityUpdated(DatabaseKey key, Segment value) {
+        // Position is written by the segment index view
+    }
+
+    @Override
+    public Optional<Segment> searchForKey(DatabaseKey key) {
+        long position = searchForPosition(key);
+        return position == ABSENT ? Optional.empty() : Optional.of(getSegment(position));
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(DatabaseKey key) {
+        Slots current = slots;
+        int slot = find(current, key);
+        if (slot >= 0) {
+            KEYS.setRelease(current.keys, slot, REMOVED);
+            size--;
+        }
+    }
+
+    /**
+     * Запоминает сегмент и смещение последней записи по ключу
+     *
+     * @param key     ключ
+     * @param segment сегмент с записью, при первом упоминании получает порядковый номер
+     * @param offset  смещение записи в сегменте
+     */
+    public void onIndexedEntityUpdated(DatabaseKey key, Segment segment, long offset) {
+        put(key, pack(ordinalOf(segment, true), offset));
+    }
+
+    /**
+     * Ищет сегмент и смещение последней записи по ключу за одно обращение к индексу
+     *
+     * @return позицию записи (см. {@link #getSegment(long)}, {@link #getOffset(long)}) или {@link #ABSENT}
+     */
+    public long searchForPosition(DatabaseKey key) {
+        Slots current = slots;
+        int slot = find(current, key);
+        return slot < 0 ? ABSENT : positionOf(current, slot, key);
+    }
+
+    /**
+     * Сегмент, в котором лежит запись по позиции из {@link #searchForPosition(DatabaseKey)}
+     */
+    public Segment getSegment(long position) {
+        return segments[(int) (position >>> 32)];
+    }
+
+    /**
+     * Смещение записи в сегменте по позиции из {@link #searchForPosition(DatabaseKey)}
+     */
+    public static long getOffset(long position) {
+        return position & MAX_OFFSET;
+    }
+
+    /**
+     * Индекс сегмента, который хранит смещения в индексе таблицы. Находит по ключу только последнюю запись таблицы,
+     * и только если она лежит в этом сегменте
+     *
+     * @param segment сегмент, при первом упоминании получает порядковый номер
+     */
+    public KvsIndex<DatabaseKey, SegmentOffsetInfo> segmentIndex(Segment segment) {
+        return new SegmentIndexView(ordinalOf(segment, true));
+    }
+
+    /**
+     * Освобождает порядковый номер сегмента, удаленного из таблицы. Ключей, указывающих на сегмент,
+     * в индексе остаться не должно
+     */
+    public void removeSegment(Segment segment) {
+        int ordinal = ordinalOf(segment, false);
+        if (ordinal >= 0) {
+            Segment[] updated = segments.clone();
+            updated[ordinal] = null;
+            segments = updated;
+        }
+    }
+
+    /**
+     * Обходит ключи индекса порциями без состояния на стороне индекса: курсор - номер следующей начальной ячейки
+     * (куда ключ попадает по хэшу) в порядке обратной двоичной записи. В таком порядке обход переживает
+     * расширение массивов между порциями: каждый ключ, который был в индексе все время обхода, попадет
+     * в порцию хотя бы раз, но может попасть и повторно. Изменения индекса не блокируются
+     *
+     * @param cursor   0 - с начала или курсор из предыдущей порции
+     * @param count    после скольких ключей остановиться (порция заканчивается на границе ячейки, поэтому ключей может быть больше)
+     * @param consumer получает ключ и позицию его записи (см. {@link #getSegment(long)}, {@link #getOffset(long)})
+     * @return курсор следующей порции или 0, если обход закончен
+     */
+    public long scan(long cursor, int count, ObjLongConsumer<DatabaseKey> consumer) {
+        Slots current = slots;
+        int mask = current.keys.length - 1;
+        int bucket = (int) cursor & mask;
+        int found = 0;
+        do {
+            // Keys of a bucket lie in the probe chain that starts at it
+            for (int i = bucket; ; i = (i + 1) & mask) {
+                DatabaseKey key = (DatabaseKey) KEYS.getAcquire(current.keys, i);
+                if (key == null) {
+                    break;
+                }
+                if (key != REMOVED && (key.hashCode() & mask) == bucket) {
+                    long position = positionOf(current, i, key);
+                    if (position != ABSENT) {
+                        consumer.accept(key, position);
+                        found++;
+                    }
+                }
+            }
+            bucket = nextBucket(bucket, mask);
+        } while (bucket != 0 && found < count);
+        return bucket;
+    }
+
+    /**
+     * Следующая ячейка обхода {@link #scan(long, int, ObjLongConsumer)}: увеличивает номер, перенося разряды
+     * от старших бит к младшим. Ячейки, пройденные при меньшей емкости, остаются пройденными и при большей
+     *
+     * @return следующая ячейка или 0, если пройдены все
+     */
+    protected static int nextBucket(int bucket, int mask) {
+        return Integer.reverse(Integer.reverse(bucket | ~mask) + 1);
+    }
+
+    /**
+     * Количество ключей в индексе
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Размер массивов индекса в байтах, без самих ключей
+     */
+    public long sizeInBytes() {
+        Slots current = slots;
+        return (long) current.keys.length * (Integer.BYTES + Long.BYTES) + (long) segments.length * Integer.BYTES;
+    }
+
+    /**
+     * Запоминает позицию записи по ключу. Ключи хранятся в куче, см. {@link OffHeapTableIndex} для хранения вне кучи
+     */
+    protected void put(DatabaseKey key, long position) {
+        Slots current = slots;
+        int slot = find(current, key);
+        if (slot >= 0) {
+            current.positions[slot] = position;
+            return;
+        }
+
+        if ((occupied + 1) * 4L > current.keys.length * 3L) {
+            current = resize(current);
+        }
+
+        // The key is absent, so the first removed slot in the chain can be reused
+        int mask = current.keys.length - 1;
+        int free = key.hashCode() & mask;
+        while (current.keys[free] != null && current.keys[free] != REMOVED) {
+            free = (free + 1) & mask;
+        }
+        if (current.keys[free] == null) {
+            occupied++;
+        }
+
+        // The position must be visible before the key is
+        current.positions[free] = position;
+        KEYS.setRelease(current.keys, free, key);
+        size++;
+    }
+
+    /**
+     * @return позиция из ячейки, найденной по ключу, или {@link #ABSENT}, если ключ ячейки успел смениться
+     */
+    private static long positionOf(Slots slots, int slot, DatabaseKey key) {
+        // The key is read again after the position, so a position of a key reusing the slot is not returned
+        long position = (long) POSITIONS.getAcquire(slots.positions, slot);
+        DatabaseKey slotKey = (DatabaseKey) KEYS.getAcquire(slots.keys, slot);
+        return slotKey == key || (slotKey != REMOVED && slotKey.equals(key)) ? position : ABSENT;
+    }
+
+    /**
+     * @return номер ячейки ключа или -1
+     */
+    private static int find(Slots slots, DatabaseKey key) {
+        int mask = slots.keys.length - 1;
+        for (int i = key.hashCode() & mask; ; i = (i + 1) & mask) {
+            DatabaseKey slotKey = (DatabaseKey) KEYS.getAcquire(slots.keys, i);
+            if (slotKey == null) {
+                return -1;
+            }
+            if (slotKey != REMOVED && slotKey.equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Переносит ключи в новые массивы, освобождая ячейки удаленных ключей. Массивы растут, только если
+     * живых ключей больше половины допустимого заполнения
+     */
+    private Slots resize(Slots current) {
+        int capacity = current.keys.length;
+        if (size * 4L > capacity * 3L / 2) {
+            capacity *= 2;
+        }
+
+        Slots resized = new Slots(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < current.keys.length; i++) {
+            DatabaseKey key = current.keys[i];
+            if (key == null || key == REMOVED) {
+                continue;
+            }
+
+            int slot = key.hashCode() & mask;
+            while (resized.keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            resized.keys[slot] = key;
+            resized.positions[slot] = current.positions[i];
+        }
+
+        occupied = size;
+        slots = resized;
+        return resized;
+    }
+
+    private int ordinalOf(Segment segment, boolean register) {
+        Segment[] current = segments;
+        int free = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == segment) {
+                return i;
+            }
+            if (current[i] == null && free < 0) {
+                free = i;
+            }
+        }
+
+        if (!register) {
+            return -1;
+        }
+
+        // Readers see the segment before any position that refers to it
+        Segment[] updated = Arrays.copyOf(current, free < 0 ? current.length * 2 : current.length);
+        int ordinal = free < 0 ? current.length : free;
+        updated[ordinal] = segment;
+        segments = updated;
+        return ordinal;
+    }
+
+    private static long pack(int ordinal, long offset) {
+        if (offset < 0 || offset > MAX_OFFSET) {
+            throw new IllegalArgumentException("Offset " + offset + " does not fit into the index");
+        }
+        return ((long) ordinal << 32) | offset;
+    }
+
+    private static class Slots {
+        private final DatabaseKey[] keys;
+        private final long[] positions;
+
+        private Slots(int capacity) {
+            this.keys = new DatabaseKey[capacity];
+            this.positions = new long[capacity];
+        }
+    }
+
+    /**
+     * Индекс одного сегмента поверх индекса таблицы
+     */
+    private class SegmentIndexView implements KvsIndex<DatabaseKey, SegmentOffsetInfo> {
+        private final int ordinal;
+
+        private SegmentIndexView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public void onIndexedEntityUpdated(DatabaseKey key, SegmentOffsetInfo value) {
+            put(key, pack(ordinal, value.getOffset()));
+        }
+
+        @Override
+        public Optional<SegmentOffsetInfo> searchForKey(DatabaseKey key) {
+            long position = searchForPosition(key);
+            return position != ABSENT && (int) (position >>> 32) == ordinal
+                    ? Optional.of(new SegmentOffsetInfoImpl(getOffset(position)))
+                    : Optional.empty();
+        }
+
+        @Override
+        public void onIndexedEntityRemoved(DatabaseKey key) {
+            long position = searchForPosition(key);
+            if (position != ABSENT && (int) (position >>> 32) == ordinal) {
+                TableIndex.this.onIndexedEntityRemoved(key);
+            }
+        }
+    }
 }
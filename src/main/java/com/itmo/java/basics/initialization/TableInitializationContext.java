@@ -4,6 +4,7 @@ import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.logic.Segment;
 
 import java.nio.file.Path;
+import java.util.List;
 
 public interface TableInitializationContext {
     /**
@@ -40,4 +41,11 @@ public interface TableInitializationContext {
      * @param segment новый сегмент
      */
     void updateCurrentSegment(Segment segment);
+
+    /**
+     * Возвращает все сегменты таблицы, переданные в {@link #updateCurrentSegment(Segment)}, в порядке их создания.
+     *
+     * @return сегменты таблицы, последний из них - текущий активный
+     */
+    List<Segment> getSegments();
 }
@@ -33,17 +33,19 @@ public class DatabaseInitializer implements Initializer {
         try {
             for (Path tableDirectory : Files.newDirectoryStream(workingPath)) {
                 if (Files.isDirectory(tableDirectory)) {
+                    String tableName = new File(tableDirectory.toString()).getName();
                     tableInitializer.perform(
                             InitializationContextImpl.builder()
                                     .executionEnvironment(initialContext.executionEnvironment())
                                     .currentDatabaseContext(initialContext.currentDbContext())
-                                    .currentTableContext(new TableInitializationContextImpl(new File(tableDirectory.toString()).getName(), workingPath, new TableIndex()))
+                                    .currentTableContext(new TableInitializationContextImpl(tableName, workingPath,
+                                            TableIndex.create(initialContext.executionEnvironment().getConfig().getKeyStorage(tableName))))
                                     .build()
                     );
                 }
             }
 
-            initialContext.executionEnvironment().addDatabase(DatabaseImpl.initializeFromContext(initialContext.currentDbContext()));
+            initialContext.executionEnvironment().addDatabase(DatabaseImpl.initializeFromContext(initialContext.currentDbContext(), initialContext.executionEnvironment().getConfig()));
         } catch (IOException e) {
             throw new DatabaseException("Cannot iterate over directory", e);
         }
@@ -1,64 +1,131 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.config.IndexMode;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.SegmentIndex;
 import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.Segment;
 import com.itmo.java.basics.logic.impl.SegmentImpl;
-import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.HintFile;
+import com.itmo.java.basics.logic.io.SegmentScanner;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
 import java.util.Optional;
 
 public class SegmentInitializer implements Initializer {
     /**
      * Добавляет в контекст информацию об инициализируемом сегменте.
-     * Составляет индекс сегмента
-     * Обновляет инфу в индексе таблицы
+     * Составляет индекс сегмента: по hint-файлу, если он есть и не поврежден, иначе читая сегмент целиком.
+     * При наличии hint-файла читается только хвост сегмента, записанный после его создания.
+     * В режиме {@link IndexMode#SPARSE} ключи в память не загружаются: недостающий или устаревший hint-файл
+     * составляется заново, а сегмент строит по нему разреженный индекс.
+     * Если сегмент заканчивается недописанной или поврежденной записью (падение во время дозаписи),
+     * файл обрезается по последней целой записи. Сжатые сегменты никогда не дописываются и не обрезаются
+     * Обновляет инфу в индексе таблицы: в режиме {@link IndexMode#FULL} смещения записей хранятся только в нем,
+     * а ключи, последняя запись которых - запись об удалении, из него удаляются
      *
      * @param context контекст с информацией об инициализируемой бд и об окружении
      * @throws DatabaseException если в контексте лежит неправильный путь к сегменту, невозможно прочитать содержимое. Ошибка в содержании
      */
     @Override
     public void perform(InitializationContext context) throws DatabaseException {
-        HashSet<String> presentKeys = new HashSet<>();
+        HashSet<DatabaseKey> presentKeys = new HashSet<>();
+        HashSet<DatabaseKey> removedKeys = new HashSet<>();
         long currentPosition = 0;
 
-        try (DatabaseInputStream databaseInputStream = new DatabaseInputStream(new FileInputStream(context.currentSegmentContext().getSegmentPath().toFile()))) {
-            while (databaseInputStream.available() > 0) {
-                Optional<DatabaseRecord> optionalDatabaseRecord = databaseInputStream.readDbUnit();
+        Path segmentPath = context.currentSegmentContext().getSegmentPath();
+        Optional<HintFile> hintFile = HintFile.read(segmentPath);
+        long segmentLength;
+        try {
+            segmentLength = SegmentScanner.length(segmentPath);
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot read segment " + segmentPath, e);
+        }
+
+        boolean sparse = context.executionEnvironment().getConfig().getIndexMode() == IndexMode.SPARSE;
+        if (sparse && (hintFile.isEmpty() || hintFile.get().getSegmentLength() != segmentLength)) {
+            // The segment keeps only a sparse index built from its hint file, so the hint must cover it
+            try {
+                HintFile.write(segmentPath);
+            } catch (IOException e) {
+                throw new DatabaseException("Cannot write hint file of segment " + segmentPath, e);
+            }
+            hintFile = HintFile.read(segmentPath);
+        }
+
+        if (hintFile.isPresent() && hintFile.get().getSegmentLength() <= segmentLength) {
+            if (!sparse) {
+                for (HintFile.Entry entry : hintFile.get().getEntries()) {
+                    DatabaseKey key = DatabaseKey.wrap(entry.getKey());
+                    context.currentSegmentContext().getIndex().onIndexedEntityUpdated(key, new SegmentOffsetInfoImpl(entry.getOffset()));
+                    presentKeys.add(key);
+                    if (entry.isTombstone()) {
+                        removedKeys.add(key);
+                    }
+                }
+            }
+            currentPosition = hintFile.get().getSegmentLength();
+        }
 
-                if (optionalDatabaseRecord.isEmpty()) {
-                    break;  // EOF
+        try (SegmentScanner scanner = new SegmentScanner(segmentPath, currentPosition)) {
+            Optional<DatabaseRecord> optionalDatabaseRecord;
+            while ((optionalDatabaseRecord = scanner.next()).isPresent()) {
+                DatabaseKey lastKey = optionalDatabaseRecord.get().getDatabaseKey();
+                context.currentSegmentContext().getIndex().onIndexedEntityUpdated(lastKey, new SegmentOffsetInfoImpl(scanner.getRecordOffset()));
+                if (!sparse) {
+                    presentKeys.add(lastKey);
+                    if (optionalDatabaseRecord.get().isValuePresented()) {
+                        removedKeys.remove(lastKey);
+                    } else {
+                        removedKeys.add(lastKey);
+                    }
                 }
+            }
 
-                DatabaseRecord databaseRecord = optionalDatabaseRecord.get();
-                String lastKey = new String(databaseRecord.getKey());
-                context.currentSegmentContext().getIndex().onIndexedEntityUpdated(lastKey, new SegmentOffsetInfoImpl(currentPosition));
-                presentKeys.add(lastKey);
-                currentPosition += databaseRecord.size();
+            currentPosition = scanner.getPosition();
+            if (scanner.isCorrupted() && !scanner.isCompressed()) {
+                truncate(segmentPath, currentPosition);
             }
         } catch (IOException e) {
-            throw new DatabaseException("Cannot create FileInputStream", e);
+            throw new DatabaseException("Cannot read segment " + segmentPath, e);
         }
 
+        // With the full index the offsets are moved to the table index and the segment index stays empty
+        SegmentIndex segmentIndex = context.currentSegmentContext().getIndex();
         Segment segment = SegmentImpl.initializeFromContext(
                 new SegmentInitializationContextImpl(
                         context.currentSegmentContext().getSegmentName(),
                         context.currentSegmentContext().getSegmentPath(),
                         currentPosition,
-                        context.currentSegmentContext().getIndex()
-                )
+                        sparse ? segmentIndex : new SegmentIndex()
+                ),
+                context.executionEnvironment().getConfig()
         );
 
         context.currentTableContext().updateCurrentSegment(segment);
 
-        for (String key: presentKeys) {
-            context.currentTableContext().getTableIndex().onIndexedEntityUpdated(key, segment);
+        TableIndex tableIndex = context.currentTableContext().getTableIndex();
+        for (DatabaseKey key: presentKeys) {
+            if (removedKeys.contains(key)) {
+                tableIndex.onIndexedEntityRemoved(key);
+            } else {
+                tableIndex.onIndexedEntityUpdated(key, segment, segmentIndex.searchForKey(key).orElseThrow().getOffset());
+            }
+        }
+    }
+
+    private static void truncate(Path segmentPath, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
         }
     }
 }
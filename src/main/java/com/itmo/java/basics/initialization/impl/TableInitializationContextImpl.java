@@ -6,23 +6,27 @@ import com.itmo.java.basics.logic.Segment;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TableInitializationContextImpl implements TableInitializationContext {
     private final String tableName;
     private final Path databasePath;
     private final TableIndex tableIndex;
+    private final List<Segment> segments;
     private Segment currentSegment;
 
     public TableInitializationContextImpl(String tableName, Path databasePath, TableIndex tableIndex) {
         this.tableName = tableName;
         this.databasePath = databasePath;
         this.tableIndex = tableIndex;
+        this.segments = new ArrayList<>();
         this.currentSegment = null;
     }
 
     public TableInitializationContextImpl(String tableName, Path databasePath, TableIndex tableIndex, Segment currentSegment) {
         this(tableName, databasePath, tableIndex);
-        this.currentSegment = currentSegment;
+        updateCurrentSegment(currentSegment);
     }
 
     @Override
@@ -48,5 +52,11 @@ public class TableInitializationContextImpl implements TableInitializationContex
     @Override
     public void updateCurrentSegment(Segment segment) {
         currentSegment = segment;
+        segments.add(segment);
+    }
+
+    @Override
+    public List<Segment> getSegments() {
+        return segments;
     }
 }
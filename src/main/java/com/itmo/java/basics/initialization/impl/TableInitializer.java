@@ -1,13 +1,24 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
+import com.itmo.java.basics.initialization.TableInitializationContext;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.impl.LsmTable;
+import com.itmo.java.basics.logic.impl.PartitionedTable;
+import com.itmo.java.basics.logic.impl.SegmentImpl;
 import com.itmo.java.basics.logic.impl.TableImpl;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 public class TableInitializer implements Initializer {
     private final SegmentInitializer segmentInitializer;
@@ -18,7 +29,9 @@ public class TableInitializer implements Initializer {
 
     /**
      * Добавляет в контекст информацию об инициализируемой таблице.
-     * Запускает инициализацию всех сегментов в порядке их создания (из имени)
+     * Запускает инициализацию всех сегментов в порядке их создания (из имени).
+     * Таблицы {@link com.itmo.java.basics.config.TableEngine#LSM} открываются по своему манифесту,
+     * а части разделенной таблицы ({@link PartitionedTable}) инициализируются каждая как отдельная таблица
      *
      * @param context контекст с информацией об инициализируемой бд, окружении, таблицы
      * @throws DatabaseException если в контексте лежит неправильный путь к таблице, невозможно прочитать содержимого папки,
@@ -28,33 +41,59 @@ public class TableInitializer implements Initializer {
     public void perform(InitializationContext context) throws DatabaseException {
         Path workingPath = context.currentTableContext().getTablePath();
 
-        File[] files = new File(workingPath.toString()).listFiles();
-        if (files == null) {
-            throw new DatabaseException("Cannot get files from directory");
+        String tableName = context.currentTableContext().getTableName();
+        if (LsmTable.isLsmTable(workingPath)) {
+            context.currentDbContext().addTable(LsmTable.open(tableName, workingPath, context.executionEnvironment().getConfig()));
+            return;
         }
 
-        Arrays.sort(files, (o1, o2) -> {
-            String[] o1_parts = o1.getName().split("_");
-            String[] o2_parts = o2.getName().split("_");
+        if (PartitionedTable.isPartitionedTable(workingPath)) {
+            DatabaseConfig config = context.executionEnvironment().getConfig();
+            int partitionCount = PartitionedTable.readPartitionCount(workingPath);
+            List<Table> partitions = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                String partitionName = PartitionedTable.getPartitionName(tableName, i);
+                if (!Files.isDirectory(workingPath.resolve(partitionName))) {
+                    // The table was not created completely
+                    partitions.add(PartitionedTable.createPartition(tableName, workingPath, i, config));
+                    continue;
+                }
 
-            long diff = Long.parseLong(o1_parts[o1_parts.length - 1]) - Long.parseLong(o2_parts[o1_parts.length - 1]);
+                partitions.add(initializeSegments(context,
+                        new TableInitializationContextImpl(partitionName, workingPath, TableIndex.create(config.getKeyStorage(tableName)))));
+            }
+            context.currentDbContext().addTable(PartitionedTable.open(tableName, partitions));
+            return;
+        }
 
-            return diff < 0 ? -1 : diff == 0 ? 0 : 1;
-        });
+        context.currentDbContext().addTable(initializeSegments(context, context.currentTableContext()));
+    }
+
+    /**
+     * Инициализирует сегменты таблицы (или части таблицы) в порядке их создания
+     */
+    private Table initializeSegments(InitializationContext context, TableInitializationContext tableContext) throws DatabaseException {
+        Path workingPath = tableContext.getTablePath();
+        String tableName = tableContext.getTableName();
+        File[] files = new File(workingPath.toString()).listFiles(
+                file -> file.isFile() && SegmentImpl.isSegmentName(tableName, file.getName()));
+        if (files == null) {
+            throw new DatabaseException("Cannot get files from directory");
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(file -> SegmentImpl.getSegmentTimestamp(file.getName())));
 
         for (File segmentFile : files) {
-            if (segmentFile.isFile()) {
-                segmentInitializer.perform(
-                        InitializationContextImpl.builder()
-                                .executionEnvironment(context.executionEnvironment())
-                                .currentDatabaseContext(context.currentDbContext())
-                                .currentTableContext(context.currentTableContext())
-                                .currentSegmentContext(new SegmentInitializationContextImpl(segmentFile.getName(), workingPath, segmentFile.length()))
-                                .build()
-                );
-            }
+            segmentInitializer.perform(
+                    InitializationContextImpl.builder()
+                            .executionEnvironment(context.executionEnvironment())
+                            .currentDatabaseContext(context.currentDbContext())
+                            .currentTableContext(tableContext)
+                            .currentSegmentContext(new SegmentInitializationContextImpl(segmentFile.getName(), workingPath, segmentFile.length()))
+                            .build()
+            );
         }
 
-        context.currentDbContext().addTable(TableImpl.initializeFromContext(context.currentTableContext()));
+        return TableImpl.initializeFromContext(tableContext, context.executionEnvironment().getConfig());
     }
 }
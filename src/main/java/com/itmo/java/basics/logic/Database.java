@@ -1,7 +1,10 @@
 package com.itmo.java.basics.logic;
 
+import com.itmo.java.basics.config.TableEngine;
 import com.itmo.java.basics.exceptions.DatabaseException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface Database {
@@ -20,6 +23,27 @@ public interface Database {
      */
     void createTableIfNotExists(String tableName) throws DatabaseException;
 
+    /**
+     * Создает таблицу с указанным именем и движком хранения, если это имя еще не занято.
+     *
+     * @param tableName имя таблицы
+     * @param engine    движок хранения таблицы
+     * @throws DatabaseException если таблица с данным именем уже существует или если произошла ошибка ввода-вывода
+     */
+    void createTableIfNotExists(String tableName, TableEngine engine) throws DatabaseException;
+
+    /**
+     * Создает таблицу, разделенную по хэшу ключа на partitions частей, каждая со своим активным сегментом.
+     * Количество частей после создания не меняется. Разделить можно только таблицу {@link TableEngine#LOG}
+     *
+     * @param tableName  имя таблицы
+     * @param engine     движок хранения таблицы
+     * @param partitions количество частей, 1 - таблица не разделяется
+     * @throws DatabaseException если таблица с данным именем уже существует, таблицу с таким движком нельзя
+     *                           разделить или если произошла ошибка ввода-вывода
+     */
+    void createTableIfNotExists(String tableName, TableEngine engine, int partitions) throws DatabaseException;
+
     /**
      * Записывает значение в указанную таблицу по переданному ключу.
      *
@@ -28,7 +52,16 @@ public interface Database {
      * @param objectValue значение, которое нужно записать
      * @throws DatabaseException если указанная таблица не была найдена или если произошла ошибка ввода-вывода
      */
-    void write(String tableName, String objectKey, byte[] objectValue) throws DatabaseException;
+    void write(String tableName, DatabaseKey objectKey, byte[] objectValue) throws DatabaseException;
+
+    /**
+     * Записывает значение по строковому ключу (ключ хранится в UTF-8).
+     *
+     * @see #write(String, DatabaseKey, byte[])
+     */
+    default void write(String tableName, String objectKey, byte[] objectValue) throws DatabaseException {
+        write(tableName, DatabaseKey.of(objectKey), objectValue);
+    }
 
     /**
      * Считывает значение из указанной таблицы по заданному ключу.
@@ -38,7 +71,48 @@ public interface Database {
      * @return значение, которое находится по ключу
      * @throws DatabaseException если не была найдена указанная таблица, или произошла ошибка ввода-вывода
      */
-    Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException;
+    Optional<byte[]> read(String tableName, DatabaseKey objectKey) throws DatabaseException;
+
+    /**
+     * @see #read(String, DatabaseKey)
+     */
+    default Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException {
+        return read(tableName, DatabaseKey.of(objectKey));
+    }
 
-    void delete(String tableName, String objectKey) throws DatabaseException;
+    void delete(String tableName, DatabaseKey objectKey) throws DatabaseException;
+
+    /**
+     * Записывает значение в указанную таблицу и возвращает предыдущее одним действием.
+     *
+     * @see Table#getAndWrite(DatabaseKey, byte[])
+     * @throws DatabaseException если указанная таблица не была найдена или если произошла ошибка ввода-вывода
+     */
+    Optional<byte[]> getAndWrite(String tableName, DatabaseKey objectKey, byte[] objectValue) throws DatabaseException;
+
+    default void delete(String tableName, String objectKey) throws DatabaseException {
+        delete(tableName, DatabaseKey.of(objectKey));
+    }
+
+    /**
+     * Считывает записи указанной таблицы с ключами из диапазона [fromKey, toKey) по возрастанию ключа.
+     *
+     * @see Table#scanRange(DatabaseKey, DatabaseKey, int)
+     * @throws DatabaseException если не была найдена указанная таблица, таблица не хранит ключи упорядоченно
+     *                           или произошла ошибка ввода-вывода
+     */
+    List<Map.Entry<DatabaseKey, byte[]>> scanRange(String tableName, DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException;
+
+    /**
+     * @see Table#scan(String, int)
+     * @throws DatabaseException если не была найдена указанная таблица, курсор неверный или произошла ошибка ввода-вывода
+     */
+    ScanBatch scan(String tableName, String cursor, int count) throws DatabaseException;
+
+    /**
+     * Освобождает ресурсы всех таблиц базы данных.
+     *
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    void close() throws DatabaseException;
 }
\ No newline at end of file
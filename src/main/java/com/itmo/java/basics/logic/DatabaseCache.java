@@ -1,9 +1,9 @@
 package com.itmo.java.basics.logic;
 
 public interface DatabaseCache {
-    byte[] get(String key);
+    byte[] get(DatabaseKey key);
 
-    void set(String key, byte[] value);
+    void set(DatabaseKey key, byte[] value);
 
-    void delete(String key);
+    void delete(DatabaseKey key);
 }
@@ -0,0 +1,98 @@
+package com.itmo.java.basics.logic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Ключ записи в БД - байты в том виде, в котором они пришли от клиента и лежат в сегментах.
+ * Хэш считается один раз при создании, поэтому ключ можно сколько угодно раз искать в индексах и кэше,
+ * не перекодируя его и не пересчитывая хэш. Строковое представление нужно только для сообщений
+ * <p>
+ * Ключи упорядочены побайтово, байты сравниваются как числа без знака: для ключей в UTF-8 это порядок строк
+ * по кодовым точкам
+ * <p>
+ * Массив байт не копируется и после создания ключа меняться не должен
+ */
+public final class DatabaseKey implements Comparable<DatabaseKey> {
+    private final byte[] bytes;
+    private final int hash;
+
+    private DatabaseKey(byte[] bytes) {
+        this.bytes = bytes;
+        this.hash = hash(bytes);
+    }
+
+    /**
+     * Ключ поверх переданных байт, без копирования
+     */
+    public static DatabaseKey wrap(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Key must not be null");
+        }
+        return new DatabaseKey(bytes);
+    }
+
+    /**
+     * Ключ из строки в UTF-8
+     */
+    public static DatabaseKey of(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null");
+        }
+        return new DatabaseKey(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Байты ключа. Возвращается сам массив ключа, изменять его нельзя
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Размер ключа в байтах
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DatabaseKey)) {
+            return false;
+        }
+        DatabaseKey other = (DatabaseKey) o;
+        return hash == other.hash && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(DatabaseKey other) {
+        return Arrays.compareUnsigned(bytes, other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * FNV-1a по байтам ключа с перемешиванием старших бит в младшие, чтобы хэш годился для открытой адресации
+     */
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+}
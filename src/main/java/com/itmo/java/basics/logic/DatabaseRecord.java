@@ -9,6 +9,13 @@ public interface DatabaseRecord {
      */
     byte[] getKey();
 
+    /**
+     * Возвращает ключ вместе с его хэшем. Записи хранят ключ в таком виде, поэтому байты не копируются
+     */
+    default DatabaseKey getDatabaseKey() {
+        return DatabaseKey.wrap(getKey());
+    }
+
     /**
      * Возвращает значение
      */
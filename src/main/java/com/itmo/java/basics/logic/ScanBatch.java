@@ -0,0 +1,42 @@
+package com.itmo.java.basics.logic;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Порция записей полного обхода таблицы (см. {@link Table#scan(String, int)}) и курсор, с которого обход
+ * продолжается. Курсор непрозрачен для клиента: обход начинается с {@link #START_CURSOR} и закончен,
+ * когда таблица вернула его же
+ */
+public final class ScanBatch {
+    /**
+     * Курсор начала обхода и курсор, который возвращается, когда обход закончен
+     */
+    public static final String START_CURSOR = "0";
+
+    private final String cursor;
+    private final List<Map.Entry<DatabaseKey, byte[]>> entries;
+
+    public ScanBatch(String cursor, List<Map.Entry<DatabaseKey, byte[]>> entries) {
+        this.cursor = cursor;
+        this.entries = entries;
+    }
+
+    /**
+     * Курсор следующей порции или {@link #START_CURSOR}, если обход закончен
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Пары ключ-значение порции. Порция может быть пустой, даже если обход не закончен
+     */
+    public List<Map.Entry<DatabaseKey, byte[]>> getEntries() {
+        return entries;
+    }
+
+    public boolean isFinished() {
+        return START_CURSOR.equals(cursor);
+    }
+}
@@ -1,6 +1,7 @@
 package com.itmo.java.basics.logic;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -26,7 +27,17 @@ public interface Segment {
      * @return {@code true} - если значение записалось, {@code false} - если нет
      * @throws IOException если произошла ошибка ввода-вывода.
      */
-    boolean write(String objectKey, byte[] objectValue) throws IOException;
+    boolean write(DatabaseKey objectKey, byte[] objectValue) throws IOException;
+
+    /**
+     * Записывает записи подряд одним обращением к файлу, пока сегмент не станет read-only.
+     * Записи, которые не поместились, нужно записать в следующий сегмент.
+     *
+     * @param records записи в порядке их применения
+     * @return количество записанных записей (с начала списка)
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    int write(List<? extends WritableDatabaseRecord> records) throws IOException;
 
     /**
      * Считывает значение из сегмента по переданному ключу.
@@ -35,7 +46,27 @@ public interface Segment {
      * @return значение, которое находится по ключу
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    Optional<byte[]> read(String objectKey) throws IOException;
+    Optional<byte[]> read(DatabaseKey objectKey) throws IOException;
+
+    /**
+     * Считывает из сегмента последнюю запись по ключу в том виде, в котором она хранится в файле:
+     * запись об удалении не пропускается, значение, вынесенное в blob-файл, не читается.
+     *
+     * @param objectKey ключ
+     * @return запись. {@link Optional#empty()} - если в сегменте нет записей по ключу
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    Optional<DatabaseRecord> readRecord(DatabaseKey objectKey) throws IOException;
+
+    /**
+     * Проверяет по индексу сегмента, есть ли в сегменте записи по ключу (в том числе запись об удалении).
+     * Сами записи не читаются.
+     *
+     * @param objectKey ключ
+     * @return {@code true} - если в сегменте есть записи по ключу
+     * @throws IOException если индекс сегмента не удалось прочитать с диска
+     */
+    boolean containsKey(DatabaseKey objectKey) throws IOException;
 
     /**
      * Возвращает {@code true} - если данный сегмент открыт только на чтение, {@code false} - если данный сегмент открыт на чтение и запись.
@@ -44,5 +75,19 @@ public interface Segment {
      */
     boolean isReadOnly();
 
-    boolean delete(String objectKey) throws IOException;
+    boolean delete(DatabaseKey objectKey) throws IOException;
+
+    /**
+     * Освобождает открытый на запись файл сегмента. Чтение из сегмента после закрытия остается доступным.
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    void close() throws IOException;
+
+    /**
+     * Сбрасывает записанные в сегмент данные на диск (fsync).
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    void sync() throws IOException;
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.itmo.java.basics.logic;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -28,7 +30,16 @@ public interface Table {
      * @param objectValue значение, которое нужно записать
      * @throws DatabaseException если произошла ошибка ввода-вывода
      */
-    void write(String objectKey, byte[] objectValue) throws DatabaseException;
+    void write(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException;
+
+    /**
+     * Записывает в таблицу значение по строковому ключу (ключ хранится в UTF-8).
+     *
+     * @see #write(DatabaseKey, byte[])
+     */
+    default void write(String objectKey, byte[] objectValue) throws DatabaseException {
+        write(DatabaseKey.of(objectKey), objectValue);
+    }
 
     /**
      * Считывает значение из таблицы по заданному ключу.
@@ -37,8 +48,71 @@ public interface Table {
      * @return значение, которое находится по ключу
      * @throws DatabaseException если произошла ошибка ввода-вывода
      */
-    Optional<byte[]> read(String objectKey) throws DatabaseException;
+    Optional<byte[]> read(DatabaseKey objectKey) throws DatabaseException;
+
+    /**
+     * @see #read(DatabaseKey)
+     */
+    default Optional<byte[]> read(String objectKey) throws DatabaseException {
+        return read(DatabaseKey.of(objectKey));
+    }
+
+    void delete(DatabaseKey objectKey) throws DatabaseException;
+
+    /**
+     * Записывает значение по ключу и возвращает предыдущее. Реализации, которые выполняются параллельно,
+     * делают это одним действием: между чтением и записью никто другой не изменит значение по ключу.
+     *
+     * @param objectKey   ключ
+     * @param objectValue новое значение, {@code null} - удалить ключ. Удаление отсутствующего ключа ничего не пишет
+     * @return значение, которое было по ключу до записи
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    default Optional<byte[]> getAndWrite(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        Optional<byte[]> previousValue = read(objectKey);
+        if (objectValue != null) {
+            write(objectKey, objectValue);
+        } else if (previousValue.isPresent()) {
+            delete(objectKey);
+        }
+        return previousValue;
+    }
 
-    void delete(String objectKey) throws DatabaseException;
+    /**
+     * Считывает записи с ключами из диапазона [fromKey, toKey) по возрастанию ключа. Ключи сравниваются
+     * побайтово (см. {@link DatabaseKey}). Чтобы продолжить чтение после последнего ключа страницы,
+     * следующий запрос начинают с этого ключа, дополненного нулевым байтом.
+     *
+     * @param fromKey первый ключ диапазона
+     * @param toKey   ключ, которым диапазон ограничен (сам в диапазон не входит). {@code null} - до конца таблицы
+     * @param limit   сколько записей вернуть не больше
+     * @return пары ключ-значение
+     * @throws DatabaseException если таблица не хранит ключи упорядоченно или произошла ошибка ввода-вывода
+     */
+    List<Map.Entry<DatabaseKey, byte[]>> scanRange(DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException;
+
+    /**
+     * Читает очередную порцию записей при обходе всей таблицы. Обход не хранит состояния в таблице
+     * и не блокирует запись: ключ, который был в таблице все время обхода, встретится хотя бы раз, но может
+     * встретиться и повторно; ключи, записанные или удаленные во время обхода, могут как попасть в него, так и нет.
+     * Порядок ключей не определен
+     *
+     * @param cursor {@link ScanBatch#START_CURSOR} или курсор из предыдущей порции
+     * @param count  примерное количество записей в порции
+     * @return записи и курсор следующей порции
+     * @throws DatabaseException если курсор неверный, индекс таблицы не позволяет обход или произошла ошибка ввода-вывода
+     */
+    ScanBatch scan(String cursor, int count) throws DatabaseException;
+
+    default void delete(String objectKey) throws DatabaseException {
+        delete(DatabaseKey.of(objectKey));
+    }
+
+    /**
+     * Освобождает ресурсы таблицы (открытые на запись файлы сегментов).
+     *
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    void close() throws DatabaseException;
 }
 
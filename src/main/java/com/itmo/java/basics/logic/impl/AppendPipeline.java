@@ -0,0 +1,191 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Конвейер дозаписи в таблицу (group commit).
+ * <p>
+ * Пишущие потоки кладут записи в очередь и ждут блокировку дозаписи. Поток, захвативший блокировку,
+ * забирает из очереди все накопившиеся записи и записывает их одной пачкой, поэтому в каждый момент
+ * времени в сегмент пишет только один поток. Запись считается выполненной, когда для всей пачки
+ * выполнена гарантия {@link DurabilityMode}: для {@link DurabilityMode#BATCH} - после одного fsync на пачку.
+ * Фоновый fsync в режиме {@link DurabilityMode#INTERVAL} тоже берет блокировку дозаписи, поэтому не пересекается
+ * с записью, сменой сегмента и закрытием таблицы
+ */
+public class AppendPipeline {
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * Общий для всех таблиц поток фонового fsync в режиме {@link DurabilityMode#INTERVAL}
+     */
+    private static final ScheduledExecutorService SYNC_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Хранилище, в которое конвейер пишет пачки записей
+     */
+    public interface Target {
+        /**
+         * Записывает пачку записей в порядке очереди и обновляет индексы
+         */
+        void append(List<WritableDatabaseRecord> records) throws DatabaseException;
+
+        /**
+         * Сбрасывает записанные данные на диск (fsync)
+         */
+        void sync() throws DatabaseException;
+    }
+
+    private final Target target;
+    private final DurabilityMode durabilityMode;
+    private final Queue<PendingRecord> queue = new ConcurrentLinkedQueue<>();
+    private final Lock appendLock = new ReentrantLock();
+    private final ScheduledFuture<?> syncTask;
+
+    /**
+     * Изменяется и читается под блокировкой дозаписи
+     */
+    private boolean closed;
+
+    public AppendPipeline(Target target, DurabilityMode durabilityMode, long syncIntervalMillis) {
+        this.target = target;
+        this.durabilityMode = durabilityMode;
+        this.syncTask = durabilityMode == DurabilityMode.INTERVAL
+                ? SYNC_SCHEDULER.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Добавляет запись в очередь и возвращает управление, когда запись (вместе с остальной пачкой)
+     * записана с нужной гарантией сохранности
+     *
+     * @param record запись
+     * @throws DatabaseException если пачку, в которую попала запись, не удалось записать
+     */
+    public void append(WritableDatabaseRecord record) throws DatabaseException {
+        PendingRecord pending = new PendingRecord(record);
+        queue.add(pending);
+
+        appendLock.lock();
+        try {
+            if (!pending.done) {
+                drain();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (pending.error != null) {
+            throw new DatabaseException(pending.error.getMessage(), pending.error);
+        }
+    }
+
+    /**
+     * Блокировка, которую держит поток, пишущий в таблицу. Позволяет выполнить действие,
+     * не пересекающееся с записью (например, подмену сегментов)
+     */
+    public Lock getAppendLock() {
+        return appendLock;
+    }
+
+    /**
+     * Останавливает фоновый fsync и сбрасывает данные на диск
+     */
+    public void close() throws DatabaseException {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+        }
+
+        appendLock.lock();
+        try {
+            // A scheduled sync that is already waiting for the lock must not touch the closed segment
+            closed = true;
+            if (durabilityMode != DurabilityMode.NONE) {
+                target.sync();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<PendingRecord> batch = new ArrayList<>();
+        List<WritableDatabaseRecord> records = new ArrayList<>();
+
+        while (!queue.isEmpty()) {
+            PendingRecord pending;
+            while (batch.size() < MAX_BATCH_SIZE && (pending = queue.poll()) != null) {
+                batch.add(pending);
+                records.add(pending.record);
+            }
+
+            DatabaseException error = null;
+            boolean appended = false;
+            try {
+                target.append(records);
+                if (durabilityMode == DurabilityMode.BATCH) {
+                    target.sync();
+                }
+                appended = true;
+            } catch (DatabaseException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new DatabaseException("Cannot append records", e);
+            } finally {
+                // The batch is already out of the queue, so its writers learn the result only from here
+                if (!appended && error == null) {
+                    error = new DatabaseException("Cannot append records");
+                }
+                for (PendingRecord completed : batch) {
+                    completed.error = error;
+                    completed.done = true;
+                }
+
+                batch.clear();
+                records.clear();
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        appendLock.lock();
+        try {
+            if (!closed) {
+                target.sync();
+            }
+        } catch (DatabaseException | RuntimeException ignore) {
+            // Next scheduled sync or closing the table will retry, and closing reports the error
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Запись в очереди. Поля изменяются и читаются под блокировкой дозаписи
+     */
+    private static class PendingRecord {
+        private final WritableDatabaseRecord record;
+        private boolean done;
+        private DatabaseException error;
+
+        private PendingRecord(WritableDatabaseRecord record) {
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.BlobFile;
+import com.itmo.java.basics.logic.io.BlobReference;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+
+/**
+ * Запись в БД, означающая добавление значения по ключу, когда само значение вынесено в {@link BlobFile blob-файл}.
+ * В сегменте вместо значения хранится закодированная {@link BlobReference ссылка}
+ */
+public class BlobReferenceDatabaseRecord implements WritableDatabaseRecord {
+
+    private final DatabaseKey key;
+    private final BlobReference reference;
+
+    public BlobReferenceDatabaseRecord(DatabaseKey key, BlobReference reference) {
+        this.key = key;
+        this.reference = reference;
+    }
+
+    @Override
+    public byte[] getKey() {
+        return key.getBytes();
+    }
+
+    @Override
+    public DatabaseKey getDatabaseKey() {
+        return key;
+    }
+
+    /**
+     * Возвращает закодированную ссылку на значение
+     */
+    @Override
+    public byte[] getValue() {
+        return reference.encode();
+    }
+
+    public BlobReference getReference() {
+        return reference;
+    }
+
+    @Override
+    public long size() {
+        return 2 * 4 + getKeySize() + BlobReference.BYTES;
+    }
+
+    @Override
+    public boolean isValuePresented() {
+        return true;
+    }
+
+    @Override
+    public int getKeySize() {
+        return key.size();
+    }
+
+    /**
+     * Возвращает {@link SegmentFormat#BLOB_REFERENCE_SIZE}
+     */
+    @Override
+    public int getValueSize() {
+        return SegmentFormat.BLOB_REFERENCE_SIZE;
+    }
+}
@@ -0,0 +1,290 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.BlobFile;
+import com.itmo.java.basics.logic.io.BlobReference;
+import com.itmo.java.basics.logic.io.SegmentChannelCache;
+import com.itmo.java.basics.logic.io.SegmentScanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Blob-файлы таблицы: значения не меньше {@link DatabaseConfig#getBlobThreshold()} дописываются
+ * в активный {@link BlobFile blob-файл}, а в сегмент попадает только {@link BlobReferenceDatabaseRecord ссылка}.
+ * Большие значения не заполняют сегменты, а уплотнение сегментов переписывает только ссылки.
+ * <p>
+ * Место в blob-файлах освобождается отдельным проходом ({@link #collectGarbage()}): актуальные значения
+ * файла с большой долей устаревших переносятся в активный файл, новые ссылки дописываются в таблицу
+ * и сбрасываются на диск, после чего старый файл удаляется.
+ * <p>
+ * После перезапуска значения пишутся в новый файл, недописанный хвост старого никогда не продолжается
+ */
+class BlobStore {
+    private static final long MAX_BLOB_FILE_SIZE = 64 * 1024 * 1024;
+
+    private final TableImpl table;
+    private final DatabaseConfig config;
+    private final Path tableRootPath;
+    private final Map<Long, BlobUsage> usage = new ConcurrentHashMap<>();
+
+    /**
+     * Файл, в который дописываются значения. Меняется под блокировкой дозаписи
+     */
+    private volatile BlobFile activeFile;
+    private long nextFileId;
+
+    BlobStore(TableImpl table, DatabaseConfig config) {
+        this.table = table;
+        this.config = config;
+        this.tableRootPath = table.getTableRootPath();
+
+        List<Long> fileIds = BlobFile.list(tableRootPath);
+        this.nextFileId = fileIds.isEmpty() ? 1 : fileIds.get(fileIds.size() - 1) + 1;
+    }
+
+    /**
+     * Выносит большие значения пачки в blob-файл. Вызывается под блокировкой дозаписи
+     *
+     * @param records пачка записей
+     * @return пачку, в которой большие значения заменены ссылками
+     * @throws IOException если значение не удалось записать
+     */
+    List<WritableDatabaseRecord> separate(List<WritableDatabaseRecord> records) throws IOException {
+        if (config.getBlobThreshold() <= 0) {
+            return records;
+        }
+
+        List<WritableDatabaseRecord> separated = null;
+        for (int i = 0; i < records.size(); i++) {
+            WritableDatabaseRecord record = records.get(i);
+            if (record instanceof SetDatabaseRecord && record.getValueSize() >= config.getBlobThreshold()) {
+                if (separated == null) {
+                    separated = new ArrayList<>(records);
+                }
+
+                DatabaseKey key = record.getDatabaseKey();
+                separated.set(i, new BlobReferenceDatabaseRecord(key, append(key, record.getValue())));
+            }
+        }
+        return separated == null ? records : separated;
+    }
+
+    /**
+     * Сбрасывает активный blob-файл на диск. Вызывается под блокировкой дозаписи до сброса сегмента,
+     * чтобы на диске не оказалось ссылок на незаписанные значения
+     */
+    void sync() throws IOException {
+        BlobFile file = activeFile;
+        if (file != null) {
+            file.force();
+        }
+    }
+
+    /**
+     * Учитывает, что запись со ссылкой удалена из сегмента при уплотнении и значение по ней больше не нужно
+     */
+    void onReferenceDropped(BlobReference reference) {
+        BlobUsage fileUsage = usage.get(reference.getFileId());
+        if (fileUsage != null) {
+            fileUsage.deadBytes += reference.getLength();
+        }
+    }
+
+    /**
+     * Освобождает место в blob-файлах, в которых доля устаревших значений не меньше
+     * {@link DatabaseConfig#getCompactionGarbageRatio()}. Файлы, загруженные с диска, один раз просматриваются
+     * целиком, чтобы узнать эту долю. Вызывается из потока уплотнения
+     *
+     * @return количество удаленных blob-файлов
+     * @throws IOException       если файл не удалось прочитать или удалить
+     * @throws DatabaseException если новые ссылки не удалось записать в таблицу
+     */
+    int collectGarbage() throws IOException, DatabaseException {
+        List<Long> candidates = new ArrayList<>();
+        Lock appendLock = table.getAppendLock();
+        appendLock.lock();
+        try {
+            BlobFile file = activeFile;
+            for (long fileId : BlobFile.list(tableRootPath)) {
+                if (file == null || fileId < file.getFileId()) {
+                    candidates.add(fileId);
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        int collected = 0;
+        for (long fileId : candidates) {
+            BlobUsage fileUsage = usage.get(fileId);
+            if (fileUsage == null || fileUsage.garbageRatio() >= config.getCompactionGarbageRatio()) {
+                collected += collectFile(fileId) ? 1 : 0;
+            }
+        }
+        return collected;
+    }
+
+    void close() throws IOException {
+        BlobFile file = activeFile;
+        if (file != null) {
+            file.close();
+            activeFile = null;
+        }
+    }
+
+    private BlobReference append(DatabaseKey key, byte[] value) throws IOException {
+        if (activeFile == null || activeFile.getSize() >= MAX_BLOB_FILE_SIZE) {
+            rollOver();
+        }
+
+        BlobReference reference = activeFile.append(key, value);
+        usage.get(activeFile.getFileId()).totalBytes += value.length;
+        return reference;
+    }
+
+    /**
+     * Закрывает заполненный blob-файл и создает новый. Если записи должны переживать сбой,
+     * заполненный файл перед закрытием сбрасывается на диск
+     */
+    private void rollOver() throws IOException {
+        if (activeFile != null) {
+            if (config.getDurabilityMode() != DurabilityMode.NONE) {
+                activeFile.force();
+            }
+            activeFile.close();
+        }
+
+        BlobFile file = BlobFile.create(tableRootPath, nextFileId++);
+        usage.put(file.getFileId(), new BlobUsage());
+        activeFile = file;
+    }
+
+    /**
+     * Переносит актуальные значения blob-файла в активный файл и удаляет его
+     *
+     * @return {@code true} - если файл удален
+     */
+    private boolean collectFile(long fileId) throws IOException, DatabaseException {
+        Path path = BlobFile.pathFor(tableRootPath, fileId);
+        List<LiveValue> liveValues = new ArrayList<>();
+        BlobUsage exactUsage = new BlobUsage();
+
+        try (SegmentScanner scanner = new SegmentScanner(path)) {
+            Optional<DatabaseRecord> optionalRecord;
+            while ((optionalRecord = scanner.next()).isPresent()) {
+                DatabaseRecord record = optionalRecord.get();
+                DatabaseKey key = record.getDatabaseKey();
+                long valueOffset = scanner.getRecordOffset() + scanner.getRecordSize() - record.getValue().length;
+
+                exactUsage.totalBytes += record.getValue().length;
+                BlobReference reference = currentReference(key);
+                if (reference != null && reference.getFileId() == fileId && reference.getOffset() == valueOffset) {
+                    liveValues.add(new LiveValue(key, reference));
+                } else {
+                    exactUsage.deadBytes += record.getValue().length;
+                }
+            }
+        }
+
+        usage.put(fileId, exactUsage);
+        if (!liveValues.isEmpty() && exactUsage.garbageRatio() < config.getCompactionGarbageRatio()) {
+            return false;
+        }
+
+        long movedBytes = 0;
+        Lock appendLock = table.getAppendLock();
+        for (LiveValue liveValue : liveValues) {
+            byte[] value = BlobFile.read(tableRootPath, liveValue.reference, true);
+            appendLock.lock();
+            try {
+                // The key may have been overwritten since the file was scanned
+                if (liveValue.reference.equals(currentReference(liveValue.key))) {
+                    table.appendRecord(new BlobReferenceDatabaseRecord(liveValue.key, append(liveValue.key, value)));
+                    movedBytes += value.length;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        // New references must survive a crash before the old values disappear
+        appendLock.lock();
+        try {
+            table.syncLastSegment();
+        } finally {
+            appendLock.unlock();
+        }
+
+        long fileSize = Files.size(path);
+        Lock segmentsLock = table.getSegmentsWriteLock();
+        segmentsLock.lock();
+        try {
+            Files.delete(path);
+            SegmentChannelCache.getInstance().invalidate(path);
+            usage.remove(fileId);
+        } finally {
+            segmentsLock.unlock();
+        }
+
+        CompactionStats.getInstance().onBlobFileCollected(fileSize, movedBytes);
+        return true;
+    }
+
+    /**
+     * Ссылка, по которой сейчас читается значение ключа, или {@code null}, если значение хранится не в blob-файле.
+     * Индекс читается под блокировкой дозаписи, чтобы не пересекаться с его изменением
+     */
+    private BlobReference currentReference(DatabaseKey key) throws IOException {
+        Lock appendLock = table.getAppendLock();
+        appendLock.lock();
+        try {
+            Optional<Segment> segment = table.getTableIndex().searchForKey(key);
+            if (segment.isEmpty()) {
+                return null;
+            }
+
+            Optional<DatabaseRecord> record = segment.get().readRecord(key);
+            return record.isPresent() && record.get() instanceof BlobReferenceDatabaseRecord
+                    ? ((BlobReferenceDatabaseRecord) record.get()).getReference()
+                    : null;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Сколько байт значений записано в blob-файл и сколько из них устарело (оценка, уточняется просмотром файла)
+     */
+    private static class BlobUsage {
+        private volatile long totalBytes;
+        private volatile long deadBytes;
+
+        private double garbageRatio() {
+            return totalBytes == 0 ? 1 : (double) Math.min(deadBytes, totalBytes) / totalBytes;
+        }
+    }
+
+    private static class LiveValue {
+        private final DatabaseKey key;
+        private final BlobReference reference;
+
+        private LiveValue(DatabaseKey key, BlobReference reference) {
+            this.key = key;
+            this.reference = reference;
+        }
+    }
+}
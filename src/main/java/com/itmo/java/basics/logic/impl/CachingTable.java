@@ -2,20 +2,44 @@ package com.itmo.java.basics.logic.impl;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.ScanBatch;
 import com.itmo.java.basics.logic.Table;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Декоратор для таблицы. Кэширует данные
+ * <p>
+ * Команды выполняются параллельно, поэтому изменения одного ключа упорядочены блокировкой ключа: запись в таблицу
+ * и в кэш, а также чтение из таблицы при промахе кэша происходят под одной блокировкой, и кэш не расходится
+ * с таблицей. Блокировки берутся по хэшу ключа из {@link #KEY_LOCKS} штук, ключи с разными блокировками
+ * (и чтения, попавшие в кэш) друг друга не ждут
  */
 public class CachingTable implements Table {
+    private static final int KEY_LOCKS = 64;
+
     private final Table table;
     private final DatabaseCache cache;
+    private final Lock[] keyLocks = new Lock[KEY_LOCKS];
 
     public CachingTable(Table table) {
         this.table = table;
         this.cache = new DatabaseCacheImpl();
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Таблица, данные которой кэшируются
+     */
+    Table getTable() {
+        return table;
     }
 
     @Override
@@ -24,27 +48,97 @@ public class CachingTable implements Table {
     }
 
     @Override
-    public void write(String objectKey, byte[] objectValue) throws DatabaseException {
-        cache.set(objectKey, objectValue);
-        table.write(objectKey, objectValue);
+    public void write(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        Lock lock = lockOf(objectKey);
+        lock.lock();
+        try {
+            writeLocked(objectKey, objectValue);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public Optional<byte[]> read(String objectKey) throws DatabaseException {
+    public Optional<byte[]> read(DatabaseKey objectKey) throws DatabaseException {
         byte[] value = cache.get(objectKey);
-        if (value == null) {
-            // Cache miss
-            Optional<byte[]> objectValue = table.read(objectKey);
-            objectValue.ifPresent(bytes -> cache.set(objectKey, bytes));
-            return objectValue;
+        if (value != null) {
+            return Optional.of(value);
         }
 
-        return Optional.of(value);
+        // Cache miss
+        Lock lock = lockOf(objectKey);
+        lock.lock();
+        try {
+            return readLocked(objectKey);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public void delete(String objectKey) throws DatabaseException {
+    public void delete(DatabaseKey objectKey) throws DatabaseException {
+        write(objectKey, null);
+    }
+
+    @Override
+    public Optional<byte[]> getAndWrite(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        Lock lock = lockOf(objectKey);
+        lock.lock();
+        try {
+            Optional<byte[]> previousValue = readLocked(objectKey);
+            if (objectValue != null || previousValue.isPresent()) {
+                writeLocked(objectKey, objectValue);
+            }
+            return previousValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Диапазон читается из таблицы в обход кэша
+     */
+    @Override
+    public List<Map.Entry<DatabaseKey, byte[]>> scanRange(DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException {
+        return table.scanRange(fromKey, toKey, limit);
+    }
+
+    @Override
+    public ScanBatch scan(String cursor, int count) throws DatabaseException {
+        return table.scan(cursor, count);
+    }
+
+    @Override
+    public void close() throws DatabaseException {
+        table.close();
+    }
+
+    private Optional<byte[]> readLocked(DatabaseKey objectKey) throws DatabaseException {
+        // Another thread may have filled the cache while this one waited for the lock
+        byte[] value = cache.get(objectKey);
+        if (value != null) {
+            return Optional.of(value);
+        }
+
+        Optional<byte[]> objectValue = table.read(objectKey);
+        objectValue.ifPresent(bytes -> cache.set(objectKey, bytes));
+        return objectValue;
+    }
+
+    /**
+     * Пока значение пишется в таблицу, в кэше его нет: если запись не удалась, следующее чтение пойдет в таблицу
+     */
+    private void writeLocked(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
         cache.delete(objectKey);
-        table.delete(objectKey);
+        if (objectValue == null) {
+            table.delete(objectKey);
+        } else {
+            table.write(objectKey, objectValue);
+            cache.set(objectKey, objectValue);
+        }
+    }
+
+    private Lock lockOf(DatabaseKey objectKey) {
+        return keyLocks[objectKey.hashCode() & (KEY_LOCKS - 1)];
     }
 }
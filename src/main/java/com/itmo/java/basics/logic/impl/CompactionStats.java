@@ -0,0 +1,145 @@
+package com.itmo.java.basics.logic.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики фонового уплотнения и сжатия сегментов и уплотнения blob-файлов, общие для всех таблиц
+ */
+public class CompactionStats {
+    private static final CompactionStats INSTANCE = new CompactionStats();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong segmentsCompacted = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong recordsDropped = new AtomicLong();
+    private final AtomicLong tombstonesDropped = new AtomicLong();
+    private final AtomicLong compactionNanos = new AtomicLong();
+    private final AtomicLong segmentsCompressed = new AtomicLong();
+    private final AtomicLong bytesBeforeCompression = new AtomicLong();
+    private final AtomicLong bytesAfterCompression = new AtomicLong();
+    private final AtomicLong blobFilesCollected = new AtomicLong();
+    private final AtomicLong blobBytesRead = new AtomicLong();
+    private final AtomicLong blobBytesMoved = new AtomicLong();
+
+    /**
+     * Счетчики, разделяемые всеми таблицами
+     */
+    public static CompactionStats getInstance() {
+        return INSTANCE;
+    }
+
+    void onRunCompleted(int segments, long read, long written, long dropped, long droppedTombstones, long nanos) {
+        runs.incrementAndGet();
+        segmentsCompacted.addAndGet(segments);
+        bytesRead.addAndGet(read);
+        bytesWritten.addAndGet(written);
+        recordsDropped.addAndGet(dropped);
+        tombstonesDropped.addAndGet(droppedTombstones);
+        compactionNanos.addAndGet(nanos);
+    }
+
+    void onSegmentCompressed(long before, long after) {
+        segmentsCompressed.incrementAndGet();
+        bytesBeforeCompression.addAndGet(before);
+        bytesAfterCompression.addAndGet(after);
+    }
+
+    void onBlobFileCollected(long fileBytes, long movedBytes) {
+        blobFilesCollected.incrementAndGet();
+        blobBytesRead.addAndGet(fileBytes);
+        blobBytesMoved.addAndGet(movedBytes);
+    }
+
+    /**
+     * Количество выполненных уплотнений (каждое объединяет несколько идущих подряд сегментов)
+     */
+    public long getRuns() {
+        return runs.get();
+    }
+
+    public long getSegmentsCompacted() {
+        return segmentsCompacted.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Сколько байт на диске освобождено уплотнением
+     */
+    public long getBytesReclaimed() {
+        return bytesRead.get() - bytesWritten.get();
+    }
+
+    public long getRecordsDropped() {
+        return recordsDropped.get();
+    }
+
+    public long getTombstonesDropped() {
+        return tombstonesDropped.get();
+    }
+
+    public long getCompactionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(compactionNanos.get());
+    }
+
+    /**
+     * Скорость чтения уплотняемых сегментов в байтах в секунду
+     */
+    public double getThroughput() {
+        long nanos = compactionNanos.get();
+        return nanos == 0 ? 0 : bytesRead.get() * 1e9 / nanos;
+    }
+
+    public long getSegmentsCompressed() {
+        return segmentsCompressed.get();
+    }
+
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression.get();
+    }
+
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression.get();
+    }
+
+    /**
+     * Во сколько раз сжатые сегменты меньше исходных
+     */
+    public double getCompressionRatio() {
+        long after = bytesAfterCompression.get();
+        return after == 0 ? 0 : (double) bytesBeforeCompression.get() / after;
+    }
+
+    public long getBlobFilesCollected() {
+        return blobFilesCollected.get();
+    }
+
+    /**
+     * Сколько байт на диске освобождено удалением blob-файлов (за вычетом перенесенных значений)
+     */
+    public long getBlobBytesReclaimed() {
+        return blobBytesRead.get() - blobBytesMoved.get();
+    }
+
+    public long getBlobBytesMoved() {
+        return blobBytesMoved.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CompactionStats{runs=%d, segments=%d, read=%d, written=%d, reclaimed=%d, dropped=%d, tombstonesDropped=%d, time=%dms, "
+                        + "compressed=%d, compressedFrom=%d, compressedTo=%d, blobFiles=%d, blobReclaimed=%d, blobMoved=%d}",
+                getRuns(), getSegmentsCompacted(), getBytesRead(), getBytesWritten(), getBytesReclaimed(),
+                getRecordsDropped(), getTombstonesDropped(), getCompactionMillis(),
+                getSegmentsCompressed(), getBytesBeforeCompression(), getBytesAfterCompression(),
+                getBlobFilesCollected(), getBlobBytesReclaimed(), getBlobBytesMoved());
+    }
+}
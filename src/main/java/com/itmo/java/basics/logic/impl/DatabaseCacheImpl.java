@@ -1,35 +1,62 @@
 package com.itmo.java.basics.logic.impl;
 
 import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.DatabaseKey;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * LRU-кэш значений таблицы, разбитый на независимые части по хэшу ключа. Каждая часть - отдельный
+ * {@link LRUCache} под своим монитором, поэтому потоки, которые обращаются к разным частям, друг друга не ждут,
+ * а порядок вытеснения соблюдается внутри части
+ */
 public class DatabaseCacheImpl implements DatabaseCache {
     private static final int CAPACITY = 5_000;
-    private final LRUCache<String, byte[]> cache;
+    private static final int MAX_PARTS = 16;
+
+    private final LRUCache<DatabaseKey, byte[]>[] parts;
 
     public DatabaseCacheImpl() {
-        this.cache = new LRUCache<>(CAPACITY);
+        this(CAPACITY);
     }
-    
+
+    @SuppressWarnings("unchecked")
     public DatabaseCacheImpl(int initialCapacity) {
-        this.cache = new LRUCache<>(initialCapacity);
+        // Power of two, so that a part is picked by a mask
+        int partCount = Math.max(1, Integer.highestOneBit(Math.min(MAX_PARTS, initialCapacity)));
+        this.parts = new LRUCache[partCount];
+        for (int i = 0; i < partCount; i++) {
+            parts[i] = new LRUCache<>(Math.max(1, initialCapacity / partCount));
+        }
     }
 
     @Override
-    public byte[] get(String key) {
-        return cache.get(key);
+    public byte[] get(DatabaseKey key) {
+        LRUCache<DatabaseKey, byte[]> part = partOf(key);
+        synchronized (part) {
+            return part.get(key);
+        }
     }
 
     @Override
-    public void set(String key, byte[] value) {
-        cache.put(key, value);
+    public void set(DatabaseKey key, byte[] value) {
+        LRUCache<DatabaseKey, byte[]> part = partOf(key);
+        synchronized (part) {
+            part.put(key, value);
+        }
     }
 
     @Override
-    public void delete(String key) {
-        cache.remove(key);
+    public void delete(DatabaseKey key) {
+        LRUCache<DatabaseKey, byte[]> part = partOf(key);
+        synchronized (part) {
+            part.remove(key);
+        }
+    }
+
+    private LRUCache<DatabaseKey, byte[]> partOf(DatabaseKey key) {
+        return parts[key.hashCode() & (parts.length - 1)];
     }
 
     public static class LRUCache<K, V> extends LinkedHashMap<K, V> {
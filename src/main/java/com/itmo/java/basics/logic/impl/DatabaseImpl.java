@@ -1,9 +1,13 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableEngine;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.DatabaseInitializationContext;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.ScanBatch;
 import com.itmo.java.basics.logic.Table;
 
 import java.io.File;
@@ -11,23 +15,26 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DatabaseImpl implements Database {
     private final String dbName;
     private final Path databaseRootPath;
     private final Map<String, Table> tables;
+    private final DatabaseConfig config;
 
-    private DatabaseImpl(String dbName, Path databaseRoot) {
-        this(dbName, databaseRoot, new HashMap<>());
+    private DatabaseImpl(String dbName, Path databaseRoot, DatabaseConfig config) {
+        this(dbName, databaseRoot, new ConcurrentHashMap<>(), config);
     }
 
-    private DatabaseImpl(String dbName, Path databaseRoot, Map<String, Table> tables) {
+    private DatabaseImpl(String dbName, Path databaseRoot, Map<String, Table> tables, DatabaseConfig config) {
         this.dbName = dbName;
         this.databaseRootPath = databaseRoot;
-        this.tables = tables;
+        this.tables = new ConcurrentHashMap<>(tables);
+        this.config = config;
     }
 
     /**
@@ -35,6 +42,14 @@ public class DatabaseImpl implements Database {
      *                     поэтому при создании БД необходимо создать директорию внутри databaseRoot.
      */
     public static Database create(String dbName, Path databaseRoot) throws DatabaseException {
+        return create(dbName, databaseRoot, new DatabaseConfig(databaseRoot.toString()));
+    }
+
+    /**
+     * @param databaseRoot путь к директории, которая может содержать несколько БД
+     * @param config       настройки хранилища для таблиц и сегментов базы данных
+     */
+    public static Database create(String dbName, Path databaseRoot, DatabaseConfig config) throws DatabaseException {
         if (new File(databaseRoot.toString(), dbName).exists()) {
             throw new DatabaseException("Database already exists");
         }
@@ -45,11 +60,15 @@ public class DatabaseImpl implements Database {
             throw new DatabaseException("Cannot create directory for a database", e);
         }
 
-        return new DatabaseImpl(dbName, Paths.get(databaseRoot.toString(), dbName));
+        return new DatabaseImpl(dbName, Paths.get(databaseRoot.toString(), dbName), config);
     }
 
     public static Database initializeFromContext(DatabaseInitializationContext context) {
-        return new DatabaseImpl(context.getDbName(), context.getDatabasePath(), context.getTables());
+        return initializeFromContext(context, new DatabaseConfig(context.getDatabasePath().getParent().toString()));
+    }
+
+    public static Database initializeFromContext(DatabaseInitializationContext context, DatabaseConfig config) {
+        return new DatabaseImpl(context.getDbName(), context.getDatabasePath(), context.getTables(), config);
     }
 
     @Override
@@ -57,40 +76,89 @@ public class DatabaseImpl implements Database {
         return this.dbName;
     }
 
+    /**
+     * Создает таблицу с движком по умолчанию ({@link DatabaseConfig#getTableEngine()})
+     */
     @Override
     public void createTableIfNotExists(String tableName) throws DatabaseException {
+        createTableIfNotExists(tableName, config.getTableEngine());
+    }
+
+    /**
+     * Таблицы создаются по одной, чтобы две одновременные команды не создали одну и ту же таблицу
+     */
+    @Override
+    public void createTableIfNotExists(String tableName, TableEngine engine) throws DatabaseException {
+        createTableIfNotExists(tableName, engine, 1);
+    }
+
+    @Override
+    public synchronized void createTableIfNotExists(String tableName, TableEngine engine, int partitions) throws DatabaseException {
         if (tables.containsKey(tableName)) {
             throw new DatabaseException("Table already exists");
         }
+        if (partitions != 1 && engine != TableEngine.LOG) {
+            throw new DatabaseException(String.format("Table %s cannot be partitioned, only %s tables can", tableName, TableEngine.LOG));
+        }
 
-        tables.put(tableName, TableImpl.create(tableName, databaseRootPath, new TableIndex()));
+        Table table;
+        if (engine == TableEngine.LSM) {
+            table = LsmTable.create(tableName, databaseRootPath, config);
+        } else if (partitions != 1) {
+            table = PartitionedTable.create(tableName, databaseRootPath, partitions, config);
+        } else {
+            table = TableImpl.create(tableName, databaseRootPath, TableIndex.create(config.getKeyStorage(tableName)), config);
+        }
+        tables.put(tableName, table);
     }
 
     @Override
-    public void write(String tableName, String objectKey, byte[] objectValue) throws DatabaseException {
-        checkIfTableExists(tableName);
+    public void write(String tableName, DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        Table table = getTable(tableName);
         if (objectValue == null) {
-            tables.get(tableName).delete(objectKey);
+            table.delete(objectKey);
         } else {
-            tables.get(tableName).write(objectKey, objectValue);
+            table.write(objectKey, objectValue);
         }
     }
 
     @Override
-    public Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException {
-        checkIfTableExists(tableName);
-        return tables.get(tableName).read(objectKey);
+    public Optional<byte[]> read(String tableName, DatabaseKey objectKey) throws DatabaseException {
+        return getTable(tableName).read(objectKey);
+    }
+
+    @Override
+    public void delete(String tableName, DatabaseKey objectKey) throws DatabaseException {
+        getTable(tableName).delete(objectKey);
+    }
+
+    @Override
+    public Optional<byte[]> getAndWrite(String tableName, DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        return getTable(tableName).getAndWrite(objectKey, objectValue);
+    }
+
+    @Override
+    public List<Map.Entry<DatabaseKey, byte[]>> scanRange(String tableName, DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException {
+        return getTable(tableName).scanRange(fromKey, toKey, limit);
     }
 
     @Override
-    public void delete(String tableName, String objectKey) throws DatabaseException {
-        checkIfTableExists(tableName);
-        tables.get(tableName).delete(objectKey);
+    public ScanBatch scan(String tableName, String cursor, int count) throws DatabaseException {
+        return getTable(tableName).scan(cursor, count);
+    }
+
+    @Override
+    public void close() throws DatabaseException {
+        for (Table table : tables.values()) {
+            table.close();
+        }
     }
 
-    private void checkIfTableExists(String tableName) throws DatabaseException {
-        if (!tables.containsKey(tableName)) {
+    private Table getTable(String tableName) throws DatabaseException {
+        Table table = tables.get(tableName);
+        if (table == null) {
             throw new DatabaseException("Table with name " + tableName + " was not found");
         }
+        return table;
     }
 }
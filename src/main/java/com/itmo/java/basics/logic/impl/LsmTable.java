@@ -0,0 +1,836 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.config.TableEngine;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.ScanBatch;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Таблица {@link TableEngine#LSM}: записи накапливаются в памяти ({@link Memtable}) и сбрасываются
+ * в неизменяемые отсортированные сегменты ({@link SortedSegment}), которые в фоне сливаются по уровням.
+ * <p>
+ * Заполненная (больше {@link DatabaseConfig#getMemtableSize()}) таблица в памяти заменяется новой и в фоне
+ * записывается в сегмент уровня 0. Сегменты уровня 0 могут пересекаться по ключам и просматриваются от новых
+ * к старым. Когда их набирается {@link #L0_COMPACTION_TRIGGER}, они сливаются с пересекающимися сегментами
+ * уровня 1. На уровнях 1 и глубже сегменты не пересекаются, а объем уровня ограничен: уровень 1 -
+ * {@link #L1_SIZE_MEMTABLES} таблиц в памяти, каждый следующий - в {@link #LEVEL_SIZE_RATIO} раз больше.
+ * Переполненный уровень по очереди отдает по одному сегменту в слияние со следующим уровнем. Запись об удалении
+ * отбрасывается при слиянии, когда на более глубоких уровнях нет сегмента, который может содержать этот ключ.
+ * <p>
+ * Набор сегментов по уровням хранится в файле {@link #MANIFEST_NAME}, который атомарно подменяется при каждом
+ * изменении. Файлы, которых нет в манифесте (недописанные при сбое), удаляются при открытии таблицы,
+ * а журналы несброшенных таблиц в памяти проигрываются и сразу сбрасываются в сегмент.
+ * <p>
+ * Слияние запускается после каждого сброса таблицы в памяти, независимо от
+ * {@link DatabaseConfig#getCompactionIntervalMillis()}. Значения хранятся в сегментах целиком,
+ * blob-файлы не используются
+ */
+public class LsmTable implements Table {
+    static final String MANIFEST_NAME = "lsm.manifest";
+    private static final String SEGMENT_PREFIX = "sst_";
+    private static final String WAL_PREFIX = "wal_";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int L0_COMPACTION_TRIGGER = 4;
+    private static final int L1_SIZE_MEMTABLES = 4;
+    private static final int LEVEL_SIZE_RATIO = 10;
+    private static final int MAX_FLUSHING_MEMTABLES = 2;
+    private static final long FLUSH_RETRY_MILLIS = 1000;
+
+    /**
+     * Общий для всех LSM-таблиц поток сброса таблиц в памяти и слияния сегментов
+     */
+    private static final ScheduledExecutorService MAINTENANCE_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsm-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String tableName;
+    private final Path tableRootPath;
+    private final DatabaseConfig config;
+    private final AppendPipeline appendPipeline;
+
+    /**
+     * Чтение держит блокировку на чтение, подмена {@link #state} - на запись
+     */
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private volatile State state;
+
+    /**
+     * Сброс и слияние изменяют уровни по очереди
+     */
+    private final Lock levelsLock = new ReentrantLock();
+    private final Object flushMonitor = new Object();
+    private final Map<Integer, DatabaseKey> compactionPointers = new HashMap<>();
+    private long nextFileNumber;
+    private volatile boolean closed;
+
+    private LsmTable(String tableName, Path tableRootPath, List<List<SortedSegment>> levels, long nextFileNumber,
+                     DatabaseConfig config) throws IOException {
+        this.tableName = tableName;
+        this.tableRootPath = tableRootPath;
+        this.config = config;
+        this.nextFileNumber = nextFileNumber;
+        this.state = new State(Memtable.create(filePath(WAL_PREFIX)), List.of(), levels);
+        this.appendPipeline = new AppendPipeline(new AppendPipeline.Target() {
+            @Override
+            public void append(List<WritableDatabaseRecord> records) throws DatabaseException {
+                appendToMemtable(records);
+            }
+
+            @Override
+            public void sync() throws DatabaseException {
+                syncMemtable();
+            }
+        }, config.getDurabilityMode(), config.getSyncIntervalMillis());
+    }
+
+    /**
+     * Создает директорию и пустой манифест новой таблицы
+     *
+     * @throws DatabaseException если таблица уже существует или файлы не удалось создать
+     */
+    public static Table create(String tableName, Path pathToDatabaseRoot, DatabaseConfig config) throws DatabaseException {
+        Path tableRootPath = Paths.get(pathToDatabaseRoot.toString(), tableName);
+        if (tableRootPath.toFile().exists()) {
+            throw new DatabaseException("Table already exists");
+        }
+
+        try {
+            Files.createDirectory(tableRootPath);
+            saveManifest(tableRootPath, List.of(), config);
+            return new CachingTable(new LsmTable(tableName, tableRootPath, new ArrayList<>(), 1, config));
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot create files for a table", e);
+        }
+    }
+
+    /**
+     * {@code true} - если в директории лежит таблица {@link TableEngine#LSM}
+     */
+    public static boolean isLsmTable(Path tableRootPath) {
+        return Files.isRegularFile(tableRootPath.resolve(MANIFEST_NAME));
+    }
+
+    /**
+     * Открывает существующую таблицу: читает манифест, удаляет недописанные файлы и сбрасывает в сегмент
+     * записи из журналов
+     *
+     * @throws DatabaseException если файлы таблицы не удалось прочитать
+     */
+    public static Table open(String tableName, Path tableRootPath, DatabaseConfig config) throws DatabaseException {
+        try {
+            List<List<SortedSegment>> levels = new ArrayList<>();
+            Set<String> referenced = new HashSet<>();
+            for (String line : Files.readAllLines(tableRootPath.resolve(MANIFEST_NAME), StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                int level = Integer.parseInt(parts[0]);
+                while (levels.size() <= level) {
+                    levels.add(new ArrayList<>());
+                }
+                levels.get(level).add(SortedSegment.open(tableRootPath.resolve(parts[1]), config));
+                referenced.add(parts[1]);
+            }
+
+            long maxFileNumber = 0;
+            List<Path> walPaths = new ArrayList<>();
+            File[] files = tableRootPath.toFile().listFiles(File::isFile);
+            if (files == null) {
+                throw new DatabaseException("Cannot get files from directory " + tableRootPath);
+            }
+            Arrays.sort(files, Comparator.comparingLong(file -> fileNumber(file.getName())));
+            for (File file : files) {
+                String name = file.getName();
+                maxFileNumber = Math.max(maxFileNumber, fileNumber(name));
+                if (name.startsWith(WAL_PREFIX) && !name.endsWith(TEMPORARY_EXTENSION)) {
+                    walPaths.add(file.toPath());
+                } else if (name.startsWith(SEGMENT_PREFIX) && !referenced.contains(stripIndexExtension(name))
+                        || name.endsWith(TEMPORARY_EXTENSION)) {
+                    // Left by a flush or a merge that did not reach the manifest
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+
+            LsmTable table = new LsmTable(tableName, tableRootPath, levels, maxFileNumber + 1, config);
+            table.recover(walPaths);
+            return new CachingTable(table);
+        } catch (IOException | RuntimeException e) {
+            throw new DatabaseException("Cannot open LSM table " + tableName, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return tableName;
+    }
+
+    @Override
+    public void write(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        if (objectValue == null) {
+            delete(objectKey);
+        } else {
+            appendPipeline.append(new SetDatabaseRecord(objectKey, objectValue));
+        }
+    }
+
+    @Override
+    public Optional<byte[]> read(DatabaseKey objectKey) throws DatabaseException {
+        stateLock.readLock().lock();
+        try {
+            State current = state;
+            byte[] value = current.memtable.get(objectKey);
+            for (int i = 0; value == null && i < current.flushing.size(); i++) {
+                value = current.flushing.get(i).get(objectKey);
+            }
+            if (value != null) {
+                return value == Memtable.TOMBSTONE ? Optional.empty() : Optional.of(value);
+            }
+
+            for (int level = 0; level < current.levels.size(); level++) {
+                List<SortedSegment> segments = current.levels.get(level);
+                if (level == 0) {
+                    // Level 0 segments overlap, the newest one goes first
+                    for (SortedSegment segment : segments) {
+                        Optional<DatabaseRecord> record = segment.find(objectKey);
+                        if (record.isPresent()) {
+                            return valueOf(record.get());
+                        }
+                    }
+                    continue;
+                }
+
+                SortedSegment segment = findSegment(segments, objectKey);
+                if (segment != null) {
+                    Optional<DatabaseRecord> record = segment.find(objectKey);
+                    if (record.isPresent()) {
+                        return valueOf(record.get());
+                    }
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot read key from sorted segment", e);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(DatabaseKey objectKey) throws DatabaseException {
+        appendPipeline.append(new RemoveDatabaseRecord(objectKey));
+    }
+
+    /**
+     * Сливает диапазон из таблиц в памяти и сегментов, которые его пересекают. На уровнях 1 и глубже
+     * сегменты открываются по очереди, по мере чтения. Сегменты не удаляются, пока читается страница
+     */
+    @Override
+    public List<Map.Entry<DatabaseKey, byte[]>> scanRange(DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException {
+        List<Map.Entry<DatabaseKey, byte[]>> result = new ArrayList<>();
+        if (limit <= 0 || toKey != null && fromKey.compareTo(toKey) >= 0) {
+            return result;
+        }
+
+        stateLock.readLock().lock();
+        try {
+            State current = state;
+            List<MergeCursor> cursors = new ArrayList<>();
+            cursors.add(MergeCursor.of(current.memtable, fromKey, toKey, 0));
+            for (Memtable memtable : current.flushing) {
+                cursors.add(MergeCursor.of(memtable, fromKey, toKey, cursors.size()));
+            }
+            for (int level = 0; level < current.levels.size(); level++) {
+                List<SortedSegment> overlapping = new ArrayList<>();
+                for (SortedSegment segment : current.levels.get(level)) {
+                    if (segment.getRecordCount() > 0 && segment.getLastKey().compareTo(fromKey) >= 0
+                            && (toKey == null || segment.getFirstKey().compareTo(toKey) < 0)) {
+                        overlapping.add(segment);
+                    }
+                }
+                if (level == 0) {
+                    // Level 0 segments overlap, each is a separate source
+                    for (SortedSegment segment : overlapping) {
+                        cursors.add(MergeCursor.of(List.of(segment), fromKey, toKey, cursors.size()));
+                    }
+                } else if (!overlapping.isEmpty()) {
+                    cursors.add(MergeCursor.of(overlapping, fromKey, toKey, cursors.size()));
+                }
+            }
+
+            try (MergeCursor.Merger merger = new MergeCursor.Merger(cursors)) {
+                Map.Entry<DatabaseKey, byte[]> entry;
+                while (result.size() < limit && (entry = merger.next()) != null) {
+                    if (entry.getValue() != Memtable.TOMBSTONE) {
+                        result.add(entry);
+                    }
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot scan sorted segments of table " + tableName, e);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обход идет по возрастанию ключа страницами {@link #scanRange}. Курсор - ключ, с которого начинается
+     * следующая страница, в шестнадцатеричной записи
+     */
+    @Override
+    public ScanBatch scan(String cursor, int count) throws DatabaseException {
+        DatabaseKey fromKey = DatabaseKey.wrap(ScanBatch.START_CURSOR.equals(cursor) ? new byte[0] : parseCursor(cursor));
+        int limit = Math.max(count, 1);
+        List<Map.Entry<DatabaseKey, byte[]>> entries = scanRange(fromKey, null, limit);
+        if (entries.size() < limit) {
+            return new ScanBatch(ScanBatch.START_CURSOR, entries);
+        }
+
+        // The smallest key after the last one of the page
+        byte[] lastKey = entries.get(entries.size() - 1).getKey().getBytes();
+        byte[] nextKey = Arrays.copyOf(lastKey, lastKey.length + 1);
+        StringBuilder nextCursor = new StringBuilder(nextKey.length * 2);
+        for (byte b : nextKey) {
+            nextCursor.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new ScanBatch(nextCursor.toString(), entries);
+    }
+
+    /**
+     * Останавливает фоновую работу и закрывает журнал. Несброшенные таблицы в памяти остаются в журналах
+     * и сбрасываются при следующем открытии таблицы
+     */
+    @Override
+    public void close() throws DatabaseException {
+        closed = true;
+        appendPipeline.close();
+
+        // Waits for a running flush or merge
+        levelsLock.lock();
+        try {
+            state.memtable.seal(config.getDurabilityMode() != DurabilityMode.NONE);
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot close write-ahead log of table " + tableName, e);
+        } finally {
+            levelsLock.unlock();
+        }
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Выполняет слияния, которые нужны уровням сейчас, не дожидаясь фоновых
+     *
+     * @return количество выполненных слияний
+     * @throws DatabaseException если не удалось прочитать или записать сегменты
+     */
+    public int compact() throws DatabaseException {
+        levelsLock.lock();
+        try {
+            int runs = 0;
+            while (!closed && compactOnce()) {
+                runs++;
+            }
+            return runs;
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot compact sorted segments of table " + tableName, e);
+        } finally {
+            levelsLock.unlock();
+        }
+    }
+
+    /**
+     * Количество сегментов на каждом уровне, начиная с 0
+     */
+    public List<Integer> getLevelSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<SortedSegment> level : state.levels) {
+            sizes.add(level.size());
+        }
+        return sizes;
+    }
+
+    /**
+     * Записывает пачку из {@link AppendPipeline} в таблицу в памяти, заменяя заполненную таблицу новой.
+     * Вызывается только потоком, держащим блокировку дозаписи
+     */
+    private void appendToMemtable(List<WritableDatabaseRecord> records) throws DatabaseException {
+        try {
+            if (state.memtable.sizeInBytes() >= config.getMemtableSize()) {
+                rotateMemtable();
+            }
+            state.memtable.append(records);
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot write to write-ahead log of table " + tableName, e);
+        }
+    }
+
+    private void syncMemtable() throws DatabaseException {
+        try {
+            state.memtable.sync();
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot sync write-ahead log of table " + tableName, e);
+        }
+    }
+
+    /**
+     * Закрывает журнал заполненной таблицы в памяти и начинает новую. Пока в очереди на сброс
+     * {@link #MAX_FLUSHING_MEMTABLES} таблиц, запись ждет, чтобы память не росла быстрее, чем пишется диск
+     */
+    private void rotateMemtable() throws IOException, DatabaseException {
+        synchronized (flushMonitor) {
+            while (state.flushing.size() >= MAX_FLUSHING_MEMTABLES) {
+                if (closed) {
+                    throw new DatabaseException("Table " + tableName + " is closed");
+                }
+                try {
+                    flushMonitor.wait(FLUSH_RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DatabaseException("Interrupted while waiting for memtable flush", e);
+                }
+            }
+        }
+
+        Memtable sealed = state.memtable;
+        sealed.seal(config.getDurabilityMode() != DurabilityMode.NONE);
+        Memtable memtable = Memtable.create(filePath(WAL_PREFIX));
+        updateState(current -> {
+            List<Memtable> flushing = new ArrayList<>(current.flushing.size() + 1);
+            flushing.add(sealed);
+            flushing.addAll(current.flushing);
+            return new State(memtable, flushing, current.levels);
+        });
+        MAINTENANCE_SCHEDULER.execute(this::flushQuietly);
+    }
+
+    private void flushQuietly() {
+        if (closed) {
+            return;
+        }
+        levelsLock.lock();
+        try {
+            while (!closed && !state.flushing.isEmpty()) {
+                flushOldest();
+            }
+            while (!closed && compactOnce()) {
+                // Merge until every level fits
+            }
+        } catch (IOException ignore) {
+            // Memtable stays in memory and in its log, the flush is retried later
+            MAINTENANCE_SCHEDULER.schedule(this::flushQuietly, FLUSH_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            levelsLock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает самую старую заполненную таблицу в памяти в новый сегмент уровня 0. Вызывается под levelsLock
+     */
+    private void flushOldest() throws IOException {
+        List<Memtable> flushing = state.flushing;
+        Memtable memtable = flushing.get(flushing.size() - 1);
+        SortedSegment segment = writeMemtable(memtable);
+
+        List<List<SortedSegment>> levels = copyLevels(state.levels);
+        if (segment != null) {
+            levels.get(0).add(0, segment);
+        }
+        saveManifest(tableRootPath, levels, config);
+        updateState(current -> {
+            List<Memtable> remaining = new ArrayList<>(current.flushing);
+            remaining.remove(memtable);
+            return new State(current.memtable, remaining, levels);
+        });
+        Files.deleteIfExists(memtable.getWalPath());
+
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Проигрывает журналы, оставшиеся с прошлого запуска, и сбрасывает их записи в сегмент уровня 0
+     */
+    private void recover(List<Path> walPaths) throws IOException {
+        levelsLock.lock();
+        try {
+            if (!walPaths.isEmpty()) {
+                SortedSegment segment = writeMemtable(Memtable.replay(walPaths));
+                if (segment != null) {
+                    List<List<SortedSegment>> levels = copyLevels(state.levels);
+                    levels.get(0).add(0, segment);
+                    saveManifest(tableRootPath, levels, config);
+                    updateState(current -> new State(current.memtable, current.flushing, levels));
+                }
+                for (Path walPath : walPaths) {
+                    Files.deleteIfExists(walPath);
+                }
+            }
+        } finally {
+            levelsLock.unlock();
+        }
+        MAINTENANCE_SCHEDULER.execute(this::flushQuietly);
+    }
+
+    /**
+     * @return новый сегмент или {@code null}, если таблица в памяти пуста
+     */
+    private SortedSegment writeMemtable(Memtable memtable) throws IOException {
+        if (memtable.isEmpty()) {
+            return null;
+        }
+
+        SortedSegment.Writer writer = SortedSegment.create(filePath(SEGMENT_PREFIX), memtable.size(), config);
+        try {
+            for (Map.Entry<DatabaseKey, byte[]> entry : memtable.getEntries().entrySet()) {
+                writer.add(Memtable.toRecord(entry));
+            }
+            return writer.finish(config.getDurabilityMode() != DurabilityMode.NONE);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Выбирает уровень, сильнее всего превысивший свой размер, и выполняет одно слияние. Вызывается под levelsLock
+     *
+     * @return {@code false} - если все уровни в пределах своего размера
+     */
+    private boolean compactOnce() throws IOException {
+        List<List<SortedSegment>> levels = state.levels;
+        int chosenLevel = -1;
+        double maxScore = 1;
+        for (int level = 0; level < levels.size(); level++) {
+            double score = level == 0
+                    ? (double) levels.get(0).size() / L0_COMPACTION_TRIGGER
+                    : (double) levelBytes(levels.get(level)) / maxLevelBytes(level);
+            if (score >= maxScore) {
+                maxScore = score;
+                chosenLevel = level;
+            }
+        }
+        if (chosenLevel < 0) {
+            return false;
+        }
+
+        List<SortedSegment> inputs = chosenLevel == 0
+                ? new ArrayList<>(levels.get(0))
+                : List.of(pickSegment(chosenLevel, levels.get(chosenLevel)));
+        DatabaseKey from = inputs.stream().map(SortedSegment::getFirstKey).min(Comparator.naturalOrder()).orElseThrow();
+        DatabaseKey to = inputs.stream().map(SortedSegment::getLastKey).max(Comparator.naturalOrder()).orElseThrow();
+        List<SortedSegment> overlapping = new ArrayList<>();
+        if (chosenLevel + 1 < levels.size()) {
+            for (SortedSegment segment : levels.get(chosenLevel + 1)) {
+                if (segment.overlaps(from, to)) {
+                    overlapping.add(segment);
+                }
+            }
+        }
+
+        List<List<SortedSegment>> updated = copyLevels(levels);
+        while (updated.size() <= chosenLevel + 1) {
+            updated.add(new ArrayList<>());
+        }
+        updated.get(chosenLevel).removeAll(inputs);
+        updated.get(chosenLevel + 1).removeAll(overlapping);
+        if (chosenLevel > 0 && overlapping.isEmpty()) {
+            // Nothing to merge with, the segment just moves down
+            updated.get(chosenLevel + 1).addAll(inputs);
+        } else {
+            List<SortedSegment> sources = new ArrayList<>(inputs);
+            sources.addAll(overlapping);
+            updated.get(chosenLevel + 1).addAll(merge(sources, chosenLevel + 1, updated));
+        }
+        updated.get(chosenLevel + 1).sort(Comparator.comparing(SortedSegment::getFirstKey));
+
+        saveManifest(tableRootPath, updated, config);
+        updateState(current -> new State(current.memtable, current.flushing, updated));
+        if (chosenLevel > 0 && overlapping.isEmpty()) {
+            return true;
+        }
+        for (SortedSegment segment : inputs) {
+            segment.delete();
+        }
+        for (SortedSegment segment : overlapping) {
+            segment.delete();
+        }
+        return true;
+    }
+
+    /**
+     * Сливает сегменты в новые сегменты уровня outputLevel размером около {@link DatabaseConfig#getMemtableSize()}.
+     * Из записей с одинаковым ключом остается запись из источника, идущего раньше в списке
+     *
+     * @param sources сегменты от новых к старым
+     * @param levels  уровни после слияния, без источников: по ним решается, можно ли отбросить запись об удалении
+     */
+    private List<SortedSegment> merge(List<SortedSegment> sources, int outputLevel, List<List<SortedSegment>> levels) throws IOException {
+        long startNanos = System.nanoTime();
+        long bytesRead = 0;
+        long recordCount = 0;
+        for (SortedSegment source : sources) {
+            bytesRead += source.getLength();
+            recordCount += source.getRecordCount();
+        }
+        long targetFileSize = config.getMemtableSize();
+        long expectedRecords = bytesRead == 0 ? recordCount : Math.min(recordCount, recordCount * targetFileSize / bytesRead + 1);
+
+        List<SortedSegment> outputs = new ArrayList<>();
+        List<MergeCursor> cursors = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            cursors.add(MergeCursor.of(List.of(sources.get(i)), null, null, i));
+        }
+
+        SortedSegment.Writer writer = null;
+        long bytesWritten = 0;
+        long dropped;
+        long droppedTombstones = 0;
+        try (MergeCursor.Merger merger = new MergeCursor.Merger(cursors)) {
+            Map.Entry<DatabaseKey, byte[]> entry;
+            while ((entry = merger.next()) != null) {
+                if (entry.getValue() == Memtable.TOMBSTONE && !mayExistBelow(levels, outputLevel, entry.getKey())) {
+                    droppedTombstones++;
+                    continue;
+                }
+
+                if (writer == null) {
+                    writer = SortedSegment.create(filePath(SEGMENT_PREFIX), expectedRecords, config);
+                }
+                writer.add(Memtable.toRecord(entry));
+                if (writer.getLength() >= targetFileSize) {
+                    SortedSegment output = writer.finish(config.getDurabilityMode() != DurabilityMode.NONE);
+                    writer = null;
+                    outputs.add(output);
+                    bytesWritten += output.getLength();
+                }
+            }
+
+            if (writer != null) {
+                SortedSegment output = writer.finish(config.getDurabilityMode() != DurabilityMode.NONE);
+                writer = null;
+                outputs.add(output);
+                bytesWritten += output.getLength();
+            }
+            dropped = merger.getShadowed();
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.abort();
+            }
+            for (SortedSegment output : outputs) {
+                output.delete();
+            }
+            throw e;
+        }
+
+        CompactionStats.getInstance().onRunCompleted(sources.size(), bytesRead, bytesWritten, dropped,
+                droppedTombstones, System.nanoTime() - startNanos);
+        return outputs;
+    }
+
+    /**
+     * {@code true} - если на уровнях глубже outputLevel есть сегмент, который может содержать ключ
+     */
+    private static boolean mayExistBelow(List<List<SortedSegment>> levels, int outputLevel, DatabaseKey key) {
+        for (int level = outputLevel + 1; level < levels.size(); level++) {
+            if (findSegment(levels.get(level), key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Следующий по кругу сегмент уровня: уровень отдает в слияние сегменты по порядку ключей
+     */
+    private SortedSegment pickSegment(int level, List<SortedSegment> segments) {
+        DatabaseKey pointer = compactionPointers.get(level);
+        SortedSegment chosen = segments.get(0);
+        if (pointer != null) {
+            for (SortedSegment segment : segments) {
+                if (segment.getFirstKey().compareTo(pointer) > 0) {
+                    chosen = segment;
+                    break;
+                }
+            }
+        }
+        compactionPointers.put(level, chosen.getLastKey());
+        return chosen;
+    }
+
+    private long maxLevelBytes(int level) {
+        long bytes = L1_SIZE_MEMTABLES * config.getMemtableSize();
+        for (int i = 1; i < level; i++) {
+            bytes *= LEVEL_SIZE_RATIO;
+        }
+        return bytes;
+    }
+
+    private byte[] parseCursor(String cursor) throws DatabaseException {
+        if (cursor.length() % 2 != 0) {
+            throw new DatabaseException(String.format("Cursor %s is not valid for table %s", cursor, tableName));
+        }
+
+        byte[] key = new byte[cursor.length() / 2];
+        for (int i = 0; i < key.length; i++) {
+            int high = Character.digit(cursor.charAt(2 * i), 16);
+            int low = Character.digit(cursor.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new DatabaseException(String.format("Cursor %s is not valid for table %s", cursor, tableName));
+            }
+            key[i] = (byte) (high << 4 | low);
+        }
+        return key;
+    }
+
+    private static long levelBytes(List<SortedSegment> segments) {
+        long bytes = 0;
+        for (SortedSegment segment : segments) {
+            bytes += segment.getLength();
+        }
+        return bytes;
+    }
+
+    /**
+     * Сегмент непересекающегося уровня, диапазон которого содержит ключ, или {@code null}
+     */
+    private static SortedSegment findSegment(List<SortedSegment> segments, DatabaseKey key) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            SortedSegment segment = segments.get(middle);
+            if (segment.getLastKey().compareTo(key) < 0) {
+                low = middle + 1;
+            } else if (segment.getFirstKey().compareTo(key) > 0) {
+                high = middle - 1;
+            } else {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static Optional<byte[]> valueOf(DatabaseRecord record) {
+        return record.isValuePresented() ? Optional.of(record.getValue()) : Optional.empty();
+    }
+
+    private void updateState(UnaryOperator<State> update) {
+        stateLock.writeLock().lock();
+        try {
+            state = update.apply(state);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    private static List<List<SortedSegment>> copyLevels(List<List<SortedSegment>> levels) {
+        List<List<SortedSegment>> copy = new ArrayList<>();
+        for (List<SortedSegment> level : levels) {
+            copy.add(new ArrayList<>(level));
+        }
+        if (copy.isEmpty()) {
+            copy.add(new ArrayList<>());
+        }
+        return copy;
+    }
+
+    private synchronized Path filePath(String prefix) {
+        return tableRootPath.resolve(prefix + nextFileNumber++);
+    }
+
+    private static long fileNumber(String name) {
+        String base = stripIndexExtension(name);
+        if (base.endsWith(TEMPORARY_EXTENSION)) {
+            base = base.substring(0, base.length() - TEMPORARY_EXTENSION.length());
+        }
+        String number = base.startsWith(SEGMENT_PREFIX) ? base.substring(SEGMENT_PREFIX.length())
+                : base.startsWith(WAL_PREFIX) ? base.substring(WAL_PREFIX.length()) : "";
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String stripIndexExtension(String name) {
+        int extension = name.indexOf('.');
+        return extension < 0 ? name : name.substring(0, extension);
+    }
+
+    /**
+     * Атомарно подменяет манифест: строки "уровень имя_сегмента", уровень 0 - от новых сегментов к старым
+     */
+    private static void saveManifest(Path tableRootPath, List<List<SortedSegment>> levels, DatabaseConfig config) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int level = 0; level < levels.size(); level++) {
+            for (SortedSegment segment : levels.get(level)) {
+                content.append(level).append(' ').append(segment.getName()).append('\n');
+            }
+        }
+
+        Path manifestPath = tableRootPath.resolve(MANIFEST_NAME);
+        Path temporaryPath = tableRootPath.resolve(MANIFEST_NAME + TEMPORARY_EXTENSION);
+        Files.write(temporaryPath, content.toString().getBytes(StandardCharsets.UTF_8));
+        if (config.getDurabilityMode() != DurabilityMode.NONE) {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        Files.move(temporaryPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Неизменяемый снимок таблицы: активная таблица в памяти, заполненные таблицы в очереди на сброс
+     * (от новых к старым) и сегменты по уровням
+     */
+    private static class State {
+        private final Memtable memtable;
+        private final List<Memtable> flushing;
+        private final List<List<SortedSegment>> levels;
+
+        private State(Memtable memtable, List<Memtable> flushing, List<List<SortedSegment>> levels) {
+            this.memtable = memtable;
+            this.flushing = Collections.unmodifiableList(flushing);
+            this.levels = levels.isEmpty() ? List.of(List.of()) : levels;
+        }
+    }
+}
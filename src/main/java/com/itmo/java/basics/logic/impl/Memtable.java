@@ -0,0 +1,177 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.TableEngine;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.DatabaseChannelWriter;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+import com.itmo.java.basics.logic.io.SegmentScanner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Последние записи таблицы {@link TableEngine#LSM} в памяти, упорядоченные по ключу.
+ * <p>
+ * Каждая пачка записей сначала дописывается в журнал (WAL) - файл в формате сегмента, - и только потом попадает
+ * в skip-list, поэтому после сбоя содержимое памяти восстанавливается чтением журнала. Удаление хранится как
+ * {@link #TOMBSTONE}, чтобы перекрыть значение в более старых сегментах.
+ * <p>
+ * Изменяется одним потоком (под блокировкой дозаписи таблицы) и читается параллельно с изменением
+ */
+class Memtable {
+    /**
+     * Значение удаленного ключа, сравнивается по ссылке
+     */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    /**
+     * Примерная стоимость узла skip-list и ключа в памяти сверх байт ключа и значения
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final NavigableMap<DatabaseKey, byte[]> entries = new ConcurrentSkipListMap<>();
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final Path walPath;
+    private final DatabaseChannelWriter walWriter;
+
+    private Memtable(Path walPath, DatabaseChannelWriter walWriter) {
+        this.walPath = walPath;
+        this.walWriter = walWriter;
+    }
+
+    /**
+     * Создает пустую таблицу в памяти с новым журналом
+     *
+     * @throws IOException если файл журнала не удалось создать
+     */
+    static Memtable create(Path walPath) throws IOException {
+        SegmentFormat.CURRENT.createFile(walPath);
+        return new Memtable(walPath, new DatabaseChannelWriter(walPath, SegmentFormat.CURRENT));
+    }
+
+    /**
+     * Восстанавливает записи из журналов, от старых к новым. Недописанный хвост журнала (сбой во время записи)
+     * отбрасывается. Восстановленная таблица доступна только на чтение
+     *
+     * @throws IOException если журнал не удалось прочитать
+     */
+    static Memtable replay(List<Path> walPaths) throws IOException {
+        Memtable memtable = new Memtable(null, null);
+        for (Path walPath : walPaths) {
+            try (SegmentScanner scanner = new SegmentScanner(walPath)) {
+                Optional<DatabaseRecord> record;
+                while ((record = scanner.next()).isPresent()) {
+                    memtable.put(record.get());
+                }
+            }
+        }
+        return memtable;
+    }
+
+    /**
+     * Дописывает пачку записей в журнал и в память
+     *
+     * @throws IOException если журнал не удалось записать
+     */
+    void append(List<WritableDatabaseRecord> records) throws IOException {
+        for (WritableDatabaseRecord record : records) {
+            walWriter.write(record);
+        }
+        walWriter.flush();
+
+        for (WritableDatabaseRecord record : records) {
+            put(record);
+        }
+    }
+
+    /**
+     * @return значение, {@link #TOMBSTONE} для удаленного ключа или {@code null}, если ключа в памяти нет
+     */
+    byte[] get(DatabaseKey key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Записи по возрастанию ключа. Значения удаленных ключей - {@link #TOMBSTONE}
+     */
+    NavigableMap<DatabaseKey, byte[]> getEntries() {
+        return entries;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Примерный объем, который записи занимают в памяти
+     */
+    long sizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    /**
+     * Журнал таблицы или {@code null} для восстановленной из журналов таблицы
+     */
+    Path getWalPath() {
+        return walPath;
+    }
+
+    /**
+     * Сбрасывает журнал на диск (fsync)
+     */
+    void sync() throws IOException {
+        if (walWriter != null) {
+            walWriter.force();
+        }
+    }
+
+    /**
+     * Закрывает журнал: таблица больше не изменяется и ждет записи в сегмент
+     *
+     * @param sync сбросить журнал на диск перед закрытием
+     */
+    void seal(boolean sync) throws IOException {
+        if (walWriter == null) {
+            return;
+        }
+        try {
+            if (sync) {
+                walWriter.flush();
+                walWriter.force();
+            }
+        } finally {
+            walWriter.close();
+        }
+    }
+
+    private void put(DatabaseRecord record) {
+        DatabaseKey key = record.getDatabaseKey();
+        byte[] value = record.isValuePresented() ? record.getValue() : TOMBSTONE;
+        byte[] previous = entries.put(key, value);
+        long delta = previous == null
+                ? key.size() + value.length + ENTRY_OVERHEAD
+                : value.length - previous.length;
+        sizeInBytes.addAndGet(delta);
+    }
+
+    /**
+     * Запись для сегмента по элементу {@link #getEntries()}
+     */
+    static WritableDatabaseRecord toRecord(Map.Entry<DatabaseKey, byte[]> entry) {
+        return entry.getValue() == TOMBSTONE
+                ? new RemoveDatabaseRecord(entry.getKey())
+                : new SetDatabaseRecord(entry.getKey(), entry.getValue());
+    }
+}
@@ -0,0 +1,242 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.io.SegmentScanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Текущая запись одного из упорядоченных по ключу источников, которые сливаются в {@link LsmTable}: таблицы
+ * в памяти или цепочки отсортированных сегментов. Курсоры упорядочены по ключу, а при равных ключах первым идет
+ * курсор более нового источника (с меньшим приоритетом), поэтому из записей с одним ключом первой достается
+ * актуальная.
+ * <p>
+ * Значение удаленного ключа - {@link Memtable#TOMBSTONE}
+ */
+abstract class MergeCursor implements Comparable<MergeCursor>, Closeable {
+    private final int priority;
+    protected DatabaseKey key;
+    protected byte[] value;
+
+    private MergeCursor(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Записи таблицы в памяти в диапазоне [from, to)
+     *
+     * @param to {@code null} - до конца таблицы
+     */
+    static MergeCursor of(Memtable memtable, DatabaseKey from, DatabaseKey to, int priority) {
+        NavigableMap<DatabaseKey, byte[]> entries = memtable.getEntries();
+        NavigableMap<DatabaseKey, byte[]> range = to == null ? entries.tailMap(from, true) : entries.subMap(from, true, to, false);
+        Iterator<Map.Entry<DatabaseKey, byte[]>> iterator = range.entrySet().iterator();
+        return new MergeCursor(priority) {
+            @Override
+            boolean advance() {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                Map.Entry<DatabaseKey, byte[]> entry = iterator.next();
+                key = entry.getKey();
+                value = entry.getValue();
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release
+            }
+        };
+    }
+
+    /**
+     * Записи идущих по порядку ключей сегментов в диапазоне [from, to). Следующий сегмент открывается,
+     * когда дочитан предыдущий
+     *
+     * @param from {@code null} - с начала первого сегмента
+     * @param to   {@code null} - до конца последнего сегмента
+     */
+    static MergeCursor of(List<SortedSegment> segments, DatabaseKey from, DatabaseKey to, int priority) {
+        return new SegmentsCursor(segments, from, to, priority);
+    }
+
+    /**
+     * Переходит к следующей записи
+     *
+     * @return {@code false} - если записи в источнике закончились
+     * @throws IOException если источник не удалось прочитать
+     */
+    abstract boolean advance() throws IOException;
+
+    DatabaseKey getKey() {
+        return key;
+    }
+
+    /**
+     * Значение текущей записи или {@link Memtable#TOMBSTONE}
+     */
+    byte[] getValue() {
+        return value;
+    }
+
+    @Override
+    public int compareTo(MergeCursor other) {
+        int comparison = key.compareTo(other.key);
+        return comparison != 0 ? comparison : Integer.compare(priority, other.priority);
+    }
+
+    @Override
+    public abstract void close();
+
+    /**
+     * Слияние курсоров: выдает по одной актуальной записи на ключ в порядке возрастания ключа.
+     * Закрывает курсоры при закрытии
+     */
+    static class Merger implements Closeable {
+        private final List<MergeCursor> cursors;
+        private final PriorityQueue<MergeCursor> queue = new PriorityQueue<>();
+        private boolean started;
+        private long shadowed;
+
+        /**
+         * @param cursors курсоры, еще не переходившие к первой записи
+         */
+        Merger(List<MergeCursor> cursors) {
+            this.cursors = cursors;
+        }
+
+        /**
+         * @return следующая запись (значение удаленного ключа - {@link Memtable#TOMBSTONE}) или {@code null},
+         * если записи закончились
+         * @throws IOException если источник не удалось прочитать
+         */
+        Map.Entry<DatabaseKey, byte[]> next() throws IOException {
+            if (!started) {
+                started = true;
+                for (MergeCursor cursor : cursors) {
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+            }
+
+            MergeCursor newest = queue.poll();
+            if (newest == null) {
+                return null;
+            }
+            Map.Entry<DatabaseKey, byte[]> entry = Map.entry(newest.key, newest.value);
+            if (newest.advance()) {
+                queue.add(newest);
+            }
+            while (!queue.isEmpty() && queue.peek().key.equals(entry.getKey())) {
+                MergeCursor older = queue.poll();
+                shadowed++;
+                if (older.advance()) {
+                    queue.add(older);
+                }
+            }
+            return entry;
+        }
+
+        /**
+         * Сколько устаревших записей перекрыто более новыми
+         */
+        long getShadowed() {
+            return shadowed;
+        }
+
+        @Override
+        public void close() {
+            for (MergeCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static class SegmentsCursor extends MergeCursor {
+        private final List<SortedSegment> segments;
+        private final DatabaseKey from;
+        private final DatabaseKey to;
+        private int segmentIndex = -1;
+        private SegmentScanner scanner;
+
+        private SegmentsCursor(List<SortedSegment> segments, DatabaseKey from, DatabaseKey to, int priority) {
+            super(priority);
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            while (true) {
+                if (scanner == null && !openNextSegment()) {
+                    return false;
+                }
+
+                Optional<DatabaseRecord> next = scanner.next();
+                if (next.isEmpty()) {
+                    if (scanner.isCorrupted()) {
+                        throw new IOException("Sorted segment " + scanner.getSegmentPath() + " is corrupted at offset " + scanner.getPosition());
+                    }
+                    close();
+                    continue;
+                }
+
+                DatabaseRecord record = next.get();
+                DatabaseKey recordKey = record.getDatabaseKey();
+                if (from != null && recordKey.compareTo(from) < 0) {
+                    continue;
+                }
+                if (to != null && recordKey.compareTo(to) >= 0) {
+                    // Segments go in key order, so the rest is out of range too
+                    close();
+                    segmentIndex = segments.size();
+                    return false;
+                }
+
+                key = recordKey;
+                value = record.isValuePresented() ? record.getValue() : Memtable.TOMBSTONE;
+                return true;
+            }
+        }
+
+        private boolean openNextSegment() throws IOException {
+            while (++segmentIndex < segments.size()) {
+                SortedSegment segment = segments.get(segmentIndex);
+                if (from != null && segment.getLastKey().compareTo(from) < 0) {
+                    continue;
+                }
+                if (segment.getRecordCount() == 0) {
+                    continue;
+                }
+                scanner = from == null ? segment.openScanner() : segment.openScanner(from);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            if (scanner == null) {
+                return;
+            }
+            try {
+                scanner.close();
+            } catch (IOException ignore) {
+                // Nothing was written through the scanner
+            } finally {
+                scanner = null;
+            }
+        }
+    }
+}
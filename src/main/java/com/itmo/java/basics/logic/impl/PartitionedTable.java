@@ -0,0 +1,228 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.ScanBatch;
+import com.itmo.java.basics.logic.Table;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Таблица, разделенная по хэшу ключа на несколько частей (partitions). Каждая часть - самостоятельная таблица
+ * {@link TableImpl} в поддиректории таблицы, со своим активным сегментом, цепочкой сегментов, индексом, кэшем
+ * и конвейером дозаписи, поэтому записи в разные части идут параллельно и в разные файлы.
+ * <p>
+ * Количество частей задается при создании и больше не меняется: оно хранится в файле {@link #PARTITIONS_NAME},
+ * по которому таблица узнается при инициализации. Ключ всегда попадает в одну и ту же часть
+ */
+public class PartitionedTable implements Table {
+    static final String PARTITIONS_NAME = "table.partitions";
+    private static final String PARTITION_SUFFIX = "_p";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * Наибольшее количество частей таблицы
+     */
+    public static final int MAX_PARTITIONS = 256;
+
+    private final String tableName;
+    private final Table[] partitions;
+
+    private PartitionedTable(String tableName, List<Table> partitions) {
+        this.tableName = tableName;
+        this.partitions = partitions.toArray(new Table[0]);
+    }
+
+    /**
+     * Создает таблицу из partitionCount частей. Файл с количеством частей записывается до создания частей,
+     * поэтому после сбоя во время создания недостающие части создаются при инициализации
+     *
+     * @throws DatabaseException если таблица уже существует, количество частей неверное или файлы таблицы не удалось создать
+     */
+    public static Table create(String tableName, Path pathToDatabaseRoot, int partitionCount, DatabaseConfig config) throws DatabaseException {
+        if (partitionCount < 1 || partitionCount > MAX_PARTITIONS) {
+            throw new DatabaseException(String.format("Partition count must be from 1 to %d, got %d", MAX_PARTITIONS, partitionCount));
+        }
+
+        Path tableRootPath = Paths.get(pathToDatabaseRoot.toString(), tableName);
+        if (tableRootPath.toFile().exists()) {
+            throw new DatabaseException("Table already exists");
+        }
+
+        try {
+            Files.createDirectory(tableRootPath);
+            savePartitionCount(tableRootPath, partitionCount, config);
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot create files for a table", e);
+        }
+
+        List<Table> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(createPartition(tableName, tableRootPath, i, config));
+        }
+        return new PartitionedTable(tableName, partitions);
+    }
+
+    /**
+     * Собирает таблицу из уже инициализированных частей
+     *
+     * @param partitions части по номерам, см. {@link #getPartitionName(String, int)}
+     */
+    public static Table open(String tableName, List<Table> partitions) {
+        return new PartitionedTable(tableName, partitions);
+    }
+
+    /**
+     * Создает пустую часть таблицы, например, если ее не успели создать вместе с таблицей
+     */
+    public static Table createPartition(String tableName, Path tableRootPath, int partition, DatabaseConfig config) throws DatabaseException {
+        return TableImpl.create(getPartitionName(tableName, partition), tableRootPath,
+                TableIndex.create(config.getKeyStorage(tableName)), config);
+    }
+
+    public static boolean isPartitionedTable(Path tableRootPath) {
+        return Files.isRegularFile(tableRootPath.resolve(PARTITIONS_NAME));
+    }
+
+    /**
+     * Количество частей, с которым таблица была создана
+     *
+     * @throws DatabaseException если файл с количеством частей не удалось прочитать
+     */
+    public static int readPartitionCount(Path tableRootPath) throws DatabaseException {
+        try {
+            int partitionCount = Integer.parseInt(
+                    new String(Files.readAllBytes(tableRootPath.resolve(PARTITIONS_NAME)), StandardCharsets.UTF_8).trim());
+            if (partitionCount < 1 || partitionCount > MAX_PARTITIONS) {
+                throw new DatabaseException("Wrong partition count " + partitionCount + " in " + tableRootPath);
+            }
+            return partitionCount;
+        } catch (IOException | NumberFormatException e) {
+            throw new DatabaseException("Cannot read partition count of table " + tableRootPath, e);
+        }
+    }
+
+    /**
+     * Имя части таблицы: так называются ее директория внутри директории таблицы и ее сегменты
+     */
+    public static String getPartitionName(String tableName, int partition) {
+        return tableName + PARTITION_SUFFIX + partition;
+    }
+
+    @Override
+    public String getName() {
+        return tableName;
+    }
+
+    @Override
+    public void write(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        partitionOf(objectKey).write(objectKey, objectValue);
+    }
+
+    @Override
+    public Optional<byte[]> read(DatabaseKey objectKey) throws DatabaseException {
+        return partitionOf(objectKey).read(objectKey);
+    }
+
+    @Override
+    public void delete(DatabaseKey objectKey) throws DatabaseException {
+        partitionOf(objectKey).delete(objectKey);
+    }
+
+    @Override
+    public Optional<byte[]> getAndWrite(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
+        return partitionOf(objectKey).getAndWrite(objectKey, objectValue);
+    }
+
+    /**
+     * Части хэшируют ключи и не хранят их порядок, как и {@link TableImpl}
+     */
+    @Override
+    public List<Map.Entry<DatabaseKey, byte[]>> scanRange(DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException {
+        throw new DatabaseException(String.format("Table %s does not keep keys ordered, range scans need the LSM engine", tableName));
+    }
+
+    /**
+     * Части обходятся по очереди. Курсор - номер части и курсор внутри нее через двоеточие
+     */
+    @Override
+    public ScanBatch scan(String cursor, int count) throws DatabaseException {
+        int partition = 0;
+        String partitionCursor = ScanBatch.START_CURSOR;
+        if (!ScanBatch.START_CURSOR.equals(cursor)) {
+            int separator = cursor.indexOf(':');
+            try {
+                partition = separator < 0 ? -1 : Integer.parseInt(cursor.substring(0, separator));
+            } catch (NumberFormatException e) {
+                partition = -1;
+            }
+            if (partition < 0 || partition >= partitions.length) {
+                throw new DatabaseException(String.format("Cursor %s is not valid for table %s", cursor, tableName));
+            }
+            partitionCursor = cursor.substring(separator + 1);
+        }
+
+        ScanBatch batch = partitions[partition].scan(partitionCursor, count);
+        if (!batch.isFinished()) {
+            return new ScanBatch(partition + ":" + batch.getCursor(), batch.getEntries());
+        }
+        return new ScanBatch(partition + 1 < partitions.length ? (partition + 1) + ":" + ScanBatch.START_CURSOR : ScanBatch.START_CURSOR,
+                batch.getEntries());
+    }
+
+    /**
+     * Закрывает все части, даже если какую-то закрыть не удалось
+     */
+    @Override
+    public void close() throws DatabaseException {
+        DatabaseException failure = null;
+        for (Table partition : partitions) {
+            try {
+                partition.close();
+            } catch (DatabaseException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Часть выбирается по старшим битам хэша: младшие биты выбирают ячейку в индексе части
+     * (см. {@link TableIndex}), и если бы все ключи части совпадали в них, заполнялась бы лишь доля ячеек
+     */
+    private Table partitionOf(DatabaseKey objectKey) {
+        return partitions[Math.floorMod(Integer.reverse(objectKey.hashCode()), partitions.length)];
+    }
+
+    private static void savePartitionCount(Path tableRootPath, int partitionCount, DatabaseConfig config) throws IOException {
+        Path partitionsPath = tableRootPath.resolve(PARTITIONS_NAME);
+        Path temporaryPath = tableRootPath.resolve(PARTITIONS_NAME + TEMPORARY_EXTENSION);
+        Files.write(temporaryPath, String.valueOf(partitionCount).getBytes(StandardCharsets.UTF_8));
+        if (config.getDurabilityMode() != DurabilityMode.NONE) {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        Files.move(temporaryPath, partitionsPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,22 +1,27 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Запись в БД, означающая удаление значения по ключу
  */
 public class RemoveDatabaseRecord implements WritableDatabaseRecord {
 
-    private final String key;
+    private final DatabaseKey key;
 
-    public RemoveDatabaseRecord(String key) {
+    public RemoveDatabaseRecord(DatabaseKey key) {
         this.key = key;
     }
 
     @Override
     public byte[] getKey() {
-        return key.getBytes(StandardCharsets.UTF_8);
+        return key.getBytes();
+    }
+
+    @Override
+    public DatabaseKey getDatabaseKey() {
+        return key;
     }
 
     @Override
@@ -36,7 +41,7 @@ public class RemoveDatabaseRecord implements WritableDatabaseRecord {
 
     @Override
     public int getKeySize() {
-        return key.length();
+        return key.size();
     }
 
     @Override
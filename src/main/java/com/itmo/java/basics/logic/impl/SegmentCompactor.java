@@ -0,0 +1,670 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.IndexMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.initialization.impl.SegmentInitializationContextImpl;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.BlobReference;
+import com.itmo.java.basics.logic.io.CompressedSegmentFile;
+import com.itmo.java.basics.logic.io.DatabaseChannelWriter;
+import com.itmo.java.basics.logic.io.HintFile;
+import com.itmo.java.basics.logic.io.SegmentChannelCache;
+import com.itmo.java.basics.logic.io.SegmentCodec;
+import com.itmo.java.basics.logic.io.SegmentCodecs;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+import com.itmo.java.basics.logic.io.SegmentScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фоновое уплотнение (compaction) сегментов таблицы.
+ * <p>
+ * Выбирает идущие подряд сегменты (кроме активного), в которых доля устаревших записей не меньше
+ * {@link DatabaseConfig#getCompactionGarbageRatio()}, и переписывает их актуальные записи в один новый сегмент.
+ * Новый сегмент собирается во временной директории и атомарно подменяет самый новый из исходных сегментов
+ * под тем же именем, поэтому порядок сегментов при инициализации таблицы не меняется. Остальные исходные
+ * сегменты удаляются от старых к новым: если процесс упадет посередине, оставшиеся файлы все еще дают
+ * правильное состояние таблицы.
+ * <p>
+ * Запись об удалении переносится, пока в более старых сегментах есть значение по этому ключу,
+ * и отбрасывается, когда такого значения не осталось (обычно при следующем уплотнении старых сегментов).
+ * Старыми считаются и исходные сегменты того же уплотнения: они удаляются уже после подмены, и без записи
+ * об удалении падение в этот момент вернуло бы удаленное значение.
+ * <p>
+ * В том же фоновом потоке для заполненных сегментов составляются {@link HintFile hint-файлы}, а неактивные
+ * сегменты, которые не менялись дольше {@link DatabaseConfig#getCompressAfterMillis()}, сжимаются поблочно
+ * (см. {@link CompressedSegmentFile}), если в конфигурации задан алгоритм сжатия. После уплотнения сегментов
+ * освобождается место в blob-файлах таблицы (см. {@link BlobStore}).
+ * <p>
+ * Вместе с устаревшей записью-ссылкой отбрасывается и значение в blob-файле, это учитывается в {@link BlobStore}.
+ */
+class SegmentCompactor {
+    static final String COMPACTION_DIRECTORY = ".compaction";
+    private static final int MAX_RUN_LENGTH = 8;
+    private static final int COMPRESSION_BLOCK_SIZE = 16 * 1024;
+
+    /**
+     * Общий для всех таблиц поток фонового уплотнения
+     */
+    private static final ScheduledExecutorService COMPACTION_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TableImpl table;
+    private final DatabaseConfig config;
+    private final Map<Segment, SegmentUsage> usage = new ConcurrentHashMap<>();
+    private final Set<Segment> incompressible = ConcurrentHashMap.newKeySet();
+    private final Lock compactionLock = new ReentrantLock();
+    private final ScheduledFuture<?> compactionTask;
+    private volatile boolean closed;
+
+    SegmentCompactor(TableImpl table, DatabaseConfig config) {
+        this.table = table;
+        this.config = config;
+        removeUnfinishedCompaction();
+        this.compactionTask = config.getCompactionIntervalMillis() > 0
+                ? COMPACTION_SCHEDULER.scheduleWithFixedDelay(this::compactQuietly,
+                config.getCompactionIntervalMillis(), config.getCompactionIntervalMillis(), TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Начинает учет записей в только что созданном сегменте
+     */
+    void onSegmentCreated(Segment segment) {
+        usage.put(segment, new SegmentUsage());
+    }
+
+    /**
+     * Сегмент стал read-only: в фоне для него составляется hint-файл
+     */
+    void onSegmentSealed(Segment segment) {
+        Path segmentPath = segmentPath(segment.getName());
+        COMPACTION_SCHEDULER.execute(() -> {
+            if (config.getIndexMode() != IndexMode.SPARSE) {
+                writeHintQuietly(segmentPath);
+                return;
+            }
+
+            // Probes under the append lock and reads under the segments lock must not see the index being swapped
+            Lock appendLock = table.getAppendLock();
+            Lock segmentsLock = table.getSegmentsWriteLock();
+            appendLock.lock();
+            segmentsLock.lock();
+            try {
+                if (writeHintQuietly(segmentPath) && segment instanceof SegmentImpl) {
+                    ((SegmentImpl) segment).useSparseIndex();
+                }
+            } finally {
+                segmentsLock.unlock();
+                appendLock.unlock();
+            }
+        });
+    }
+
+    private static boolean writeHintQuietly(Path segmentPath) {
+        try {
+            HintFile.write(segmentPath);
+            return true;
+        } catch (IOException ignore) {
+            // Segment was compacted away or will be fully scanned on startup
+            return false;
+        }
+    }
+
+    /**
+     * Учитывает запись, добавленную в активный сегмент: предыдущая запись по этому ключу становится устаревшей.
+     * Вызывается под блокировкой дозаписи
+     *
+     * @param segment         сегмент, в который добавлена запись
+     * @param previousSegment сегмент, в котором была предыдущая запись по ключу, или {@code null}
+     */
+    void onRecordAppended(Segment segment, Segment previousSegment) {
+        SegmentUsage segmentUsage = usage.get(segment);
+        if (segmentUsage != null) {
+            segmentUsage.records++;
+        }
+
+        if (previousSegment != null) {
+            SegmentUsage previousUsage = usage.get(previousSegment);
+            if (previousUsage != null) {
+                previousUsage.deadRecords++;
+            }
+        }
+    }
+
+    /**
+     * Останавливает фоновое уплотнение и дожидается окончания текущего
+     */
+    void close() {
+        closed = true;
+        if (compactionTask != null) {
+            compactionTask.cancel(false);
+        }
+
+        compactionLock.lock();
+        compactionLock.unlock();
+    }
+
+    /**
+     * Выполняет один проход уплотнения
+     *
+     * @return количество уплотненных сегментов
+     * @throws DatabaseException если не удалось прочитать или записать сегменты
+     */
+    int compact() throws DatabaseException {
+        compactionLock.lock();
+        try {
+            if (closed) {
+                return 0;
+            }
+
+            int compacted = 0;
+            for (List<Segment> run : selectRuns()) {
+                compacted += compactRun(run, false);
+            }
+            compressColdSegments();
+            if (!closed) {
+                table.getBlobStore().collectGarbage();
+            }
+            return compacted;
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot compact segments of table " + table.getName(), e);
+        } catch (UncheckedIOException e) {
+            throw new DatabaseException("Cannot compact segments of table " + table.getName(), e.getCause());
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Переписывает в {@link SegmentFormat#CURRENT текущем формате} все неактивные сегменты, записанные
+     * в старых форматах, независимо от доли устаревших записей. При обычном уплотнении сегменты
+     * переводятся в текущий формат сами собой
+     *
+     * @return количество переписанных сегментов
+     * @throws DatabaseException если не удалось прочитать или записать сегменты
+     */
+    int migrate() throws DatabaseException {
+        compactionLock.lock();
+        try {
+            int migrated = 0;
+            for (Segment segment : table.getSegments()) {
+                if (closed || segment == table.getActiveSegment()) {
+                    break;
+                }
+
+                if (SegmentFormat.detect(segmentPath(segment.getName())) != SegmentFormat.CURRENT) {
+                    migrated += compactRun(Collections.singletonList(segment), true);
+                }
+            }
+            return migrated;
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot migrate segments of table " + table.getName(), e);
+        } catch (UncheckedIOException e) {
+            throw new DatabaseException("Cannot migrate segments of table " + table.getName(), e.getCause());
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (DatabaseException ignore) {
+            // Next scheduled compaction will retry
+        }
+    }
+
+    /**
+     * Группирует идущие подряд неактивные сегменты с большой долей устаревших записей.
+     * Сегменты, загруженные с диска, один раз просматриваются целиком, чтобы узнать эту долю
+     */
+    private List<List<Segment>> selectRuns() throws IOException {
+        List<Segment> segments = table.getSegments();
+        Segment activeSegment = table.getActiveSegment();
+
+        List<List<Segment>> runs = new ArrayList<>();
+        List<Segment> run = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment == activeSegment) {
+                break;
+            }
+
+            SegmentUsage segmentUsage = usage.get(segment);
+            if (segmentUsage == null) {
+                segmentUsage = SegmentUsage.of(markLive(segment, scan(segment)));
+                usage.put(segment, segmentUsage);
+            }
+
+            if (segmentUsage.garbageRatio() >= config.getCompactionGarbageRatio()) {
+                if (run.size() == MAX_RUN_LENGTH) {
+                    runs.add(run);
+                    run = new ArrayList<>();
+                }
+                run.add(segment);
+            } else if (!run.isEmpty()) {
+                runs.add(run);
+                run = new ArrayList<>();
+            }
+        }
+
+        if (!run.isEmpty()) {
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    /**
+     * @param force переписать сегменты, даже если устаревших записей в них мало
+     */
+    private int compactRun(List<Segment> run, boolean force) throws IOException {
+        long start = System.nanoTime();
+
+        // Live records must fit into one output segment, so the run is cut as soon as they do not
+        List<Segment> sources = new ArrayList<>();
+        List<ScannedRecord> liveRecords = new ArrayList<>();
+        List<BlobReference> droppedReferences = new ArrayList<>();
+        long bytesRead = 0;
+        long liveBytes = 0;
+        long sourceRecords = 0;
+        for (Segment segment : run) {
+            List<ScannedRecord> records = markLive(segment, scan(segment));
+            usage.put(segment, SegmentUsage.of(records));
+
+            long segmentBytes = 0;
+            long segmentLiveBytes = 0;
+            for (ScannedRecord record : records) {
+                segmentBytes += record.size;
+                segmentLiveBytes += record.live ? record.size : 0;
+            }
+
+            if (!sources.isEmpty() && liveBytes + segmentLiveBytes > SegmentImpl.MAX_SIZE_IN_BYTES) {
+                break;
+            }
+
+            sources.add(segment);
+            sourceRecords += records.size();
+            bytesRead += segmentBytes;
+            liveBytes += segmentLiveBytes;
+            for (ScannedRecord record : records) {
+                if (record.live) {
+                    liveRecords.add(record);
+                } else if (record.record instanceof BlobReferenceDatabaseRecord) {
+                    droppedReferences.add(((BlobReferenceDatabaseRecord) record.record).getReference());
+                }
+            }
+        }
+
+        if (!force && bytesRead - liveBytes < config.getCompactionGarbageRatio() * bytesRead) {
+            return 0;
+        }
+
+        Set<DatabaseKey> tombstoneKeys = new HashSet<>();
+        for (ScannedRecord record : liveRecords) {
+            if (!record.record.isValuePresented()) {
+                tombstoneKeys.add(record.key);
+            }
+        }
+        // Older sources of the run count too: they are deleted only after the output replaces the newest one
+        List<Segment> segments = table.getSegments();
+        Set<DatabaseKey> olderValueKeys = keysWithValues(tombstoneKeys,
+                segments.subList(0, segments.indexOf(sources.get(sources.size() - 1))));
+
+        List<ScannedRecord> keptRecords = new ArrayList<>();
+        List<ScannedRecord> droppedTombstones = new ArrayList<>();
+        for (ScannedRecord record : liveRecords) {
+            if (!record.record.isValuePresented() && !olderValueKeys.contains(record.key)) {
+                droppedTombstones.add(record);
+            } else {
+                keptRecords.add(record);
+            }
+        }
+
+        String outputName = sources.get(sources.size() - 1).getName();
+        Path temporaryPath = Paths.get(table.getTableRootPath().toString(), COMPACTION_DIRECTORY, outputName);
+        long outputSize = keptRecords.isEmpty() ? 0 : writeOutput(temporaryPath, keptRecords);
+        if (outputSize > 0) {
+            HintFile.write(temporaryPath);
+        }
+
+        Lock appendLock = table.getAppendLock();
+        Lock segmentsLock = table.getSegmentsWriteLock();
+        appendLock.lock();
+        segmentsLock.lock();
+        try {
+            // Keys overwritten after the records were copied keep pointing to the newer segment.
+            // The index is checked before the files are replaced: a sparse index reads the hint files of the sources
+            TableIndex tableIndex = table.getTableIndex();
+            List<ScannedRecord> currentRecords = new ArrayList<>();
+            for (ScannedRecord record : keptRecords) {
+                if (isCurrent(tableIndex, record)) {
+                    currentRecords.add(record);
+                }
+            }
+
+            Segment output = null;
+            SegmentUsage outputUsage = new SegmentUsage();
+            if (outputSize > 0) {
+                // Without a hint the replaced segment is fully scanned on startup, so a crash between the moves is safe
+                Path outputPath = segmentPath(outputName);
+                HintFile.delete(outputPath);
+                Files.move(temporaryPath, outputPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(HintFile.pathFor(temporaryPath), HintFile.pathFor(outputPath),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                SegmentChannelCache.getInstance().invalidate(outputPath);
+                // Offsets are kept in the table index, a sparse index is loaded from the hint file
+                output = SegmentImpl.initializeFromContext(
+                        new SegmentInitializationContextImpl(outputName, outputPath, outputSize, new SegmentIndex()), config);
+                table.attachSegment(output);
+            }
+
+            outputUsage.records = keptRecords.size();
+            outputUsage.deadRecords = keptRecords.size() - currentRecords.size();
+            for (ScannedRecord record : currentRecords) {
+                if (record.record.isValuePresented()) {
+                    tableIndex.onIndexedEntityUpdated(record.key, output, record.outputOffset);
+                }
+            }
+
+            table.replaceSegments(sources, output);
+            for (BlobReference reference : droppedReferences) {
+                table.getBlobStore().onReferenceDropped(reference);
+            }
+            for (Segment source : sources) {
+                usage.remove(source);
+                incompressible.remove(source);
+                if (output == null || !source.getName().equals(outputName)) {
+                    Path sourcePath = segmentPath(source.getName());
+                    HintFile.delete(sourcePath);
+                    Files.deleteIfExists(sourcePath);
+                    SegmentChannelCache.getInstance().invalidate(sourcePath);
+                }
+            }
+            if (output != null) {
+                usage.put(output, outputUsage);
+            }
+        } finally {
+            segmentsLock.unlock();
+            appendLock.unlock();
+        }
+
+        CompactionStats.getInstance().onRunCompleted(sources.size(), bytesRead, outputSize,
+                sourceRecords - keptRecords.size(), droppedTombstones.size(), System.nanoTime() - start);
+        return sources.size();
+    }
+
+    /**
+     * Сжимает неактивные сегменты, которые не менялись дольше {@link DatabaseConfig#getCompressAfterMillis()}
+     */
+    private void compressColdSegments() throws IOException {
+        SegmentCodec codec = SegmentCodecs.forName(config.getSegmentCompression());
+        if (codec == null) {
+            return;
+        }
+
+        long coldBefore = System.currentTimeMillis() - config.getCompressAfterMillis();
+        Segment activeSegment = table.getActiveSegment();
+        for (Segment segment : table.getSegments()) {
+            if (closed) {
+                return;
+            }
+            if (segment == activeSegment || !(segment instanceof SegmentImpl)
+                    || ((SegmentImpl) segment).isCompressed() || incompressible.contains(segment)) {
+                continue;
+            }
+
+            if (Files.getLastModifiedTime(segmentPath(segment.getName())).toMillis() <= coldBefore) {
+                compressSegment((SegmentImpl) segment, codec);
+            }
+        }
+    }
+
+    /**
+     * Сжимает файл сегмента во временной директории и атомарно подменяет им исходный файл.
+     * Смещения записей не меняются, поэтому индексы и hint-файл остаются прежними
+     */
+    private void compressSegment(SegmentImpl segment, SegmentCodec codec) throws IOException {
+        Path segmentPath = segmentPath(segment.getName());
+        Path temporaryPath = Paths.get(table.getTableRootPath().toString(), COMPACTION_DIRECTORY, segment.getName());
+        Files.createDirectories(temporaryPath.getParent());
+        Files.deleteIfExists(temporaryPath);
+
+        long sizeBefore = Files.size(segmentPath);
+        long sizeAfter = CompressedSegmentFile.write(segmentPath, temporaryPath, codec, COMPRESSION_BLOCK_SIZE);
+        if (sizeAfter >= sizeBefore) {
+            // Not worth decompressing on every read
+            Files.delete(temporaryPath);
+            incompressible.add(segment);
+            return;
+        }
+        // Make sure the file can be read back before it replaces the segment
+        CompressedSegmentFile.open(temporaryPath);
+
+        Lock segmentsLock = table.getSegmentsWriteLock();
+        segmentsLock.lock();
+        try {
+            if (!table.getSegments().contains(segment)) {
+                Files.delete(temporaryPath);
+                return;
+            }
+
+            Files.move(temporaryPath, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SegmentChannelCache.getInstance().invalidate(segmentPath);
+            segment.useCompressedFile();
+        } finally {
+            segmentsLock.unlock();
+        }
+
+        CompactionStats.getInstance().onSegmentCompressed(sizeBefore, sizeAfter);
+    }
+
+    /**
+     * Записывает сохраняемые записи в новый файл и сбрасывает его на диск до подмены исходных сегментов
+     *
+     * @return размер записанного файла
+     */
+    private long writeOutput(Path path, List<ScannedRecord> records) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.deleteIfExists(path);
+
+        SegmentFormat.CURRENT.createFile(path);
+
+        long offset = SegmentFormat.CURRENT.getHeaderSize();
+        try (DatabaseChannelWriter writer = new DatabaseChannelWriter(path, SegmentFormat.CURRENT)) {
+            for (ScannedRecord record : records) {
+                record.outputOffset = offset;
+                offset += writer.write(record.record);
+            }
+            writer.flush();
+            writer.force();
+        }
+        return offset;
+    }
+
+    /**
+     * Последовательно читает файл сегмента. Для каждого ключа отмечается последняя запись в сегменте
+     */
+    private List<ScannedRecord> scan(Segment segment) throws IOException {
+        List<ScannedRecord> records = new ArrayList<>();
+        Map<DatabaseKey, ScannedRecord> lastRecords = new HashMap<>();
+
+        try (SegmentScanner scanner = new SegmentScanner(segmentPath(segment.getName()))) {
+            Optional<DatabaseRecord> optionalRecord;
+            while ((optionalRecord = scanner.next()).isPresent()) {
+                ScannedRecord record = new ScannedRecord(segment, (WritableDatabaseRecord) optionalRecord.get(), scanner.getRecordSize());
+                records.add(record);
+                lastRecords.put(record.key, record);
+            }
+        }
+
+        for (ScannedRecord record : lastRecords.values()) {
+            record.last = true;
+        }
+        return records;
+    }
+
+    /**
+     * Отмечает актуальные записи: последние в сегменте записи ключей, на которые указывает индекс таблицы.
+     * Индекс читается под блокировкой дозаписи, чтобы не пересекаться с его изменением
+     */
+    private List<ScannedRecord> markLive(Segment segment, List<ScannedRecord> records) {
+        Lock appendLock = table.getAppendLock();
+        appendLock.lock();
+        try {
+            TableIndex tableIndex = table.getTableIndex();
+            for (ScannedRecord record : records) {
+                record.live = record.last && isCurrent(tableIndex, record);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        return records;
+    }
+
+    /**
+     * Запись актуальна, если индекс таблицы указывает на ее сегмент. Удаленных ключей в индексе нет,
+     * поэтому запись об удалении считается актуальной, пока ключ не записан заново
+     */
+    private static boolean isCurrent(TableIndex tableIndex, ScannedRecord record) {
+        Segment current = tableIndex.searchForKey(record.key).orElse(null);
+        return current == record.segment || (current == null && !record.record.isValuePresented());
+    }
+
+    /**
+     * Отбирает ключи, последняя запись которых хотя бы в одном из сегментов - значение, а не запись об удалении.
+     * Индекс таблицы хранит только последнюю запись ключа, поэтому сегменты читаются с диска: по hint-файлу
+     * и хвосту после него, а без hint-файла - целиком
+     */
+    private Set<DatabaseKey> keysWithValues(Set<DatabaseKey> keys, List<Segment> segments) throws IOException {
+        Set<DatabaseKey> found = new HashSet<>();
+        for (Segment segment : segments) {
+            if (found.size() == keys.size()) {
+                break;
+            }
+
+            Path path = segmentPath(segment.getName());
+            Map<DatabaseKey, Boolean> lastRecords = new HashMap<>();
+            OptionalLong hintLength = HintFile.scan(path, (entry, position) -> {
+                DatabaseKey key = DatabaseKey.wrap(entry.getKey());
+                if (keys.contains(key)) {
+                    lastRecords.put(key, !entry.isTombstone());
+                }
+            });
+
+            long scanFrom = hintLength.orElse(0);
+            if (scanFrom > SegmentScanner.length(path)) {
+                lastRecords.clear();
+                scanFrom = 0;
+            }
+            try (SegmentScanner scanner = new SegmentScanner(path, scanFrom)) {
+                Optional<DatabaseRecord> optionalRecord;
+                while ((optionalRecord = scanner.next()).isPresent()) {
+                    DatabaseKey key = optionalRecord.get().getDatabaseKey();
+                    if (keys.contains(key)) {
+                        lastRecords.put(key, optionalRecord.get().isValuePresented());
+                    }
+                }
+            }
+
+            lastRecords.forEach((key, hasValue) -> {
+                if (hasValue) {
+                    found.add(key);
+                }
+            });
+        }
+        return found;
+    }
+
+    private Path segmentPath(String segmentName) {
+        return Paths.get(table.getTableRootPath().toString(), segmentName);
+    }
+
+    /**
+     * Удаляет временные файлы уплотнения, прерванного падением процесса. Исходные сегменты в этом случае не тронуты
+     */
+    private void removeUnfinishedCompaction() {
+        File[] files = new File(table.getTableRootPath().toString(), COMPACTION_DIRECTORY).listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException ignore) {
+                // Will be overwritten by the next compaction
+            }
+        }
+    }
+
+    /**
+     * Количество записей в сегменте и сколько из них устарело. Изменяется под блокировкой дозаписи
+     */
+    private static class SegmentUsage {
+        private volatile long records;
+        private volatile long deadRecords;
+
+        private static SegmentUsage of(List<ScannedRecord> scannedRecords) {
+            SegmentUsage segmentUsage = new SegmentUsage();
+            for (ScannedRecord record : scannedRecords) {
+                segmentUsage.records++;
+                if (!record.live) {
+                    segmentUsage.deadRecords++;
+                }
+            }
+            return segmentUsage;
+        }
+
+        private double garbageRatio() {
+            return records == 0 ? 0 : (double) Math.min(deadRecords, records) / records;
+        }
+    }
+
+    private static class ScannedRecord {
+        private final Segment segment;
+        private final WritableDatabaseRecord record;
+        private final DatabaseKey key;
+        private final long size;
+        private boolean last;
+        private boolean live;
+        private long outputOffset;
+
+        private ScannedRecord(Segment segment, WritableDatabaseRecord record, long size) {
+            this.segment = segment;
+            this.record = record;
+            this.key = record.getDatabaseKey();
+            this.size = size;
+        }
+    }
+}
@@ -1,23 +1,40 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.IndexMode;
+import com.itmo.java.basics.config.SegmentReadMode;
+import com.itmo.java.basics.index.KvsIndex;
 import com.itmo.java.basics.index.SegmentOffsetInfo;
 import com.itmo.java.basics.index.impl.SegmentIndex;
 import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.index.impl.SparseSegmentIndex;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.initialization.SegmentInitializationContext;
 import com.itmo.java.basics.logic.Segment;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
-import com.itmo.java.basics.logic.io.DatabaseInputStream;
-import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.BlobFile;
+import com.itmo.java.basics.logic.io.BlockCache;
+import com.itmo.java.basics.logic.io.CompressedSegmentFile;
+import com.itmo.java.basics.logic.io.CompressedSegmentReader;
+import com.itmo.java.basics.logic.io.DatabaseChannelReader;
+import com.itmo.java.basics.logic.io.DatabaseChannelWriter;
+import com.itmo.java.basics.logic.io.MappedSegmentReader;
+import com.itmo.java.basics.logic.io.SegmentChannelCache;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+import com.itmo.java.basics.logic.io.SegmentReader;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Optional;
-
-import static java.nio.file.StandardOpenOption.APPEND;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Сегмент - append-only файл, хранящий пары ключ-значение, разделенные специальным символом.
@@ -27,27 +44,69 @@ import static java.nio.file.StandardOpenOption.APPEND;
  * - является неизменяемым после появления более нового сегмента
  */
 public class SegmentImpl implements Segment {
-    private static final int MAX_SIZE_IN_BYTES = 100_000;
+    static final int MAX_SIZE_IN_BYTES = 100_000;
+    private static final AtomicLong LAST_SEGMENT_TIMESTAMP = new AtomicLong();
 
     private final String segmentName;
     private final Path tableRootPath;
-    private long bytesWritten;
 
-    private final SegmentIndex segmentIndex;
+    /**
+     * Пишется под блокировкой дозаписи таблицы, читается читателями без нее (см. {@link #isReadOnly()})
+     */
+    private volatile long bytesWritten;
+
+    /**
+     * Недописанную пачку не удалось отрезать от файла, поэтому в сегмент больше не пишут
+     */
+    private volatile boolean writeFailed;
+
+    /**
+     * Смещения записей, которых нет в {@link #sparseIndex}. В режиме {@link IndexMode#FULL} - представление
+     * индекса таблицы (см. {@link #useTableIndex(TableIndex)})
+     */
+    private volatile KvsIndex<DatabaseKey, SegmentOffsetInfo> segmentIndex;
+
+    /**
+     * Разреженный индекс по hint-файлу в режиме {@link IndexMode#SPARSE}, {@code null} - если его еще нет
+     */
+    private volatile SparseSegmentIndex sparseIndex;
+
+    /**
+     * Канал на дозапись, открывается при первой записи и живет, пока сегмент активен
+     */
+    private volatile DatabaseChannelWriter writer;
+
+    private final DatabaseConfig config;
+    private final SegmentFormat format;
+    private final SegmentReader channelReader;
+
+    /**
+     * Способ чтения, выбранный после того, как сегмент стал read-only (см. {@link DatabaseConfig#getSegmentReadMode()})
+     */
+    private volatile SegmentReader readOnlyReader;
 
-    private SegmentImpl(String segmentName, Path tableRootPath, SegmentIndex segmentIndex) {
+    /**
+     * Читатель {@link CompressedSegmentFile сжатого} файла сегмента, {@code null} - если сегмент не сжат
+     */
+    private volatile SegmentReader compressedReader;
+
+    private SegmentImpl(String segmentName, Path tableRootPath, SegmentIndex segmentIndex, long bytesWritten,
+                        SegmentFormat format, DatabaseConfig config) {
         this.segmentName = segmentName;
         this.tableRootPath = tableRootPath;
         this.segmentIndex = segmentIndex;
-        this.bytesWritten = 0;
-    }
-
-    private SegmentImpl(String segmentName, Path tableRootPath, SegmentIndex segmentIndex, long bytesWritten) {
-        this(segmentName, tableRootPath, segmentIndex);
         this.bytesWritten = bytesWritten;
+        this.format = format;
+        this.config = config;
+        this.channelReader = new DatabaseChannelReader(Paths.get(tableRootPath.toString(), segmentName),
+                SegmentChannelCache.getInstance(), format, config.isVerifyChecksums());
     }
 
     public static Segment create(String segmentName, Path tableRootPath) throws DatabaseException {
+        return create(segmentName, tableRootPath, new DatabaseConfig(null));
+    }
+
+    public static Segment create(String segmentName, Path tableRootPath, DatabaseConfig config) throws DatabaseException {
         if (new File(tableRootPath.toString(), segmentName).exists()) {
             throw new DatabaseException("Segment already exists");
         }
@@ -55,22 +114,75 @@ public class SegmentImpl implements Segment {
         Path fullSegmentPath = Paths.get(tableRootPath.toString(), segmentName);
 
         try {
-            if (!Files.exists(fullSegmentPath)) {
-                Files.createFile(fullSegmentPath);
-            }
+            SegmentFormat.CURRENT.createFile(fullSegmentPath);
         } catch (IOException e) {
             throw new DatabaseException("Cannot create a segment", e);
         }
 
-        return new SegmentImpl(segmentName, tableRootPath, new SegmentIndex());
+        return new SegmentImpl(segmentName, tableRootPath, new SegmentIndex(), SegmentFormat.CURRENT.getHeaderSize(),
+                SegmentFormat.CURRENT, config);
     }
 
+    /**
+     * Имя нового сегмента: имя таблицы и строго возрастающая метка времени,
+     * чтобы сегменты, созданные в одну миллисекунду, не совпадали по имени
+     */
     static String createSegmentName(String tableName) {
-        return tableName + "_" + System.currentTimeMillis();
+        long timestamp = LAST_SEGMENT_TIMESTAMP.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+        return tableName + "_" + timestamp;
+    }
+
+    /**
+     * Проверяет, что файл является сегментом таблицы, то есть назван по правилу {@link #createSegmentName(String)}.
+     * Остальные файлы и директории в директории таблицы (например, временные файлы уплотнения) сегментами не являются
+     */
+    public static boolean isSegmentName(String tableName, String fileName) {
+        String prefix = tableName + "_";
+        if (!fileName.startsWith(prefix) || fileName.length() == prefix.length()) {
+            return false;
+        }
+
+        for (int i = prefix.length(); i < fileName.length(); i++) {
+            if (!Character.isDigit(fileName.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает метку времени из имени сегмента, по ней упорядочиваются сегменты таблицы
+     */
+    public static long getSegmentTimestamp(String segmentName) {
+        return Long.parseLong(segmentName.substring(segmentName.lastIndexOf('_') + 1));
     }
 
     public static Segment initializeFromContext(SegmentInitializationContext context) {
-        return new SegmentImpl(context.getSegmentName(), context.getSegmentPath().getParent(), context.getIndex(), context.getCurrentSize());
+        return initializeFromContext(context, new DatabaseConfig(null));
+    }
+
+    public static Segment initializeFromContext(SegmentInitializationContext context, DatabaseConfig config) {
+        SegmentFormat format;
+        try {
+            format = SegmentFormat.detect(context.getSegmentPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read format of segment " + context.getSegmentName(), e);
+        }
+
+        SegmentImpl segment = new SegmentImpl(context.getSegmentName(), context.getSegmentPath().getParent(), context.getIndex(),
+                Math.max(context.getCurrentSize(), format.getHeaderSize()), format, config);
+        if (config.getIndexMode() == IndexMode.SPARSE) {
+            // The context index holds only the records written after the hint file
+            segment.sparseIndex = segment.loadSparseIndex().orElse(null);
+        }
+        try {
+            if (CompressedSegmentFile.isCompressed(context.getSegmentPath())) {
+                segment.useCompressedFile();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot open compressed segment " + context.getSegmentName(), e);
+        }
+        return segment;
     }
 
     @Override
@@ -79,65 +191,251 @@ public class SegmentImpl implements Segment {
     }
 
     private boolean writeToFile(WritableDatabaseRecord databaseRecord) throws IOException {
+        return write(List.of(databaseRecord)) == 1;
+    }
+
+    /**
+     * Кодирует записи в буфер и сбрасывает их в файл одним вызовом. Индекс обновляется только после записи в файл,
+     * чтобы по нему нельзя было найти еще не записанные данные. Если пачку записать не удалось, ее начало
+     * отрезается от файла (см. {@link #discardUnindexedTail()})
+     *
+     * @return сколько записей поместилось в сегмент, 0 - если сегмент read-only
+     */
+    @Override
+    public int write(List<? extends WritableDatabaseRecord> records) throws IOException {
         if (isReadOnly()) {
-            return false;
+            return 0;
+        }
+        if (writer == null) {
+            writer = new DatabaseChannelWriter(Paths.get(tableRootPath.toString(), segmentName), format);
         }
 
-        try (DatabaseOutputStream dataOutputStream = new DatabaseOutputStream(Files.newOutputStream(Paths.get(tableRootPath.toString(), segmentName), APPEND))) {
-            dataOutputStream.write(databaseRecord);
+        long[] offsets = new long[records.size()];
+        long position = bytesWritten;
+        int written = 0;
+        try {
+            while (written < records.size() && position < MAX_SIZE_IN_BYTES) {
+                offsets[written] = position;
+                position += writer.write(records.get(written));
+                written++;
+            }
+
+            if (written == 0) {
+                return 0;
+            }
 
-            segmentIndex.onIndexedEntityUpdated(new String(databaseRecord.getKey()), new SegmentOffsetInfoImpl(bytesWritten));
-            bytesWritten += databaseRecord.size();
+            writer.flush();
+        } catch (IOException | RuntimeException e) {
+            discardUnindexedTail();
+            throw e;
+        }
 
-            dataOutputStream.flush();
+        for (int i = 0; i < written; i++) {
+            segmentIndex.onIndexedEntityUpdated(records.get(i).getDatabaseKey(), new SegmentOffsetInfoImpl(offsets[i]));
         }
+        bytesWritten = position;
 
-        return true;
+        return written;
+    }
+
+    /**
+     * Отрезает от файла байты пачки, которую не удалось записать до конца: их нет в индексе, а следующая пачка
+     * должна начаться ровно с {@link #bytesWritten}, иначе ее смещения в индексе будут неверными. Если файл
+     * отрезать не удалось, сегмент становится read-only, и таблица продолжает писать в новый сегмент
+     */
+    private void discardUnindexedTail() {
+        DatabaseChannelWriter failedWriter = writer;
+        writer = null;
+        try {
+            failedWriter.close();
+        } catch (IOException ignore) {
+            // Whatever reached the file is cut off below
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(tableRootPath.toString(), segmentName), StandardOpenOption.WRITE)) {
+            channel.truncate(bytesWritten);
+        } catch (IOException e) {
+            writeFailed = true;
+        }
     }
 
     @Override
-    public boolean write(String objectKey, byte[] objectValue) throws IOException {
+    public boolean write(DatabaseKey objectKey, byte[] objectValue) throws IOException {
         if (objectValue == null) {
             return delete(objectKey);
         }
         return writeToFile(new SetDatabaseRecord(objectKey, objectValue));
     }
 
+    /**
+     * Значение, вынесенное в {@link BlobFile blob-файл}, читается по ссылке из записи
+     */
     @Override
-    public Optional<byte[]> read(String objectKey) throws IOException {
-        Optional<SegmentOffsetInfo> optionalSegmentOffsetInfo = segmentIndex.searchForKey(objectKey);
+    public Optional<byte[]> read(DatabaseKey objectKey) throws IOException {
+        return readValue(readRecord(objectKey));
+    }
+
+    /**
+     * Читает значение записи по смещению, найденному в индексе таблицы (см. {@link TableIndex#searchForPosition(DatabaseKey)})
+     */
+    Optional<byte[]> readAt(long offset) throws IOException {
+        return readValue(getReader().readDbUnit(offset));
+    }
+
+    private Optional<byte[]> readValue(Optional<DatabaseRecord> optionalDatabaseRecord) throws IOException {
+        if (optionalDatabaseRecord.isEmpty() || !optionalDatabaseRecord.get().isValuePresented()) {
+            return Optional.empty();
+        }
+
+        if (optionalDatabaseRecord.get() instanceof BlobReferenceDatabaseRecord) {
+            BlobReferenceDatabaseRecord blobRecord = (BlobReferenceDatabaseRecord) optionalDatabaseRecord.get();
+            return Optional.of(BlobFile.read(tableRootPath, blobRecord.getReference(), config.isVerifyChecksums()));
+        }
+
+        return Optional.of(optionalDatabaseRecord.get().getValue());
+    }
+
+    @Override
+    public Optional<DatabaseRecord> readRecord(DatabaseKey objectKey) throws IOException {
+        Optional<SegmentOffsetInfo> optionalSegmentOffsetInfo = searchForKey(objectKey);
 
         if (optionalSegmentOffsetInfo.isEmpty()) {
             return Optional.empty();
         }
 
-        SegmentOffsetInfo offsetInfo = optionalSegmentOffsetInfo.get();
+        return getReader().readDbUnit(optionalSegmentOffsetInfo.get().getOffset());
+    }
 
-        DatabaseInputStream dataInputStream = new DatabaseInputStream(
-                Files.newInputStream(Paths.get(tableRootPath.toString(), segmentName))
-        );
+    @Override
+    public boolean containsKey(DatabaseKey objectKey) throws IOException {
+        return searchForKey(objectKey).isPresent();
+    }
 
-        long skipped = dataInputStream.skip(offsetInfo.getOffset());
-        if (skipped != offsetInfo.getOffset()) {
-            throw new IOException("Cannot skip offset");
+    /**
+     * Ищет смещение последней записи по ключу: сначала среди записей в памяти, они новее hint-файла,
+     * затем в {@link SparseSegmentIndex разреженном индексе}
+     */
+    private Optional<SegmentOffsetInfo> searchForKey(DatabaseKey objectKey) throws IOException {
+        Optional<SegmentOffsetInfo> offsetInfo = segmentIndex.searchForKey(objectKey);
+        SparseSegmentIndex currentSparseIndex = sparseIndex;
+        if (offsetInfo.isPresent() || currentSparseIndex == null) {
+            return offsetInfo;
         }
 
-        Optional<DatabaseRecord> optionalDatabaseRecord = dataInputStream.readDbUnit();
+        return currentSparseIndex.find(objectKey.getBytes())
+                .map(entry -> new SegmentOffsetInfoImpl(entry.getOffset()));
+    }
 
-        if (optionalDatabaseRecord.isEmpty() || !optionalDatabaseRecord.get().isValuePresented()) {
-            return Optional.empty();
+    /**
+     * Переходит на {@link SparseSegmentIndex разреженный индекс} по только что записанному hint-файлу
+     * и освобождает индекс в памяти. Вызывается для сегмента, который больше не дописывается, под блокировкой
+     * на запись списка сегментов, чтобы чтение не попало на старый индекс поверх нового hint-файла
+     *
+     * @return {@code true} - если hint-файл покрывает весь сегмент и индекс заменен
+     */
+    boolean useSparseIndex() {
+        Optional<SparseSegmentIndex> loaded = loadSparseIndex();
+        if (loaded.isEmpty() || loaded.get().getSegmentLength() < bytesWritten) {
+            return false;
         }
 
-        return Optional.of(optionalDatabaseRecord.get().getValue());
+        // Readers check the in-memory index first, so the sparse one must be visible before it is dropped
+        sparseIndex = loaded.get();
+        segmentIndex = new SegmentIndex();
+        return true;
+    }
+
+    /**
+     * Переносит смещения записей сегмента в индекс таблицы: вместо своего индекса сегмент пользуется
+     * {@link TableIndex#segmentIndex(Segment) представлением} общего. Записи, уже лежащие в собственном
+     * индексе сегмента, не переносятся, поэтому вызывается до первой записи или после того, как ключи сегмента
+     * уже добавлены в индекс таблицы. После этого по ключу находятся только записи, актуальные для таблицы:
+     * перезаписанные в более новых сегментах и удаленные ключи сегмент не находит
+     */
+    void useTableIndex(TableIndex tableIndex) {
+        segmentIndex = tableIndex.segmentIndex(this);
+    }
+
+    private Optional<SparseSegmentIndex> loadSparseIndex() {
+        return SparseSegmentIndex.load(Paths.get(tableRootPath.toString(), segmentName),
+                config.getSparseIndexInterval(), config.getBloomBitsPerKey());
     }
 
     @Override
     public boolean isReadOnly() {
-        return bytesWritten >= MAX_SIZE_IN_BYTES;
+        return bytesWritten >= MAX_SIZE_IN_BYTES || compressedReader != null || writeFailed;
     }
 
     @Override
-    public boolean delete(String objectKey) throws IOException {
+    public boolean delete(DatabaseKey objectKey) throws IOException {
         return writeToFile(new RemoveDatabaseRecord(objectKey));
     }
+
+    /**
+     * {@code true} - если файл сегмента {@link CompressedSegmentFile сжат}
+     */
+    public boolean isCompressed() {
+        return compressedReader != null;
+    }
+
+    /**
+     * Переключает чтение на сжатый файл, который уже лежит на месте файла сегмента.
+     * Смещения записей в сжатом файле не меняются, поэтому индекс остается прежним
+     *
+     * @throws IOException если сжатый файл не удалось прочитать
+     */
+    void useCompressedFile() throws IOException {
+        Path segmentPath = Paths.get(tableRootPath.toString(), segmentName);
+        compressedReader = new CompressedSegmentReader(CompressedSegmentFile.open(segmentPath), BlockCache.getInstance(),
+                format, config.isVerifyChecksums());
+        readOnlyReader = null;
+    }
+
+    /**
+     * Активный сегмент читается позиционным чтением. Read-only сегмент больше не меняется,
+     * поэтому в режиме {@link SegmentReadMode#MMAP} он отображается в память, если укладывается в бюджет.
+     * Сжатый сегмент читается поблочно через {@link BlockCache}
+     */
+    private SegmentReader getReader() throws IOException {
+        SegmentReader currentCompressedReader = compressedReader;
+        if (currentCompressedReader != null) {
+            return currentCompressedReader;
+        }
+
+        if (!isReadOnly() || config.getSegmentReadMode() != SegmentReadMode.MMAP) {
+            return channelReader;
+        }
+
+        SegmentReader currentReadOnlyReader = readOnlyReader;
+        if (currentReadOnlyReader != null) {
+            return currentReadOnlyReader;
+        }
+
+        // Concurrent readers must not map the same file twice
+        synchronized (this) {
+            if (readOnlyReader == null) {
+                Path segmentPath = Paths.get(tableRootPath.toString(), segmentName);
+                readOnlyReader = Files.size(segmentPath) <= config.getSegmentMappingBudget()
+                        ? MappedSegmentReader.map(segmentPath, format, config.isVerifyChecksums())
+                        : channelReader;
+            }
+            return readOnlyReader;
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        DatabaseChannelWriter currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
 }
@@ -1,25 +1,29 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.logic.DatabaseKey;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
 
-import java.nio.charset.StandardCharsets;
-
 /**
  * Запись в БД, означающая добавление значения по ключу
  */
 public class SetDatabaseRecord implements WritableDatabaseRecord {
 
-    private final String key;
+    private final DatabaseKey key;
     private final byte[] value;
 
-    public SetDatabaseRecord(String key, byte[] value) {
+    public SetDatabaseRecord(DatabaseKey key, byte[] value) {
         this.key = key;
         this.value = value;
     }
 
     @Override
     public byte[] getKey() {
-        return key.getBytes(StandardCharsets.UTF_8);
+        return key.getBytes();
+    }
+
+    @Override
+    public DatabaseKey getDatabaseKey() {
+        return key;
     }
 
     @Override
@@ -39,7 +43,7 @@ public class SetDatabaseRecord implements WritableDatabaseRecord {
 
     @Override
     public int getKeySize() {
-        return key.length();
+        return key.size();
     }
 
     @Override
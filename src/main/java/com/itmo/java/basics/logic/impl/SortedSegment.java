@@ -0,0 +1,463 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableEngine;
+import com.itmo.java.basics.index.impl.BloomFilter;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.DatabaseChannelWriter;
+import com.itmo.java.basics.logic.io.SegmentChannelCache;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+import com.itmo.java.basics.logic.io.SegmentScanner;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Неизменяемый отсортированный сегмент таблицы {@link TableEngine#LSM}.
+ * <p>
+ * Файл данных - сегмент в формате {@link SegmentFormat#CURRENT}, в котором на каждый ключ приходится одна запись
+ * (значение или удаление), записи идут по возрастанию ключа. Рядом лежит индексный файл: первый и последний ключ,
+ * каждый N-й ключ со смещением его записи и фильтр Блума по всем ключам. Индекс целиком хранится в памяти,
+ * поэтому поиск ключа читает с диска только участок файла между двумя соседними ключами индекса.
+ * <p>
+ * Формат индексного файла: магическое число, версия, длина файла данных, количество записей, первый и последний
+ * ключ, количество ключей индекса, ключи индекса со смещениями, фильтр Блума и CRC32 всего предыдущего содержимого
+ */
+class SortedSegment {
+    static final String INDEX_EXTENSION = ".index";
+
+    private static final int MAGIC = 0x4B56534C; // "KVSL"
+    private static final int VERSION = 1;
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final Path path;
+    private final SegmentFormat format;
+    private final long length;
+    private final long recordCount;
+    private final DatabaseKey firstKey;
+    private final DatabaseKey lastKey;
+    private final byte[][] sampledKeys;
+    private final long[] sampledOffsets;
+    private final BloomFilter bloomFilter;
+    private final boolean verifyChecksums;
+
+    private SortedSegment(Path path, SegmentFormat format, long length, long recordCount, DatabaseKey firstKey,
+                          DatabaseKey lastKey, byte[][] sampledKeys, long[] sampledOffsets, BloomFilter bloomFilter,
+                          boolean verifyChecksums) {
+        this.path = path;
+        this.format = format;
+        this.length = length;
+        this.recordCount = recordCount;
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.sampledKeys = sampledKeys;
+        this.sampledOffsets = sampledOffsets;
+        this.bloomFilter = bloomFilter;
+        this.verifyChecksums = verifyChecksums && format.hasChecksums();
+    }
+
+    /**
+     * Создает файл сегмента, в который записи добавляются по возрастанию ключа
+     *
+     * @param path            путь до нового файла
+     * @param expectedRecords сколько записей будет добавлено (не меньше), по нему выбирается размер фильтра Блума
+     * @param config          настройки: каждый какой ключ хранить в индексе и сколько бит фильтра на ключ
+     * @throws IOException если файл не удалось создать
+     */
+    static Writer create(Path path, long expectedRecords, DatabaseConfig config) throws IOException {
+        return new Writer(path, expectedRecords, config);
+    }
+
+    /**
+     * Открывает записанный сегмент по его индексному файлу. Если индексный файл поврежден или отсутствует,
+     * индекс восстанавливается чтением файла данных
+     *
+     * @throws IOException если сегмент не удалось прочитать
+     */
+    static SortedSegment open(Path path, DatabaseConfig config) throws IOException {
+        Optional<SortedSegment> segment = readIndex(path, config);
+        if (segment.isPresent()) {
+            return segment.get();
+        }
+
+        Writer writer = new Writer(path, null, recordCount(path), config);
+        try (SegmentScanner scanner = new SegmentScanner(path)) {
+            Optional<DatabaseRecord> record;
+            while ((record = scanner.next()).isPresent()) {
+                writer.index(record.get().getDatabaseKey(), scanner.getRecordOffset());
+                writer.position = scanner.getPosition();
+            }
+            if (scanner.isCorrupted()) {
+                throw new IOException("Sorted segment " + path + " is corrupted at offset " + scanner.getPosition());
+            }
+        }
+        return writer.finishIndex(false);
+    }
+
+    static Path indexPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + INDEX_EXTENSION);
+    }
+
+    String getName() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * Ищет запись по ключу
+     *
+     * @return запись со значением или запись об удалении. {@link Optional#empty()} - если ключа в сегменте нет
+     * @throws IOException если файл не удалось прочитать или запись повреждена
+     */
+    Optional<DatabaseRecord> find(DatabaseKey key) throws IOException {
+        if (recordCount == 0 || !mightContain(key) || !bloomFilter.mightContain(key.getBytes())) {
+            return Optional.empty();
+        }
+
+        byte[] bytes = key.getBytes();
+        int sample = sampleFor(bytes);
+        long from = sampledOffsets[sample];
+        long to = sample + 1 < sampledOffsets.length ? sampledOffsets[sample + 1] : length;
+        ByteBuffer block = read(from, to);
+        while (block.hasRemaining()) {
+            SegmentFormat.RecordHeader header = format.parseHeader(block);
+            if (!header.isParsed() || header.getRequiredBytes() > block.remaining()) {
+                throw new IOException(String.format("Corrupted record in block at offset %d of %s", from, path));
+            }
+
+            byte[] recordKey = header.getKey(block);
+            int comparison = Arrays.compareUnsigned(recordKey, bytes);
+            if (comparison > 0) {
+                break;
+            }
+            if (comparison == 0) {
+                byte[] payload = header.getPayload(block);
+                if (verifyChecksums && header.getChecksum() != SegmentFormat.checksum(recordKey, header.getValueSize(), payload)) {
+                    throw new IOException(String.format("Checksum mismatch in block at offset %d of %s", from, path));
+                }
+                return Optional.of(SegmentFormat.decode(recordKey, header.getValueSize(), payload));
+            }
+            block.position(block.position() + header.getRequiredBytes());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * {@code true} - если ключ попадает в диапазон ключей сегмента
+     */
+    boolean mightContain(DatabaseKey key) {
+        return recordCount > 0 && key.compareTo(firstKey) >= 0 && key.compareTo(lastKey) <= 0;
+    }
+
+    /**
+     * {@code true} - если диапазоны ключей сегментов пересекаются
+     */
+    boolean overlaps(DatabaseKey from, DatabaseKey to) {
+        return recordCount > 0 && lastKey.compareTo(from) >= 0 && firstKey.compareTo(to) <= 0;
+    }
+
+    /**
+     * Последовательно читает записи сегмента по возрастанию ключа
+     */
+    SegmentScanner openScanner() throws IOException {
+        return new SegmentScanner(path);
+    }
+
+    /**
+     * Последовательно читает записи сегмента, начиная с ближайшего ключа индекса, не большего fromKey.
+     * Записи с ключами меньше fromKey (не больше интервала индекса) пропускает вызывающий
+     */
+    SegmentScanner openScanner(DatabaseKey fromKey) throws IOException {
+        return recordCount == 0 ? openScanner() : new SegmentScanner(path, sampledOffsets[sampleFor(fromKey.getBytes())]);
+    }
+
+    DatabaseKey getFirstKey() {
+        return firstKey;
+    }
+
+    DatabaseKey getLastKey() {
+        return lastKey;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Размер файла данных в байтах
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Удаляет файл данных и индексный файл. Сегмент к этому моменту уже не должен читаться
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(indexPathFor(path));
+        SegmentChannelCache.getInstance().invalidate(path);
+    }
+
+    /**
+     * Номер последнего ключа индекса, не большего переданного. Первый ключ сегмента всегда есть в индексе
+     */
+    private int sampleFor(byte[] key) {
+        int low = 0;
+        int high = sampledKeys.length - 1;
+        int sample = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(sampledKeys[middle], key) <= 0) {
+                sample = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return sample;
+    }
+
+    private ByteBuffer read(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        try {
+            readFully(SegmentChannelCache.getInstance().get(path), buffer, from);
+        } catch (ClosedChannelException e) {
+            // Channel was evicted from the cache during reading, read the block again
+            buffer.clear();
+            readFully(SegmentChannelCache.getInstance().get(path), buffer, from);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException(String.format("Block at offset %d of %s is truncated", from, path));
+        }
+        return buffer.flip();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private static Optional<SortedSegment> readIndex(Path path, DatabaseConfig config) throws IOException {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(indexPathFor(path));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(content, 0, Math.max(content.length - Long.BYTES, 0));
+        try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(content, 0, content.length - Long.BYTES))) {
+            if (ByteBuffer.wrap(content).getLong(content.length - Long.BYTES) != checksum.getValue()
+                    || inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                return Optional.empty();
+            }
+
+            long length = inputStream.readLong();
+            long recordCount = inputStream.readLong();
+            DatabaseKey firstKey = DatabaseKey.wrap(readBytes(inputStream));
+            DatabaseKey lastKey = DatabaseKey.wrap(readBytes(inputStream));
+            int samples = inputStream.readInt();
+            byte[][] sampledKeys = new byte[samples][];
+            long[] sampledOffsets = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                sampledKeys[i] = readBytes(inputStream);
+                sampledOffsets[i] = inputStream.readLong();
+            }
+            BloomFilter bloomFilter = BloomFilter.readFrom(inputStream);
+            if (length != Files.size(path)) {
+                return Optional.empty();
+            }
+            return Optional.of(new SortedSegment(path, SegmentFormat.detect(path), length, recordCount, firstKey, lastKey,
+                    sampledKeys, sampledOffsets, bloomFilter, config.isVerifyChecksums()));
+        } catch (IOException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static long recordCount(Path path) throws IOException {
+        long count = 0;
+        try (SegmentScanner scanner = new SegmentScanner(path)) {
+            while (scanner.next().isPresent()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] readBytes(DataInputStream inputStream) throws IOException {
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream outputStream, byte[] bytes) throws IOException {
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    /**
+     * Записывает новый сегмент. Записи должны добавляться по строго возрастающему ключу
+     */
+    static class Writer {
+        private final Path path;
+        private final DatabaseChannelWriter channelWriter;
+        private final int sampleInterval;
+        private final BloomFilter bloomFilter;
+        private final DatabaseConfig config;
+        private final List<byte[]> sampledKeys = new ArrayList<>();
+        private final List<Long> sampledOffsets = new ArrayList<>();
+        private DatabaseKey firstKey;
+        private DatabaseKey lastKey;
+        private long recordCount;
+        private long position;
+
+        private Writer(Path path, long expectedRecords, DatabaseConfig config) throws IOException {
+            this(path, createFile(path), expectedRecords, config);
+        }
+
+        private Writer(Path path, DatabaseChannelWriter channelWriter, long expectedRecords, DatabaseConfig config) {
+            this.path = path;
+            this.channelWriter = channelWriter;
+            this.sampleInterval = Math.max(config.getSparseIndexInterval(), 1);
+            this.bloomFilter = new BloomFilter((int) Math.min(expectedRecords, Integer.MAX_VALUE), config.getBloomBitsPerKey());
+            this.config = config;
+            this.position = SegmentFormat.CURRENT.getHeaderSize();
+        }
+
+        private static DatabaseChannelWriter createFile(Path path) throws IOException {
+            SegmentFormat.CURRENT.createFile(path);
+            return new DatabaseChannelWriter(path, SegmentFormat.CURRENT);
+        }
+
+        /**
+         * Добавляет запись в конец сегмента
+         *
+         * @throws IOException если запись не удалась
+         */
+        void add(WritableDatabaseRecord record) throws IOException {
+            index(record.getDatabaseKey(), position);
+            position += channelWriter.write(record);
+        }
+
+        /**
+         * Сколько байт уже занимает файл данных
+         */
+        long getLength() {
+            return position;
+        }
+
+        long getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * Дописывает файл данных и атомарно записывает индексный файл
+         *
+         * @param sync сбросить файлы на диск (fsync)
+         * @return открытый на чтение сегмент
+         * @throws IOException если файлы не удалось записать
+         */
+        SortedSegment finish(boolean sync) throws IOException {
+            try {
+                channelWriter.flush();
+                if (sync) {
+                    channelWriter.force();
+                }
+            } finally {
+                channelWriter.close();
+            }
+            return finishIndex(sync);
+        }
+
+        /**
+         * Закрывает и удаляет недописанный сегмент
+         */
+        void abort() {
+            try {
+                channelWriter.close();
+            } catch (IOException ignore) {
+                // The file is deleted anyway
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignore) {
+                // Unreferenced files are removed when the table is opened
+            }
+        }
+
+        private void index(DatabaseKey key, long offset) {
+            if (recordCount % sampleInterval == 0) {
+                sampledKeys.add(key.getBytes());
+                sampledOffsets.add(offset);
+            }
+            bloomFilter.add(key.getBytes());
+            if (firstKey == null) {
+                firstKey = key;
+            }
+            lastKey = key;
+            recordCount++;
+        }
+
+        private SortedSegment finishIndex(boolean sync) throws IOException {
+            DatabaseKey first = firstKey == null ? DatabaseKey.wrap(new byte[0]) : firstKey;
+            DatabaseKey last = lastKey == null ? first : lastKey;
+            Path indexPath = indexPathFor(path);
+            Path temporaryPath = indexPath.resolveSibling(indexPath.getFileName() + TEMPORARY_EXTENSION);
+
+            CRC32 checksum = new CRC32();
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)), checksum))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                outputStream.writeLong(position);
+                outputStream.writeLong(recordCount);
+                writeBytes(outputStream, first.getBytes());
+                writeBytes(outputStream, last.getBytes());
+                outputStream.writeInt(sampledKeys.size());
+                for (int i = 0; i < sampledKeys.size(); i++) {
+                    writeBytes(outputStream, sampledKeys.get(i));
+                    outputStream.writeLong(sampledOffsets.get(i));
+                }
+                bloomFilter.writeTo(outputStream);
+                outputStream.writeLong(checksum.getValue());
+            }
+            if (sync) {
+                try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
+            Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            long[] offsets = new long[sampledOffsets.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = sampledOffsets.get(i);
+            }
+            return new SortedSegment(path, SegmentFormat.CURRENT, position, recordCount, first, last,
+                    sampledKeys.toArray(new byte[0][]), offsets, bloomFilter, config.isVerifyChecksums());
+        }
+    }
+}
@@ -1,17 +1,36 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.config.IndexMode;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.SparseTableIndex;
 import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.ScanBatch;
 import com.itmo.java.basics.logic.Segment;
 import com.itmo.java.basics.initialization.TableInitializationContext;
 import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.HintFile;
+import com.itmo.java.basics.logic.io.SegmentFormat;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Таблица - логическая сущность, представляющая собой набор файлов-сегментов, которые объединены одним
@@ -26,26 +45,65 @@ public class TableImpl implements Table {
     private final String tableName;
     private final Path tableRootPath;
     private final TableIndex tableIndex;
-    private Segment lastCreatedSegment;
+    private final DatabaseConfig config;
+    private final AppendPipeline appendPipeline;
+    private volatile Segment lastCreatedSegment;
 
-    private TableImpl(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex) throws DatabaseException {
-        this.tableName = tableName;
-        this.tableRootPath = Paths.get(pathToDatabaseRoot.toString(), tableName);
-        this.tableIndex = tableIndex;
+    /**
+     * Все сегменты таблицы в порядке создания, последний - активный
+     */
+    private final List<Segment> segments;
+
+    /**
+     * Чтение держит блокировку на чтение, подмена сегментов при уплотнении - на запись
+     */
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final SegmentCompactor compactor;
+    private final BlobStore blobStore;
 
-        this.lastCreatedSegment = SegmentImpl.create(
-                SegmentImpl.createSegmentName(tableName), tableRootPath
-        );
+    private TableImpl(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex, DatabaseConfig config) throws DatabaseException {
+        this(tableName, Paths.get(pathToDatabaseRoot.toString(), tableName), tableIndex,
+                List.of(SegmentImpl.create(SegmentImpl.createSegmentName(tableName), Paths.get(pathToDatabaseRoot.toString(), tableName), config)),
+                config);
+        compactor.onSegmentCreated(lastCreatedSegment);
     }
 
-    private TableImpl(String tableName, Path tableRootPath,  TableIndex tableIndex, Segment lastCreatedSegment) {
+    /**
+     * @param tableIndex индекс таблицы с ключами сегментов. В режиме {@link IndexMode#SPARSE} не используется:
+     *                   ключи ищутся перебором сегментов (см. {@link SparseTableIndex})
+     */
+    private TableImpl(String tableName, Path tableRootPath, TableIndex tableIndex, List<Segment> segments, DatabaseConfig config) {
         this.tableName = tableName;
         this.tableRootPath = tableRootPath;
-        this.tableIndex = tableIndex;
-        this.lastCreatedSegment = lastCreatedSegment;
+        this.segments = new CopyOnWriteArrayList<>(segments);
+        this.tableIndex = config.getIndexMode() == IndexMode.SPARSE
+                ? new SparseTableIndex(Collections.unmodifiableList(this.segments))
+                : tableIndex;
+        this.lastCreatedSegment = segments.get(segments.size() - 1);
+        this.config = config;
+        for (Segment segment : segments) {
+            attachSegment(segment);
+        }
+        this.appendPipeline = new AppendPipeline(new AppendPipeline.Target() {
+            @Override
+            public void append(List<WritableDatabaseRecord> records) throws DatabaseException {
+                appendToSegments(records);
+            }
+
+            @Override
+            public void sync() throws DatabaseException {
+                syncLastSegment();
+            }
+        }, config.getDurabilityMode(), config.getSyncIntervalMillis());
+        this.blobStore = new BlobStore(this, config);
+        this.compactor = new SegmentCompactor(this, config);
     }
 
     public static Table create(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex) throws DatabaseException {
+        return create(tableName, pathToDatabaseRoot, tableIndex, new DatabaseConfig(pathToDatabaseRoot.toString()));
+    }
+
+    public static Table create(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex, DatabaseConfig config) throws DatabaseException {
         if (new File(pathToDatabaseRoot.toString(), tableName).exists()) {
             throw new DatabaseException("Table already exists");
         }
@@ -56,19 +114,24 @@ public class TableImpl implements Table {
             throw new DatabaseException("Cannot create directory for a table", e);
         }
 
-        return new CachingTable(new TableImpl(tableName, pathToDatabaseRoot, tableIndex));
+        return new CachingTable(new TableImpl(tableName, pathToDatabaseRoot, tableIndex, config));
     }
 
     public static Table initializeFromContext(TableInitializationContext context) {
+        return initializeFromContext(context, new DatabaseConfig(context.getTablePath().getParent().toString()));
+    }
+
+    public static Table initializeFromContext(TableInitializationContext context, DatabaseConfig config) {
         if (context.getCurrentSegment() == null) {
             try {
-                context.updateCurrentSegment(SegmentImpl.create(SegmentImpl.createSegmentName(context.getTableName()), context.getTablePath()));
+                context.updateCurrentSegment(SegmentImpl.create(SegmentImpl.createSegmentName(context.getTableName()), context.getTablePath(), config));
             } catch (DatabaseException e) {
                 throw new RuntimeException("Cannot create new segment during initialization", e);
             }
         }
 
-        return new CachingTable(new TableImpl(context.getTableName(), context.getTablePath(), context.getTableIndex(), context.getCurrentSegment()));
+        List<Segment> segments = context.getSegments().isEmpty() ? List.of(context.getCurrentSegment()) : context.getSegments();
+        return new CachingTable(new TableImpl(context.getTableName(), context.getTablePath(), context.getTableIndex(), segments, config));
     }
 
     @Override
@@ -77,48 +140,282 @@ public class TableImpl implements Table {
     }
 
     @Override
-    public void write(String objectKey, byte[] objectValue) throws DatabaseException {
+    public void write(DatabaseKey objectKey, byte[] objectValue) throws DatabaseException {
         if (objectValue == null) {
             delete(objectKey);
         } else {
-            try {
-                if (!lastCreatedSegment.write(objectKey, objectValue)) {
-                    lastCreatedSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName), tableRootPath);
-                    lastCreatedSegment.write(objectKey, objectValue);
-                }
-            } catch (IOException e) {
-                throw new DatabaseException("Writing: Cannot write value to segment", e);
+            appendPipeline.append(new SetDatabaseRecord(objectKey, objectValue));
+        }
+    }
+
+    @Override
+    public Optional<byte[]> read(DatabaseKey objectKey) throws DatabaseException {
+        segmentsLock.readLock().lock();
+        try {
+            if (config.getIndexMode() == IndexMode.FULL) {
+                // One lookup finds both the segment and the offset
+                long position = tableIndex.searchForPosition(objectKey);
+                return position == TableIndex.ABSENT
+                        ? Optional.empty()
+                        : ((SegmentImpl) tableIndex.getSegment(position)).readAt(TableIndex.getOffset(position));
             }
 
-            tableIndex.onIndexedEntityUpdated(objectKey, lastCreatedSegment);
+            Optional<Segment> optionalSegment = tableIndex.searchForKey(objectKey);
+            if (optionalSegment.isEmpty()) {
+                return Optional.empty();
+            }
+
+            return optionalSegment.get().read(objectKey);
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot read key from segment", e);
+        } catch (UncheckedIOException e) {
+            throw new DatabaseException("Cannot read key from segment", e.getCause());
+        } finally {
+            segmentsLock.readLock().unlock();
         }
     }
 
     @Override
-    public Optional<byte[]> read(String objectKey) throws DatabaseException {
-        Optional<Segment> optionalSegment = tableIndex.searchForKey(objectKey);
-        if (optionalSegment.isEmpty()) {
-            return Optional.empty();
+    public void delete(DatabaseKey objectKey) throws DatabaseException {
+        appendPipeline.append(new RemoveDatabaseRecord(objectKey));
+    }
+
+    /**
+     * Индекс таблицы хэширует ключи и не хранит их порядок, поэтому диапазон ключей можно читать только
+     * из таблиц {@link com.itmo.java.basics.config.TableEngine#LSM}
+     */
+    @Override
+    public List<Map.Entry<DatabaseKey, byte[]>> scanRange(DatabaseKey fromKey, DatabaseKey toKey, int limit) throws DatabaseException {
+        throw new DatabaseException(String.format("Table %s does not keep keys ordered, range scans need the LSM engine", tableName));
+    }
+
+    /**
+     * Ключи и позиции порции берутся из индекса таблицы, а значения читаются в порядке сегментов и смещений,
+     * чтобы чтение с диска шло подряд. Курсор - курсор индекса (см. {@link TableIndex#scan}) в десятичной записи.
+     * Пока читается порция, уплотнение не подменяет сегменты, а запись не ждет
+     */
+    @Override
+    public ScanBatch scan(String cursor, int count) throws DatabaseException {
+        if (config.getIndexMode() != IndexMode.FULL) {
+            throw new DatabaseException(String.format("Table %s keeps a sparse index, full scans need kvs.index.mode=full", tableName));
         }
 
+        long indexCursor;
         try {
-            return optionalSegment.get().read(objectKey);
+            indexCursor = Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new DatabaseException(String.format("Cursor %s is not valid for table %s", cursor, tableName), e);
+        }
+        if (indexCursor < 0) {
+            throw new DatabaseException(String.format("Cursor %s is not valid for table %s", cursor, tableName));
+        }
+
+        segmentsLock.readLock().lock();
+        try {
+            List<Map.Entry<DatabaseKey, Long>> positions = new ArrayList<>();
+            long nextCursor = tableIndex.scan(indexCursor, Math.max(count, 1), (key, position) -> positions.add(Map.entry(key, position)));
+            positions.sort(Map.Entry.comparingByValue());
+
+            List<Map.Entry<DatabaseKey, byte[]>> entries = new ArrayList<>(positions.size());
+            for (Map.Entry<DatabaseKey, Long> position : positions) {
+                Optional<byte[]> value = ((SegmentImpl) tableIndex.getSegment(position.getValue())).readAt(TableIndex.getOffset(position.getValue()));
+                value.ifPresent(bytes -> entries.add(Map.entry(position.getKey(), bytes)));
+            }
+            return new ScanBatch(String.valueOf(nextCursor), entries);
         } catch (IOException e) {
-            throw new DatabaseException("Cannot read key from segment", e);
+            throw new DatabaseException("Cannot scan segments of table " + tableName, e);
+        } catch (UncheckedIOException e) {
+            throw new DatabaseException("Cannot scan segments of table " + tableName, e.getCause());
+        } finally {
+            segmentsLock.readLock().unlock();
         }
     }
 
     @Override
-    public void delete(String objectKey) throws DatabaseException {
+    public void close() throws DatabaseException {
+        compactor.close();
+        appendPipeline.close();
+
+        try {
+            blobStore.close();
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot close blob file of table " + tableName, e);
+        }
+
         try {
-            if (!lastCreatedSegment.delete(objectKey)) {
-                lastCreatedSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName), tableRootPath);
-                lastCreatedSegment.delete(objectKey);
+            lastCreatedSegment.close();
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot close segment " + lastCreatedSegment.getName(), e);
+        }
+
+        try {
+            HintFile.write(Paths.get(tableRootPath.toString(), lastCreatedSegment.getName()));
+        } catch (IOException ignore) {
+            // Active segment will be fully scanned on startup
+        }
+    }
+
+    /**
+     * Записывает пачку из {@link AppendPipeline}, переходя на новые сегменты по мере заполнения текущего.
+     * Большие значения предварительно выносятся в blob-файлы (см. {@link BlobStore}).
+     * Вызывается только потоком, держащим блокировку дозаписи
+     */
+    private void appendToSegments(List<WritableDatabaseRecord> batch) throws DatabaseException {
+        try {
+            List<WritableDatabaseRecord> records = blobStore.separate(batch);
+
+            // Previous segments are looked up before writing: a sparse index sees written records at once
+            Map<DatabaseKey, Segment> previousSegments = new HashMap<>();
+            for (WritableDatabaseRecord record : records) {
+                previousSegments.computeIfAbsent(record.getDatabaseKey(), key -> tableIndex.searchForKey(key).orElse(null));
+            }
+
+            int written = 0;
+            while (written < records.size()) {
+                List<WritableDatabaseRecord> remaining = records.subList(written, records.size());
+                int segmentWritten = lastCreatedSegment.write(remaining);
+
+                for (int i = 0; i < segmentWritten; i++) {
+                    WritableDatabaseRecord record = remaining.get(i);
+                    DatabaseKey key = record.getDatabaseKey();
+                    compactor.onRecordAppended(lastCreatedSegment, previousSegments.put(key, lastCreatedSegment));
+                    if (record.isValuePresented()) {
+                        tableIndex.onIndexedEntityUpdated(key, lastCreatedSegment);
+                    } else {
+                        // Deleted keys are not kept in the index
+                        tableIndex.onIndexedEntityRemoved(key);
+                    }
+                }
+
+                written += segmentWritten;
+                if (written < records.size()) {
+                    rollOverSegment();
+                }
             }
         } catch (IOException e) {
-            throw new DatabaseException("Deleting: Cannot write value to segment", e);
+            throw new DatabaseException("Cannot write value to segment", e);
+        } catch (UncheckedIOException e) {
+            throw new DatabaseException("Cannot write value to segment", e.getCause());
         }
+    }
 
-        tableIndex.onIndexedEntityUpdated(objectKey, lastCreatedSegment);
+    /**
+     * Сбрасывает на диск активный blob-файл и активный сегмент. Вызывается под блокировкой дозаписи
+     */
+    void syncLastSegment() throws DatabaseException {
+        Segment segment = lastCreatedSegment;
+        try {
+            blobStore.sync();
+            segment.sync();
+        } catch (IOException e) {
+            throw new DatabaseException("Cannot sync segment " + segment.getName(), e);
+        }
+    }
+
+    /**
+     * Закрывает заполненный сегмент и создает новый, в который будут производиться дальнейшие записи.
+     * Если записи должны переживать сбой, перед закрытием заполненный сегмент сбрасывается на диск
+     */
+    private void rollOverSegment() throws IOException, DatabaseException {
+        if (config.getDurabilityMode() != DurabilityMode.NONE) {
+            blobStore.sync();
+            lastCreatedSegment.sync();
+        }
+
+        lastCreatedSegment.close();
+        compactor.onSegmentSealed(lastCreatedSegment);
+        Segment segment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName), tableRootPath, config);
+        attachSegment(segment);
+        compactor.onSegmentCreated(segment);
+        segments.add(segment);
+        lastCreatedSegment = segment;
+    }
+
+    /**
+     * Выполняет один проход уплотнения сегментов, не дожидаясь фонового
+     *
+     * @return количество уплотненных сегментов
+     * @throws DatabaseException если не удалось прочитать или записать сегменты
+     */
+    public int compact() throws DatabaseException {
+        return compactor.compact();
+    }
+
+    /**
+     * Переписывает сегменты, записанные в старых {@link SegmentFormat форматах}, в текущем формате
+     *
+     * @return количество переписанных сегментов
+     * @throws DatabaseException если не удалось прочитать или записать сегменты
+     */
+    public int migrate() throws DatabaseException {
+        return compactor.migrate();
+    }
+
+    /**
+     * Дописывает запись в активный сегмент в обход кэша и очереди {@link AppendPipeline}, например, новую ссылку
+     * на перенесенное значение. Вызывается под блокировкой дозаписи: записи, которые уже ждут в очереди,
+     * будут записаны после этой, и проверенная под той же блокировкой запись не перезапишет более новое значение.
+     * Запись не сбрасывается на диск, это остается вызывающему ({@link #syncLastSegment()})
+     */
+    void appendRecord(WritableDatabaseRecord record) throws DatabaseException {
+        appendToSegments(List.of(record));
+    }
+
+    BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    Path getTableRootPath() {
+        return tableRootPath;
+    }
+
+    TableIndex getTableIndex() {
+        return tableIndex;
+    }
+
+    Segment getActiveSegment() {
+        return lastCreatedSegment;
+    }
+
+    /**
+     * Снимок списка сегментов в порядке создания
+     */
+    List<Segment> getSegments() {
+        return new ArrayList<>(segments);
+    }
+
+    Lock getAppendLock() {
+        return appendPipeline.getAppendLock();
+    }
+
+    Lock getSegmentsWriteLock() {
+        return segmentsLock.writeLock();
+    }
+
+    /**
+     * В режиме {@link IndexMode#FULL} смещения записей сегмента хранятся в индексе таблицы
+     * (см. {@link SegmentImpl#useTableIndex(TableIndex)}). Вызывается до первой записи в сегмент
+     */
+    void attachSegment(Segment segment) {
+        if (config.getIndexMode() == IndexMode.FULL && segment instanceof SegmentImpl) {
+            ((SegmentImpl) segment).useTableIndex(tableIndex);
+        }
+    }
+
+    /**
+     * Заменяет идущие подряд сегменты результатом их уплотнения. Вызывается под блокировкой дозаписи
+     *
+     * @param sources сегменты, которые были уплотнены
+     * @param output  новый сегмент или {@code null}, если актуальных записей не осталось
+     */
+    void replaceSegments(List<Segment> sources, Segment output) {
+        int position = segments.indexOf(sources.get(0));
+        segments.removeAll(sources);
+        if (output != null) {
+            segments.add(position, output);
+        }
+        for (Segment source : sources) {
+            tableIndex.removeSegment(source);
+        }
     }
 }
@@ -0,0 +1,161 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only файл, в который выносятся большие значения таблицы. В сегменте вместо значения хранится
+ * {@link BlobReference ссылка} на него.
+ * <p>
+ * Файлы лежат в поддиректории {@value #DIRECTORY} таблицы и называются по возрастающему номеру.
+ * Значения записываются вместе с ключом в {@link SegmentFormat#CURRENT формате сегмента}, поэтому
+ * blob-файл можно прочитать {@link SegmentScanner}, чтобы найти в нем актуальные значения при уплотнении
+ */
+public class BlobFile implements Closeable {
+    public static final String DIRECTORY = "blobs";
+    private static final String EXTENSION = ".blob";
+
+    private final long fileId;
+    private final DatabaseChannelWriter writer;
+    private long size;
+
+    private BlobFile(long fileId, DatabaseChannelWriter writer, long size) {
+        this.fileId = fileId;
+        this.writer = writer;
+        this.size = size;
+    }
+
+    /**
+     * Создает новый blob-файл
+     *
+     * @param tableRootPath путь до директории таблицы
+     * @param fileId        номер файла
+     * @throws IOException если файл уже существует или его не удалось создать
+     */
+    public static BlobFile create(Path tableRootPath, long fileId) throws IOException {
+        Path path = pathFor(tableRootPath, fileId);
+        Files.createDirectories(path.getParent());
+        SegmentFormat.CURRENT.createFile(path);
+        return new BlobFile(fileId, new DatabaseChannelWriter(path, SegmentFormat.CURRENT), SegmentFormat.CURRENT.getHeaderSize());
+    }
+
+    /**
+     * Путь до blob-файла таблицы
+     */
+    public static Path pathFor(Path tableRootPath, long fileId) {
+        return Paths.get(tableRootPath.toString(), DIRECTORY, fileId + EXTENSION);
+    }
+
+    /**
+     * Номера blob-файлов таблицы по возрастанию
+     */
+    public static List<Long> list(Path tableRootPath) {
+        File[] files = new File(tableRootPath.toString(), DIRECTORY).listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+
+        List<Long> fileIds = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && name.endsWith(EXTENSION)) {
+                try {
+                    fileIds.add(Long.parseLong(name.substring(0, name.length() - EXTENSION.length())));
+                } catch (NumberFormatException ignore) {
+                    // Not a blob file
+                }
+            }
+        }
+        Collections.sort(fileIds);
+        return fileIds;
+    }
+
+    /**
+     * Читает значение по ссылке. Файлы читаются через {@link SegmentChannelCache}
+     *
+     * @param tableRootPath  путь до директории таблицы
+     * @param reference      ссылка на значение
+     * @param verifyChecksum проверять ли контрольную сумму значения
+     * @throws IOException если произошла ошибка ввода-вывода, значение обрезано или не сошлась контрольная сумма
+     */
+    public static byte[] read(Path tableRootPath, BlobReference reference, boolean verifyChecksum) throws IOException {
+        Path path = pathFor(tableRootPath, reference.getFileId());
+        ByteBuffer buffer = ByteBuffer.allocate(reference.getLength());
+        try {
+            readFully(SegmentChannelCache.getInstance().get(path), buffer, reference.getOffset());
+        } catch (ClosedChannelException e) {
+            // Channel was evicted from the cache during reading, read the value again
+            buffer.clear();
+            readFully(SegmentChannelCache.getInstance().get(path), buffer, reference.getOffset());
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new IOException(String.format("Value at offset %d of %s is truncated", reference.getOffset(), path));
+        }
+        if (verifyChecksum && BlobReference.checksum(buffer.array()) != reference.getChecksum()) {
+            throw new IOException(String.format("Checksum mismatch at offset %d of %s", reference.getOffset(), path));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Дописывает значение в файл. Значение сразу попадает в файл (но не обязательно на диск, см. {@link #force()}),
+     * поэтому ссылку можно записывать в сегмент
+     *
+     * @param key   ключ, нужен для уплотнения blob-файлов
+     * @param value значение
+     * @return ссылку на записанное значение
+     * @throws IOException если запись не удалась
+     */
+    public BlobReference append(DatabaseKey key, byte[] value) throws IOException {
+        long recordSize = writer.write(new SetDatabaseRecord(key, value));
+        // The value is the tail of the record in every format
+        long valueOffset = size + recordSize - value.length;
+        size += recordSize;
+        writer.flush();
+        return new BlobReference(fileId, valueOffset, value.length, BlobReference.checksum(value));
+    }
+
+    /**
+     * Сбрасывает записанные значения на диск (fsync)
+     */
+    public void force() throws IOException {
+        writer.force();
+    }
+
+    public long getFileId() {
+        return fileId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.itmo.java.basics.logic.io;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Ссылка на значение, вынесенное из сегмента в {@link BlobFile blob-файл}: номер файла, смещение
+ * и длина значения в нем и контрольная сумма (CRC32C) значения
+ */
+public class BlobReference {
+    /**
+     * Размер закодированной ссылки в байтах
+     */
+    public static final int BYTES = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final long fileId;
+    private final long offset;
+    private final int length;
+    private final int checksum;
+
+    public BlobReference(long fileId, long offset, int length, int checksum) {
+        this.fileId = fileId;
+        this.offset = offset;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Контрольная сумма значения, которая хранится в ссылке
+     */
+    public static int checksum(byte[] value) {
+        CRC32C crc = new CRC32C();
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+
+    public static BlobReference decode(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        return new BlobReference(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+    }
+
+    public byte[] encode() {
+        return ByteBuffer.allocate(BYTES).putLong(fileId).putLong(offset).putInt(length).putInt(checksum).array();
+    }
+
+    public long getFileId() {
+        return fileId;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BlobReference)) {
+            return false;
+        }
+        BlobReference that = (BlobReference) o;
+        return fileId == that.fileId && offset == that.offset && length == that.length && checksum == that.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fileId) * 31 + Long.hashCode(offset);
+    }
+}
@@ -0,0 +1,121 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Общий для всех сжатых сегментов LRU кэш распакованных блоков, ограниченный суммарным размером блоков.
+ * Блоки привязаны к объекту {@link CompressedSegmentFile}, поэтому после замены файла сегмента
+ * старые блоки не находятся и со временем вытесняются
+ */
+public class BlockCache {
+    private static final long DEFAULT_CAPACITY_BYTES = 8 * 1024 * 1024;
+    private static final BlockCache INSTANCE = new BlockCache(DEFAULT_CAPACITY_BYTES);
+
+    private final long capacityBytes;
+    private final LinkedHashMap<BlockKey, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    private long hits;
+    private long misses;
+
+    public BlockCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Кэш, разделяемый всеми сегментами
+     */
+    public static BlockCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Возвращает распакованный блок, распаковывая его при промахе. Возвращаемый массив нельзя изменять
+     *
+     * @param file  сжатый сегмент
+     * @param block номер блока
+     * @throws IOException если блок не удалось прочитать
+     */
+    public byte[] get(CompressedSegmentFile file, int block) throws IOException {
+        BlockKey key = new BlockKey(file, block);
+        synchronized (this) {
+            byte[] cached = blocks.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // Decompress outside of the lock, concurrent misses of the same block are harmless
+        byte[] loaded = file.readBlock(block);
+        synchronized (this) {
+            byte[] previous = blocks.put(key, loaded);
+            sizeBytes += loaded.length - (previous == null ? 0 : previous.length);
+
+            Iterator<Map.Entry<BlockKey, byte[]>> iterator = blocks.entrySet().iterator();
+            while (sizeBytes > capacityBytes && iterator.hasNext()) {
+                Map.Entry<BlockKey, byte[]> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                sizeBytes -= eldest.getValue().length;
+                iterator.remove();
+            }
+        }
+        return loaded;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BlockCache{size=%d/%d bytes, blocks=%d, hits=%d, misses=%d}",
+                sizeBytes, capacityBytes, blocks.size(), hits, misses);
+    }
+
+    private static class BlockKey {
+        private final CompressedSegmentFile file;
+        private final int block;
+
+        private BlockKey(CompressedSegmentFile file, int block) {
+            this.file = file;
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) o;
+            return file == other.file && block == other.block;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(file), block);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Сегмент, сжатый поблочно.
+ * <p>
+ * Исходный файл сегмента (вместе с его заголовком) делится на блоки одинакового размера, каждый блок
+ * сжимается отдельно. Смещения записей остаются смещениями в исходном файле, поэтому индексы и hint-файлы
+ * не меняются, а для чтения записи распаковываются только блоки, в которые она попадает.
+ * <p>
+ * Формат: заголовок (магическое число "KVSZ", версия, идентификатор {@link SegmentCodec}, размер блока,
+ * длина исходного файла), сжатые блоки, индекс блоков (смещение и длина каждого блока) и окончание
+ * (смещение индекса, количество блоков, магическое число). Блок, который не удалось сжать, хранится как есть
+ */
+public class CompressedSegmentFile {
+    private static final int MAGIC = 0x4B56535A; // "KVSZ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + Long.BYTES;
+    private static final int FOOTER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+    private final Path path;
+    private final SegmentCodec codec;
+    private final int blockSize;
+    private final long length;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+
+    private CompressedSegmentFile(Path path, SegmentCodec codec, int blockSize, long length, long[] blockOffsets, int[] blockLengths) {
+        this.path = path;
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.length = length;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+    }
+
+    /**
+     * Проверяет, что файл сегмента сжат
+     *
+     * @param segmentPath путь до файла сегмента
+     * @throws IOException если файл не удалось прочитать
+     */
+    public static boolean isCompressed(Path segmentPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, magic, 0);
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Сжимает файл сегмента в новый файл и сбрасывает его на диск
+     *
+     * @param sourcePath путь до несжатого сегмента
+     * @param targetPath путь до сжатого файла, файл не должен существовать
+     * @param codec      алгоритм сжатия
+     * @param blockSize  размер блока исходного файла
+     * @return размер сжатого файла
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static long write(Path sourcePath, Path targetPath, SegmentCodec codec, int blockSize) throws IOException {
+        try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(targetPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long length = source.size();
+            int blockCount = (int) ((length + blockSize - 1) / blockSize);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(codec.getId()).putInt(blockSize).putLong(length).flip();
+            writeFully(target, header);
+
+            ByteBuffer index = ByteBuffer.allocate(blockCount * (Long.BYTES + Integer.BYTES));
+            byte[] block = new byte[blockSize];
+            long position = HEADER_SIZE;
+            for (int i = 0; i < blockCount; i++) {
+                int blockLength = (int) Math.min(blockSize, length - (long) i * blockSize);
+                ByteBuffer blockBuffer = ByteBuffer.wrap(block, 0, blockLength);
+                readFully(source, blockBuffer, (long) i * blockSize);
+                if (blockBuffer.hasRemaining()) {
+                    throw new IOException("Segment " + sourcePath + " was truncated during compression");
+                }
+
+                byte[] compressed = codec.compress(block, blockLength);
+                ByteBuffer stored = compressed.length < blockLength
+                        ? ByteBuffer.wrap(compressed)
+                        : ByteBuffer.wrap(block, 0, blockLength);
+                index.putLong(position).putInt(stored.remaining());
+                position += stored.remaining();
+                writeFully(target, stored);
+            }
+
+            index.flip();
+            writeFully(target, index);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putLong(position).putInt(blockCount).putInt(MAGIC).flip();
+            writeFully(target, footer);
+
+            target.force(true);
+            return target.size();
+        }
+    }
+
+    /**
+     * Читает заголовок и индекс блоков сжатого сегмента
+     *
+     * @param segmentPath путь до сжатого сегмента
+     * @throws IOException если файл не удалось прочитать, он поврежден или сжат незарегистрированным алгоритмом
+     */
+    public static CompressedSegmentFile open(Path segmentPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Corrupted compressed segment " + segmentPath);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            readFully(channel, header, 0);
+            readFully(channel, footer, fileSize - FOOTER_SIZE);
+            header.flip();
+            footer.flip();
+
+            if (header.remaining() < HEADER_SIZE || footer.remaining() < FOOTER_SIZE
+                    || header.getInt() != MAGIC || footer.getInt(FOOTER_SIZE - Integer.BYTES) != MAGIC) {
+                throw new IOException("Corrupted compressed segment " + segmentPath);
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported compressed segment version %d in %s", version, segmentPath));
+            }
+
+            int codecId = header.getInt();
+            SegmentCodec codec = SegmentCodecs.forId(codecId);
+            if (codec == null) {
+                throw new IOException(String.format("Unknown codec %d of %s", codecId, segmentPath));
+            }
+
+            int blockSize = header.getInt();
+            long length = header.getLong();
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            if (blockSize <= 0 || blockCount < 0 || (long) blockCount * blockSize < length
+                    || indexOffset + (long) blockCount * (Long.BYTES + Integer.BYTES) != fileSize - FOOTER_SIZE) {
+                throw new IOException("Corrupted compressed segment " + segmentPath);
+            }
+
+            ByteBuffer index = ByteBuffer.allocate(blockCount * (Long.BYTES + Integer.BYTES));
+            readFully(channel, index, indexOffset);
+            index.flip();
+
+            long[] blockOffsets = new long[blockCount];
+            int[] blockLengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = index.getLong();
+                blockLengths[i] = index.getInt();
+            }
+            return new CompressedSegmentFile(segmentPath, codec, blockSize, length, blockOffsets, blockLengths);
+        }
+    }
+
+    /**
+     * Длина исходного (несжатого) файла
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Читает и распаковывает блок. Файл читается через {@link SegmentChannelCache}
+     *
+     * @param block номер блока
+     * @return содержимое блока исходного файла
+     * @throws IOException если произошла ошибка ввода-вывода или блок поврежден
+     */
+    public byte[] readBlock(int block) throws IOException {
+        int rawLength = (int) Math.min(blockSize, length - (long) block * blockSize);
+        ByteBuffer stored = ByteBuffer.allocate(blockLengths[block]);
+        try {
+            readFully(SegmentChannelCache.getInstance().get(path), stored, blockOffsets[block]);
+        } catch (ClosedChannelException e) {
+            // Channel was evicted from the cache during reading, read the block again
+            stored.clear();
+            readFully(SegmentChannelCache.getInstance().get(path), stored, blockOffsets[block]);
+        }
+        if (stored.hasRemaining()) {
+            throw new IOException(String.format("Compressed block %d of %s is truncated", block, path));
+        }
+
+        if (blockLengths[block] == rawLength) {
+            return stored.array();
+        }
+
+        byte[] raw = new byte[rawLength];
+        codec.decompress(stored.array(), raw);
+        return raw;
+    }
+
+    /**
+     * Поток исходного содержимого файла, начиная с указанного смещения. Блоки распаковываются по мере чтения
+     *
+     * @param offset смещение в исходном файле
+     */
+    public InputStream openStream(long offset) {
+        return new InputStream() {
+            private long position = offset;
+            private byte[] block;
+            private int blockNumber = -1;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                if (position >= length) {
+                    return -1;
+                }
+                if (len == 0) {
+                    return 0;
+                }
+
+                int current = (int) (position / blockSize);
+                if (current != blockNumber) {
+                    block = readBlock(current);
+                    blockNumber = current;
+                }
+
+                int inBlock = (int) (position - (long) current * blockSize);
+                int count = Math.min(len, block.length - inBlock);
+                System.arraycopy(block, inBlock, buffer, off, count);
+                position += count;
+                return count;
+            }
+        };
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Читает записи из {@link CompressedSegmentFile сжатого сегмента}, распаковывая только блоки,
+ * в которые попадает запись. Распакованные блоки берутся из {@link BlockCache}
+ */
+public class CompressedSegmentReader implements SegmentReader {
+    /**
+     * Сколько байт читается первым обращением, как в {@link DatabaseChannelReader}
+     */
+    private static final int INITIAL_READ_SIZE = 512;
+
+    private final CompressedSegmentFile file;
+    private final BlockCache blockCache;
+    private final SegmentFormat format;
+    private final boolean verifyChecksums;
+
+    /**
+     * @param file            сжатый сегмент
+     * @param blockCache      кэш распакованных блоков
+     * @param format          формат исходного сегмента
+     * @param verifyChecksums проверять ли контрольную сумму каждой прочитанной записи
+     */
+    public CompressedSegmentReader(CompressedSegmentFile file, BlockCache blockCache, SegmentFormat format, boolean verifyChecksums) {
+        this.file = file;
+        this.blockCache = blockCache;
+        this.format = format;
+        this.verifyChecksums = verifyChecksums && format.hasChecksums();
+    }
+
+    @Override
+    public Optional<DatabaseRecord> readDbUnit(long offset) throws IOException {
+        if (offset >= file.getLength()) {
+            return Optional.empty();
+        }
+
+        int size = (int) Math.min(INITIAL_READ_SIZE, file.getLength() - offset);
+        ByteBuffer buffer = ByteBuffer.wrap(read(offset, size));
+        SegmentFormat.RecordHeader header = format.parseHeader(buffer);
+        while (!header.isCorrupted() && buffer.limit() < header.getRequiredBytes()) {
+            if (offset + header.getRequiredBytes() > file.getLength()) {
+                // Compressed segments are sealed, a record cannot be torn
+                throw new IOException(String.format("Corrupted record at offset %d of compressed segment", offset));
+            }
+            buffer = ByteBuffer.wrap(read(offset, header.getRequiredBytes()));
+            header = format.parseHeader(buffer);
+        }
+
+        if (header.isCorrupted()) {
+            throw new IOException(String.format("Corrupted record at offset %d of compressed segment", offset));
+        }
+
+        byte[] key = header.getKey(buffer);
+        byte[] payload = header.getPayload(buffer);
+        if (verifyChecksums && header.getChecksum() != SegmentFormat.checksum(key, header.getValueSize(), payload)) {
+            throw new IOException(String.format("Checksum mismatch at offset %d of compressed segment", offset));
+        }
+
+        return Optional.of(SegmentFormat.decode(key, header.getValueSize(), payload));
+    }
+
+    /**
+     * Собирает участок исходного файла из распакованных блоков
+     */
+    private byte[] read(long offset, int length) throws IOException {
+        byte[] result = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            int block = (int) (position / file.getBlockSize());
+            int inBlock = (int) (position - (long) block * file.getBlockSize());
+            byte[] data = blockCache.get(file, block);
+
+            int count = Math.min(length - copied, data.length - inBlock);
+            System.arraycopy(data, inBlock, result, copied, count);
+            copied += count;
+        }
+        return result;
+    }
+
+    public CompressedSegmentFile getFile() {
+        return file;
+    }
+}
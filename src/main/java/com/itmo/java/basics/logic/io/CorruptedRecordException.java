@@ -0,0 +1,12 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.IOException;
+
+/**
+ * Запись сегмента повреждена: поля записи не могут быть правильными или не сошлась контрольная сумма
+ */
+public class CorruptedRecordException extends IOException {
+    public CorruptedRecordException(String message) {
+        super(message);
+    }
+}
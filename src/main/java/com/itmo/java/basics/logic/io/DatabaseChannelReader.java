@@ -0,0 +1,106 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Читает записи из файла сегмента позиционным чтением ({@link FileChannel#read(ByteBuffer, long)})
+ * по смещению из индекса. Каналы берутся из {@link SegmentChannelCache}
+ */
+public class DatabaseChannelReader implements SegmentReader {
+    /**
+     * Сколько байт читается первым обращением. Для небольших записей этого хватает, чтобы прочитать запись целиком
+     */
+    private static final int INITIAL_READ_SIZE = 512;
+
+    private final Path segmentPath;
+    private final SegmentChannelCache channelCache;
+    private final SegmentFormat format;
+    private final boolean verifyChecksums;
+
+    /**
+     * @param segmentPath     путь до файла сегмента
+     * @param channelCache    кэш открытых файлов
+     * @param format          формат сегмента
+     * @param verifyChecksums проверять ли контрольную сумму каждой прочитанной записи
+     */
+    public DatabaseChannelReader(Path segmentPath, SegmentChannelCache channelCache, SegmentFormat format, boolean verifyChecksums) {
+        this.segmentPath = segmentPath;
+        this.channelCache = channelCache;
+        this.format = format;
+        this.verifyChecksums = verifyChecksums && format.hasChecksums();
+    }
+
+    /**
+     * Читает запись, начинающуюся с указанного смещения
+     *
+     * @param offset смещение записи в файле
+     * @return запись. {@link Optional#empty()} - если по смещению нет полной записи
+     * @throws IOException если произошла ошибка ввода-вывода или не сошлась контрольная сумма
+     */
+    @Override
+    public Optional<DatabaseRecord> readDbUnit(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_READ_SIZE);
+        readFully(buffer, offset);
+        buffer.flip();
+
+        SegmentFormat.RecordHeader header = format.parseHeader(buffer);
+        while (!header.isCorrupted() && buffer.limit() < header.getRequiredBytes()) {
+            int required = header.getRequiredBytes();
+            buffer = readMore(buffer, offset, required);
+            if (buffer.limit() < required) {
+                return Optional.empty();
+            }
+            header = format.parseHeader(buffer);
+        }
+
+        if (header.isCorrupted()) {
+            throw new IOException(String.format("Corrupted record at offset %d of %s", offset, segmentPath));
+        }
+
+        byte[] key = header.getKey(buffer);
+        byte[] payload = header.getPayload(buffer);
+        if (verifyChecksums && header.getChecksum() != SegmentFormat.checksum(key, header.getValueSize(), payload)) {
+            throw new IOException(String.format("Checksum mismatch at offset %d of %s", offset, segmentPath));
+        }
+        return Optional.of(SegmentFormat.decode(key, header.getValueSize(), payload));
+    }
+
+    /**
+     * Дочитывает запись, не поместившуюся в первый буфер. Позиция в возвращаемом буфере сохраняется
+     */
+    private ByteBuffer readMore(ByteBuffer buffer, long offset, int size) throws IOException {
+        ByteBuffer extended = ByteBuffer.allocate(size);
+        extended.put(buffer.array(), 0, buffer.limit());
+        readFully(extended, offset + buffer.limit());
+        extended.flip();
+        extended.position(buffer.position());
+        return extended;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        try {
+            readFully(channelCache.get(segmentPath), buffer, position);
+        } catch (ClosedChannelException e) {
+            // Channel was evicted from the cache during reading, reopen it
+            readFully(channelCache.get(segmentPath), buffer, position + buffer.position() - start);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                return;
+            }
+            position += read;
+        }
+    }
+}
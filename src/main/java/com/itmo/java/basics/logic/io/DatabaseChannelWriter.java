@@ -0,0 +1,111 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Записывает данные в БД через один долгоживущий {@link FileChannel}.
+ * Записи кодируются в {@link SegmentFormat формате} сегмента в переиспользуемый direct-буфер,
+ * а не отдельными вызовами write
+ */
+public class DatabaseChannelWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final SegmentFormat format;
+
+    /**
+     * Открывает файл на дозапись
+     *
+     * @param path   путь до файла
+     * @param format формат, в котором записан файл
+     * @throws IOException если файл не удалось открыть
+     */
+    public DatabaseChannelWriter(Path path, SegmentFormat format) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.format = format;
+    }
+
+    /**
+     * Кодирует запись в буфер. Данные попадают в файл при заполнении буфера или при вызове {@link #flush()}
+     *
+     * @param databaseRecord запись
+     * @return количество байт, которое занимает запись в файле
+     * @throws IOException если запись не удалась
+     */
+    public long write(WritableDatabaseRecord databaseRecord) throws IOException {
+        byte[] key = databaseRecord.getKey();
+        int valueSize = databaseRecord.isValuePresented() ? databaseRecord.getValueSize() : SegmentFormat.REMOVED_OBJECT_SIZE;
+        byte[] payload = valueSize == SegmentFormat.REMOVED_OBJECT_SIZE ? new byte[0] : databaseRecord.getValue();
+
+        int checksum = format.hasChecksums() ? SegmentFormat.checksum(key, valueSize, payload) : 0;
+
+        ensureRemaining(SegmentFormat.MAX_FIELDS_SIZE);
+        format.writeFieldsBeforeKey(buffer, checksum, key.length, valueSize);
+        put(key);
+        ensureRemaining(SegmentFormat.MAX_FIELDS_SIZE);
+        format.writeFieldsAfterKey(buffer, valueSize);
+        put(payload);
+
+        return format.recordSize(key.length, valueSize);
+    }
+
+    /**
+     * Сбрасывает накопленные в буфере записи в файл
+     *
+     * @throws IOException если запись не удалась
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Сбрасывает уже записанные в файл данные на диск (fsync). Содержимое буфера не затрагивается,
+     * поэтому метод можно вызывать из другого потока
+     *
+     * @throws IOException если синхронизация не удалась
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    private void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void put(byte[] data) throws IOException {
+        int position = 0;
+        while (position < data.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+
+            int length = Math.min(buffer.remaining(), data.length - position);
+            buffer.put(data, position, length);
+            position += length;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -2,8 +2,6 @@ package com.itmo.java.basics.logic.io;
 
 import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
-import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
-import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
 
 import java.io.DataInputStream;
 import java.io.EOFException;
@@ -12,31 +10,101 @@ import java.io.InputStream;
 import java.util.Optional;
 
 /**
- * Класс, отвечающий за чтение данных из БД
+ * Класс, отвечающий за чтение данных из БД. Записи читаются в любом {@link SegmentFormat формате},
+ * заголовок файла должен быть уже пропущен
  */
 public class DatabaseInputStream extends DataInputStream {
-    private static final int REMOVED_OBJECT_SIZE = -1;
+    private final SegmentFormat format;
+    private long lastRecordSize;
 
+    /**
+     * Читает записи в формате {@link SegmentFormat#LEGACY}
+     */
     public DatabaseInputStream(InputStream inputStream) {
+        this(inputStream, SegmentFormat.LEGACY);
+    }
+
+    /**
+     * @param inputStream поток записей
+     * @param format      формат записей
+     */
+    public DatabaseInputStream(InputStream inputStream, SegmentFormat format) {
         super(inputStream);
+        this.format = format;
     }
 
     /**
      * Читает следующую запись (см {@link DatabaseOutputStream#write(WritableDatabaseRecord)})
      * @return следующую запись, если она существует. {@link Optional#empty()} - если конец файла достигнут
+     * (в том числе посередине записи)
+     * @throws CorruptedRecordException если поля записи повреждены или не сошлась контрольная сумма
      */
     public Optional<DatabaseRecord> readDbUnit() throws IOException {
         try {
-            int keySize = readInt();
-            byte[] keyObject = readNBytes(keySize);
-            int valueSize = readInt();
-            if (valueSize == REMOVED_OBJECT_SIZE) {
-                return Optional.of(new RemoveDatabaseRecord(new String(keyObject)));
+            int checksum = format.hasChecksums() ? readInt() : 0;
+            Integer valueSize = null;
+            int keySize;
+            if (format.isVarint()) {
+                valueSize = SegmentFormat.valueSizeOf(readByte());
+                keySize = readVarint();
             } else {
-                return Optional.of(new SetDatabaseRecord(new String(keyObject), readNBytes(valueSize)));
+                keySize = readInt();
+            }
+            if (keySize < 0) {
+                throw new CorruptedRecordException("Negative key size " + keySize);
             }
+
+            byte[] keyObject = readExactly(keySize);
+            if (valueSize == null) {
+                valueSize = format.isVarint() ? readVarint() : readInt();
+            }
+            if (!SegmentFormat.isValidValueSize(valueSize)) {
+                throw new CorruptedRecordException("Invalid value size " + valueSize);
+            }
+
+            byte[] payload = readExactly(SegmentFormat.payloadSize(valueSize));
+            if (format.hasChecksums() && checksum != SegmentFormat.checksum(keyObject, valueSize, payload)) {
+                throw new CorruptedRecordException("Checksum mismatch");
+            }
+
+            lastRecordSize = format.recordSize(keySize, valueSize);
+            return Optional.of(SegmentFormat.decode(keyObject, valueSize, payload));
         } catch (EOFException e) {
             return Optional.empty();
         }
     }
+
+    /**
+     * Размер последней прочитанной записи в файле
+     */
+    public long getLastRecordSize() {
+        return lastRecordSize;
+    }
+
+    /**
+     * Читает ровно {@code size} байт. Массив растет по мере чтения, поэтому поврежденный размер
+     * в конце файла не приводит к выделению лишней памяти
+     */
+    private byte[] readExactly(int size) throws IOException {
+        byte[] data = readNBytes(size);
+        if (data.length < size) {
+            throw new EOFException();
+        }
+        return data;
+    }
+
+    private int readVarint() throws IOException {
+        long value = 0;
+        for (int i = 0; i < SegmentFormat.MAX_VARINT_SIZE; i++) {
+            byte current = readByte();
+            value |= (long) (current & 0x7F) << (7 * i);
+            if ((current & 0x80) == 0) {
+                if (value > Integer.MAX_VALUE) {
+                    break;
+                }
+                return (int) value;
+            }
+        }
+        throw new CorruptedRecordException("Malformed varint");
+    }
 }
@@ -5,18 +5,33 @@ import com.itmo.java.basics.logic.WritableDatabaseRecord;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Записывает данные в БД
  */
 public class DatabaseOutputStream extends DataOutputStream {
+    private final SegmentFormat format;
+    private final ByteBuffer fields = ByteBuffer.allocate(SegmentFormat.MAX_FIELDS_SIZE);
 
+    /**
+     * Записывает записи в формате {@link SegmentFormat#LEGACY}
+     */
     public DatabaseOutputStream(OutputStream outputStream) {
+        this(outputStream, SegmentFormat.LEGACY);
+    }
+
+    /**
+     * @param outputStream поток, в который пишутся записи
+     * @param format       формат записей
+     */
+    public DatabaseOutputStream(OutputStream outputStream, SegmentFormat format) {
         super(outputStream);
+        this.format = format;
     }
 
     /**
-     * Записывает в БД в следующем формате:
+     * Записывает в БД в следующем формате ({@link SegmentFormat#LEGACY}):
      * - Размер ключа в байтах используя {@link WritableDatabaseRecord#getKeySize()}
      * - Ключ
      * - Размер записи в байтах {@link WritableDatabaseRecord#getValueSize()}
@@ -25,18 +40,28 @@ public class DatabaseOutputStream extends DataOutputStream {
      * "key" : "value"
      * 3key5value
      * Метод вернет 16
+     * <p>
+     * В остальных форматах поля записи кодируются так, как описано в {@link SegmentFormat}
      *
      * @param databaseRecord запись
      * @return размер записи
      * @throws IOException если запись не удалась
      */
     public long write(WritableDatabaseRecord databaseRecord) throws IOException {
-        writeInt(databaseRecord.getKeySize());
-        write(databaseRecord.getKey());
-        writeInt(databaseRecord.getValueSize());
-        if (databaseRecord.isValuePresented()) {
-            write(databaseRecord.getValue());
-        }
-        return databaseRecord.size();
+        byte[] key = databaseRecord.getKey();
+        int valueSize = databaseRecord.isValuePresented() ? databaseRecord.getValueSize() : SegmentFormat.REMOVED_OBJECT_SIZE;
+        byte[] payload = valueSize == SegmentFormat.REMOVED_OBJECT_SIZE ? new byte[0] : databaseRecord.getValue();
+        int checksum = format.hasChecksums() ? SegmentFormat.checksum(key, valueSize, payload) : 0;
+
+        fields.clear();
+        format.writeFieldsBeforeKey(fields, checksum, key.length, valueSize);
+        write(fields.array(), 0, fields.position());
+        write(key);
+
+        fields.clear();
+        format.writeFieldsAfterKey(fields, valueSize);
+        write(fields.array(), 0, fields.position());
+        write(payload);
+        return format.recordSize(key.length, valueSize);
     }
-}
\ No newline at end of file
+}
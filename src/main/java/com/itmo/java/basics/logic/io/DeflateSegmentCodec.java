@@ -0,0 +1,76 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие блоков сегмента с помощью {@link Deflater}
+ */
+public class DeflateSegmentCodec implements SegmentCodec {
+    public static final int ID = 1;
+    public static final String NAME = "deflate";
+
+    private final int level;
+
+    public DeflateSegmentCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level уровень сжатия {@link Deflater}
+     */
+    public DeflateSegmentCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int length) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[8 * 1024];
+            while (!deflater.finished()) {
+                outputStream.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] compressed, byte[] target) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int position = 0;
+            while (position < target.length) {
+                int inflated = inflater.inflate(target, position, target.length - position);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Compressed block is shorter than expected");
+                }
+                position += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted compressed block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Hint-файл сегмента: для каждого ключа сегмента - смещение и размер последней записи и признак удаления.
+ * Позволяет при инициализации восстановить индексы, не читая значения.
+ * <p>
+ * Формат: магическое число, версия, длина сегмента на момент создания, количество записей,
+ * записи (размер ключа, ключ, смещение, размер записи, признак удаления), отсортированные по ключу,
+ * и CRC32 всего предыдущего содержимого. Если сегмент длиннее, чем записано в hint-файле,
+ * дочитать нужно только его хвост
+ */
+public class HintFile {
+    public static final String EXTENSION = ".hint";
+
+    private static final int MAGIC = 0x4B565348; // "KVSH"
+    private static final int VERSION = 1;
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    private final long segmentLength;
+    private final List<Entry> entries;
+
+    private HintFile(long segmentLength, List<Entry> entries) {
+        this.segmentLength = segmentLength;
+        this.entries = entries;
+    }
+
+    /**
+     * Путь до hint-файла сегмента
+     */
+    public static Path pathFor(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Читает сегмент целиком и атомарно (через временный файл) записывает его hint-файл
+     *
+     * @param segmentPath путь до файла сегмента
+     * @throws IOException если сегмент не удалось прочитать или hint-файл не удалось записать
+     */
+    public static void write(Path segmentPath) throws IOException {
+        Map<DatabaseKey, Entry> lastEntries = new HashMap<>();
+        long segmentLength;
+
+        try (SegmentScanner scanner = new SegmentScanner(segmentPath)) {
+            Optional<DatabaseRecord> optionalRecord;
+            while ((optionalRecord = scanner.next()).isPresent()) {
+                DatabaseRecord record = optionalRecord.get();
+                DatabaseKey key = record.getDatabaseKey();
+                lastEntries.put(key,
+                        new Entry(key.getBytes(), scanner.getRecordOffset(), (int) scanner.getRecordSize(), !record.isValuePresented()));
+            }
+            segmentLength = scanner.getPosition();
+        }
+
+        Entry[] entries = lastEntries.values().toArray(new Entry[0]);
+        Arrays.sort(entries, (first, second) -> Arrays.compare(first.key, second.key));
+
+        Path hintPath = pathFor(segmentPath);
+        Path temporaryPath = hintPath.resolveSibling(hintPath.getFileName() + TEMPORARY_EXTENSION);
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)), checksum))) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeLong(segmentLength);
+            outputStream.writeInt(entries.length);
+            for (Entry entry : entries) {
+                outputStream.writeInt(entry.key.length);
+                outputStream.write(entry.key);
+                outputStream.writeLong(entry.offset);
+                outputStream.writeInt(entry.size);
+                outputStream.writeBoolean(entry.tombstone);
+            }
+            outputStream.writeLong(checksum.getValue());
+        }
+
+        Files.move(temporaryPath, hintPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        SegmentChannelCache.getInstance().invalidate(hintPath);
+    }
+
+    /**
+     * Читает hint-файл сегмента
+     *
+     * @param segmentPath путь до файла сегмента
+     * @return содержимое hint-файла. {@link Optional#empty()} - если файла нет или он поврежден
+     */
+    public static Optional<HintFile> read(Path segmentPath) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(pathFor(segmentPath));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            CRC32 checksum = new CRC32();
+            checksum.update(content, 0, content.length - Long.BYTES);
+            if (buffer.getLong(content.length - Long.BYTES) != checksum.getValue()
+                    || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return Optional.empty();
+            }
+
+            long segmentLength = buffer.getLong();
+            int count = buffer.getInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.getInt()];
+                buffer.get(key);
+                entries.add(new Entry(key, buffer.getLong(), buffer.getInt(), buffer.get() != 0));
+            }
+            return Optional.of(new HintFile(segmentLength, entries));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Удаляет hint-файл сегмента, если он есть
+     */
+    public static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(pathFor(segmentPath));
+        SegmentChannelCache.getInstance().invalidate(pathFor(segmentPath));
+    }
+
+    /**
+     * Последовательно читает записи hint-файла, не загружая их в память. Контрольная сумма проверяется
+     * после чтения всех записей, поэтому при повреждении файла часть записей уже будет передана обработчику
+     *
+     * @param segmentPath путь до файла сегмента
+     * @param consumer    обработчик записей, получает запись и ее смещение в hint-файле
+     * @return длину сегмента, по которой был составлен hint-файл. {@link OptionalLong#empty()} - если файла нет
+     * или он поврежден
+     */
+    public static OptionalLong scan(Path segmentPath, EntryConsumer consumer) {
+        CRC32 checksum = new CRC32();
+        try (DataInputStream inputStream = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(Files.newInputStream(pathFor(segmentPath))), checksum))) {
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                return OptionalLong.empty();
+            }
+
+            long segmentLength = inputStream.readLong();
+            int count = inputStream.readInt();
+            long position = HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                Entry entry = readEntry(inputStream);
+                consumer.accept(entry, position);
+                position += entry.getEncodedSize();
+            }
+
+            long expected = checksum.getValue();
+            return inputStream.readLong() == expected ? OptionalLong.of(segmentLength) : OptionalLong.empty();
+        } catch (IOException | NegativeArraySizeException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Читает записи, лежащие в hint-файле между двумя смещениями, полученными из {@link #scan(Path, EntryConsumer)}.
+     * Файл читается через {@link SegmentChannelCache}
+     *
+     * @param segmentPath путь до файла сегмента
+     * @param from        смещение первой записи
+     * @param to          смещение сразу после последней записи
+     * @throws IOException если файл не удалось прочитать или он изменился
+     */
+    public static List<Entry> readRange(Path segmentPath, long from, long to) throws IOException {
+        Path hintPath = pathFor(segmentPath);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        try {
+            readFully(SegmentChannelCache.getInstance().get(hintPath), buffer, from);
+        } catch (ClosedChannelException e) {
+            // Channel was evicted from the cache during reading, read the range again
+            buffer.clear();
+            readFully(SegmentChannelCache.getInstance().get(hintPath), buffer, from);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Hint file " + hintPath + " is truncated");
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(buffer.array()))) {
+            while (inputStream.available() > 0) {
+                entries.add(readEntry(inputStream));
+            }
+        } catch (NegativeArraySizeException e) {
+            throw new IOException("Hint file " + hintPath + " is corrupted", e);
+        }
+        return entries;
+    }
+
+    private static Entry readEntry(DataInputStream inputStream) throws IOException {
+        byte[] key = new byte[inputStream.readInt()];
+        inputStream.readFully(key);
+        return new Entry(key, inputStream.readLong(), inputStream.readInt(), inputStream.readBoolean());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Длина сегмента, по которой был составлен hint-файл
+     */
+    public long getSegmentLength() {
+        return segmentLength;
+    }
+
+    /**
+     * Записи, отсортированные по ключу
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public static class Entry {
+        private final byte[] key;
+        private final long offset;
+        private final int size;
+        private final boolean tombstone;
+
+        private Entry(byte[] key, long offset, int size, boolean tombstone) {
+            this.key = key;
+            this.offset = offset;
+            this.size = size;
+            this.tombstone = tombstone;
+        }
+
+        public byte[] getKey() {
+            return key;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isTombstone() {
+            return tombstone;
+        }
+
+        /**
+         * Размер записи в hint-файле
+         */
+        public int getEncodedSize() {
+            return Integer.BYTES + key.length + Long.BYTES + Integer.BYTES + 1;
+        }
+    }
+
+    /**
+     * Обработчик записей hint-файла, см. {@link #scan(Path, EntryConsumer)}
+     */
+    public interface EntryConsumer {
+        void accept(Entry entry, long position);
+    }
+}
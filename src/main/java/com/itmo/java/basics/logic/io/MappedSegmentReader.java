@@ -0,0 +1,75 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Читает записи из отображенного в память файла сегмента. Подходит только для сегментов,
+ * которые больше не изменяются (открыты только на чтение): чтение не требует системных вызовов
+ */
+public class MappedSegmentReader implements SegmentReader {
+    private final Path segmentPath;
+    private final MappedByteBuffer mapping;
+    private final SegmentFormat format;
+    private final boolean verifyChecksums;
+
+    private MappedSegmentReader(Path segmentPath, MappedByteBuffer mapping, SegmentFormat format, boolean verifyChecksums) {
+        this.segmentPath = segmentPath;
+        this.mapping = mapping;
+        this.format = format;
+        this.verifyChecksums = verifyChecksums && format.hasChecksums();
+    }
+
+    /**
+     * Отображает файл сегмента в память целиком. Файл закрывается сразу, отображение остается валидным
+     *
+     * @param segmentPath     путь до файла сегмента
+     * @param format          формат сегмента
+     * @param verifyChecksums проверять ли контрольную сумму каждой прочитанной записи
+     * @throws IOException если файл не удалось отобразить
+     */
+    public static MappedSegmentReader map(Path segmentPath, SegmentFormat format, boolean verifyChecksums) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            return new MappedSegmentReader(segmentPath, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                    format, verifyChecksums);
+        }
+    }
+
+    @Override
+    public Optional<DatabaseRecord> readDbUnit(long offset) throws IOException {
+        ByteBuffer buffer = mapping.duplicate();
+        if (offset >= buffer.limit()) {
+            return Optional.empty();
+        }
+
+        buffer.position((int) offset);
+        SegmentFormat.RecordHeader header = format.parseHeader(buffer);
+        if (header.isCorrupted()) {
+            throw new IOException(String.format("Corrupted record at offset %d of %s", offset, segmentPath));
+        }
+        if (buffer.remaining() < header.getRequiredBytes()) {
+            return Optional.empty();
+        }
+
+        byte[] key = header.getKey(buffer);
+        byte[] payload = header.getPayload(buffer);
+        if (verifyChecksums && header.getChecksum() != SegmentFormat.checksum(key, header.getValueSize(), payload)) {
+            throw new IOException(String.format("Checksum mismatch at offset %d of %s", offset, segmentPath));
+        }
+        return Optional.of(SegmentFormat.decode(key, header.getValueSize(), payload));
+    }
+
+    /**
+     * @return размер отображенной области в байтах
+     */
+    public long size() {
+        return mapping.capacity();
+    }
+}
@@ -0,0 +1,114 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Общий для всех сегментов ограниченный LRU кэш открытых на чтение файлов.
+ * Позволяет не открывать файл на каждое чтение и при этом держать число открытых дескрипторов
+ * в пределах {@link #getCapacity()} независимо от количества сегментов
+ */
+public class SegmentChannelCache {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final SegmentChannelCache INSTANCE = new SegmentChannelCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<Path, FileChannel> channels;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SegmentChannelCache(int capacity) {
+        this.capacity = capacity;
+        this.channels = new LinkedHashMap<>(capacity, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, FileChannel> eldest) {
+                if (size() <= SegmentChannelCache.this.capacity) {
+                    return false;
+                }
+
+                evictions++;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Кэш, разделяемый всеми сегментами
+     */
+    public static SegmentChannelCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Возвращает открытый на чтение канал файла сегмента. Открывает файл, если его нет в кэше.
+     * Канал принадлежит кэшу и не должен закрываться вызывающей стороной
+     *
+     * @param segmentPath путь до файла сегмента
+     * @throws IOException если файл не удалось открыть
+     */
+    public synchronized FileChannel get(Path segmentPath) throws IOException {
+        FileChannel channel = channels.get(segmentPath);
+        if (channel != null && channel.isOpen()) {
+            hits++;
+            return channel;
+        }
+
+        misses++;
+        channel = FileChannel.open(segmentPath, StandardOpenOption.READ);
+        channels.put(segmentPath, channel);
+        return channel;
+    }
+
+    /**
+     * Закрывает и убирает из кэша канал сегмента (например, если файл сегмента удален или перезаписан)
+     *
+     * @param segmentPath путь до файла сегмента
+     */
+    public synchronized void invalidate(Path segmentPath) {
+        FileChannel channel = channels.remove(segmentPath);
+        if (channel != null) {
+            closeQuietly(channel);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return channels.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SegmentChannelCache{size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d}",
+                channels.size(), capacity, hits, misses, evictions);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+            // Ignore errors on closing
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.IOException;
+
+/**
+ * Алгоритм сжатия блоков сегмента. Реализации регистрируются в {@link SegmentCodecs}
+ */
+public interface SegmentCodec {
+    /**
+     * Идентификатор алгоритма, который сохраняется в файле сжатого сегмента
+     */
+    int getId();
+
+    /**
+     * Имя алгоритма, по которому он выбирается в конфигурации
+     */
+    String getName();
+
+    /**
+     * Сжимает данные
+     *
+     * @param data   буфер с данными
+     * @param length количество байт с начала буфера
+     * @return сжатые данные
+     */
+    byte[] compress(byte[] data, int length);
+
+    /**
+     * Распаковывает данные
+     *
+     * @param compressed сжатые данные
+     * @param target     буфер, размер которого равен размеру исходных данных
+     * @throws IOException если данные повреждены
+     */
+    void decompress(byte[] compressed, byte[] target) throws IOException;
+}
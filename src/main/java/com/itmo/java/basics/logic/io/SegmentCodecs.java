@@ -0,0 +1,46 @@
+package com.itmo.java.basics.logic.io;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр алгоритмов сжатия сегментов. По умолчанию зарегистрирован {@link DeflateSegmentCodec}
+ */
+public class SegmentCodecs {
+    /**
+     * Имя в конфигурации, означающее, что сегменты не сжимаются
+     */
+    public static final String NONE = "none";
+
+    private static final Map<Integer, SegmentCodec> CODECS_BY_ID = new ConcurrentHashMap<>();
+    private static final Map<String, SegmentCodec> CODECS_BY_NAME = new ConcurrentHashMap<>();
+
+    static {
+        register(new DeflateSegmentCodec());
+    }
+
+    private SegmentCodecs() {
+    }
+
+    /**
+     * Регистрирует алгоритм. Алгоритм с тем же идентификатором или именем заменяется
+     */
+    public static void register(SegmentCodec codec) {
+        CODECS_BY_ID.put(codec.getId(), codec);
+        CODECS_BY_NAME.put(codec.getName().toLowerCase(), codec);
+    }
+
+    /**
+     * @return алгоритм или {@code null}, если алгоритм с таким идентификатором не зарегистрирован
+     */
+    public static SegmentCodec forId(int id) {
+        return CODECS_BY_ID.get(id);
+    }
+
+    /**
+     * @return алгоритм или {@code null} для {@link #NONE} и незарегистрированных имен
+     */
+    public static SegmentCodec forName(String name) {
+        return name == null ? null : CODECS_BY_NAME.get(name.toLowerCase());
+    }
+}
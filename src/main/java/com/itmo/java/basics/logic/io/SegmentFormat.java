@@ -0,0 +1,517 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.impl.BlobReferenceDatabaseRecord;
+import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Формат файла сегмента
+ */
+public enum SegmentFormat {
+    /**
+     * Записи keySize|key|valueSize|value без заголовка файла (см. {@link DatabaseOutputStream})
+     */
+    LEGACY(0, 0, 0, false),
+
+    /**
+     * Заголовок файла "KVSG" и номер версии 1, записи crc32c|keySize|key|valueSize|value.
+     * Контрольная сумма считается по всему, что идет в записи после нее
+     */
+    CHECKSUMMED(2 * Integer.BYTES, 1, Integer.BYTES, false),
+
+    /**
+     * Заголовок файла "KVSG" и номер версии 2, записи crc32c|flag|keySize|key|valueSize|value,
+     * где размеры записаны в varint (по 7 бит в байте), а flag - тип записи: значение, удаление или
+     * ссылка на blob-файл. Размер значения записан только у записи со значением.
+     * Контрольная сумма считается так же, как в {@link #CHECKSUMMED}, по размерам в виде int
+     */
+    VARINT(2 * Integer.BYTES, 2, Integer.BYTES, true);
+
+    /**
+     * Формат, в котором создаются новые сегменты
+     */
+    public static final SegmentFormat CURRENT = VARINT;
+
+    public static final int REMOVED_OBJECT_SIZE = -1;
+
+    /**
+     * Размер значения у записи, в которой вместо значения хранится {@link BlobReference ссылка} на blob-файл
+     */
+    public static final int BLOB_REFERENCE_SIZE = -2;
+
+    static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * Сколько байт в любом формате занимают поля записи до ключа и поля после ключа
+     */
+    public static final int MAX_FIELDS_SIZE = Integer.BYTES + 1 + MAX_VARINT_SIZE;
+
+    private static final int MAGIC = 0x4B565347; // "KVSG"
+
+    private static final byte VALUE_FLAG = 0;
+    private static final byte REMOVED_FLAG = 1;
+    private static final byte BLOB_REFERENCE_FLAG = 2;
+
+    private static final long INCOMPLETE_VARINT = -1;
+    private static final long MALFORMED_VARINT = -2;
+
+    private final int headerSize;
+    private final int version;
+    private final int checksumSize;
+    private final boolean varint;
+
+    SegmentFormat(int headerSize, int version, int checksumSize, boolean varint) {
+        this.headerSize = headerSize;
+        this.version = version;
+        this.checksumSize = checksumSize;
+        this.varint = varint;
+    }
+
+    /**
+     * Определяет формат существующего файла сегмента по заголовку. Файлы без заголовка (в том числе пустые
+     * и еще не созданные) считаются записанными в формате {@link #LEGACY}. Для {@link CompressedSegmentFile
+     * сжатого сегмента} возвращается формат исходного файла
+     *
+     * @param segmentPath путь до файла сегмента
+     * @throws IOException если файл не удалось прочитать или версия формата не поддерживается
+     */
+    public static SegmentFormat detect(Path segmentPath) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+        if (CompressedSegmentFile.isCompressed(segmentPath)) {
+            try (InputStream inputStream = CompressedSegmentFile.open(segmentPath).openStream(0)) {
+                header.put(inputStream.readNBytes(header.capacity()));
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+                while (header.hasRemaining() && channel.read(header, header.position()) != -1) {
+                    // Read until the header is full or the file ends
+                }
+            } catch (NoSuchFileException e) {
+                return LEGACY;
+            }
+        }
+
+        header.flip();
+        if (header.remaining() < header.capacity() || header.getInt() != MAGIC) {
+            return LEGACY;
+        }
+
+        int version = header.getInt();
+        for (SegmentFormat format : values()) {
+            if (format.headerSize > 0 && format.version == version) {
+                return format;
+            }
+        }
+        throw new IOException(String.format("Unsupported segment format version %d in %s", version, segmentPath));
+    }
+
+    /**
+     * Создает пустой файл сегмента с заголовком формата
+     *
+     * @param segmentPath путь до нового файла
+     * @throws IOException если файл уже существует или его не удалось создать
+     */
+    public void createFile(Path segmentPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            if (headerSize > 0) {
+                ByteBuffer header = ByteBuffer.allocate(headerSize);
+                header.putInt(MAGIC).putInt(version).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+        }
+    }
+
+    /**
+     * Размер заголовка файла, с него начинается первая запись
+     */
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    /**
+     * Размер контрольной суммы в начале записи
+     */
+    public int getChecksumSize() {
+        return checksumSize;
+    }
+
+    public boolean hasChecksums() {
+        return checksumSize > 0;
+    }
+
+    /**
+     * {@code true} - если размеры в записях закодированы в varint
+     */
+    public boolean isVarint() {
+        return varint;
+    }
+
+    /**
+     * Размер записи в файле
+     *
+     * @param keySize   размер ключа в байтах
+     * @param valueSize размер значения в байтах, {@link #REMOVED_OBJECT_SIZE} или {@link #BLOB_REFERENCE_SIZE}
+     */
+    public long recordSize(int keySize, int valueSize) {
+        if (!varint) {
+            return checksumSize + 2 * Integer.BYTES + keySize + payloadSize(valueSize);
+        }
+
+        int valueSizeField = valueSize >= 0 ? varintSize(valueSize) : 0;
+        return checksumSize + 1 + varintSize(keySize) + keySize + valueSizeField + payloadSize(valueSize);
+    }
+
+    /**
+     * Кодирует поля записи, которые идут перед ключом (не больше {@link #MAX_FIELDS_SIZE} байт)
+     *
+     * @param buffer    буфер, в который пишутся поля
+     * @param checksum  {@link #checksum(byte[], int, byte[]) контрольная сумма} записи
+     * @param keySize   размер ключа в байтах
+     * @param valueSize размер значения, {@link #REMOVED_OBJECT_SIZE} или {@link #BLOB_REFERENCE_SIZE}
+     */
+    public void writeFieldsBeforeKey(ByteBuffer buffer, int checksum, int keySize, int valueSize) {
+        if (hasChecksums()) {
+            buffer.putInt(checksum);
+        }
+
+        if (!varint) {
+            buffer.putInt(keySize);
+            return;
+        }
+
+        buffer.put(flag(valueSize));
+        putVarint(buffer, keySize);
+    }
+
+    /**
+     * Кодирует поля записи, которые идут после ключа (не больше {@link #MAX_FIELDS_SIZE} байт)
+     *
+     * @param buffer    буфер, в который пишутся поля
+     * @param valueSize размер значения, {@link #REMOVED_OBJECT_SIZE} или {@link #BLOB_REFERENCE_SIZE}
+     */
+    public void writeFieldsAfterKey(ByteBuffer buffer, int valueSize) {
+        if (!varint) {
+            buffer.putInt(valueSize);
+        } else if (valueSize >= 0) {
+            putVarint(buffer, valueSize);
+        }
+    }
+
+    /**
+     * Разбирает поля записи, начинающейся с позиции буфера. Позиция буфера не меняется.
+     * Если в буфере не хватает байт, возвращается заголовок, по которому видно, сколько байт от начала записи
+     * нужно прочитать, чтобы продолжить разбор (см. {@link RecordHeader#getRequiredBytes()})
+     *
+     * @param buffer буфер с началом записи
+     */
+    public RecordHeader parseHeader(ByteBuffer buffer) {
+        int start = buffer.position();
+        int available = buffer.remaining();
+
+        int position = checksumSize;
+        int firstFieldSize = varint ? 1 : Integer.BYTES;
+        if (available < position + firstFieldSize) {
+            return RecordHeader.incomplete(position + firstFieldSize);
+        }
+
+        int checksum = hasChecksums() ? buffer.getInt(start) : 0;
+        byte flag = VALUE_FLAG;
+        long keySize;
+        if (varint) {
+            flag = buffer.get(start + position);
+            if (flag != VALUE_FLAG && flag != REMOVED_FLAG && flag != BLOB_REFERENCE_FLAG) {
+                return RecordHeader.corrupted();
+            }
+            position++;
+
+            keySize = getVarint(buffer, start + position, available - position);
+            if (keySize < 0) {
+                return keySize == INCOMPLETE_VARINT ? RecordHeader.incomplete(available + 1) : RecordHeader.corrupted();
+            }
+            position += varintSize((int) keySize);
+        } else {
+            keySize = buffer.getInt(start + position);
+            if (keySize < 0) {
+                return RecordHeader.corrupted();
+            }
+            position += Integer.BYTES;
+        }
+
+        int keyOffset = position;
+        if (keySize > Integer.MAX_VALUE - position - MAX_FIELDS_SIZE) {
+            return RecordHeader.corrupted();
+        }
+        position += (int) keySize;
+
+        int valueSize;
+        if (!varint) {
+            if (available < position + Integer.BYTES) {
+                return RecordHeader.incomplete(position + Integer.BYTES);
+            }
+            valueSize = buffer.getInt(start + position);
+            if (!isValidValueSize(valueSize)) {
+                return RecordHeader.corrupted();
+            }
+            position += Integer.BYTES;
+        } else if (flag == VALUE_FLAG) {
+            long size = getVarint(buffer, start + position, available - position);
+            if (size < 0) {
+                return size == INCOMPLETE_VARINT
+                        ? RecordHeader.incomplete(Math.max(position, available) + 1)
+                        : RecordHeader.corrupted();
+            }
+            valueSize = (int) size;
+            position += varintSize(valueSize);
+        } else {
+            valueSize = flag == REMOVED_FLAG ? REMOVED_OBJECT_SIZE : BLOB_REFERENCE_SIZE;
+        }
+
+        long recordSize = (long) position + payloadSize(valueSize);
+        if (recordSize > Integer.MAX_VALUE) {
+            return RecordHeader.corrupted();
+        }
+        return new RecordHeader(checksum, (int) keySize, valueSize, keyOffset, position, (int) recordSize);
+    }
+
+    /**
+     * Сколько байт записано в записи после размера значения
+     *
+     * @param valueSize размер значения в байтах, {@link #REMOVED_OBJECT_SIZE} или {@link #BLOB_REFERENCE_SIZE}
+     */
+    public static int payloadSize(int valueSize) {
+        switch (valueSize) {
+            case REMOVED_OBJECT_SIZE:
+                return 0;
+            case BLOB_REFERENCE_SIZE:
+                return BlobReference.BYTES;
+            default:
+                return valueSize;
+        }
+    }
+
+    /**
+     * Проверяет размер значения, прочитанный из файла
+     */
+    public static boolean isValidValueSize(int valueSize) {
+        return valueSize >= BLOB_REFERENCE_SIZE;
+    }
+
+    /**
+     * Собирает запись из прочитанных полей
+     *
+     * @param key       ключ
+     * @param valueSize размер значения, {@link #REMOVED_OBJECT_SIZE} или {@link #BLOB_REFERENCE_SIZE}
+     * @param payload   {@link #payloadSize(int) содержимое} записи после размера значения
+     */
+    public static DatabaseRecord decode(byte[] key, int valueSize, byte[] payload) {
+        switch (valueSize) {
+            case REMOVED_OBJECT_SIZE:
+                return new RemoveDatabaseRecord(DatabaseKey.wrap(key));
+            case BLOB_REFERENCE_SIZE:
+                return new BlobReferenceDatabaseRecord(DatabaseKey.wrap(key), BlobReference.decode(payload));
+            default:
+                return new SetDatabaseRecord(DatabaseKey.wrap(key), payload);
+        }
+    }
+
+    /**
+     * Контрольная сумма (CRC32C) записи
+     *
+     * @param key       ключ
+     * @param valueSize размер значения, {@link #REMOVED_OBJECT_SIZE} или {@link #BLOB_REFERENCE_SIZE}
+     * @param payload   {@link #payloadSize(int) содержимое} записи после размера значения
+     */
+    public static int checksum(byte[] key, int valueSize, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        updateInt(crc, key.length);
+        crc.update(key);
+        updateInt(crc, valueSize);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Тип записи в формате {@link #VARINT}
+     */
+    private static byte flag(int valueSize) {
+        switch (valueSize) {
+            case REMOVED_OBJECT_SIZE:
+                return REMOVED_FLAG;
+            case BLOB_REFERENCE_SIZE:
+                return BLOB_REFERENCE_FLAG;
+            default:
+                return VALUE_FLAG;
+        }
+    }
+
+    /**
+     * Размер значения по типу записи в формате {@link #VARINT}
+     *
+     * @return {@link #REMOVED_OBJECT_SIZE}, {@link #BLOB_REFERENCE_SIZE} или {@code null} для записи со значением
+     * @throws IOException если тип записи неизвестен
+     */
+    static Integer valueSizeOf(byte flag) throws IOException {
+        switch (flag) {
+            case VALUE_FLAG:
+                return null;
+            case REMOVED_FLAG:
+                return REMOVED_OBJECT_SIZE;
+            case BLOB_REFERENCE_FLAG:
+                return BLOB_REFERENCE_SIZE;
+            default:
+                throw new CorruptedRecordException("Unknown record type " + flag);
+        }
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Читает неотрицательный varint по абсолютной позиции
+     *
+     * @return значение, {@link #INCOMPLETE_VARINT} - если в буфере не хватает байт,
+     * {@link #MALFORMED_VARINT} - если значение не помещается в int
+     */
+    private static long getVarint(ByteBuffer buffer, int position, int available) {
+        long value = 0;
+        for (int i = 0; i < MAX_VARINT_SIZE; i++) {
+            if (i >= available) {
+                return INCOMPLETE_VARINT;
+            }
+
+            byte current = buffer.get(position + i);
+            value |= (long) (current & 0x7F) << (7 * i);
+            if ((current & 0x80) == 0) {
+                return value > Integer.MAX_VALUE ? MALFORMED_VARINT : value;
+            }
+        }
+        return MALFORMED_VARINT;
+    }
+
+    private static void updateInt(CRC32C crc, int value) {
+        crc.update(value >>> 24);
+        crc.update(value >>> 16);
+        crc.update(value >>> 8);
+        crc.update(value);
+    }
+
+    /**
+     * Поля записи, разобранные {@link #parseHeader(ByteBuffer)}. Смещения считаются от начала записи
+     */
+    public static class RecordHeader {
+        private final boolean corrupted;
+        private final boolean parsed;
+        private final int requiredBytes;
+        private final int checksum;
+        private final int keySize;
+        private final int valueSize;
+        private final int keyOffset;
+        private final int payloadOffset;
+
+        private RecordHeader(boolean corrupted, boolean parsed, int requiredBytes, int checksum, int keySize,
+                             int valueSize, int keyOffset, int payloadOffset) {
+            this.corrupted = corrupted;
+            this.parsed = parsed;
+            this.requiredBytes = requiredBytes;
+            this.checksum = checksum;
+            this.keySize = keySize;
+            this.valueSize = valueSize;
+            this.keyOffset = keyOffset;
+            this.payloadOffset = payloadOffset;
+        }
+
+        private RecordHeader(int checksum, int keySize, int valueSize, int keyOffset, int payloadOffset, int recordSize) {
+            this(false, true, recordSize, checksum, keySize, valueSize, keyOffset, payloadOffset);
+        }
+
+        private static RecordHeader incomplete(int requiredBytes) {
+            return new RecordHeader(false, false, requiredBytes, 0, 0, 0, 0, 0);
+        }
+
+        private static RecordHeader corrupted() {
+            return new RecordHeader(true, false, 0, 0, 0, 0, 0, 0);
+        }
+
+        /**
+         * {@code true} - если поля записи не могут быть правильными (отрицательный размер, неизвестный тип)
+         */
+        public boolean isCorrupted() {
+            return corrupted;
+        }
+
+        /**
+         * {@code true} - если все поля разобраны
+         */
+        public boolean isParsed() {
+            return parsed;
+        }
+
+        /**
+         * Сколько байт от начала записи нужно, чтобы продолжить разбор, а когда поля разобраны - размер всей записи
+         */
+        public int getRequiredBytes() {
+            return requiredBytes;
+        }
+
+        public int getChecksum() {
+            return checksum;
+        }
+
+        public int getKeySize() {
+            return keySize;
+        }
+
+        public int getValueSize() {
+            return valueSize;
+        }
+
+        /**
+         * Читает ключ записи, начинающейся с позиции буфера
+         */
+        public byte[] getKey(ByteBuffer buffer) {
+            return get(buffer, keyOffset, keySize);
+        }
+
+        /**
+         * Читает {@link #payloadSize(int) содержимое} записи после размера значения
+         */
+        public byte[] getPayload(ByteBuffer buffer) {
+            return get(buffer, payloadOffset, payloadSize(valueSize));
+        }
+
+        private static byte[] get(ByteBuffer buffer, int offset, int length) {
+            byte[] result = new byte[length];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(buffer.position() + offset);
+            duplicate.get(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Читает записи из файла сегмента по смещению
+ */
+public interface SegmentReader {
+    /**
+     * Читает запись, начинающуюся с указанного смещения
+     *
+     * @param offset смещение записи в файле
+     * @return запись. {@link Optional#empty()} - если по смещению нет полной записи
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    Optional<DatabaseRecord> readDbUnit(long offset) throws IOException;
+}
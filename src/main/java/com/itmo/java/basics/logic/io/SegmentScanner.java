@@ -0,0 +1,161 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Последовательно читает записи сегмента в любом {@link SegmentFormat формате}.
+ * <p>
+ * Чтение останавливается на первой записи, которая не дописана до конца, выходит за пределы файла
+ * или не сходится с контрольной суммой. Все, что лежит в файле после {@link #getPosition()}, считается
+ * поврежденным (обычно это след падения во время дозаписи)
+ */
+public class SegmentScanner implements Closeable {
+    private final Path segmentPath;
+    private final SegmentFormat format;
+    private final long length;
+    private final boolean compressed;
+    private final DatabaseInputStream inputStream;
+
+    private long position;
+    private long recordOffset;
+    private long recordSize;
+    private boolean corrupted;
+
+    /**
+     * @param segmentPath путь до файла сегмента
+     * @throws IOException если файл не удалось открыть
+     */
+    public SegmentScanner(Path segmentPath) throws IOException {
+        this(segmentPath, 0);
+    }
+
+    /**
+     * @param segmentPath путь до файла сегмента
+     * @param startOffset смещение записи, с которой нужно начать чтение
+     * @throws IOException если файл не удалось открыть
+     */
+    public SegmentScanner(Path segmentPath, long startOffset) throws IOException {
+        this.segmentPath = segmentPath;
+        this.format = SegmentFormat.detect(segmentPath);
+        this.position = Math.max(startOffset, format.getHeaderSize());
+        this.compressed = CompressedSegmentFile.isCompressed(segmentPath);
+
+        if (compressed) {
+            CompressedSegmentFile file = CompressedSegmentFile.open(segmentPath);
+            this.length = file.getLength();
+            this.inputStream = new DatabaseInputStream(new BufferedInputStream(file.openStream(position)), format);
+            return;
+        }
+
+        FileInputStream fileInputStream = new FileInputStream(segmentPath.toFile());
+        try {
+            this.length = fileInputStream.getChannel().size();
+            fileInputStream.getChannel().position(position);
+        } catch (IOException e) {
+            fileInputStream.close();
+            throw e;
+        }
+        this.inputStream = new DatabaseInputStream(new BufferedInputStream(fileInputStream), format);
+    }
+
+    /**
+     * Длина содержимого сегмента: для {@link CompressedSegmentFile сжатого сегмента} - длина исходного файла
+     *
+     * @param segmentPath путь до файла сегмента
+     * @throws IOException если файл не удалось прочитать
+     */
+    public static long length(Path segmentPath) throws IOException {
+        return CompressedSegmentFile.isCompressed(segmentPath)
+                ? CompressedSegmentFile.open(segmentPath).getLength()
+                : segmentPath.toFile().length();
+    }
+
+    /**
+     * Читает следующую запись
+     *
+     * @return следующую запись. {@link Optional#empty()} - если достигнут конец файла или поврежденная запись
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public Optional<DatabaseRecord> next() throws IOException {
+        if (corrupted || position >= length) {
+            return Optional.empty();
+        }
+
+        Optional<DatabaseRecord> record;
+        try {
+            record = inputStream.readDbUnit();
+        } catch (CorruptedRecordException e) {
+            return markCorrupted();
+        }
+
+        // The stream ends in the middle of a record
+        if (record.isEmpty() || inputStream.getLastRecordSize() > length - position) {
+            return markCorrupted();
+        }
+
+        recordOffset = position;
+        recordSize = inputStream.getLastRecordSize();
+        position += recordSize;
+        return record;
+    }
+
+    private Optional<DatabaseRecord> markCorrupted() {
+        corrupted = true;
+        return Optional.empty();
+    }
+
+    public SegmentFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Смещение последней прочитанной записи
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * Размер последней прочитанной записи в файле
+     */
+    public long getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Смещение сразу после последней целой записи
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * {@code true} - если сегмент {@link CompressedSegmentFile сжат}
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * {@code true} - если чтение остановилось на поврежденной записи, а не в конце файла
+     */
+    public boolean isCorrupted() {
+        return corrupted;
+    }
+
+    public Path getSegmentPath() {
+        return segmentPath;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -2,6 +2,9 @@ package com.itmo.java.client.client;
 
 import com.itmo.java.client.exception.DatabaseExecutionException;
 
+import java.util.Iterator;
+import java.util.Map;
+
 /**
  * Клиент для доступа к БД
  */
@@ -10,9 +13,45 @@ public interface KvsClient {
 
     String createTable(String tableName) throws DatabaseExecutionException;
 
+    /**
+     * Создает таблицу с указанным движком хранения ("log" или "lsm")
+     */
+    String createTable(String tableName, String engine) throws DatabaseExecutionException;
+
+    /**
+     * Создает таблицу, разделенную по хэшу ключа на partitions частей, которые пишутся параллельно.
+     * Разделить можно только таблицу "log"
+     */
+    String createTable(String tableName, String engine, int partitions) throws DatabaseExecutionException;
+
     String get(String tableName, String key) throws DatabaseExecutionException;
 
     String set(String tableName, String key, String value) throws DatabaseExecutionException;
 
     String delete(String tableName, String key) throws DatabaseExecutionException;
+
+    /**
+     * Записи с ключами из диапазона [from, to) по возрастанию ключа. Записи запрашиваются у сервера страницами
+     * по мере обхода. Ошибка при запросе страницы выбрасывается из итератора как {@link RuntimeException}
+     * с {@link DatabaseExecutionException} в причине
+     *
+     * @param to ключ, которым диапазон ограничен (сам в диапазон не входит). {@code null} - до конца таблицы
+     */
+    Iterator<Map.Entry<String, String>> scanRange(String tableName, String from, String to);
+
+    /**
+     * Записи, ключи которых начинаются с prefix, по возрастанию ключа
+     *
+     * @see #scanRange(String, String, String)
+     */
+    Iterator<Map.Entry<String, String>> scanPrefix(String tableName, String prefix);
+
+    /**
+     * Все записи таблицы в неопределенном порядке. Записи запрашиваются у сервера порциями по курсору,
+     * запись в таблицу во время обхода не блокируется. Ключ, который был в таблице все время обхода,
+     * встретится хотя бы раз, но может встретиться и повторно
+     *
+     * @see #scanRange(String, String, String)
+     */
+    Iterator<Map.Entry<String, String>> scan(String tableName);
 }
@@ -5,15 +5,36 @@ import com.itmo.java.client.command.CreateTableKvsCommand;
 import com.itmo.java.client.command.DeleteKvsCommand;
 import com.itmo.java.client.command.GetKvsCommand;
 import com.itmo.java.client.command.KvsCommand;
+import com.itmo.java.client.command.ScanKvsCommand;
+import com.itmo.java.client.command.ScanRangeKvsCommand;
 import com.itmo.java.client.command.SetKvsCommand;
 import com.itmo.java.client.connection.KvsConnection;
 import com.itmo.java.client.exception.ConnectionException;
 import com.itmo.java.client.exception.DatabaseExecutionException;
+import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespObject;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.function.Supplier;
 
 public class SimpleKvsClient implements KvsClient {
+    /**
+     * Сколько записей запрашивается за раз при обходе диапазона или таблицы
+     */
+    private static final int SCAN_PAGE_SIZE = 256;
+
+    /**
+     * Курсор начала обхода таблицы. Сервер возвращает его же, когда обход закончен
+     */
+    private static final String START_CURSOR = "0";
+
     private final String databaseName;
     private final KvsConnection connection;
 
@@ -46,6 +67,24 @@ public class SimpleKvsClient implements KvsClient {
         }
     }
 
+    @Override
+    public String createTable(String tableName, String engine) throws DatabaseExecutionException {
+        try {
+            return sendCommand(new CreateTableKvsCommand(databaseName, tableName, engine));
+        } catch (ConnectionException e) {
+            throw new DatabaseExecutionException(String.format("Cannot create table %s in database %s", tableName, databaseName), e);
+        }
+    }
+
+    @Override
+    public String createTable(String tableName, String engine, int partitions) throws DatabaseExecutionException {
+        try {
+            return sendCommand(new CreateTableKvsCommand(databaseName, tableName, engine, partitions));
+        } catch (ConnectionException e) {
+            throw new DatabaseExecutionException(String.format("Cannot create table %s in database %s", tableName, databaseName), e);
+        }
+    }
+
     @Override
     public String get(String tableName, String key) throws DatabaseExecutionException {
         try {
@@ -73,6 +112,33 @@ public class SimpleKvsClient implements KvsClient {
         }
     }
 
+    @Override
+    public Iterator<Map.Entry<String, String>> scanRange(String tableName, String from, String to) {
+        return new RangeIterator(tableName, from.getBytes(StandardCharsets.UTF_8),
+                to == null ? new byte[0] : to.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> scanPrefix(String tableName, String prefix) {
+        byte[] from = prefix.getBytes(StandardCharsets.UTF_8);
+
+        // The first key after all keys with the prefix: the prefix with its last byte below 0xFF incremented
+        byte[] to = new byte[0];
+        for (int i = from.length - 1; i >= 0; i--) {
+            if (from[i] != (byte) 0xFF) {
+                to = Arrays.copyOf(from, i + 1);
+                to[i]++;
+                break;
+            }
+        }
+        return new RangeIterator(tableName, from, to);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> scan(String tableName) {
+        return new CursorIterator(tableName);
+    }
+
     private String sendCommand(KvsCommand command) throws ConnectionException, DatabaseExecutionException {
         RespObject object = connection.send(command.getCommandId(), command.serialize());
 
@@ -82,4 +148,123 @@ public class SimpleKvsClient implements KvsClient {
 
         return object.asString();
     }
+
+    /**
+     * Обходит диапазон, запрашивая по {@link #SCAN_PAGE_SIZE} записей. Следующая страница начинается
+     * сразу после последнего полученного ключа
+     */
+    private class RangeIterator implements Iterator<Map.Entry<String, String>> {
+        private final String tableName;
+        private final byte[] to;
+        private byte[] from;
+        private Iterator<Map.Entry<String, String>> page = Collections.emptyIterator();
+        private boolean lastPage;
+
+        private RangeIterator(String tableName, byte[] from, byte[] to) {
+            this.tableName = tableName;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !lastPage) {
+                page = nextPage();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private Iterator<Map.Entry<String, String>> nextPage() {
+            RespObject object;
+            try {
+                KvsCommand command = new ScanRangeKvsCommand(databaseName, tableName, from, to, SCAN_PAGE_SIZE);
+                object = connection.send(command.getCommandId(), command.serialize());
+            } catch (ConnectionException e) {
+                throw new RuntimeException(new DatabaseExecutionException(
+                        String.format("Cannot scan table %s in database %s", tableName, databaseName), e));
+            }
+            if (object.isError()) {
+                throw new RuntimeException(new DatabaseExecutionException(object.asString()));
+            }
+
+            List<RespObject> objects = ((RespArray) object).getObjects();
+            List<Map.Entry<String, String>> entries = new ArrayList<>(objects.size() / 2);
+            byte[] lastKey = null;
+            for (Iterator<RespObject> iterator = objects.iterator(); iterator.hasNext(); ) {
+                lastKey = iterator.next().asBytes();
+                entries.add(Map.entry(new String(lastKey, StandardCharsets.UTF_8), iterator.next().asString()));
+            }
+
+            lastPage = entries.size() < SCAN_PAGE_SIZE;
+            if (lastKey != null) {
+                // The smallest key greater than the last one
+                from = Arrays.copyOf(lastKey, lastKey.length + 1);
+            }
+            return entries.iterator();
+        }
+    }
+
+    /**
+     * Обходит таблицу порциями по {@link #SCAN_PAGE_SIZE} записей. Первый элемент ответа - курсор следующей порции
+     */
+    private class CursorIterator implements Iterator<Map.Entry<String, String>> {
+        private final String tableName;
+        private String cursor = START_CURSOR;
+        private Iterator<Map.Entry<String, String>> page = Collections.emptyIterator();
+        private boolean finished;
+
+        private CursorIterator(String tableName) {
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !finished) {
+                page = nextPage();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private Iterator<Map.Entry<String, String>> nextPage() {
+            RespObject object;
+            try {
+                KvsCommand command = new ScanKvsCommand(databaseName, tableName, cursor, SCAN_PAGE_SIZE);
+                object = connection.send(command.getCommandId(), command.serialize());
+            } catch (ConnectionException e) {
+                throw new RuntimeException(new DatabaseExecutionException(
+                        String.format("Cannot scan table %s in database %s", tableName, databaseName), e));
+            }
+            if (object.isError()) {
+                throw new RuntimeException(new DatabaseExecutionException(object.asString()));
+            }
+
+            List<RespObject> objects = ((RespArray) object).getObjects();
+            Iterator<RespObject> iterator = objects.iterator();
+            cursor = iterator.next().asString();
+            finished = START_CURSOR.equals(cursor);
+
+            List<Map.Entry<String, String>> entries = new ArrayList<>(objects.size() / 2);
+            while (iterator.hasNext()) {
+                String key = iterator.next().asString();
+                entries.add(Map.entry(key, iterator.next().asString()));
+            }
+            return entries.iterator();
+        }
+    }
 }
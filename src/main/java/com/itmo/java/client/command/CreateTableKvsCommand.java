@@ -13,11 +13,30 @@ public class CreateTableKvsCommand implements KvsCommand {
     private static final String COMMAND_NAME = "CREATE_TABLE";
     private final String databaseName;
     private final String tableName;
+    private final String engine;
+    private final int partitions;
     private final int id;
 
     public CreateTableKvsCommand(String databaseName, String tableName) {
+        this(databaseName, tableName, null);
+    }
+
+    /**
+     * @param engine движок таблицы ("log" или "lsm"), {@code null} - движок по умолчанию из настроек сервера
+     */
+    public CreateTableKvsCommand(String databaseName, String tableName, String engine) {
+        this(databaseName, tableName, engine, 1);
+    }
+
+    /**
+     * @param engine     движок таблицы ("log" или "lsm")
+     * @param partitions на сколько частей по хэшу ключа разделить таблицу, 1 - не разделять
+     */
+    public CreateTableKvsCommand(String databaseName, String tableName, String engine, int partitions) {
         this.databaseName = databaseName;
         this.tableName = tableName;
+        this.engine = engine;
+        this.partitions = partitions;
         this.id = idGen.getAndIncrement();
     }
 
@@ -28,11 +47,32 @@ public class CreateTableKvsCommand implements KvsCommand {
      */
     @Override
     public RespArray serialize() {
+        if (engine == null) {
+            return new RespArray(
+                    new RespCommandId(id),
+                    new RespBulkString(COMMAND_NAME.getBytes(StandardCharsets.UTF_8)),
+                    new RespBulkString(databaseName.getBytes(StandardCharsets.UTF_8)),
+                    new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8))
+            );
+        }
+
+        if (partitions == 1) {
+            return new RespArray(
+                    new RespCommandId(id),
+                    new RespBulkString(COMMAND_NAME.getBytes(StandardCharsets.UTF_8)),
+                    new RespBulkString(databaseName.getBytes(StandardCharsets.UTF_8)),
+                    new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8)),
+                    new RespBulkString(engine.getBytes(StandardCharsets.UTF_8))
+            );
+        }
+
         return new RespArray(
                 new RespCommandId(id),
                 new RespBulkString(COMMAND_NAME.getBytes(StandardCharsets.UTF_8)),
                 new RespBulkString(databaseName.getBytes(StandardCharsets.UTF_8)),
-                new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8))
+                new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(engine.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(String.valueOf(partitions).getBytes(StandardCharsets.UTF_8))
         );
     }
 
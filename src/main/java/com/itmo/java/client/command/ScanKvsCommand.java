@@ -0,0 +1,53 @@
+package com.itmo.java.client.command;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Команда для чтения очередной порции записей при обходе всей таблицы по курсору
+ */
+public class ScanKvsCommand implements KvsCommand {
+    private static final String COMMAND_NAME = "SCAN";
+    private final String databaseName;
+    private final String tableName;
+    private final String cursor;
+    private final int count;
+    private final int id;
+
+    /**
+     * @param cursor "0" - с начала таблицы или курсор из ответа на предыдущую команду
+     * @param count  примерное количество записей в порции
+     */
+    public ScanKvsCommand(String databaseName, String tableName, String cursor, int count) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.cursor = cursor;
+        this.count = count;
+        this.id = idGen.getAndIncrement();
+    }
+
+    /**
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}
+     *
+     * @return объект
+     */
+    @Override
+    public RespArray serialize() {
+        return new RespArray(
+                new RespCommandId(id),
+                new RespBulkString(COMMAND_NAME.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(databaseName.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(cursor.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(String.valueOf(count).getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    @Override
+    public int getCommandId() {
+        return id;
+    }
+}
@@ -0,0 +1,57 @@
+package com.itmo.java.client.command;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Команда для чтения страницы записей с ключами из диапазона [from, to)
+ */
+public class ScanRangeKvsCommand implements KvsCommand {
+    private static final String COMMAND_NAME = "SCAN_RANGE";
+    private final String databaseName;
+    private final String tableName;
+    private final byte[] from;
+    private final byte[] to;
+    private final int limit;
+    private final int id;
+
+    /**
+     * @param from  первый ключ диапазона
+     * @param to    ключ, которым диапазон ограничен (сам в диапазон не входит). Пустой - до конца таблицы
+     * @param limit наибольшее количество записей на странице
+     */
+    public ScanRangeKvsCommand(String databaseName, String tableName, byte[] from, byte[] to, int limit) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.from = from;
+        this.to = to;
+        this.limit = limit;
+        this.id = idGen.getAndIncrement();
+    }
+
+    /**
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}
+     *
+     * @return объект
+     */
+    @Override
+    public RespArray serialize() {
+        return new RespArray(
+                new RespCommandId(id),
+                new RespBulkString(COMMAND_NAME.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(databaseName.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(from),
+                new RespBulkString(to),
+                new RespBulkString(String.valueOf(limit).getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    @Override
+    public int getCommandId() {
+        return id;
+    }
+}
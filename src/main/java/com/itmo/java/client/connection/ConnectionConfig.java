@@ -20,7 +20,17 @@ public class ConnectionConfig {
     private final String host;
     private final int port;
 
+    /**
+     * Просить у сервера ответы, помеченные id команды (см. {@link com.itmo.java.protocol.TaggedReplies}),
+     * чтобы несколько потоков могли ждать ответов в одном соединении
+     */
+    private final boolean taggedReplies;
+
     public ConnectionConfig() {
         this(DEFAULT_HOST, DEFAULT_PORT);
     }
+
+    public ConnectionConfig(String host, int port) {
+        this(host, port, false);
+    }
 }
\ No newline at end of file
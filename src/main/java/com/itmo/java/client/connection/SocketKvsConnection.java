@@ -1,8 +1,10 @@
 package com.itmo.java.client.connection;
 
+import com.itmo.java.client.command.KvsCommand;
 import com.itmo.java.client.exception.ConnectionException;
 import com.itmo.java.protocol.RespReader;
 import com.itmo.java.protocol.RespWriter;
+import com.itmo.java.protocol.TaggedReplies;
 import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespBulkString;
 import com.itmo.java.protocol.model.RespError;
@@ -10,23 +12,53 @@ import com.itmo.java.protocol.model.RespObject;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * С помощью {@link RespWriter} и {@link RespReader} читает/пишет в сокет
+ * С помощью {@link RespWriter} и {@link RespReader} читает/пишет в сокет.
+ * <p>
+ * Если в {@link ConnectionConfig#isTaggedReplies()} включены помеченные ответы и сервер их поддерживает,
+ * команды нескольких потоков отправляются, не дожидаясь ответов на предыдущие, а ответы читает отдельный поток
+ * и раздает ожидающим по id команды
  */
 public class SocketKvsConnection implements KvsConnection {
+    /**
+     * Сколько ждать помеченного ответа, прежде чем считать соединение сломанным
+     */
+    private static final long REPLY_TIMEOUT_SECONDS = 60;
+
     private final Socket socket;
     private final RespReader reader;
     private final RespWriter writer;
 
+    /**
+     * Ожидающие ответа команды по id, только в режиме помеченных ответов
+     */
+    private final Map<Integer, CompletableFuture<RespObject>> pendingReplies = new ConcurrentHashMap<>();
+    private final boolean tagged;
+    private volatile IOException readFailure;
+
     public SocketKvsConnection(ConnectionConfig config) {
         try {
             this.socket = new Socket(config.getHost(), config.getPort());
             this.reader = new RespReader(socket.getInputStream());
             this.writer = new RespWriter(socket.getOutputStream());
+            this.tagged = config.isTaggedReplies() && enableTaggedReplies();
         } catch (IOException e) {
+            close();
             throw new RuntimeException("Cannot create SocketKvsConnection", e);
         }
+
+        if (tagged) {
+            Thread replyReader = new Thread(this::readTaggedReplies, "kvs-connection-reader");
+            replyReader.setDaemon(true);
+            replyReader.start();
+        }
     }
 
     /**
@@ -36,12 +68,37 @@ public class SocketKvsConnection implements KvsConnection {
      * @throws ConnectionException если сокет закрыт или если произошла другая ошибка соединения
      */
     @Override
-    public synchronized RespObject send(int commandId, RespArray command) throws ConnectionException {
+    public RespObject send(int commandId, RespArray command) throws ConnectionException {
+        if (!tagged) {
+            return sendAndWait(commandId, command);
+        }
+
+        CompletableFuture<RespObject> reply = new CompletableFuture<>();
+        if (pendingReplies.putIfAbsent(commandId, reply) != null) {
+            throw new ConnectionException(String.format("Command with ID %d is already waiting for a reply", commandId));
+        }
+
         try {
-            writer.write(command);
-            return reader.readObject();
+            if (readFailure != null) {
+                throw readFailure;
+            }
+            synchronized (writer) {
+                writer.write(command);
+                writer.flush();
+            }
+            return reply.get(REPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            pendingReplies.remove(commandId);
+            throw new ConnectionException(String.format("No reply in %d seconds. CommandID: %d", REPLY_TIMEOUT_SECONDS, commandId), e);
         } catch (IOException e) {
+            pendingReplies.remove(commandId);
             throw new ConnectionException(String.format("Command sending/execution error. CommandID: %d", commandId), e);
+        } catch (ExecutionException e) {
+            throw new ConnectionException(String.format("Command sending/execution error. CommandID: %d", commandId), e.getCause());
+        } catch (InterruptedException e) {
+            pendingReplies.remove(commandId);
+            Thread.currentThread().interrupt();
+            throw new ConnectionException(String.format("Interrupted while waiting for a reply. CommandID: %d", commandId), e);
         }
     }
 
@@ -51,21 +108,73 @@ public class SocketKvsConnection implements KvsConnection {
     @Override
     public void close() {
         try {
-            socket.close();
+            if (socket != null) {
+                socket.close();
+            }
         } catch (IOException ignore) {
             // Ignore errors on closing
         }
 
         try {
-            reader.close();
+            if (reader != null) {
+                reader.close();
+            }
         } catch (IOException ignore) {
             // Ignore errors on closing
         }
 
         try {
-            writer.close();
+            if (writer != null) {
+                writer.close();
+            }
         } catch (IOException ignore) {
             // Ignore errors on closing
         }
     }
+
+    private synchronized RespObject sendAndWait(int commandId, RespArray command) throws ConnectionException {
+        try {
+            writer.write(command);
+            writer.flush();
+            return reader.readObject();
+        } catch (IOException e) {
+            throw new ConnectionException(String.format("Command sending/execution error. CommandID: %d", commandId), e);
+        }
+    }
+
+    /**
+     * Рукопожатие. Сервер без помеченных ответов отвечает ошибкой, и соединение остается в обычном режиме
+     */
+    private boolean enableTaggedReplies() throws IOException {
+        writer.write(TaggedReplies.handshake(KvsCommand.idGen.getAndIncrement()));
+        writer.flush();
+        RespObject reply = reader.readObject();
+        return !reply.isError() && TaggedReplies.HANDSHAKE_REPLY.equals(reply.asString());
+    }
+
+    private void readTaggedReplies() {
+        try {
+            while (true) {
+                RespObject taggedReply = reader.readObject();
+                int commandId = TaggedReplies.getCommandId(taggedReply);
+                if (commandId == TaggedReplies.UNKNOWN_COMMAND_ID) {
+                    // The server could not read the id, so the waiting command is unknown
+                    throw new IOException("Reply to a command without ID: " + TaggedReplies.getReply(taggedReply).asString());
+                }
+                CompletableFuture<RespObject> reply = pendingReplies.remove(commandId);
+                if (reply != null) {
+                    reply.complete(TaggedReplies.getReply(taggedReply));
+                }
+            }
+        } catch (IOException e) {
+            readFailure = e;
+            close();
+            for (Integer commandId : pendingReplies.keySet()) {
+                CompletableFuture<RespObject> reply = pendingReplies.remove(commandId);
+                if (reply != null) {
+                    reply.completeExceptionally(e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package com.itmo.java.protocol;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespError;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Разбирает RESP объекты из буфера, в который байты приходят частями, например, из неблокирующего сокета.
+ * В отличие от {@link RespReader} не ждет недостающих байт: если объект пришел не целиком, его разбор
+ * повторяется, когда в буфер дочитаны следующие байты
+ */
+public final class RespDecoder {
+
+    /**
+     * Специальные символы окончания элемента
+     */
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    /**
+     * Длина строки с размером массива или bulk строки: знак и цифры int
+     */
+    private static final int MAX_LENGTH_DIGITS = 11;
+
+    private static final int COMMAND_ID_BYTES = 4;
+
+    /**
+     * Наибольшая длина bulk строки. Длина приходит от клиента раньше самих байт, поэтому без ограничения
+     * один клиент мог бы заставить сервер выделить под объект сколько угодно памяти
+     */
+    public static final int MAX_BULK_STRING_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Наибольшее количество элементов массива
+     */
+    public static final int MAX_ARRAY_LENGTH = 1024 * 1024;
+
+    private RespDecoder() {
+    }
+
+    /**
+     * Считывает следующий объект из буфера в режиме чтения. Если объект в буфере целиком, позиция буфера
+     * переходит за него, иначе позиция не меняется
+     *
+     * @return объект или {@code null}, если в буфере пока только его начало
+     * @throws IOException если байты в буфере не являются RESP объектом
+     */
+    public static RespObject decode(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        RespObject object = readObject(buffer);
+        if (object == null) {
+            buffer.position(start);
+        }
+        return object;
+    }
+
+    private static RespObject readObject(ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+
+        byte classCode = buffer.get();
+        switch (classCode) {
+            case RespArray.CODE:
+                return readArray(buffer);
+            case RespBulkString.CODE:
+                return readBulkString(buffer);
+            case RespCommandId.CODE:
+                return readCommandId(buffer);
+            case RespError.CODE:
+                return readError(buffer);
+            default:
+                throw new IOException("Invalid code symbol: " + (char) classCode);
+        }
+    }
+
+    private static RespArray readArray(ByteBuffer buffer) throws IOException {
+        Integer objectsToRead = readLength(buffer);
+        if (objectsToRead == null) {
+            return null;
+        }
+        if (objectsToRead < 0 || objectsToRead > MAX_ARRAY_LENGTH) {
+            throw new IOException("Invalid array size: " + objectsToRead);
+        }
+
+        RespObject[] objects = new RespObject[objectsToRead];
+        for (int i = 0; i < objectsToRead; i++) {
+            objects[i] = readObject(buffer);
+            if (objects[i] == null) {
+                return null;
+            }
+        }
+
+        return new RespArray(objects);
+    }
+
+    private static RespBulkString readBulkString(ByteBuffer buffer) throws IOException {
+        Integer bytesToRead = readLength(buffer);
+        if (bytesToRead == null) {
+            return null;
+        }
+        if (bytesToRead == RespBulkString.NULL_STRING_SIZE) {
+            return RespBulkString.NULL_STRING;
+        }
+        if (bytesToRead < 0 || bytesToRead > MAX_BULK_STRING_LENGTH) {
+            throw new IOException("Invalid bulk string size: " + bytesToRead);
+        }
+        if (buffer.remaining() < (long) bytesToRead + 2) {
+            return null;
+        }
+
+        byte[] stringData = new byte[bytesToRead];
+        buffer.get(stringData);
+        readCRLF(buffer);
+
+        return new RespBulkString(stringData);
+    }
+
+    private static RespCommandId readCommandId(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < COMMAND_ID_BYTES + 2) {
+            return null;
+        }
+
+        int commandId = buffer.getInt();
+        readCRLF(buffer);
+
+        return new RespCommandId(commandId);
+    }
+
+    private static RespError readError(ByteBuffer buffer) {
+        int end = findCRLF(buffer, buffer.limit());
+        if (end < 0) {
+            return null;
+        }
+
+        byte[] data = new byte[end - buffer.position()];
+        buffer.get(data);
+        buffer.position(end + 2);
+
+        return new RespError(data);
+    }
+
+    /**
+     * @return число до CRLF или {@code null}, если строка пришла не целиком
+     */
+    private static Integer readLength(ByteBuffer buffer) throws IOException {
+        int searchLimit = Math.min(buffer.limit(), buffer.position() + MAX_LENGTH_DIGITS + 2);
+        int end = findCRLF(buffer, searchLimit);
+        if (end < 0) {
+            if (searchLimit < buffer.limit()) {
+                throw new IOException("Size is too long or is not terminated by CRLF");
+            }
+            return null;
+        }
+
+        byte[] digits = new byte[end - buffer.position()];
+        buffer.get(digits);
+        buffer.position(end + 2);
+
+        try {
+            return Integer.parseInt(new String(digits, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid size: " + new String(digits, StandardCharsets.US_ASCII), e);
+        }
+    }
+
+    /**
+     * @return позиция CR перед LF или -1, если CRLF до searchLimit нет
+     */
+    private static int findCRLF(ByteBuffer buffer, int searchLimit) {
+        for (int i = buffer.position(); i + 1 < searchLimit; i++) {
+            if (buffer.get(i) == CR && buffer.get(i + 1) == LF) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void readCRLF(ByteBuffer buffer) throws IOException {
+        if (buffer.get() != CR || buffer.get() != LF) {
+            throw new IOException("Error occurred during reading");
+        }
+    }
+}
@@ -34,6 +34,13 @@ public class RespReader implements AutoCloseable {
         return hasNextCode(RespArray.CODE);
     }
 
+    /**
+     * Пришли ли уже байты следующего объекта, то есть не заблокирует ли чтение в ожидании начала объекта
+     */
+    public boolean isReady() throws IOException {
+        return is.available() > 0;
+    }
+
     public boolean hasNextCode(byte code) throws IOException {
         is.mark(1);
         byte classCode;
@@ -101,6 +108,9 @@ public class RespReader implements AutoCloseable {
         if (bytesToRead == RespBulkString.NULL_STRING_SIZE) {
             return RespBulkString.NULL_STRING;
         }
+        if (bytesToRead < 0 || bytesToRead > RespDecoder.MAX_BULK_STRING_LENGTH) {
+            throw new IOException("Invalid bulk string size: " + bytesToRead);
+        }
 
         byte[] stringData = readNextNBytesFromIOStream(bytesToRead);
         readCRLFFromIOStream();
@@ -118,6 +128,9 @@ public class RespReader implements AutoCloseable {
         validateRespClassCode(readNextByteFromIOStream(), RespArray.CODE);
 
         int objectsToRead = Integer.parseInt(new String(readUntilCRLF()));
+        if (objectsToRead < 0 || objectsToRead > RespDecoder.MAX_ARRAY_LENGTH) {
+            throw new IOException("Invalid array size: " + objectsToRead);
+        }
         RespObject[] objects = new RespObject[objectsToRead];
 
         for (int i = 0; i < objectsToRead; i++) {
@@ -2,23 +2,38 @@ package com.itmo.java.protocol;
 
 import com.itmo.java.protocol.model.RespObject;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
-public class RespWriter implements AutoCloseable{
+/**
+ * Пишет RESP объекты в output stream через буфер. {@link RespObject#write(OutputStream)} пишет объект по частям
+ * (код, длина, данные, CRLF), и в сокет без буфера каждая часть может уйти отдельным пакетом. Поэтому объекты
+ * копятся в буфере и отправляются по {@link #flush()} - например, один раз на пачку ответов - или когда буфер заполнен
+ */
+public class RespWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
     private final OutputStream os;
 
     public RespWriter(OutputStream os) {
-        this.os = os;
+        this.os = new BufferedOutputStream(os, BUFFER_SIZE);
     }
 
     /**
-     * Записывает в output stream объект
+     * Записывает объект в буфер. В output stream он попадет при {@link #flush()} или при заполнении буфера
      */
     public void write(RespObject object) throws IOException {
         object.write(os);
     }
 
+    /**
+     * Отправляет записанное в output stream
+     */
+    public void flush() throws IOException {
+        os.flush();
+    }
+
     @Override
     public void close() throws IOException {
         os.close();
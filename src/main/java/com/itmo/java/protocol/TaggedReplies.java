@@ -0,0 +1,88 @@
+package com.itmo.java.protocol;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Режим соединения, в котором ответ помечен id своей команды и отправляется сервером, как только готов, а не
+ * в порядке команд. Медленная команда (например, чтение с диска) тогда не задерживает ответы на команды за ней.
+ * <p>
+ * Режим включает клиент командой [id, {@value #HANDSHAKE_COMMAND}]. Сервер отвечает {@value #HANDSHAKE_REPLY}
+ * еще в обычном виде и по порядку, а ответы на следующие команды соединения помечает. Сервер без этого режима
+ * отвечает на рукопожатие ошибкой, и соединение остается в обычном режиме.
+ * <p>
+ * Помеченный ответ - массив [{@link RespCommandId} команды, ответ]
+ */
+public final class TaggedReplies {
+    public static final String HANDSHAKE_COMMAND = "TAGGED_REPLIES";
+    public static final String HANDSHAKE_REPLY = "OK";
+
+    /**
+     * Id в ответе на команду, у которой нет id
+     */
+    public static final int UNKNOWN_COMMAND_ID = -1;
+
+    private static final int COMMAND_ID_POSITION = 0;
+    private static final int COMMAND_NAME_POSITION = 1;
+    private static final int REPLY_POSITION = 1;
+
+    private TaggedReplies() {
+    }
+
+    public static RespArray handshake(int commandId) {
+        return new RespArray(new RespCommandId(commandId), new RespBulkString(HANDSHAKE_COMMAND.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static RespObject handshakeReply() {
+        return new RespBulkString(HANDSHAKE_REPLY.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static boolean isHandshake(RespArray command) {
+        List<RespObject> objects = command.getObjects();
+        return objects.size() == COMMAND_NAME_POSITION + 1
+                && HANDSHAKE_COMMAND.equals(objects.get(COMMAND_NAME_POSITION).asString());
+    }
+
+    /**
+     * Помечает ответ id команды
+     */
+    public static RespArray tag(RespArray command, RespObject reply) {
+        List<RespObject> objects = command.getObjects();
+        RespObject commandId = objects.isEmpty() ? null : objects.get(COMMAND_ID_POSITION);
+        if (!(commandId instanceof RespCommandId)) {
+            commandId = new RespCommandId(UNKNOWN_COMMAND_ID);
+        }
+        return new RespArray(commandId, reply);
+    }
+
+    /**
+     * @throws IOException если ответ не помечен
+     */
+    public static int getCommandId(RespObject taggedReply) throws IOException {
+        RespObject commandId = getObjects(taggedReply).get(COMMAND_ID_POSITION);
+        if (!(commandId instanceof RespCommandId)) {
+            throw new IOException("Tagged reply does not start with a command id: " + commandId.asString());
+        }
+        return ((RespCommandId) commandId).getCommandId();
+    }
+
+    /**
+     * @throws IOException если ответ не помечен
+     */
+    public static RespObject getReply(RespObject taggedReply) throws IOException {
+        return getObjects(taggedReply).get(REPLY_POSITION);
+    }
+
+    private static List<RespObject> getObjects(RespObject taggedReply) throws IOException {
+        if (!(taggedReply instanceof RespArray) || ((RespArray) taggedReply).getObjects().size() != REPLY_POSITION + 1) {
+            throw new IOException("Reply is not tagged: " + taggedReply.asString());
+        }
+        return ((RespArray) taggedReply).getObjects();
+    }
+}
@@ -43,6 +43,16 @@ public class RespBulkString implements RespObject {
         return data == null ? null : new String(data);
     }
 
+    /**
+     * Байты строки. Возвращается сам массив объекта, изменять его нельзя
+     *
+     * @return байты, если данные есть. Если нет - null
+     */
+    @Override
+    public byte[] asBytes() {
+        return data;
+    }
+
     @Override
     public void write(OutputStream os) throws IOException {
         os.write(CODE);
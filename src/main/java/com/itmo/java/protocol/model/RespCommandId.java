@@ -19,6 +19,10 @@ public class RespCommandId implements RespObject {
         this.commandId = commandId;
     }
 
+    public int getCommandId() {
+        return commandId;
+    }
+
     /**
      * Ошибка ли это? Ответ - нет
      *
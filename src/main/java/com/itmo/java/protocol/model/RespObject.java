@@ -25,6 +25,14 @@ public interface RespObject {
      */
     String asString();
 
+    /**
+     * @return байты значения объекта. Для {@link RespBulkString} - сами полученные байты, без перекодирования
+     */
+    default byte[] asBytes() {
+        String value = asString();
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Сериализует данный объект в RESP и записывает байты в переданный OutputStream.
      */
@@ -0,0 +1,64 @@
+package com.itmo.java.basics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandLanesTest {
+
+    private final CommandLanes lanes = new CommandLanes(4);
+
+    @After
+    public void tearDown() throws Exception {
+        lanes.shutdown(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void keyCommandWaitsForEarlierControlCommand() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean created = new AtomicBoolean();
+        lanes.submitControl(() -> {
+            await(release);
+            created.set(true);
+            return null;
+        });
+
+        CompletableFuture<Boolean> write = lanes.submit(1, created::get);
+        CompletableFuture<Boolean> laterWrite = lanes.submit(1, created::get);
+        Thread.sleep(100);
+        assertFalse(write.isDone());
+
+        release.countDown();
+        assertTrue(write.get(10, TimeUnit.SECONDS));
+        assertTrue(laterWrite.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedControlCommandDoesNotFailKeyCommands() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        lanes.submitControl(() -> {
+            await(release);
+            throw new IllegalStateException("Control command failed");
+        });
+
+        CompletableFuture<String> write = lanes.submit(1, () -> "written");
+        release.countDown();
+        assertEquals("written", write.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
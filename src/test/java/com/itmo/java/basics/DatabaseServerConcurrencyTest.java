@@ -0,0 +1,187 @@
+package com.itmo.java.basics;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.initialization.impl.DatabaseInitializer;
+import com.itmo.java.basics.initialization.impl.DatabaseServerInitializer;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.initialization.impl.TableInitializer;
+import com.itmo.java.client.client.SimpleKvsClient;
+import com.itmo.java.client.connection.DirectReferenceKvsConnection;
+import com.itmo.java.client.exception.DatabaseExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Конкурентные SET/GET/DELETE через {@link DatabaseServer} по небольшому набору ключей.
+ * Каждый SET пишет уникальное значение, а SET и DELETE возвращают предыдущее значение ключа. Если операции
+ * над ключом линеаризуемы, возвращенные значения выстраиваются в цепочку: каждое записанное значение
+ * вытесняется ровно один раз или остается последним, и ни одно не возвращается дважды
+ */
+public class DatabaseServerConcurrencyTest {
+
+    private static final String DATABASE_NAME = "db";
+    private static final String TABLE_NAME = "t";
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 3000;
+    private static final int KEYS = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatabaseServer server;
+    private SimpleKvsClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .memtableSize(16 * 1024L)
+                .build();
+        server = DatabaseServer.initialize(new ExecutionEnvironmentImpl(config),
+                new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer()))));
+        client = new SimpleKvsClient(DATABASE_NAME, () -> new DirectReferenceKvsConnection(server));
+        client.createDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void logTableKeepsPerKeyHistoryLinearizable() throws Exception {
+        client.createTable(TABLE_NAME, "log");
+        runAndCheck();
+    }
+
+    @Test
+    public void lsmTableKeepsPerKeyHistoryLinearizable() throws Exception {
+        client.createTable(TABLE_NAME, "lsm");
+        runAndCheck();
+    }
+
+    private void runAndCheck() throws Exception {
+        Set<String> allWritten = ConcurrentHashMap.newKeySet();
+        List<History> histories = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                History history = new History(t);
+                histories.add(history);
+                futures.add(pool.submit(() -> {
+                    history.run(allWritten);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int absentSets = 0;
+        int deletes = 0;
+        int present = 0;
+        for (History history : histories) {
+            absentSets += history.absentSets;
+            deletes += history.deletes;
+        }
+
+        for (int k = 0; k < KEYS; k++) {
+            String key = key(k);
+            List<String> written = new ArrayList<>();
+            List<String> superseded = new ArrayList<>();
+            for (History history : histories) {
+                written.addAll(history.written.getOrDefault(key, List.of()));
+                superseded.addAll(history.superseded.getOrDefault(key, List.of()));
+            }
+            String last = client.get(TABLE_NAME, key);
+            if (last != null) {
+                superseded.add(last);
+                present++;
+            }
+
+            Set<String> supersededSet = new HashSet<>(superseded);
+            assertEquals(key + ": a value was superseded twice (lost update)", superseded.size(), supersededSet.size());
+            assertEquals(key + ": superseded values differ from written ones", new HashSet<>(written), supersededSet);
+        }
+        // Key becomes present only by a SET that saw no value: once initially and once after every delete
+        assertEquals(deletes + present, absentSets);
+    }
+
+    private static String key(int k) {
+        return "k" + k;
+    }
+
+    /**
+     * Операции одного потока и то, что они вернули
+     */
+    private class History {
+        private final int id;
+        private final Map<String, List<String>> written = new HashMap<>();
+        private final Map<String, List<String>> superseded = new HashMap<>();
+        private int absentSets;
+        private int deletes;
+
+        History(int id) {
+            this.id = id;
+        }
+
+        void run(Set<String> allWritten) throws DatabaseExecutionException {
+            Random random = new Random(id);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                String key = key(random.nextInt(KEYS));
+                int operation = random.nextInt(10);
+                if (operation < 6) {
+                    String value = id + ":" + i;
+                    allWritten.add(value);
+                    String previous = client.set(TABLE_NAME, key, value);
+                    written.computeIfAbsent(key, x -> new ArrayList<>()).add(value);
+                    if (previous == null) {
+                        absentSets++;
+                    } else {
+                        superseded.computeIfAbsent(key, x -> new ArrayList<>()).add(previous);
+                    }
+                } else if (operation < 8) {
+                    String previous;
+                    try {
+                        previous = client.delete(TABLE_NAME, key);
+                    } catch (DatabaseExecutionException e) {
+                        assertTrue(e.getMessage(), e.getMessage().contains("does not exist"));
+                        continue;
+                    }
+                    superseded.computeIfAbsent(key, x -> new ArrayList<>()).add(previous);
+                    deletes++;
+                } else {
+                    String value = client.get(TABLE_NAME, key);
+                    assertTrue("Read a value that was never written: " + value,
+                            value == null || allWritten.contains(value));
+                }
+            }
+        }
+    }
+}
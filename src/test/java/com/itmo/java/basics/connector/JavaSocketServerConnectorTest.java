@@ -0,0 +1,141 @@
+package com.itmo.java.basics.connector;
+
+import com.itmo.java.basics.DatabaseServer;
+import com.itmo.java.basics.config.ConnectorMode;
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.ServerConfig;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.initialization.impl.DatabaseInitializer;
+import com.itmo.java.basics.initialization.impl.DatabaseServerInitializer;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.initialization.impl.TableInitializer;
+import com.itmo.java.client.command.CreateDatabaseKvsCommand;
+import com.itmo.java.client.command.CreateTableKvsCommand;
+import com.itmo.java.client.command.GetKvsCommand;
+import com.itmo.java.client.command.KvsCommand;
+import com.itmo.java.protocol.RespReader;
+import com.itmo.java.protocol.TaggedReplies;
+import com.itmo.java.protocol.model.RespObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+
+public class JavaSocketServerConnectorTest {
+
+    private static final String DATABASE_NAME = "db";
+    private static final String TABLE_NAME = "t";
+    private static final int REPLY_TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatabaseServer server;
+    private JavaSocketServerConnector connector;
+    private int port;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder().workingPath(folder.getRoot().toString()).build();
+        server = DatabaseServer.initialize(new ExecutionEnvironmentImpl(config),
+                new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer()))));
+        server.executeNextCommand(new CreateDatabaseKvsCommand(DATABASE_NAME).serialize()).get();
+        server.executeNextCommand(new CreateTableKvsCommand(DATABASE_NAME, TABLE_NAME).serialize()).get();
+
+        try (ServerSocket freePort = new ServerSocket(0)) {
+            port = freePort.getLocalPort();
+        }
+        connector = new JavaSocketServerConnector(server, new ServerConfig(ServerConfig.DEFAULT_HOST, port, ConnectorMode.BLOCKING, 1));
+        connector.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        connector.close();
+        server.close();
+    }
+
+    @Test
+    public void taggedReplyDoesNotWaitForEarlierSlowCommand() throws Exception {
+        blockFirstLane();
+        String slowKey = findKey(false);
+        String fastKey = findKey(true);
+
+        try (Socket socket = new Socket(ServerConfig.DEFAULT_HOST, port)) {
+            socket.setSoTimeout(REPLY_TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            RespReader reader = new RespReader(socket.getInputStream());
+            send(out, TaggedReplies.handshake(1));
+            assertEquals(TaggedReplies.HANDSHAKE_REPLY, reader.readObject().asString());
+
+            KvsCommand slow = new GetKvsCommand(DATABASE_NAME, TABLE_NAME, slowKey);
+            send(out, slow.serialize());
+            // The slow command is read on its own, the fast one comes after its reply is already awaited
+            Thread.sleep(200);
+            KvsCommand fast = new GetKvsCommand(DATABASE_NAME, TABLE_NAME, fastKey);
+            send(out, fast.serialize());
+
+            assertEquals(fast.getCommandId(), TaggedReplies.getCommandId(reader.readObject()));
+            release.countDown();
+            assertEquals(slow.getCommandId(), TaggedReplies.getCommandId(reader.readObject()));
+        }
+    }
+
+    /**
+     * Занимает первую очередь сервера, пока тест не отпустит {@link #release}
+     */
+    private void blockFirstLane() {
+        int routingHash = 0;
+        while (server.getLanes().laneOf(routingHash) != 0) {
+            routingHash++;
+        }
+        server.getLanes().submit(routingHash, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @param executes нужен ключ, команда по которому исполняется сразу, или ключ из занятой очереди
+     */
+    private String findKey(boolean executes) throws Exception {
+        for (int i = 0; ; i++) {
+            String key = "key" + i;
+            try {
+                server.executeNextCommand(new GetKvsCommand(DATABASE_NAME, TABLE_NAME, key).serialize()).get(100, TimeUnit.MILLISECONDS);
+                if (executes) {
+                    return key;
+                }
+            } catch (TimeoutException e) {
+                if (!executes) {
+                    return key;
+                }
+            }
+        }
+    }
+
+    private static void send(OutputStream out, RespObject object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        object.write(bytes);
+        out.write(bytes.toByteArray());
+        out.flush();
+    }
+}
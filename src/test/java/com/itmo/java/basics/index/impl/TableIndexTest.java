@@ -0,0 +1,95 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.logic.DatabaseKey;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TableIndexTest {
+
+    private static final int WRITES = 200_000;
+
+    /**
+     * Маска начальной емкости индекса: ключи с одинаковыми младшими битами хэша попадают в одну ячейку
+     */
+    private static final int INITIAL_MASK = 255;
+
+    private static final DatabaseKey FIRST = DatabaseKey.of("first");
+    private static final DatabaseKey SECOND = collidingKey(FIRST);
+    private static final long FIRST_POSITION = 1;
+    private static final long SECOND_POSITION = 2;
+
+    @Test
+    public void reusedSlotKeepsKeysAndPositionsPaired() throws Exception {
+        checkReusedSlot(new TableIndex());
+    }
+
+    @Test
+    public void reusedOffHeapSlotKeepsKeysAndPositionsPaired() throws Exception {
+        checkReusedSlot(new OffHeapTableIndex());
+    }
+
+    private static void checkReusedSlot(TableIndex index) throws Exception {
+        index.put(FIRST, FIRST_POSITION);
+        index.onIndexedEntityRemoved(FIRST);
+        index.put(SECOND, SECOND_POSITION);
+        assertEquals(TableIndex.ABSENT, index.searchForPosition(FIRST));
+        assertEquals(Map.of(SECOND, SECOND_POSITION), scanAll(index));
+
+        // The writer keeps moving the slot between the keys while readers look at it
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = executor.submit(() -> {
+                while (!stop.get()) {
+                    scanAll(index).forEach(TableIndexTest::assertPaired);
+                    long position = index.searchForPosition(FIRST);
+                    assertTrue(position == TableIndex.ABSENT || position == FIRST_POSITION);
+                }
+                return null;
+            });
+
+            for (int i = 0; i < WRITES; i++) {
+                DatabaseKey removed = i % 2 == 0 ? SECOND : FIRST;
+                DatabaseKey added = i % 2 == 0 ? FIRST : SECOND;
+                index.onIndexedEntityRemoved(removed);
+                index.put(added, added == FIRST ? FIRST_POSITION : SECOND_POSITION);
+            }
+            stop.set(true);
+            reader.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<DatabaseKey, Long> scanAll(TableIndex index) {
+        Map<DatabaseKey, Long> entries = new HashMap<>();
+        long cursor = 0;
+        do {
+            cursor = index.scan(cursor, 16, entries::put);
+        } while (cursor != 0);
+        return entries;
+    }
+
+    private static void assertPaired(DatabaseKey key, long position) {
+        assertEquals(key + " has another key's position", key.equals(FIRST) ? FIRST_POSITION : SECOND_POSITION, position);
+    }
+
+    private static DatabaseKey collidingKey(DatabaseKey key) {
+        for (int i = 0; ; i++) {
+            DatabaseKey candidate = DatabaseKey.of("second" + i);
+            if ((candidate.hashCode() & INITIAL_MASK) == (key.hashCode() & INITIAL_MASK)) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppendPipelineTest {
+
+    @Test
+    public void scheduledSyncRunsUnderAppendLockAndStopsAfterClose() throws Exception {
+        CountDownLatch synced = new CountDownLatch(3);
+        AtomicBoolean syncedWithoutLock = new AtomicBoolean();
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicInteger syncsAfterClose = new AtomicInteger();
+        AppendPipeline[] pipeline = new AppendPipeline[1];
+
+        pipeline[0] = new AppendPipeline(new AppendPipeline.Target() {
+            @Override
+            public void append(List<WritableDatabaseRecord> records) {
+            }
+
+            @Override
+            public void sync() {
+                if (!((ReentrantLock) pipeline[0].getAppendLock()).isHeldByCurrentThread()) {
+                    syncedWithoutLock.set(true);
+                }
+                if (closed.get()) {
+                    syncsAfterClose.incrementAndGet();
+                }
+                synced.countDown();
+            }
+        }, DurabilityMode.INTERVAL, 1);
+
+        assertTrue(synced.await(10, TimeUnit.SECONDS));
+        pipeline[0].close();
+        closed.set(true);
+        Thread.sleep(50);
+
+        assertFalse(syncedWithoutLock.get());
+        assertEquals(0, syncsAfterClose.get());
+    }
+}
@@ -0,0 +1,97 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.index.impl.TableIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BlobStoreTest {
+
+    private static final int BLOB_THRESHOLD = 1024;
+    private static final int VALUE_SIZE = 1024 * 1024;
+
+    /**
+     * Столько значений заполняют blob-файл, после них значения пишутся в следующий
+     */
+    private static final int VALUES_PER_FILE = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CachingTable cachingTable;
+    private TableImpl table;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .blobThreshold(BLOB_THRESHOLD)
+                .durabilityMode(DurabilityMode.NONE)
+                .compactionIntervalMillis(0L)
+                // Every sealed blob file is collected, without waiting for segment compaction to count its garbage
+                .compactionGarbageRatio(0.0)
+                .build();
+        cachingTable = (CachingTable) TableImpl.create("t", folder.getRoot().toPath(), new TableIndex(), config);
+        table = (TableImpl) cachingTable.getTable();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        cachingTable.close();
+    }
+
+    @Test
+    public void collectionDoesNotOverwriteQueuedWrite() throws Exception {
+        byte[] oldValue = value((byte) 1);
+        byte[] newValue = value((byte) 2);
+        table.write("key", oldValue);
+        // Fills the first blob file, the next values go to a new one
+        for (int i = 0; i <= VALUES_PER_FILE; i++) {
+            table.write("filler", value((byte) 3));
+        }
+
+        // The write is queued while the collector already holds the append lock
+        ReentrantLock appendLock = (ReentrantLock) table.getAppendLock();
+        Future<?> write;
+        appendLock.lock();
+        try {
+            write = executor.submit(() -> {
+                table.write("key", newValue);
+                return null;
+            });
+            while (!appendLock.hasQueuedThreads()) {
+                Thread.sleep(1);
+            }
+
+            assertEquals(1, table.getBlobStore().collectGarbage());
+        } finally {
+            appendLock.unlock();
+        }
+        write.get(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(newValue, table.read("key").orElseThrow());
+    }
+
+    private static byte[] value(byte fill) {
+        byte[] value = new byte[VALUE_SIZE];
+        Arrays.fill(value, fill);
+        return value;
+    }
+}
@@ -0,0 +1,95 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.Table;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Потоки одновременно меняют несколько ключей таблицы через {@link CachingTable#getAndWrite}, минуя очереди
+ * сервера, так что порядок изменений ключа держится только на блокировках ключей. Каждое записанное
+ * значение должно быть вытеснено ровно один раз или остаться последним
+ */
+public class CachingTableConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 3000;
+    private static final int KEYS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void getAndWriteKeepsPerKeyHistoryLinearizable() throws Exception {
+        Table table = TableImpl.create("t", folder.getRoot().toPath(), new TableIndex());
+
+        List<List<String>> written = new ArrayList<>();
+        List<List<String>> superseded = new ArrayList<>();
+        for (int k = 0; k < KEYS; k++) {
+            written.add(new ArrayList<>());
+            superseded.add(new ArrayList<>());
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(id);
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        int k = random.nextInt(KEYS);
+                        // Every fourth operation deletes the key
+                        String value = random.nextInt(4) == 0 ? null : id + ":" + i;
+                        Optional<byte[]> previous = table.getAndWrite(key(k), value == null ? null : bytes(value));
+                        synchronized (written) {
+                            if (value != null) {
+                                written.get(k).add(value);
+                            }
+                            previous.ifPresent(bytes -> superseded.get(k).add(new String(bytes, StandardCharsets.UTF_8)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int k = 0; k < KEYS; k++) {
+            List<String> chain = new ArrayList<>(superseded.get(k));
+            table.read(key(k)).ifPresent(bytes -> chain.add(new String(bytes, StandardCharsets.UTF_8)));
+
+            Set<String> chainSet = new HashSet<>(chain);
+            assertEquals("k" + k + ": a value was superseded twice (lost update)", chain.size(), chainSet.size());
+            assertEquals("k" + k + ": superseded values differ from written ones", new HashSet<>(written.get(k)), chainSet);
+        }
+    }
+
+    private static DatabaseKey key(int k) {
+        return DatabaseKey.wrap(bytes("k" + k));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
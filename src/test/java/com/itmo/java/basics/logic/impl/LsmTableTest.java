@@ -0,0 +1,96 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Table;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LsmTableTest {
+
+    private static final String TABLE_NAME = "t";
+    private static final int KEY_COUNT = 300;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void valuesAndDeletionsSurviveFlushCompactionAndRestart() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .durabilityMode(DurabilityMode.NONE)
+                .memtableSize(4096L)
+                .build();
+        CachingTable table = (CachingTable) LsmTable.create(TABLE_NAME, TableFiles.databasePath(config), config);
+        LsmTable lsmTable = (LsmTable) table.getTable();
+
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            write(table, expected, "key" + i, "first-" + i + "-" + "x".repeat(i % 50));
+        }
+        for (int i = 0; i < KEY_COUNT; i += 2) {
+            write(table, expected, "key" + i, "second-" + i);
+        }
+        for (int i = 0; i < KEY_COUNT; i += 3) {
+            table.delete("key" + i);
+            expected.remove("key" + i);
+        }
+
+        awaitFlush(lsmTable);
+        assertContents(table, expected);
+
+        // Background merges may have already run, so only the resulting levels are checked
+        lsmTable.compact();
+        List<Integer> levelSizes = lsmTable.getLevelSizes();
+        assertTrue(levelSizes.toString(), levelSizes.size() > 1 && levelSizes.get(1) > 0);
+        assertContents(table, expected);
+        table.close();
+
+        Table reopened = TableFiles.open(TABLE_NAME, config);
+        assertTrue(((CachingTable) reopened).getTable() instanceof LsmTable);
+        assertContents(reopened, expected);
+
+        write(reopened, expected, "key1", "after-restart");
+        reopened.delete("key2");
+        expected.remove("key2");
+        assertContents(reopened, expected);
+        reopened.close();
+    }
+
+    private static void write(Table table, Map<String, String> expected, String key, String value) throws DatabaseException {
+        table.write(key, value.getBytes());
+        expected.put(key, value);
+    }
+
+    private static void awaitFlush(LsmTable table) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (table.getLevelSizes().stream().mapToInt(Integer::intValue).sum() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(table.getLevelSizes().stream().mapToInt(Integer::intValue).sum() >= 2);
+    }
+
+    private static void assertContents(Table table, Map<String, String> expected) throws DatabaseException {
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "key" + i;
+            Optional<byte[]> value = table.read(key);
+            if (expected.containsKey(key)) {
+                assertTrue(key, value.isPresent());
+                assertEquals(key, expected.get(key), new String(value.get()));
+            } else {
+                assertFalse(key, value.isPresent());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.Table;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentCompactorTest {
+
+    private static final String TABLE_NAME = "t";
+    private static final int FILLER_SIZE = 1024;
+
+    /**
+     * Столько перезаписей одного ключа с лихвой заполняют сегмент
+     */
+    private static final int FILLERS_PER_SEGMENT = SegmentImpl.MAX_SIZE_IN_BYTES / FILLER_SIZE + 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deletedKeyStaysDeletedAfterCrashBetweenReplaceAndDelete() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .durabilityMode(DurabilityMode.NONE)
+                .compactionIntervalMillis(0L)
+                .build();
+        CachingTable table = (CachingTable) TableImpl.create(TABLE_NAME, TableFiles.databasePath(config), new TableIndex(), config);
+
+        // The value and its tombstone end up in different segments of one compaction run,
+        // and a live key makes the run write an output segment
+        table.write("deleted", "value".getBytes());
+        writeFillers(table);
+        table.delete("deleted");
+        table.write("kept", "value".getBytes());
+        writeFillers(table);
+
+        Map<Path, byte[]> sources = new HashMap<>();
+        List<Path> segmentFiles = TableFiles.segmentFiles(config, TABLE_NAME);
+        for (Path segmentFile : segmentFiles.subList(0, segmentFiles.size() - 1)) {
+            sources.put(segmentFile, Files.readAllBytes(segmentFile));
+        }
+        assertTrue(((TableImpl) table.getTable()).compact() > 1);
+        table.close();
+
+        // A crash right after the output replaced the newest source leaves the older sources in place
+        for (Map.Entry<Path, byte[]> source : sources.entrySet()) {
+            if (!Files.exists(source.getKey())) {
+                Files.write(source.getKey(), source.getValue());
+            }
+        }
+
+        Table reopened = TableFiles.open(TABLE_NAME, config);
+        try {
+            assertFalse(reopened.read("deleted").isPresent());
+            assertArrayEquals("value".getBytes(), reopened.read("kept").orElseThrow());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void writeFillers(Table table) throws Exception {
+        for (int i = 0; i < FILLERS_PER_SEGMENT; i++) {
+            table.write("filler", new byte[FILLER_SIZE]);
+        }
+    }
+}
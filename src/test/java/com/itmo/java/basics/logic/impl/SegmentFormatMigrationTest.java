@@ -0,0 +1,121 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.DatabaseKey;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentFormatMigrationTest {
+
+    private static final String TABLE_NAME = "t";
+    private static final int KEY_COUNT = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void segmentsOfAllFormatsAreReadTogetherAndMigrated() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .durabilityMode(DurabilityMode.NONE)
+                .compactionIntervalMillis(0L)
+                .build();
+        Table table = TableImpl.create(TABLE_NAME, TableFiles.databasePath(config), new TableIndex(), config);
+        Map<String, String> expected = new HashMap<>();
+        write(table, expected, "seed", "current");
+        table.close();
+
+        // Older segments get smaller timestamps than the segment of the current format
+        Path tableRootPath = TableFiles.databasePath(config).resolve(TABLE_NAME);
+        try (DatabaseOutputStream output = new DatabaseOutputStream(
+                new FileOutputStream(tableRootPath.resolve(TABLE_NAME + "_1").toFile()))) {
+            for (int i = 0; i < 300; i++) {
+                writeRecord(output, expected, "key" + i, "legacy-" + i);
+            }
+            deleteRecord(output, expected, "key5");
+        }
+        SegmentFormat.CHECKSUMMED.createFile(tableRootPath.resolve(TABLE_NAME + "_2"));
+        try (DatabaseOutputStream output = new DatabaseOutputStream(
+                new FileOutputStream(tableRootPath.resolve(TABLE_NAME + "_2").toFile(), true), SegmentFormat.CHECKSUMMED)) {
+            for (int i = 200; i < 400; i++) {
+                writeRecord(output, expected, "key" + i, "checksummed-" + i);
+            }
+            deleteRecord(output, expected, "key7");
+        }
+
+        table = TableFiles.open(TABLE_NAME, config);
+        for (int i = 300; i < KEY_COUNT; i++) {
+            write(table, expected, "key" + i, "varint-" + i);
+        }
+        table.delete("key250");
+        expected.remove("key250");
+        assertContents(table, expected);
+        table.close();
+
+        List<Path> segmentFiles = TableFiles.segmentFiles(config, TABLE_NAME);
+        assertEquals(SegmentFormat.LEGACY, SegmentFormat.detect(segmentFiles.get(0)));
+        assertEquals(SegmentFormat.CHECKSUMMED, SegmentFormat.detect(segmentFiles.get(1)));
+        assertEquals(SegmentFormat.VARINT, SegmentFormat.detect(segmentFiles.get(2)));
+
+        table = TableFiles.open(TABLE_NAME, config);
+        assertContents(table, expected);
+        assertEquals(2, ((TableImpl) ((CachingTable) table).getTable()).migrate());
+        for (Path segmentFile : TableFiles.segmentFiles(config, TABLE_NAME)) {
+            assertEquals(segmentFile.toString(), SegmentFormat.VARINT, SegmentFormat.detect(segmentFile));
+        }
+        assertContents(table, expected);
+        table.close();
+
+        table = TableFiles.open(TABLE_NAME, config);
+        assertContents(table, expected);
+        table.close();
+    }
+
+    private static void write(Table table, Map<String, String> expected, String key, String value) throws DatabaseException {
+        table.write(key, value.getBytes());
+        expected.put(key, value);
+    }
+
+    private static void writeRecord(DatabaseOutputStream output, Map<String, String> expected, String key, String value)
+            throws Exception {
+        output.write(new SetDatabaseRecord(DatabaseKey.of(key), value.getBytes()));
+        expected.put(key, value);
+    }
+
+    private static void deleteRecord(DatabaseOutputStream output, Map<String, String> expected, String key) throws Exception {
+        output.write(new RemoveDatabaseRecord(DatabaseKey.of(key)));
+        expected.remove(key);
+    }
+
+    private static void assertContents(Table table, Map<String, String> expected) throws DatabaseException {
+        assertEquals("current", new String(table.read("seed").get()));
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "key" + i;
+            Optional<byte[]> value = table.read(key);
+            if (expected.containsKey(key)) {
+                assertTrue(key, value.isPresent());
+                assertEquals(key, expected.get(key), new String(value.get()));
+            } else {
+                assertFalse(key, value.isPresent());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.Table;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SegmentRecoveryTest {
+
+    private static final String TABLE_NAME = "t";
+    private static final int KEY_COUNT = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void tornTailOfActiveSegmentIsTruncatedOnRecovery() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .durabilityMode(DurabilityMode.NONE)
+                .compactionIntervalMillis(0L)
+                .build();
+        Table table = TableImpl.create(TABLE_NAME, TableFiles.databasePath(config), new TableIndex(), config);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            table.write("key" + i, ("value" + i).getBytes());
+        }
+        table.close();
+
+        // A crash in the middle of an append: the record promises a 100-byte value, but only 10 bytes reached the disk
+        List<Path> segmentFiles = TableFiles.segmentFiles(config, TABLE_NAME);
+        Path activeSegment = segmentFiles.get(segmentFiles.size() - 1);
+        long validLength = Files.size(activeSegment);
+        byte[] tornRecord = new byte[]{1, 2, 3, 4, 0, 2, 'z', 'z', 100, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        Files.write(activeSegment, tornRecord, StandardOpenOption.APPEND);
+
+        Table recovered = TableFiles.open(TABLE_NAME, config);
+        assertEquals(validLength, Files.size(activeSegment));
+        assertContents(recovered);
+        assertFalse(recovered.read("zz").isPresent());
+
+        // New records go right after the last valid one and are readable after the next restart
+        recovered.write("after", "recovery".getBytes());
+        recovered.close();
+
+        Table reopened = TableFiles.open(TABLE_NAME, config);
+        assertContents(reopened);
+        assertEquals("recovery", new String(reopened.read("after").get()));
+        reopened.close();
+    }
+
+    private static void assertContents(Table table) throws DatabaseException {
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertEquals("value" + i, new String(table.read("key" + i).get()));
+        }
+    }
+}
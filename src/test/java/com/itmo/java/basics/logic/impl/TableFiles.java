@@ -0,0 +1,62 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.initialization.impl.DatabaseInitializationContextImpl;
+import com.itmo.java.basics.initialization.impl.InitializationContextImpl;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.initialization.impl.TableInitializationContextImpl;
+import com.itmo.java.basics.initialization.impl.TableInitializer;
+import com.itmo.java.basics.logic.Table;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Открытие таблиц с диска, как при запуске сервера, и доступ к их файлам
+ */
+final class TableFiles {
+    static final String DATABASE_NAME = "db";
+
+    private TableFiles() {
+    }
+
+    /**
+     * Открывает таблицу базы {@link #DATABASE_NAME} из рабочей директории конфигурации
+     */
+    static Table open(String tableName, DatabaseConfig config) throws DatabaseException {
+        DatabaseInitializationContextImpl databaseContext =
+                new DatabaseInitializationContextImpl(DATABASE_NAME, Path.of(config.getWorkingPath()));
+        new TableInitializer(new SegmentInitializer()).perform(InitializationContextImpl.builder()
+                .executionEnvironment(new ExecutionEnvironmentImpl(config))
+                .currentDatabaseContext(databaseContext)
+                .currentTableContext(new TableInitializationContextImpl(tableName, databaseContext.getDatabasePath(), new TableIndex()))
+                .build());
+        return databaseContext.getTables().get(tableName);
+    }
+
+    /**
+     * Директория базы {@link #DATABASE_NAME}, в которой создаются таблицы
+     */
+    static Path databasePath(DatabaseConfig config) throws IOException {
+        return Files.createDirectories(Path.of(config.getWorkingPath(), DATABASE_NAME));
+    }
+
+    /**
+     * Файлы сегментов таблицы в порядке создания
+     */
+    static List<Path> segmentFiles(DatabaseConfig config, String tableName) throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(config.getWorkingPath(), DATABASE_NAME, tableName))) {
+            return files.filter(file -> SegmentImpl.isSegmentName(tableName, file.getFileName().toString()))
+                    .sorted((a, b) -> Long.compare(SegmentImpl.getSegmentTimestamp(a.getFileName().toString()),
+                            SegmentImpl.getSegmentTimestamp(b.getFileName().toString())))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.itmo.java.bench;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.SegmentReadMode;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.impl.TableImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Цена проверки контрольной суммы записи при чтении ({@code kvs.segment.verifyChecksums}).
+ * Для каждого способа чтения сегментов таблица заполняется ключами с одинаковыми значениями и читается
+ * по случайным ключам с проверкой и без нее. Каждая пара прогонов повторяется дважды, чтобы был виден разброс
+ * между прогонами
+ * <p>
+ * Запуск после {@code mvn test-compile}:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.itmo.java.bench.ChecksumBench [valueSize] [keys] [reads]
+ * </pre>
+ * По умолчанию значения по 100 байт, 20 000 ключей и 500 000 чтений
+ */
+public final class ChecksumBench {
+
+    private static final int ROUNDS = 2;
+
+    private ChecksumBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int valueSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int reads = args.length > 2 ? Integer.parseInt(args[2]) : 500_000;
+
+        for (SegmentReadMode mode : SegmentReadMode.values()) {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (boolean verify : new boolean[]{false, true}) {
+                    double nanos = measure(mode, verify, valueSize, keys, reads);
+                    System.out.printf("%s verify=%s: %.0f ns/read%n", mode, verify, nanos);
+                }
+            }
+        }
+    }
+
+    private static double measure(SegmentReadMode mode, boolean verify, int valueSize, int keys, int reads) throws Exception {
+        Path dir = Files.createTempDirectory("kvs-bench");
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(dir.toString())
+                .segmentReadMode(mode)
+                .verifyChecksums(verify)
+                .compactionIntervalMillis(0L)
+                .build();
+        Table table = TableImpl.create("t", dir, new TableIndex(), config);
+        try {
+            byte[] value = new byte[valueSize];
+            for (int i = 0; i < keys; i++) {
+                table.write("k" + i, value);
+            }
+
+            Random random = new Random(1);
+            // Warm up
+            for (int i = 0; i < reads / 2; i++) {
+                table.read("k" + random.nextInt(keys));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                table.read("k" + random.nextInt(keys));
+            }
+            return (System.nanoTime() - start) / (double) reads;
+        } finally {
+            table.close();
+        }
+    }
+}
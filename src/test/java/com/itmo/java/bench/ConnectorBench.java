@@ -0,0 +1,174 @@
+package com.itmo.java.bench;
+
+import com.itmo.java.basics.DatabaseServer;
+import com.itmo.java.basics.config.ConnectorMode;
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.ServerConfig;
+import com.itmo.java.basics.connector.JavaSocketServerConnector;
+import com.itmo.java.basics.connector.NioServerConnector;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.initialization.impl.DatabaseInitializer;
+import com.itmo.java.basics.initialization.impl.DatabaseServerInitializer;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.initialization.impl.TableInitializer;
+import com.itmo.java.client.command.CreateDatabaseKvsCommand;
+import com.itmo.java.client.command.CreateTableKvsCommand;
+import com.itmo.java.client.command.GetKvsCommand;
+import com.itmo.java.client.command.KvsCommand;
+import com.itmo.java.client.command.SetKvsCommand;
+import com.itmo.java.protocol.RespReader;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сравнение режимов коннектора ({@code kvs.connector.mode}) при большом числе соединений. Сервер и клиент
+ * запускаются в разных JVM. Клиент открывает {@code conns} соединений и в каждом раунде делает по каждому
+ * соединению SET и GET из {@value #CLIENT_THREADS} потоков, затем печатает пропускную способность и задержки.
+ * Сервер при остановке печатает наибольшее число потоков JVM и наибольшую занятую кучу
+ * <p>
+ * Запуск после {@code mvn test-compile}, виртуальные потоки есть только начиная с JDK 21:
+ * <pre>
+ * java -Xmx1g -cp target/classes:target/test-classes com.itmo.java.bench.ConnectorBench server BLOCKING|VIRTUAL|NIO port
+ * java -cp target/classes:target/test-classes com.itmo.java.bench.ConnectorBench client port conns rounds
+ * </pre>
+ * Для 10k соединений обеим JVM нужен лимит открытых файлов больше 10 000 ({@code ulimit -n})
+ */
+public final class ConnectorBench {
+
+    private static final int CLIENT_THREADS = 64;
+    private static final int EVENT_LOOPS = 2;
+    private static final long SAMPLE_INTERVAL_MILLIS = 200;
+
+    private static final String DATABASE_NAME = "db";
+    private static final String TABLE_NAME = "t";
+
+    private ConnectorBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("server")) {
+            server(ConnectorMode.valueOf(args[1]), Integer.parseInt(args[2]));
+        } else if (args.length == 4 && args[0].equals("client")) {
+            client(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        } else {
+            System.out.println("Usage: server BLOCKING|VIRTUAL|NIO port | client port conns rounds");
+        }
+    }
+
+    private static void server(ConnectorMode mode, int port) throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(Files.createTempDirectory("kvs-bench").toString())
+                .build();
+        DatabaseServer database = DatabaseServer.initialize(new ExecutionEnvironmentImpl(config),
+                new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer()))));
+        ServerConfig serverConfig = new ServerConfig(ServerConfig.DEFAULT_HOST, port, mode, EVENT_LOOPS);
+        if (mode == ConnectorMode.NIO) {
+            new NioServerConnector(database, serverConfig).start();
+        } else {
+            new JavaSocketServerConnector(database, serverConfig).start();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.printf("peak threads %d, peak heap %d MB%n",
+                threads.getPeakThreadCount(), peakHeap.get() / (1024 * 1024))));
+        System.out.printf("%s connector on port %d, java %s%n", mode, port, System.getProperty("java.version"));
+
+        while (true) {
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+        }
+    }
+
+    private static void client(int port, int conns, int rounds) throws Exception {
+        try (Socket admin = new Socket(ServerConfig.DEFAULT_HOST, port)) {
+            RespReader reader = new RespReader(admin.getInputStream());
+            send(admin.getOutputStream(), new CreateDatabaseKvsCommand(DATABASE_NAME));
+            reader.readObject();
+            send(admin.getOutputStream(), new CreateTableKvsCommand(DATABASE_NAME, TABLE_NAME));
+            reader.readObject();
+        }
+
+        long start = System.nanoTime();
+        Socket[] sockets = new Socket[conns];
+        RespReader[] readers = new RespReader[conns];
+        for (int i = 0; i < conns; i++) {
+            sockets[i] = new Socket(ServerConfig.DEFAULT_HOST, port);
+            sockets[i].setTcpNoDelay(true);
+            readers[i] = new RespReader(sockets[i].getInputStream());
+        }
+        long openMillis = (System.nanoTime() - start) / 1_000_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENT_THREADS);
+        long[] latencies = new long[conns * rounds * 2];
+        AtomicInteger nextLatency = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                String value = "v" + round;
+                for (int i = 0; i < conns; i++) {
+                    Socket socket = sockets[i];
+                    RespReader reader = readers[i];
+                    String key = "k" + i;
+                    futures.add(pool.submit(() -> {
+                        long setStart = System.nanoTime();
+                        send(socket.getOutputStream(), new SetKvsCommand(DATABASE_NAME, TABLE_NAME, key, value));
+                        check(!reader.readObject().isError(), "SET failed");
+                        long getStart = System.nanoTime();
+                        send(socket.getOutputStream(), new GetKvsCommand(DATABASE_NAME, TABLE_NAME, key));
+                        check(reader.readObject().asString().equals(value), "GET returned a wrong value");
+                        latencies[nextLatency.getAndIncrement()] = getStart - setStart;
+                        latencies[nextLatency.getAndIncrement()] = System.nanoTime() - getStart;
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                futures.clear();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        Arrays.sort(latencies);
+        System.out.printf("%d conns: open %d ms, %d ops in %d ms = %d ops/s, p50 %.2f ms, p99 %.2f ms%n",
+                conns, openMillis, latencies.length, millis, latencies.length * 1000L / millis,
+                latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6);
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private static void send(OutputStream out, KvsCommand command) throws IOException {
+        RespObject object = command.serialize();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        object.write(bytes);
+        out.write(bytes.toByteArray());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
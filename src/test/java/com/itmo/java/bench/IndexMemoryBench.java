@@ -0,0 +1,80 @@
+package com.itmo.java.bench;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.DurabilityMode;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.impl.TableImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Память индекса таблицы на один ключ и время GET. В таблицу пишутся ключи с 8-байтовыми значениями,
+ * память считается как прирост занятой кучи после сборки мусора. Затем читается 1M случайных
+ * существующих ключей. Уплотнение отключено, чтобы оно не меняло ни кучу, ни время чтения
+ * <p>
+ * Запуск после {@code mvn test-compile}, для 10M ключей нужно около 2 ГБ кучи:
+ * <pre>
+ * java -Xmx2g -cp target/classes:target/test-classes com.itmo.java.bench.IndexMemoryBench [keys]
+ * </pre>
+ * По умолчанию 1M ключей. Класс использует только API, который был и до общего индекса таблицы, поэтому
+ * его же можно собрать с более старой версией и сравнить
+ */
+public final class IndexMemoryBench {
+
+    private static final int VALUE_SIZE = 8;
+    private static final int READS = 1 << 20;
+    private static final int READ_ROUNDS = 3;
+
+    private IndexMemoryBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Path dir = Files.createTempDirectory("kvs-bench");
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(dir.toString())
+                .durabilityMode(DurabilityMode.NONE)
+                .compactionIntervalMillis(0L)
+                .build();
+        Table table = TableImpl.create("t", dir, new TableIndex(), config);
+        try {
+            byte[] value = new byte[VALUE_SIZE];
+            long usedBefore = usedHeap();
+            long start = System.nanoTime();
+            for (int i = 0; i < keys; i++) {
+                table.write("key" + i, value);
+            }
+            System.out.printf("%d keys: load %.1f s%n", keys, (System.nanoTime() - start) / 1e9);
+            System.out.printf("heap bytes/key %.1f%n", (usedHeap() - usedBefore) / (double) keys);
+
+            Random random = new Random(1);
+            String[] readKeys = new String[READS];
+            for (int i = 0; i < readKeys.length; i++) {
+                readKeys[i] = "key" + random.nextInt(keys);
+            }
+            for (int round = 0; round < READ_ROUNDS; round++) {
+                start = System.nanoTime();
+                for (String key : readKeys) {
+                    if (table.read(key).isEmpty()) {
+                        throw new IllegalStateException("Key is lost: " + key);
+                    }
+                }
+                System.out.printf("get %.0f ns%n", (System.nanoTime() - start) / (double) readKeys.length);
+            }
+        } finally {
+            table.close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}